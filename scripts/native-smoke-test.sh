@@ -0,0 +1,85 @@
+#!/usr/bin/env bash
+# Boots the native binary against a throwaway local MongoDB and reports startup time and memory.
+# Exercises the Mongo mapping, a repository query and JSON serialization with one authenticated request.
+#
+# Build first with: ./mvnw -Pnative -DskipTests native:compile
+# Requires docker for the MongoDB stand-in, or MONGODB_URI pointing at a disposable database.
+# Usage: scripts/native-smoke-test.sh [port]
+set -euo pipefail
+
+PORT="${1:-8080}"
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+BINARY="$ROOT/target/personalfinance"
+DATABASE="personalfinance-smoke"
+CONTAINER="personalfinance-smoke-mongo"
+LOG="$(mktemp)"
+
+if [[ ! -x "$BINARY" ]]; then
+    echo "Native binary not found, build with: ./mvnw -Pnative -DskipTests native:compile" >&2
+    exit 1
+fi
+
+cleanup() {
+    [[ -n "${APP_PID:-}" ]] && kill "$APP_PID" 2> /dev/null || true
+    [[ -z "${MONGODB_URI_SET:-}" ]] && docker rm -f "$CONTAINER" > /dev/null 2>&1 || true
+    rm -f "$LOG"
+}
+trap cleanup EXIT
+
+if [[ -n "${MONGODB_URI:-}" ]]; then
+    MONGODB_URI_SET=1
+else
+    docker run -d --rm --name "$CONTAINER" -p 27017:27017 mongo:7 > /dev/null
+    MONGODB_URI="mongodb://localhost:27017"
+    until docker exec "$CONTAINER" mongosh --quiet --eval 'db.runCommand({ ping: 1 }).ok' > /dev/null 2>&1; do
+        sleep 0.2
+    done
+fi
+
+# A user whose password is "gabeiscool", so the request below authenticates through UserDetailsServiceImpl
+USER_ID="650000000000000000000001"
+EMAIL="smoke@example.com"
+HASH='$2a$10$ybHQsFpAwjcB/xwYxjLlJOImhoMOZBgwhZu71VwPP5sWfd.KUNpNe'
+INSERT="db.getSiblingDB('$DATABASE').users.replaceOne({ _id: ObjectId('$USER_ID') },
+    { _id: ObjectId('$USER_ID'), email: '$EMAIL', username: 'smoke', password: '$HASH' }, { upsert: true })"
+if [[ -n "${MONGODB_URI_SET:-}" ]]; then
+    mongosh --quiet "$MONGODB_URI" --eval "$INSERT" > /dev/null
+else
+    docker exec "$CONTAINER" mongosh --quiet --eval "$INSERT" > /dev/null
+fi
+
+START=$(date +%s%N)
+"$BINARY" --server.port="$PORT" \
+    --spring.data.mongodb.uri="$MONGODB_URI" \
+    --spring.data.mongodb.database="$DATABASE" \
+    --gmail.warm-up=false > "$LOG" 2>&1 &
+APP_PID=$!
+
+until [[ "$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:$PORT/actuator/health" || true)" != "000" ]]; do
+    if ! kill -0 "$APP_PID" 2> /dev/null; then
+        echo "Native binary exited during startup:" >&2
+        cat "$LOG" >&2
+        exit 1
+    fi
+    sleep 0.01
+done
+FIRST_REQUEST_MS=$(( ($(date +%s%N) - START) / 1000000 ))
+STARTED_LINE=$(grep -o 'Started PersonalfinanceApplication in [0-9.]* seconds' "$LOG" || echo "n/a")
+RSS_AFTER_START_KB=$(ps -o rss= -p "$APP_PID" | tr -d ' ')
+
+STATUS=$(curl -s -o /tmp/personalfinance-smoke-user.json -w '%{http_code}' -u "$EMAIL:gabeiscool" \
+    "http://localhost:$PORT/api/users/$USER_ID")
+RSS_AFTER_REQUEST_KB=$(ps -o rss= -p "$APP_PID" | tr -d ' ')
+
+echo "time to first request:  ${FIRST_REQUEST_MS} ms"
+echo "spring startup:         ${STARTED_LINE}"
+echo "rss after startup:      $(( RSS_AFTER_START_KB / 1024 )) MB"
+echo "rss after request:      $(( RSS_AFTER_REQUEST_KB / 1024 )) MB"
+
+if [[ "$STATUS" != "200" ]] || ! grep -q "\"email\":\"$EMAIL\"" /tmp/personalfinance-smoke-user.json; then
+    echo "Smoke request failed with HTTP $STATUS:" >&2
+    cat /tmp/personalfinance-smoke-user.json >&2
+    tail -n 50 "$LOG" >&2
+    exit 1
+fi
+echo "smoke request:          OK"
@@ -0,0 +1,59 @@
+#!/usr/bin/env bash
+# Measures time-to-first-request of the application, started normally and with the fast-startup artifacts.
+#
+# Build first with: ./mvnw -Pfast-startup -DskipTests package
+# Usage: scripts/startup-benchmark.sh [runs] [port]
+set -euo pipefail
+
+RUNS="${1:-5}"
+PORT="${2:-8080}"
+TARGET="$(cd "$(dirname "$0")/.." && pwd)/target"
+JAR="$(ls "$TARGET"/personalfinance-*.jar | grep -v '\.original$' | head -n 1)"
+EXTRACTED_JAR="$TARGET/extracted/$(basename "$JAR")"
+ARCHIVE="$TARGET/extracted/application.jsa"
+
+if [[ ! -f "$EXTRACTED_JAR" || ! -f "$ARCHIVE" ]]; then
+    echo "Fast-startup artifacts not found, build with: ./mvnw -Pfast-startup -DskipTests package" >&2
+    exit 1
+fi
+
+# Starts the application with the given arguments and prints the milliseconds until it answers its first request.
+# Any HTTP status counts as an answer, since the server is handling requests by then.
+time_to_first_request() {
+    local start pid status elapsed
+    start=$(date +%s%N)
+    java "$@" --server.port="$PORT" > /dev/null 2>&1 &
+    pid=$!
+    while true; do
+        status=$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:$PORT/actuator/health" || true)
+        if [[ "$status" != "000" ]]; then
+            break
+        fi
+        if ! kill -0 "$pid" 2> /dev/null; then
+            echo "Application exited before answering a request" >&2
+            exit 1
+        fi
+        sleep 0.02
+    done
+    elapsed=$(( ($(date +%s%N) - start) / 1000000 ))
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+    echo "$elapsed"
+}
+
+# Runs a configuration several times and reports every run and the median.
+benchmark() {
+    local label="$1"
+    shift
+    local times=()
+    for ((i = 0; i < RUNS; i++)); do
+        times+=("$(time_to_first_request "$@")")
+    done
+    local median
+    median=$(printf '%s\n' "${times[@]}" | sort -n | awk '{ a[NR] = $1 } END { print a[int((NR + 1) / 2)] }')
+    printf '%-14s median %5d ms  (runs: %s)\n' "$label" "$median" "${times[*]}"
+}
+
+benchmark "baseline" -jar "$JAR"
+benchmark "aot" -Dspring.aot.enabled=true -jar "$EXTRACTED_JAR"
+benchmark "aot + cds" -XX:SharedArchiveFile="$ARCHIVE" -Dspring.aot.enabled=true -jar "$EXTRACTED_JAR"
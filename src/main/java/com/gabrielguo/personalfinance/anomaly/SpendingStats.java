@@ -0,0 +1,57 @@
+package com.gabrielguo.personalfinance.anomaly;
+
+/**
+ * Running mean and variance of the amounts spent in one category, updated in constant time per amount.
+ * The first amounts are weighted equally, which is Welford's algorithm; once there are more than 1 / smoothing of
+ * them, each new amount gets the weight smoothing instead, which turns the statistics into exponentially weighted
+ * ones that follow a gradual change in spending and forget old habits.
+ */
+public final class SpendingStats {
+
+    // A cent, for categories whose amounts have all been zero so far
+    private static final double MIN_DEVIATION = 0.01;
+
+    private long count;
+    private double mean;
+    private double variance;
+
+    /**
+     * Scores an amount against the amounts seen so far.
+     *
+     * @param amount the amount
+     * @param minDeviationRatio the smallest deviation used, as a fraction of the mean, so that a category with
+     *                          identical amounts so far does not flag every slightly larger one
+     * @return how many deviations the amount lies above the mean; negative below it
+     */
+    public double score(double amount, double minDeviationRatio) {
+        double deviation = Math.max(Math.max(Math.sqrt(variance), Math.abs(mean) * minDeviationRatio), MIN_DEVIATION);
+        return (amount - mean) / deviation;
+    }
+
+    /**
+     * Adds an amount to the statistics.
+     *
+     * @param amount the amount
+     * @param smoothing the weight of a new amount once the statistics are warmed up, between 0 and 1
+     */
+    public void add(double amount, double smoothing) {
+        count++;
+        double weight = Math.max(smoothing, 1.0 / count);
+        double difference = amount - mean;
+        double increment = weight * difference;
+        mean += increment;
+        variance = (1 - weight) * (variance + difference * increment);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(variance);
+    }
+}
@@ -0,0 +1,275 @@
+package com.gabrielguo.personalfinance.categorization;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Assigns categories to descriptions by merchant and keyword rules, compiled into an Aho-Corasick automaton so
+ * that a description is checked against every rule in a single pass over its characters.
+ * <p>
+ * Patterns and descriptions are compared ignoring case, and any run of characters other than letters and digits
+ * counts as one space, so "uber eats" matches "UBER *EATS". A pattern must match from the start of a word but may
+ * end inside one: "amazon" matches "AMAZON.COM" and "AMAZONMKTPL", not "XAMAZON". When several patterns match,
+ * the longest wins, then the rule listed first.
+ * <p>
+ * The automaton is a dense transition table over the characters the patterns use, with the failure links folded in
+ * when it is compiled, so matching costs one table lookup per character. Matchers are immutable and thread-safe.
+ */
+public final class CategoryMatcher {
+
+    // Every character maps to a class: separators, word characters no pattern uses, then one per pattern character
+    private static final int SEPARATOR = 0;
+    private static final int OTHER = 1;
+
+    /**
+     * Assigns a category to the descriptions containing a pattern.
+     */
+    public record Rule(String pattern, String category) {
+    }
+
+    private final char[] classes;
+    private final int classCount;
+    // Each state is a row of classCount entries, found at its offset, state * classCount. The entry for a class is
+    // the offset of the next state, or its complement if that state matches a rule, so that the rules are only
+    // looked up on a match.
+    private final int[] transitions;
+    // The rule matched on reaching each state, or -1, and the length of its pattern
+    private final int[] matchedRules;
+    private final int[] matchedLengths;
+    private final int start;
+    private final String[] categories;
+
+    private CategoryMatcher(char[] classes, int classCount, int[] transitions, int[] matchedRules, int[] matchedLengths,
+                            int start, String[] categories) {
+        this.classes = classes;
+        this.classCount = classCount;
+        this.transitions = transitions;
+        this.matchedRules = matchedRules;
+        this.matchedLengths = matchedLengths;
+        this.start = start;
+        this.categories = categories;
+    }
+
+    /**
+     * @param rules the rules, in order of precedence among patterns of the same length
+     * @return the compiled matcher
+     * @throws IllegalArgumentException if a pattern has no letters or digits, or a category is blank
+     */
+    public static CategoryMatcher compile(List<Rule> rules) {
+        // Give each lowercase character used by a pattern its own class
+        char[] lowerClasses = new char[Character.MAX_VALUE + 1];
+        int classCount = OTHER + 1;
+        List<String> patterns = new ArrayList<>(rules.size());
+        String[] categories = new String[rules.size()];
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            String pattern = normalize(rule.pattern());
+            if (pattern.isEmpty()) {
+                throw new IllegalArgumentException("Pattern '" + rule.pattern() + "' has no letters or digits");
+            }
+            if (rule.category() == null || rule.category().isBlank()) {
+                throw new IllegalArgumentException("Pattern '" + rule.pattern() + "' has no category");
+            }
+            for (int j = 0; j < pattern.length(); j++) {
+                char c = pattern.charAt(j);
+                if (c != ' ' && lowerClasses[c] == 0) {
+                    lowerClasses[c] = (char) classCount++;
+                }
+            }
+            patterns.add(pattern);
+            categories[i] = rule.category().strip();
+        }
+        char[] classes = new char[Character.MAX_VALUE + 1];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (Character.isLetterOrDigit(c)) {
+                char lowerClass = lowerClasses[Character.toLowerCase(c)];
+                classes[c] = lowerClass != 0 ? lowerClass : OTHER;
+            }
+        }
+
+        // The trie of the patterns, each preceded by a separator so that it only starts at the start of a word
+        List<int[]> trie = new ArrayList<>();
+        List<int[]> matches = new ArrayList<>(); // rule and length per state
+        trie.add(newState(classCount));
+        matches.add(new int[]{-1, 0});
+        for (int i = 0; i < patterns.size(); i++) {
+            String pattern = patterns.get(i);
+            int state = 0;
+            for (int j = -1; j < pattern.length(); j++) {
+                int c = j < 0 || pattern.charAt(j) == ' ' ? SEPARATOR : classes[pattern.charAt(j)];
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newState(classCount));
+                    matches.add(new int[]{-1, 0});
+                }
+                state = trie.get(state)[c];
+            }
+            int[] match = matches.get(state);
+            if (match[0] < 0) {
+                match[0] = i;
+                match[1] = pattern.length() + 1;
+            }
+        }
+
+        // Breadth first, so the failure state of each state is complete before the state itself
+        int[] failures = new int[trie.size()];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int[] root = trie.get(0);
+        for (int c = 0; c < classCount; c++) {
+            if (root[c] < 0) {
+                root[c] = 0;
+            } else {
+                queue.add(root[c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int[] next = trie.get(state);
+            int[] failureNext = trie.get(failures[state]);
+            for (int c = 0; c < classCount; c++) {
+                if (next[c] < 0) {
+                    next[c] = failureNext[c];
+                } else {
+                    int child = next[c];
+                    failures[child] = failureNext[c];
+                    // A state also matches whatever its failure state, a suffix of it, matches
+                    int[] inherited = matches.get(failures[child]);
+                    int[] own = matches.get(child);
+                    if (inherited[0] >= 0 && (own[0] < 0 || better(inherited, own))) {
+                        own[0] = inherited[0];
+                        own[1] = inherited[1];
+                    }
+                    queue.add(child);
+                }
+            }
+        }
+
+        if ((long) trie.size() * classCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many rules: " + trie.size() + " states of " + classCount + " classes");
+        }
+        int[] transitions = new int[trie.size() * classCount];
+        int[] matchedRules = new int[trie.size()];
+        int[] matchedLengths = new int[trie.size()];
+        for (int state = 0; state < trie.size(); state++) {
+            int[] next = trie.get(state);
+            for (int c = 0; c < classCount; c++) {
+                int offset = next[c] * classCount;
+                transitions[state * classCount + c] = matches.get(next[c])[0] >= 0 ? ~offset : offset;
+            }
+            matchedRules[state] = matches.get(state)[0];
+            matchedLengths[state] = matches.get(state)[1];
+        }
+        return new CategoryMatcher(classes, classCount, transitions, matchedRules, matchedLengths,
+                root[SEPARATOR] * classCount, categories);
+    }
+
+    /**
+     * Reads rules from a file of pattern,category lines. Blank lines, lines starting with # and a
+     * pattern,category header are skipped.
+     *
+     * @param file the rules file
+     * @return the compiled matcher
+     */
+    public static CategoryMatcher load(Path file) throws IOException {
+        List<Rule> rules = new ArrayList<>();
+        List<String> lines = Files.readAllLines(file);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#") || line.toLowerCase(Locale.ROOT).equals("pattern,category")) {
+                continue;
+            }
+            int comma = line.indexOf(',');
+            if (comma < 0) {
+                throw new IllegalArgumentException("Invalid rule at " + file + ":" + (i + 1) + ": expected pattern,category");
+            }
+            rules.add(new Rule(line.substring(0, comma), line.substring(comma + 1)));
+        }
+        try {
+            return compile(rules);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid rules in " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param description the text to categorize
+     * @return the category of the best matching rule, or null if none matches
+     */
+    public String match(CharSequence description) {
+        if (description == null) {
+            return null;
+        }
+        int offset = start;
+        int best = -1;
+        int bestLength = 0;
+        boolean separated = true;
+        for (int i = 0, length = description.length(); i < length; i++) {
+            int c = classes[description.charAt(i)];
+            if (c == SEPARATOR) {
+                if (separated) {
+                    continue; // A run of separators counts once
+                }
+                separated = true;
+            } else {
+                separated = false;
+            }
+            offset = transitions[offset + c];
+            if (offset < 0) {
+                offset = ~offset;
+                int state = offset / classCount;
+                int rule = matchedRules[state];
+                if (matchedLengths[state] > bestLength || (matchedLengths[state] == bestLength && rule < best)) {
+                    best = rule;
+                    bestLength = matchedLengths[state];
+                }
+            }
+        }
+        return best < 0 ? null : categories[best];
+    }
+
+    /**
+     * @return the number of rules
+     */
+    public int size() {
+        return categories.length;
+    }
+
+    /**
+     * @return the number of states of the automaton
+     */
+    public int getStateCount() {
+        return matchedRules.length;
+    }
+
+    // Lowercase letters and digits, with every run of other characters turned into one space
+    static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            } else if (!normalized.isEmpty() && normalized.charAt(normalized.length() - 1) != ' ') {
+                normalized.append(' ');
+            }
+        }
+        int end = normalized.length();
+        return end > 0 && normalized.charAt(end - 1) == ' ' ? normalized.substring(0, end - 1) : normalized.toString();
+    }
+
+    // Longer patterns win, then earlier rules
+    private static boolean better(int[] match, int[] other) {
+        return match[1] > other[1] || (match[1] == other[1] && match[0] < other[0]);
+    }
+
+    private static int[] newState(int classCount) {
+        int[] state = new int[classCount];
+        Arrays.fill(state, -1);
+        return state;
+    }
+}
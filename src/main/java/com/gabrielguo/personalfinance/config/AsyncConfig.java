@@ -0,0 +1,82 @@
+package com.gabrielguo.personalfinance.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+
+    /**
+     * Executor for bulk deletes, which fan out one deleteMany per collection.
+     *
+     * @param threads the number of collections that can be purged concurrently
+     * @return the bulk delete executor
+     */
+    @Bean(name = "bulkDeleteExecutor")
+    public ThreadPoolTaskExecutor bulkDeleteExecutor(@Value("${bulk-delete.threads:8}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("bulk-delete-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor that drives account deletions. It is kept apart from the bulk delete executor because each
+     * account deletion blocks while its per-collection deletes run there. Deletions rejected by a full queue
+     * stay recorded and are resumed later.
+     *
+     * @param threads the number of accounts that can be deleted concurrently
+     * @param queueCapacity the number of account deletions that can wait for a thread
+     * @return the account deletion executor
+     */
+    @Bean(name = "accountDeletionExecutor")
+    public ThreadPoolTaskExecutor accountDeletionExecutor(@Value("${account-deletion.threads:2}") int threads,
+                                                          @Value("${account-deletion.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("account-deletion-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor for outbox email delivery. Its queue never holds more than one claimed batch.
+     *
+     * @param threads the number of emails delivered concurrently
+     * @return the email delivery executor
+     */
+    @Bean(name = "emailDeliveryExecutor")
+    public ThreadPoolTaskExecutor emailDeliveryExecutor(@Value("${email.outbox.workers:4}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("email-delivery-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor for the recurring expense detection, which runs one partition of the users per task.
+     *
+     * @param threads the number of partitions detected concurrently
+     * @return the recurring detection executor
+     */
+    @Bean(name = "recurringDetectionExecutor")
+    public ThreadPoolTaskExecutor recurringDetectionExecutor(@Value("${recurring.threads:4}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("recurring-detection-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,116 @@
+package com.gabrielguo.personalfinance.config;
+
+import com.gabrielguo.personalfinance.repository.BudgetRepository;
+import com.gabrielguo.personalfinance.repository.ExpenseRepository;
+import com.gabrielguo.personalfinance.repository.IncomeRepository;
+import com.gabrielguo.personalfinance.repository.TransactionRepository;
+import com.gabrielguo.personalfinance.repository.UserRepository;
+import com.gabrielguo.personalfinance.repository.UserSettingsRepository;
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedBudgetRepository;
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedDatabase;
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedExpenseRepository;
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedIncomeRepository;
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedTransactionRepository;
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedUserRepository;
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedUserSettingsRepository;
+import com.gabrielguo.personalfinance.service.AccountDeletionService;
+import com.gabrielguo.personalfinance.service.BudgetUtilizationService;
+import com.gabrielguo.personalfinance.service.EmbeddedAccountDeletionService;
+import com.gabrielguo.personalfinance.service.EmbeddedBudgetUtilizationService;
+import com.gabrielguo.personalfinance.service.EmbeddedExpenseArchiveService;
+import com.gabrielguo.personalfinance.service.EmbeddedUserSettingsService;
+import com.gabrielguo.personalfinance.service.ExpenseArchiveService;
+import com.gabrielguo.personalfinance.service.UserSettingsService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Serves the expense, income, budget, transaction, user and settings repositories from an in-process
+ * database instead of MongoDB. Enabled with storage.embedded.enabled=true for single-node deployments and local
+ * development; the beans below take precedence over the MongoDB repositories wherever those are injected.
+ * The settings, budget utilization and expense archive services, which query MongoDB directly, are replaced by
+ * versions built on these repositories, and account deletion also deletes the user's embedded documents.
+ */
+@Configuration
+@ConditionalOnProperty(name = "storage.embedded.enabled", havingValue = "true")
+public class EmbeddedStorageConfig {
+
+    /**
+     * @param path the log file; blank keeps the data in memory only
+     * @param syncWrites whether a write returns only once it is on disk
+     * @return the embedded database
+     */
+    @Bean(destroyMethod = "close")
+    public EmbeddedDatabase embeddedDatabase(@Value("${storage.embedded.path:data/personalfinance.log}") String path,
+                                             @Value("${storage.embedded.sync-writes:true}") boolean syncWrites) throws IOException {
+        if (path.isBlank()) {
+            return EmbeddedDatabase.inMemory();
+        }
+        return new EmbeddedDatabase(Path.of(path), syncWrites);
+    }
+
+    @Bean
+    @Primary
+    public ExpenseRepository embeddedExpenseRepository(EmbeddedDatabase database) {
+        return new EmbeddedExpenseRepository(database);
+    }
+
+    @Bean
+    @Primary
+    public IncomeRepository embeddedIncomeRepository(EmbeddedDatabase database) {
+        return new EmbeddedIncomeRepository(database);
+    }
+
+    @Bean
+    @Primary
+    public BudgetRepository embeddedBudgetRepository(EmbeddedDatabase database) {
+        return new EmbeddedBudgetRepository(database);
+    }
+
+    @Bean
+    @Primary
+    public TransactionRepository embeddedTransactionRepository(EmbeddedDatabase database) {
+        return new EmbeddedTransactionRepository(database);
+    }
+
+    @Bean
+    @Primary
+    public UserRepository embeddedUserRepository(EmbeddedDatabase database) {
+        return new EmbeddedUserRepository(database);
+    }
+
+    @Bean
+    @Primary
+    public UserSettingsRepository embeddedUserSettingsRepository(EmbeddedDatabase database) {
+        return new EmbeddedUserSettingsRepository(database);
+    }
+
+    @Bean
+    public UserSettingsService embeddedUserSettingsService(@Value("${user-settings-cache.max-size:10000}") int maxSize,
+                                                           @Value("${user-settings-cache.ttl-seconds:600}") long ttlSeconds,
+                                                           UserSettingsRepository userSettingsRepository) {
+        return new EmbeddedUserSettingsService(maxSize, ttlSeconds, userSettingsRepository);
+    }
+
+    @Bean
+    public BudgetUtilizationService embeddedBudgetUtilizationService(BudgetRepository budgetRepository,
+                                                                     ExpenseRepository expenseRepository) {
+        return new EmbeddedBudgetUtilizationService(budgetRepository, expenseRepository);
+    }
+
+    @Bean
+    public ExpenseArchiveService embeddedExpenseArchiveService() {
+        return new EmbeddedExpenseArchiveService();
+    }
+
+    @Bean
+    public AccountDeletionService embeddedAccountDeletionService(EmbeddedDatabase database) {
+        return new EmbeddedAccountDeletionService(database);
+    }
+}
@@ -0,0 +1,36 @@
+package com.gabrielguo.personalfinance.config;
+
+import com.gabrielguo.personalfinance.service.GmailService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the state of the lazily built Gmail client under /actuator/health.
+ * Email is delivered from the outbox, so a missing client is reported as UNKNOWN rather than DOWN:
+ * it delays email but must not take the instance out of rotation.
+ */
+@Component("gmail")
+public class GmailHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    @Lazy
+    private GmailService gmailService;
+
+    @Override
+    public Health health() {
+        GmailService.Status status = gmailService.getStatus();
+        if (status == GmailService.Status.READY) {
+            return Health.up().withDetail("client", status).build();
+        }
+
+        Health.Builder health = Health.unknown().withDetail("client", status);
+        Exception failure = gmailService.getInitFailure();
+        if (status == GmailService.Status.FAILED && failure != null) {
+            health.withDetail("error", failure.getClass().getSimpleName() + ": " + failure.getMessage());
+        }
+        return health.build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.gabrielguo.personalfinance.config;
+
+import com.gabrielguo.personalfinance.util.ReadRouting;
+import com.gabrielguo.personalfinance.util.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Publishes how many insights computations ran and how many were saved by single-flight coalescing.
+     */
+    @Bean
+    public MeterBinder singleFlightMetrics(SingleFlight singleFlight) {
+        return registry -> {
+            FunctionCounter.builder("insights.singleflight.executions", singleFlight, SingleFlight::getExecutions)
+                    .description("Insights computations that were executed")
+                    .register(registry);
+            FunctionCounter.builder("insights.singleflight.coalesced", singleFlight, SingleFlight::getCoalesced)
+                    .description("Insights computations saved by sharing an identical in-flight request")
+                    .register(registry);
+            Gauge.builder("insights.singleflight.in_flight", singleFlight, SingleFlight::getInFlight)
+                    .description("Insights computations currently in flight")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Publishes the measured replication lag and where analytical reads were sent.
+     */
+    @Bean
+    public MeterBinder readRoutingMetrics(ReadRouting readRouting) {
+        return registry -> {
+            Gauge.builder("mongodb.replication.lag_seconds", readRouting, ReadRouting::getReplicationLagSeconds)
+                    .description("Seconds the slowest secondary is behind the primary, or -1 when unknown")
+                    .register(registry);
+            FunctionCounter.builder("mongodb.read_routing.analytical.secondary", readRouting, ReadRouting::getAnalyticalToSecondary)
+                    .description("Analytical reads allowed to use a secondary")
+                    .register(registry);
+            FunctionCounter.builder("mongodb.read_routing.analytical.primary", readRouting, ReadRouting::getAnalyticalToPrimary)
+                    .description("Analytical reads kept on the primary because of replication lag")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package com.gabrielguo.personalfinance.config;
+
+import com.gabrielguo.personalfinance.model.Budget;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.ExpenseArchive;
+import com.gabrielguo.personalfinance.model.OutboxEmail;
+import com.gabrielguo.personalfinance.model.RecurringSeries;
+import com.gabrielguo.personalfinance.model.User;
+import com.gabrielguo.personalfinance.model.UserSettings;
+import com.gabrielguo.personalfinance.model.summary.BudgetUtilization;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.List;
+
+/**
+ * Creates the indexes declared with @Indexed on the listed documents.
+ * Spring Boot no longer creates them automatically, and the lookups below depend on them.
+ */
+@Configuration
+public class MongoIndexConfig {
+
+    // Documents whose declared indexes must exist
+    private static final List<Class<?>> INDEXED_DOCUMENTS = List.of(User.class, UserSettings.class, BudgetUtilization.class, Budget.class,
+            Expense.class, ExpenseArchive.class, OutboxEmail.class, RecurringSeries.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoMappingContext mongoMappingContext;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoMappingContext);
+        for (Class<?> documentClass : INDEXED_DOCUMENTS) {
+            IndexOperations indexOps = mongoTemplate.indexOps(documentClass);
+            try {
+                resolver.resolveIndexFor(documentClass).forEach(indexOps::ensureIndex);
+            } catch (RuntimeException e) {
+                // e.g. duplicate emails or settings left over from before a unique index; the application still works without it
+                System.err.println("Could not create indexes for " + documentClass.getSimpleName() + ": " + e.getMessage());
+            }
+        }
+    }
+}
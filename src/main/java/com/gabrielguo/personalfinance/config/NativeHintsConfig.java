@@ -0,0 +1,118 @@
+package com.gabrielguo.personalfinance.config;
+
+import com.gabrielguo.personalfinance.forecast.HoltWinters;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.core.type.filter.TypeFilter;
+import org.springframework.data.repository.Repository;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reachability metadata for the native image build (mvn -Pnative native:compile).
+ * Registered hints are only used during AOT processing and have no effect on a regular JVM run.
+ */
+@Configuration
+@ImportRuntimeHints(NativeHintsConfig.PersonalFinanceRuntimeHints.class)
+public class NativeHintsConfig {
+
+    private static final String BASE_PACKAGE = "com.gabrielguo.personalfinance";
+
+    // Members needed by the Mongo mapping layer and by Jackson for the Lombok generated accessors
+    private static final MemberCategory[] MODEL_MEMBERS = {
+            MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+            MemberCategory.INVOKE_PUBLIC_METHODS,
+            MemberCategory.DECLARED_FIELDS
+    };
+
+    // Google API client models are populated reflectively through their @Key fields
+    private static final String[] GOOGLE_MODELS = {
+            "com.google.api.services.gmail.model.Message",
+            "com.google.api.client.googleapis.json.GoogleJsonError",
+            "com.google.api.client.googleapis.json.GoogleJsonError$ErrorInfo",
+            "com.google.api.client.googleapis.json.GoogleJsonError$Details",
+            "com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets",
+            "com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets$Details",
+            "com.google.api.client.auth.oauth2.TokenResponse",
+            "com.google.api.client.auth.oauth2.StoredCredential"
+    };
+
+    static class PersonalFinanceRuntimeHints implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            // Every class in model, model.summary and model.trends: the @Document entities with their nested
+            // status enums, and the other types bound from requests or written to responses, such as InsightType
+            for (Class<?> modelClass : scan(classLoader, (metadataReader, metadataReaderFactory) -> true, BASE_PACKAGE + ".model")) {
+                registerModel(hints, modelClass);
+            }
+
+            // Types produced by repository queries, such as @Aggregation projections, when they are application classes.
+            // The repository proxies themselves are contributed by Spring Data's own AOT processing.
+            for (Class<?> repository : scan(classLoader, new AssignableTypeFilter(Repository.class), BASE_PACKAGE + ".repository")) {
+                for (Method method : repository.getDeclaredMethods()) {
+                    registerApplicationType(hints, ResolvableType.forMethodReturnType(method, repository));
+                }
+            }
+
+            for (String googleModel : GOOGLE_MODELS) {
+                if (ClassUtils.isPresent(googleModel, classLoader)) {
+                    hints.reflection().registerType(ClassUtils.resolveClassName(googleModel, classLoader), MODEL_MEMBERS);
+                }
+            }
+
+            // Smoothing state stored inside CashflowModel, outside the model packages
+            registerModel(hints, HoltWinters.class);
+
+            // Expense and Income resolve their collection names from this bean through SpEL
+            hints.reflection().registerType(TimeSeriesStorage.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+            // OAuth client secrets read by GmailService
+            hints.resources().registerPattern("credentials.json");
+        }
+
+        private void registerModel(RuntimeHints hints, Class<?> type) {
+            hints.reflection().registerType(type, MODEL_MEMBERS);
+            for (Class<?> nested : type.getDeclaredClasses()) {
+                hints.reflection().registerType(nested, MODEL_MEMBERS);
+            }
+        }
+
+        private void registerApplicationType(RuntimeHints hints, ResolvableType type) {
+            Class<?> resolved = type.resolve();
+            if (resolved != null && resolved.getName().startsWith(BASE_PACKAGE)) {
+                registerModel(hints, resolved);
+            }
+            for (ResolvableType generic : type.getGenerics()) {
+                registerApplicationType(hints, generic);
+            }
+        }
+
+        private static List<Class<?>> scan(ClassLoader classLoader, TypeFilter filter, String basePackage) {
+            ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false) {
+                @Override
+                protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
+                    // Repositories are interfaces, which the default check rejects
+                    return beanDefinition.getMetadata().isIndependent();
+                }
+            };
+            scanner.addIncludeFilter(filter);
+            List<Class<?>> types = new ArrayList<>();
+            for (BeanDefinition candidate : scanner.findCandidateComponents(basePackage)) {
+                types.add(ClassUtils.resolveClassName(candidate.getBeanClassName(), classLoader));
+            }
+            return types;
+        }
+    }
+}
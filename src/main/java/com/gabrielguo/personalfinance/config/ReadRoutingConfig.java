@@ -0,0 +1,20 @@
+package com.gabrielguo.personalfinance.config;
+
+import com.gabrielguo.personalfinance.util.ReadRouting;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+@Configuration
+public class ReadRoutingConfig {
+
+    /**
+     * Replaces the auto-configured template, which the repositories also use, with one that routes reads.
+     */
+    @Bean
+    public MongoTemplate mongoTemplate(MongoDatabaseFactory mongoDatabaseFactory, MongoConverter mongoConverter, ReadRouting readRouting) {
+        return new RoutingMongoTemplate(mongoDatabaseFactory, mongoConverter, readRouting);
+    }
+}
@@ -0,0 +1,35 @@
+package com.gabrielguo.personalfinance.config;
+
+import com.gabrielguo.personalfinance.util.ReadRouting;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+/**
+ * A MongoTemplate that applies the read preference of the calling thread's route to every collection it uses.
+ * Repositories run their queries and aggregations through this template, so tagging a call with
+ * {@link ReadRouting#route} also routes the repository calls it makes. A read preference set on a query itself
+ * still takes precedence.
+ */
+public class RoutingMongoTemplate extends MongoTemplate {
+
+    private final ReadRouting readRouting;
+
+    public RoutingMongoTemplate(MongoDatabaseFactory mongoDatabaseFactory, MongoConverter mongoConverter, ReadRouting readRouting) {
+        super(mongoDatabaseFactory, mongoConverter);
+        this.readRouting = readRouting;
+    }
+
+    @Override
+    protected MongoCollection<Document> prepareCollection(MongoCollection<Document> collection) {
+        MongoCollection<Document> prepared = super.prepareCollection(collection);
+        ReadPreference readPreference = readRouting.readPreference();
+        if (readPreference != null && !readPreference.equals(prepared.getReadPreference())) {
+            return prepared.withReadPreference(readPreference);
+        }
+        return prepared;
+    }
+}
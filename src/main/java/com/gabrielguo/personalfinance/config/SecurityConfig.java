@@ -0,0 +1,29 @@
+package com.gabrielguo.personalfinance.config;
+
+import com.gabrielguo.personalfinance.security.PasswordHashingService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+@Configuration
+public class SecurityConfig {
+
+    /**
+     * Password encoder used by authentication, checking the BCrypt hashes stored on users.
+     * Verification goes through the hashing pool so logins are bounded the same way as signups.
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder(PasswordHashingService passwordHashingService) {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return passwordHashingService.encode(rawPassword);
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return passwordHashingService.matches(rawPassword, encodedPassword);
+            }
+        };
+    }
+}
@@ -0,0 +1,52 @@
+package com.gabrielguo.personalfinance.config;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Marks non-critical beans as lazy so they are created on first use instead of during startup.
+ * Unlike spring.main.lazy-initialization, this leaves the web server, Mongo and security eager,
+ * so a lazily created bean never delays or fails the first real request.
+ * Under Spring AOT the flags are applied at build time and baked into the generated context.
+ */
+@Component
+public class SelectiveLazyInitialization implements BeanFactoryPostProcessor, EnvironmentAware {
+
+    // Bean classes starting with any of these prefixes are made lazy
+    private static final String DEFAULT_PREFIXES = "org.springdoc.,com.gabrielguo.personalfinance.service.GmailService";
+
+    private List<String> prefixes = List.of();
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        String configured = environment.getProperty("startup.lazy-bean-prefixes", DEFAULT_PREFIXES);
+        this.prefixes = configured.isBlank() ? List.of() : List.of(configured.trim().split("\\s*,\\s*"));
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+            if (matches(beanFactory, definition)) {
+                definition.setLazyInit(true);
+            }
+        }
+    }
+
+    private boolean matches(ConfigurableListableBeanFactory beanFactory, BeanDefinition definition) {
+        String className = definition.getBeanClassName();
+        String factoryBeanName = definition.getFactoryBeanName();
+        if (className == null && factoryBeanName != null && beanFactory.containsBeanDefinition(factoryBeanName)) {
+            // Beans declared by @Bean methods belong to their declaring configuration class
+            className = beanFactory.getBeanDefinition(factoryBeanName).getBeanClassName();
+        }
+        return className != null && prefixes.stream().anyMatch(className::startsWith);
+    }
+}
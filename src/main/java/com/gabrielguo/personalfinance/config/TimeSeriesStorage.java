@@ -0,0 +1,232 @@
+package com.gabrielguo.personalfinance.config;
+
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Chooses where expenses and incomes are stored.
+ * By default they live in regular collections. With storage.time-series.enabled=true they live in MongoDB
+ * time-series collections (MongoDB 7.0 or later) with userId as the metaField and date as the timeField, which
+ * store each user's documents in compressed, time-ordered buckets. Expense and Income resolve their collection
+ * names through this bean.
+ * Documents are looked up, updated and deleted by ID together with their userId, since a time-series collection
+ * is only indexed by its metaField and would otherwise scan every bucket to find one.
+ */
+@Component("timeSeriesStorage")
+public class TimeSeriesStorage {
+
+    static final String EXPENSES = "expenses";
+    static final String INCOMES = "incomes";
+    static final String EXPENSES_TIME_SERIES = "expenses_ts";
+    static final String INCOMES_TIME_SERIES = "incomes_ts";
+
+    private static final String TIME_FIELD = "date";
+    private static final String META_FIELD = "userId";
+
+    // Only one instance moves documents at a time, holding a lease in this collection that it renews every batch
+    private static final String LOCKS = "storage_locks";
+    private static final String MIGRATION_LOCK = "time-series-migration";
+    private static final long MIGRATION_LEASE_MS = 60_000;
+
+    private static final Logger logger = LoggerFactory.getLogger(TimeSeriesStorage.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final boolean enabled;
+    private final Granularity granularity;
+    private final boolean migrateExisting;
+    private final int batchSize;
+
+    public TimeSeriesStorage(@Value("${storage.time-series.enabled:false}") boolean enabled,
+                             @Value("${storage.time-series.granularity:HOURS}") Granularity granularity,
+                             @Value("${storage.time-series.migrate-existing:true}") boolean migrateExisting,
+                             @Value("${storage.time-series.batch-size:1000}") int batchSize) {
+        this.enabled = enabled;
+        this.granularity = granularity;
+        this.migrateExisting = migrateExisting;
+        this.batchSize = batchSize;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Expenses get a collection of their own in time-series mode, since budgets and transactions
+     * share the regular one and have no date to serve as the timeField.
+     *
+     * @return the name of the collection holding expenses
+     */
+    public String getExpenseCollection() {
+        return enabled ? EXPENSES_TIME_SERIES : EXPENSES;
+    }
+
+    /**
+     * @return the name of the collection holding incomes
+     */
+    public String getIncomeCollection() {
+        return enabled ? INCOMES_TIME_SERIES : INCOMES;
+    }
+
+    /**
+     * Creates the time-series collections before anything can be written to them, since MongoDB would
+     * otherwise create regular collections on the first insert, then moves over documents left in the
+     * regular collections. Instances starting together all create the collections, but only the one holding
+     * the migration lock moves documents; the others start without waiting for it.
+     */
+    @PostConstruct
+    public void prepareCollections() {
+        if (!enabled) {
+            return;
+        }
+        prepare(EXPENSES_TIME_SERIES);
+        prepare(INCOMES_TIME_SERIES);
+        if (!migrateExisting) {
+            return;
+        }
+
+        String holder = UUID.randomUUID().toString();
+        if (!claimMigrationLock(holder)) {
+            logger.info("Another instance is moving documents to the time-series collections");
+            return;
+        }
+        try {
+            migrate(EXPENSES, EXPENSES_TIME_SERIES, holder);
+            migrate(INCOMES, INCOMES_TIME_SERIES, holder);
+        } finally {
+            mongoTemplate.remove(new Query(Criteria.where("_id").is(MIGRATION_LOCK).and("holder").is(holder)), LOCKS);
+        }
+    }
+
+    /**
+     * Sets fields of a stored document in place. Time-series collections do not support the upsert
+     * that a repository save of an existing document performs.
+     *
+     * @param id the ID of the document
+     * @param userId the owner of the document, which narrows the update to the owner's buckets
+     * @param update the fields to set
+     * @param entityClass the mapped type, which determines the collection
+     */
+    public void update(String id, String userId, Update update, Class<?> entityClass) {
+        mongoTemplate.updateFirst(byIdAndOwner(id, userId), update, entityClass);
+    }
+
+    /**
+     * Deletes a stored document.
+     *
+     * @param id the ID of the document
+     * @param userId the owner of the document, which narrows the delete to the owner's buckets
+     * @param entityClass the mapped type, which determines the collection
+     */
+    public void delete(String id, String userId, Class<?> entityClass) {
+        mongoTemplate.remove(byIdAndOwner(id, userId), entityClass);
+    }
+
+    private static Query byIdAndOwner(String id, String userId) {
+        return new Query(Criteria.where("_id").is(id).and(META_FIELD).is(userId));
+    }
+
+    private void prepare(String collectionName) {
+        if (!mongoTemplate.collectionExists(collectionName)) {
+            CollectionOptions.TimeSeriesOptions timeSeries = CollectionOptions.TimeSeriesOptions.timeSeries(TIME_FIELD)
+                    .metaField(META_FIELD)
+                    .granularity(granularity);
+            try {
+                mongoTemplate.createCollection(collectionName, CollectionOptions.empty().timeSeries(timeSeries));
+            } catch (DataAccessException e) {
+                // Another instance starting at the same time created it first
+                if (!mongoTemplate.collectionExists(collectionName)) {
+                    throw e;
+                }
+            }
+        } else if (!isTimeSeries(collectionName)) {
+            logger.warn("Collection {} exists but is not a time-series collection", collectionName);
+        }
+    }
+
+    private void migrate(String legacyCollectionName, String collectionName, String holder) {
+        long moved = moveDocuments(legacyCollectionName, collectionName, holder);
+        if (moved > 0) {
+            logger.info("Moved {} documents from {} to {}", moved, legacyCollectionName, collectionName);
+        }
+    }
+
+    /**
+     * Takes or renews the migration lock. The lock document is only matched while it is free, expired or already
+     * held by the holder; otherwise the upsert tries to insert a second document with the lock's ID and fails.
+     *
+     * @param holder identifies this instance's migration
+     * @return whether the holder has the lock for another lease
+     */
+    private boolean claimMigrationLock(String holder) {
+        Date now = new Date();
+        Query claimable = new Query(Criteria.where("_id").is(MIGRATION_LOCK).orOperator(
+                Criteria.where("holder").is(holder), Criteria.where("lockedUntil").lte(now)));
+        Update claim = new Update().set("holder", holder).set("lockedUntil", new Date(now.getTime() + MIGRATION_LEASE_MS));
+        try {
+            mongoTemplate.upsert(claimable, claim, LOCKS);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    private boolean isTimeSeries(String collectionName) {
+        Document info = mongoTemplate.getDb().listCollections().filter(new Document("name", collectionName)).first();
+        return info != null && "timeseries".equals(info.getString("type"));
+    }
+
+    /**
+     * Moves dated documents in batches. Each batch is first removed from the target, so a batch that was copied
+     * but not yet deleted from the source before a crash is not duplicated when the move is repeated.
+     * Documents without a date, such as budgets and transactions in the expenses collection, stay where they are.
+     * The lock is renewed before every batch, and the move stops if it was lost, leaving the rest for the next start.
+     */
+    private long moveDocuments(String sourceCollection, String targetCollection, String holder) {
+        long moved = 0;
+        while (true) {
+            if (!claimMigrationLock(holder)) {
+                logger.warn("Lost the time-series migration lock, leaving the rest of {} for the next start", sourceCollection);
+                return moved;
+            }
+            Query batchQuery = new Query(Criteria.where(TIME_FIELD).exists(true).and("startDate").exists(false)).limit(batchSize);
+            List<Document> batch = mongoTemplate.find(batchQuery, Document.class, sourceCollection);
+            if (batch.isEmpty()) {
+                return moved;
+            }
+
+            List<Object> ids = new ArrayList<>(batch.size());
+            Set<Object> userIds = new LinkedHashSet<>();
+            for (Document document : batch) {
+                ids.add(document.get("_id"));
+                userIds.add(document.get(META_FIELD));
+            }
+            // The owners keep the removal from the target to their buckets
+            mongoTemplate.remove(new Query(Criteria.where("_id").in(ids).and(META_FIELD).in(userIds)), targetCollection);
+            mongoTemplate.insert(batch, targetCollection);
+            mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), sourceCollection);
+            moved += batch.size();
+        }
+    }
+}
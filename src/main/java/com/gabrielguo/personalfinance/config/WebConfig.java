@@ -0,0 +1,21 @@
+package com.gabrielguo.personalfinance.config;
+
+import com.gabrielguo.personalfinance.ratelimit.RateLimitInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private RateLimitInterceptor rateLimitInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Rate limit the insights endpoints and the per-user list endpoints
+        registry.addInterceptor(rateLimitInterceptor)
+                .addPathPatterns("/api/insights/**", "/api/expenses", "/api/incomes", "/api/budgets", "/api/transactions");
+    }
+}
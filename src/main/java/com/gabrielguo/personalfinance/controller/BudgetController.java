@@ -6,9 +6,11 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -53,6 +55,22 @@ public class BudgetController {
         return ResponseEntity.ok(budgets); // Return the list of budgets with HTTP 200 OK status
     }
 
+    /**
+     * Retrieves the budgets of a user that were active on a given date.
+     *
+     * @param userId the ID of the user whose budgets are to be retrieved
+     * @param date the date to look up
+     * @return a ResponseEntity containing the list of active Budgets and an HTTP status code
+     */
+    @GetMapping("/active")
+    @Operation(summary = "Retrieve budgets active on a date", description = "Retrieves the budgets of a user whose period contains the given date")
+    public ResponseEntity<List<Budget>> getActiveBudgets(
+            @Parameter(description = "ID of the user whose budgets are to be retrieved", required = true) @RequestParam String userId,
+            @Parameter(description = "Date to look up", required = true) @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date date) {
+        List<Budget> budgets = budgetService.getActiveBudgets(userId, date);
+        return ResponseEntity.ok(budgets); // Return the active budgets with HTTP 200 OK status
+    }
+
     /**
      * Retrieves a specific budget by its ID.
      *
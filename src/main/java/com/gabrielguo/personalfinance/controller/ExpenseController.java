@@ -1,6 +1,9 @@
 package com.gabrielguo.personalfinance.controller;
 
 import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.ExpenseSearchResult;
+import com.gabrielguo.personalfinance.ratelimit.RequestRateLimiter;
+import com.gabrielguo.personalfinance.service.ExpenseSearchService;
 import com.gabrielguo.personalfinance.service.ExpenseService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -23,6 +26,13 @@ public class ExpenseController {
     @Autowired
     private ExpenseService expenseService; // Service for handling business logic related to expenses
 
+    @Autowired
+    private ExpenseSearchService expenseSearchService;
+
+    // Charges imports by their number of rows
+    @Autowired
+    private RequestRateLimiter rateLimiter;
+
     /**
      * Creates a new expense and associates it with a user.
      *
@@ -39,6 +49,22 @@ public class ExpenseController {
         return ResponseEntity.ok(createdExpense); // Return the created expense with HTTP 200 OK status
     }
 
+    /**
+     * Imports many expenses for a user at once, such as the lines of a bank statement.
+     *
+     * @param expenses the expenses to be created
+     * @param userId the ID of the user importing the expenses
+     * @return a ResponseEntity containing the created Expenses, categorized where the category rules match
+     */
+    @PostMapping("/import")
+    @Operation(summary = "Import expenses", description = "Creates many expenses for a user in one batch, assigning categories from their descriptions")
+    public ResponseEntity<List<Expense>> importExpenses(
+            @Parameter(description = "Expenses to be created", required = true) @RequestBody List<Expense> expenses,
+            @Parameter(description = "ID of the user importing the expenses", required = true) @RequestParam String userId) {
+        rateLimiter.acquire(userId, rateLimiter.costOfImport(expenses.size()));
+        return ResponseEntity.ok(expenseService.importExpenses(expenses, userId));
+    }
+
     /**
      * Retrieves all expenses associated with a specific user.
      *
@@ -53,6 +79,44 @@ public class ExpenseController {
         return ResponseEntity.ok(expenses); // Return the list of expenses with HTTP 200 OK status
     }
 
+    /**
+     * Searches the descriptions and categories of a user's expenses.
+     *
+     * @param userId the ID of the user whose expenses are to be searched
+     * @param q the words to look for; the last one also matches the start of a word
+     * @param page the page number, from 0
+     * @param size the number of expenses per page
+     * @return a ResponseEntity containing the page of matching expenses and an HTTP status code
+     */
+    @GetMapping("/search")
+    @Operation(summary = "Search expenses", description = "Retrieves a page of a user's expenses whose description or category contains every word of a query")
+    public ResponseEntity<ExpenseSearchResult> searchExpenses(
+            @Parameter(description = "ID of the user whose expenses are to be searched", required = true) @RequestParam String userId,
+            @Parameter(description = "Words to look for", required = true) @RequestParam String q,
+            @Parameter(description = "Page number, from 0") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Number of expenses per page") @RequestParam(defaultValue = "20") int size) {
+        ExpenseSearchResult result = expenseSearchService.search(userId, q, page, size);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Completes the start of a word from the descriptions and categories of a user's expenses.
+     *
+     * @param userId the ID of the user whose expenses are to be used
+     * @param prefix the start of the word
+     * @param limit the maximum number of words
+     * @return a ResponseEntity containing the words, the most frequent first, and an HTTP status code
+     */
+    @GetMapping("/suggest")
+    @Operation(summary = "Suggest search words", description = "Completes the start of a word from the descriptions and categories of a user's expenses")
+    public ResponseEntity<List<String>> suggestWords(
+            @Parameter(description = "ID of the user whose expenses are to be used", required = true) @RequestParam String userId,
+            @Parameter(description = "Start of the word", required = true) @RequestParam String prefix,
+            @Parameter(description = "Maximum number of words") @RequestParam(defaultValue = "10") int limit) {
+        List<String> words = expenseSearchService.suggest(userId, prefix, limit);
+        return ResponseEntity.ok(words);
+    }
+
     /**
      * Retrieves a specific expense by its ID.
      *
@@ -1,14 +1,20 @@
 package com.gabrielguo.personalfinance.controller;
 
+import com.gabrielguo.personalfinance.model.InsightType;
 import com.gabrielguo.personalfinance.service.FinancialInsightService;
 import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+
 @RestController
 @RequestMapping("/api/delete")
 @Tag(name = "Financial Insights", description = "Operations for deleting financial insights")
@@ -196,4 +202,23 @@ public class FinancialDeleteController {
             return ResponseEntity.status(404).body(e.getMessage());
         }
     }
+
+    /**
+     * Purges a user's derived insights in bulk, optionally restricted to some types and a date range.
+     *
+     * @param userId the ID of the user whose insights are purged
+     * @param types the insight types to purge; all types when omitted
+     * @param startDate the first day of the range, inclusive
+     * @param endDate the last day of the range, inclusive
+     * @return a ResponseEntity with the number of documents deleted per insight type
+     */
+    @DeleteMapping("/insights")
+    @Operation(summary = "Purge financial insights", description = "Deletes all derived insights of a user, optionally filtered by type and date range")
+    public ResponseEntity<Map<InsightType, Long>> purgeInsights(
+            @Parameter(description = "ID of the user whose insights are purged", required = true) @RequestParam String userId,
+            @Parameter(description = "Insight types to purge; all types when omitted") @RequestParam(required = false) Set<InsightType> types,
+            @Parameter(description = "Start date of the range, inclusive") @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @Parameter(description = "End date of the range, inclusive") @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate) {
+        return ResponseEntity.ok(financialInsightService.purgeInsights(userId, types, startDate, endDate));
+    }
 }
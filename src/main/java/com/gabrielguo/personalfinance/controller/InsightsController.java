@@ -1,10 +1,17 @@
 package com.gabrielguo.personalfinance.controller;
 
+import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.ledger.LedgerProjection;
 import com.gabrielguo.personalfinance.model.Income;
+import com.gabrielguo.personalfinance.model.RecurringSeries;
 import com.gabrielguo.personalfinance.model.summary.*;
 import com.gabrielguo.personalfinance.model.trends.*;
 import com.gabrielguo.personalfinance.model.trends.CategorySpending;
+import com.gabrielguo.personalfinance.service.CashflowForecastService;
 import com.gabrielguo.personalfinance.service.InsightsService;
+import com.gabrielguo.personalfinance.service.LedgerService;
+import com.gabrielguo.personalfinance.service.RecurringSeriesService;
+import com.gabrielguo.personalfinance.service.SpendingAnomalyService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -28,6 +35,18 @@ public class InsightsController {
     @Autowired
     private InsightsService insightsService;
 
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private SpendingAnomalyService spendingAnomalyService;
+
+    @Autowired
+    private CashflowForecastService cashflowForecastService;
+
+    @Autowired
+    private RecurringSeriesService recurringSeriesService;
+
     /**
      * Retrieves the expense summary for a specific user.
      *
@@ -179,4 +198,101 @@ public class InsightsController {
         FinancialHealth financialHealth = insightsService.getFinancialHealth(userId);
         return ResponseEntity.ok(financialHealth);
     }
+
+    /**
+     * Retrieves the budgeted, spent, remaining and overrun amounts of every budget period of a specific user.
+     *
+     * @param userId the ID of the user whose budget utilization is to be retrieved
+     * @return a ResponseEntity containing a list of BudgetUtilization ordered by period start and an HTTP status code
+     */
+    @GetMapping("/budget-utilization")
+    @Operation(summary = "Retrieve budget utilization", description = "Retrieves spending against each budget period for a specific user")
+    public ResponseEntity<List<BudgetUtilization>> getBudgetUtilization(
+            @Parameter(description = "ID of the user whose budget utilization is to be retrieved", required = true) @RequestParam String userId) {
+        List<BudgetUtilization> budgetUtilization = insightsService.getBudgetUtilization(userId);
+        return ResponseEntity.ok(budgetUtilization);
+    }
+
+    /**
+     * Retrieves the totals of a specific user rebuilt from the ledger, currently or as of a past moment.
+     *
+     * @param userId the ID of the user whose totals are to be retrieved
+     * @param asOf the moment to rebuild the totals at; omitted for the current totals
+     * @return a ResponseEntity containing the LedgerProjection and an HTTP status code, 404 if the ledger is not enabled
+     */
+    @GetMapping("/ledger")
+    @Operation(summary = "Retrieve ledger totals", description = "Rebuilds the totals of a specific user from the ledger, optionally as of a past moment")
+    public ResponseEntity<LedgerProjection> getLedgerProjection(
+            @Parameter(description = "ID of the user whose totals are to be retrieved", required = true) @RequestParam String userId,
+            @Parameter(description = "Moment to rebuild the totals at, e.g. 2024-07-01T00:00:00.000Z") @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date asOf) {
+        try {
+            LedgerProjection projection = asOf != null ? ledgerService.getProjectionAt(userId, asOf) : ledgerService.getProjection(userId);
+            return ResponseEntity.ok(projection);
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Retrieves the latest expenses of a specific user that were unusually large for their category when created.
+     *
+     * @param userId the ID of the user whose anomalies are to be retrieved
+     * @return a ResponseEntity containing a list of SpendingAnomaly, newest first, and an HTTP status code
+     */
+    @GetMapping("/spending-anomalies")
+    @Operation(summary = "Retrieve spending anomalies", description = "Retrieves the latest unusually large expenses of a specific user")
+    public ResponseEntity<List<SpendingAnomaly>> getSpendingAnomalies(
+            @Parameter(description = "ID of the user whose anomalies are to be retrieved", required = true) @RequestParam String userId) {
+        List<SpendingAnomaly> anomalies = spendingAnomalyService.getAnomalies(userId);
+        return ResponseEntity.ok(anomalies);
+    }
+
+    /**
+     * Forecasts the income and expenses of a specific user for the current month and the following ones.
+     *
+     * @param userId the ID of the user whose cashflow is to be forecast
+     * @return a ResponseEntity containing a list of CashflowForecast ordered by month and an HTTP status code,
+     * 404 if forecasting is not enabled
+     */
+    @GetMapping("/cashflow-forecast")
+    @Operation(summary = "Retrieve cashflow forecast", description = "Forecasts the monthly income and expenses of a specific user")
+    public ResponseEntity<List<CashflowForecast>> getCashflowForecast(
+            @Parameter(description = "ID of the user whose cashflow is to be forecast", required = true) @RequestParam String userId) {
+        try {
+            return ResponseEntity.ok(cashflowForecastService.getForecast(userId));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Retrieves the subscriptions and bills detected in the expenses of a specific user.
+     *
+     * @param userId the ID of the user whose recurring expenses are to be retrieved
+     * @return a ResponseEntity containing a list of RecurringSeries ordered by next expected date and an HTTP status code
+     */
+    @GetMapping("/recurring")
+    @Operation(summary = "Retrieve recurring expenses", description = "Retrieves the subscriptions and bills detected for a specific user")
+    public ResponseEntity<List<RecurringSeries>> getRecurringSeries(
+            @Parameter(description = "ID of the user whose recurring expenses are to be retrieved", required = true) @RequestParam String userId) {
+        List<RecurringSeries> recurringSeries = recurringSeriesService.getRecurringSeries(userId);
+        return ResponseEntity.ok(recurringSeries);
+    }
+
+    /**
+     * Retrieves the bills a specific user can expect in the coming days.
+     *
+     * @param userId the ID of the user whose upcoming bills are to be retrieved
+     * @param days how many days ahead to look
+     * @return a ResponseEntity containing a list of RecurringSeries ordered by next expected date and an HTTP status code
+     */
+    @GetMapping("/upcoming-bills")
+    @Operation(summary = "Retrieve upcoming bills", description = "Retrieves the recurring expenses a specific user can expect in the coming days")
+    public ResponseEntity<List<RecurringSeries>> getUpcomingBills(
+            @Parameter(description = "ID of the user whose upcoming bills are to be retrieved", required = true) @RequestParam String userId,
+            @Parameter(description = "Number of days ahead to look") @RequestParam(defaultValue = "30") int days) {
+        List<RecurringSeries> upcoming = recurringSeriesService.getUpcoming(userId, days);
+        return ResponseEntity.ok(upcoming);
+    }
 }
@@ -1,6 +1,7 @@
 package com.gabrielguo.personalfinance.controller;
 
 import com.gabrielguo.personalfinance.model.Transaction;
+import com.gabrielguo.personalfinance.ratelimit.RequestRateLimiter;
 import com.gabrielguo.personalfinance.service.TransactionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -23,6 +24,10 @@ public class TransactionController {
     @Autowired
     private TransactionService transactionService; // Service for handling business logic related to transactions
 
+    // Charges imports by their number of rows
+    @Autowired
+    private RequestRateLimiter rateLimiter;
+
     /**
      * Creates a new transaction and associates it with a user.
      *
@@ -39,6 +44,22 @@ public class TransactionController {
         return ResponseEntity.ok(createdTransaction); // Return the created transaction with HTTP 200 OK status
     }
 
+    /**
+     * Imports many transactions for a user at once, such as the lines of a bank statement.
+     *
+     * @param transactions the transactions to be created
+     * @param userId the ID of the user importing the transactions
+     * @return a ResponseEntity containing the created Transactions, categorized where the category rules match
+     */
+    @PostMapping("/import")
+    @Operation(summary = "Import transactions", description = "Creates many transactions for a user in one batch, assigning categories from their descriptions")
+    public ResponseEntity<List<Transaction>> importTransactions(
+            @Parameter(description = "Transactions to be created", required = true) @RequestBody List<Transaction> transactions,
+            @Parameter(description = "ID of the user importing the transactions", required = true) @RequestParam String userId) {
+        rateLimiter.acquire(userId, rateLimiter.costOfImport(transactions.size()));
+        return ResponseEntity.ok(transactionService.importTransactions(transactions, userId));
+    }
+
     /**
      * Retrieves all transactions associated with a specific user.
      *
@@ -1,7 +1,10 @@
 package com.gabrielguo.personalfinance.controller;
 
+import com.gabrielguo.personalfinance.exception.ServiceOverloadedException;
+import com.gabrielguo.personalfinance.model.AccountDeletion;
 import com.gabrielguo.personalfinance.model.User;
 import com.gabrielguo.personalfinance.model.UserSettings;
+import com.gabrielguo.personalfinance.service.AccountDeletionService;
 import com.gabrielguo.personalfinance.service.UserService;
 import com.gabrielguo.personalfinance.service.UserSettingsService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -30,6 +33,9 @@ public class UserController {
     @Autowired
     private UserSettingsService userSettingsService; // Service for handling user settings-related business logic
 
+    @Autowired
+    private AccountDeletionService accountDeletionService; // Service for tracking the deletion of a user's data
+
     /**
      * Creates a new user with the provided details.
      *
@@ -100,6 +106,20 @@ public class UserController {
         return ResponseEntity.noContent().build(); // Return HTTP 204 No Content status indicating successful deletion
     }
 
+    /**
+     * Retrieves the progress of the deletion of a user's data.
+     *
+     * @param userId the ID of the deleted user
+     * @return ResponseEntity containing the AccountDeletion record
+     */
+    @GetMapping("/{userId}/deletion-status")
+    @Operation(summary = "Retrieve account deletion progress", description = "Retrieves how far the deletion of a user's data has progressed")
+    public ResponseEntity<AccountDeletion> getDeletionStatus(
+            @Parameter(description = "ID of the deleted user", required = true) @PathVariable String userId) {
+        AccountDeletion deletion = accountDeletionService.getDeletionStatus(userId);
+        return ResponseEntity.ok(deletion); // Return the deletion progress with HTTP 200 OK status
+    }
+
     /**
      * Requests a password reset for the user with the specified email.
      * Sends a password reset email with a unique reset link.
@@ -138,6 +158,8 @@ public class UserController {
             return ResponseEntity.ok("Password has been successfully reset.");
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (ServiceOverloadedException e) {
+            throw e; // Answered with 503 and Retry-After by the global exception handler
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Error resetting password.");
         }
@@ -0,0 +1,10 @@
+package com.gabrielguo.personalfinance.event;
+
+/**
+ * Published after a budget is created, updated or closed.
+ *
+ * @param userId   the owner of the budget
+ * @param budgetId the ID of the changed budget
+ */
+public record BudgetChangedEvent(String userId, String budgetId) {
+}
@@ -0,0 +1,13 @@
+package com.gabrielguo.personalfinance.event;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Published after an expense is created, updated or deleted.
+ *
+ * @param userId the owner of the expense
+ * @param dates  the dates whose spending changed: the expense's date, plus its previous date when it was moved
+ */
+public record ExpenseChangedEvent(String userId, List<Date> dates) {
+}
@@ -0,0 +1,13 @@
+package com.gabrielguo.personalfinance.event;
+
+import java.util.List;
+
+/**
+ * Published instead of one LedgerEvent per entity when many entities of a user are written at once, such as by an
+ * import, so that listeners can apply the changes together rather than one by one.
+ *
+ * @param userId the owner of the entities
+ * @param events the changes, in the order they were made
+ */
+public record LedgerBatchEvent(String userId, List<LedgerEvent> events) {
+}
@@ -0,0 +1,58 @@
+package com.gabrielguo.personalfinance.event;
+
+import com.gabrielguo.personalfinance.model.Budget;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.Income;
+import com.gabrielguo.personalfinance.model.Transaction;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Published after an expense, income, transaction or budget is created, updated or deleted, carrying the
+ * state of the entity after the change.
+ *
+ * @param entityType the kind of entity that changed
+ * @param action     what happened to it
+ * @param userId     the owner of the entity
+ * @param entityId   the ID of the entity
+ * @param amount     the amount after the change
+ * @param category   the expense or transaction category, the income type, or the budget description
+ * @param date       the expense or income date, or the budget start date
+ * @param endDate    the budget end date; null for other entities
+ * @param currency   the currency of the amount; null for the default currency
+ * @param description the expense or transaction description; null for incomes and budgets, whose description is the category
+ */
+public record LedgerEvent(EntityType entityType, Action action, String userId, String entityId, BigDecimal amount,
+                          String category, Date date, Date endDate, String currency, String description) {
+
+    public enum EntityType {
+        EXPENSE, INCOME, TRANSACTION, BUDGET,
+        // Only recorded in the ledger, when an account is deleted; see LedgerService.forget
+        ACCOUNT
+    }
+
+    public enum Action {
+        CREATED, UPDATED, DELETED
+    }
+
+    public static LedgerEvent of(Action action, Expense expense) {
+        return new LedgerEvent(EntityType.EXPENSE, action, expense.getUserId(), expense.getId(), expense.getAmount(),
+                expense.getCategory(), expense.getDate(), null, expense.getCurrency(), expense.getDescription());
+    }
+
+    public static LedgerEvent of(Action action, Income income) {
+        return new LedgerEvent(EntityType.INCOME, action, income.getUserId(), income.getId(), income.getAmount(),
+                income.getIncomeType(), income.getDate(), null, income.getCurrency(), null);
+    }
+
+    public static LedgerEvent of(Action action, Transaction transaction) {
+        return new LedgerEvent(EntityType.TRANSACTION, action, transaction.getUserId(), transaction.getId(), transaction.getAmount(),
+                transaction.getCategory(), null, null, transaction.getCurrency(), transaction.getDescription());
+    }
+
+    public static LedgerEvent of(Action action, Budget budget) {
+        return new LedgerEvent(EntityType.BUDGET, action, budget.getUserId(), budget.getId(), budget.getAmount(),
+                budget.getDescription(), budget.getStartDate(), budget.getEndDate(), budget.getCurrency(), null);
+    }
+}
@@ -0,0 +1,9 @@
+package com.gabrielguo.personalfinance.exception;
+
+// Thrown when an import has more rows than a single request may write
+public class ImportTooLargeException extends RuntimeException {
+
+    public ImportTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package com.gabrielguo.personalfinance.exception;
+
+// Thrown when a currency is written that amounts cannot be converted from or to
+public class UnsupportedCurrencyException extends RuntimeException {
+
+    public UnsupportedCurrencyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,65 @@
+package com.gabrielguo.personalfinance.forecast;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The state of additive Holt-Winters smoothing of a monthly series: a level, a trend per month, and a seasonal
+ * offset for each month of the year. Each observation updates the state in constant time, and a forecast is read
+ * straight off it, so the series itself is never kept.
+ * The seasonal offsets start at zero and are learned as the months come round, so the first year is forecast from
+ * the level and trend alone.
+ */
+@Data
+@NoArgsConstructor
+public class HoltWinters {
+
+    public static final int SEASON_LENGTH = 12;
+
+    private int observations;
+    private double level;
+    private double trend;
+    private double[] seasonal = new double[SEASON_LENGTH];
+
+    /**
+     * Adds the value of the month after the last one observed.
+     *
+     * @param value the value of the month
+     * @param season the month of the year, from 0 for January
+     * @param alpha the smoothing of the level, between 0 and 1
+     * @param beta the smoothing of the trend, between 0 and 1
+     * @param gamma the smoothing of the seasonal offsets, between 0 and 1
+     */
+    public void observe(double value, int season, double alpha, double beta, double gamma) {
+        if (observations == 0) {
+            level = value;
+        } else {
+            double previousLevel = level;
+            level = alpha * (value - seasonal[season]) + (1 - alpha) * (level + trend);
+            trend = beta * (level - previousLevel) + (1 - beta) * trend;
+            seasonal[season] = gamma * (value - level) + (1 - gamma) * seasonal[season];
+        }
+        observations++;
+    }
+
+    /**
+     * @param steps how many months after the last one observed, from 1
+     * @param season the month of the year of that month, from 0 for January
+     * @return the expected value of that month, or 0 before any observation
+     */
+    public double forecast(int steps, int season) {
+        if (observations == 0) {
+            return 0;
+        }
+        return level + steps * trend + seasonal[season];
+    }
+
+    public HoltWinters copy() {
+        HoltWinters copy = new HoltWinters();
+        copy.observations = observations;
+        copy.level = level;
+        copy.trend = trend;
+        copy.seasonal = seasonal.clone();
+        return copy;
+    }
+}
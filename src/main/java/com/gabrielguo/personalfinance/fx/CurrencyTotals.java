@@ -0,0 +1,161 @@
+package com.gabrielguo.personalfinance.fx;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Totals amounts in mixed currencies in one reporting currency, in a single pass over them.
+ * Amounts in the reporting currency are summed as they are. Others are summed per currency and day in their own
+ * currency, and each of those sums is converted once when the total is read, so totalling many rows costs one rate
+ * lookup per currency and day rather than one per row.
+ * Amounts that cannot be converted, because the table has no rates for their currency or for the reporting currency,
+ * are left out of the total, so data written before currencies were validated cannot fail a report.
+ */
+public class CurrencyTotals {
+
+    private final FxRateTable rates;
+    private final String reportingCurrency;
+    private final String defaultCurrency;
+    private final int today;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private BigDecimal reportingTotal = BigDecimal.ZERO;
+    // Sums in other currencies in an open-addressing hash table, keyed by currency index + 1 in the high 32 bits and
+    // epoch day in the low 32 bits, so that 0 marks a free slot and no key is boxed
+    private long[] keys = new long[16];
+    private BigDecimal[] sums = new BigDecimal[16];
+    private int groups;
+    // Rows usually come in runs of one currency, so the last code looked up is remembered
+    private String lastCurrency;
+    private int lastIndex;
+    // Whether an amount was left out because the table has no rates for its currency
+    private boolean skipped;
+
+    /**
+     * @param rates the exchange rates
+     * @param reportingCurrency the currency of the total
+     * @param defaultCurrency the currency of amounts added without one
+     */
+    public CurrencyTotals(FxRateTable rates, String reportingCurrency, String defaultCurrency) {
+        this.rates = rates;
+        this.reportingCurrency = reportingCurrency;
+        this.defaultCurrency = defaultCurrency;
+        this.today = (int) LocalDate.now().toEpochDay();
+    }
+
+    /**
+     * Adds an amount, converted at the rate of its date.
+     *
+     * @param currency the amount's currency, or null for the default currency
+     * @param date the date whose rate applies, or null for today
+     * @param amount the amount; a missing amount counts as zero, and zero needs no rate
+     * @return these totals
+     */
+    public CurrencyTotals add(String currency, Date date, BigDecimal amount) {
+        if (amount == null || amount.signum() == 0) {
+            return this;
+        }
+        String code = currency != null ? currency : defaultCurrency;
+        if (code.equalsIgnoreCase(reportingCurrency)) {
+            reportingTotal = reportingTotal.add(amount);
+            return this;
+        }
+        int index = index(code);
+        if (index < 0) {
+            skipped = true;
+            return this;
+        }
+        int day = date != null ? (int) LocalDate.ofInstant(date.toInstant(), zone).toEpochDay() : today;
+        long key = ((long) (index + 1) << 32) | (day & 0xFFFFFFFFL);
+        int slot = slot(keys, key);
+        if (keys[slot] == key) {
+            sums[slot] = sums[slot].add(amount);
+        } else {
+            keys[slot] = key;
+            sums[slot] = amount;
+            if (++groups * 2 > keys.length) {
+                grow();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds an amount that has no date of its own, converted at today's rate.
+     *
+     * @param currency the amount's currency, or null for the default currency
+     * @param amount the amount; a missing amount counts as zero
+     * @return these totals
+     */
+    public CurrencyTotals add(String currency, BigDecimal amount) {
+        return add(currency, null, amount);
+    }
+
+    /**
+     * @return the sum of every amount added that could be converted, in the reporting currency
+     */
+    public BigDecimal total() {
+        BigDecimal total = reportingTotal;
+        if (groups == 0) {
+            return total;
+        }
+        int reportingIndex = rates.indexOf(reportingCurrency);
+        if (reportingIndex < 0) {
+            return total;
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            long key = keys[slot];
+            if (key != 0) {
+                total = total.add(rates.convert(sums[slot], (int) (key >>> 32) - 1, reportingIndex, (int) key));
+            }
+        }
+        return total;
+    }
+
+    public String getReportingCurrency() {
+        return reportingCurrency;
+    }
+
+    /**
+     * @return whether every amount added is included in the total, none having been left out for want of rates
+     */
+    public boolean isComplete() {
+        return !skipped && (groups == 0 || rates.indexOf(reportingCurrency) >= 0);
+    }
+
+    // The slot holding the key, or the free slot where it belongs
+    private static int slot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        BigDecimal[] oldSums = sums;
+        keys = new long[oldKeys.length * 2];
+        sums = new BigDecimal[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                sums[slot] = oldSums[i];
+            }
+        }
+    }
+
+    // The currency's index in the table, or -1 if the table has no rates for it
+    private int index(String currency) {
+        if (!currency.equals(lastCurrency)) {
+            lastCurrency = currency;
+            lastIndex = rates.indexOf(currency);
+        }
+        return lastIndex;
+    }
+}
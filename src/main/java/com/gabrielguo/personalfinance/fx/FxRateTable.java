@@ -0,0 +1,207 @@
+package com.gabrielguo.personalfinance.fx;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Daily exchange rates of a set of currencies against one base currency, packed so that a lookup is a binary search
+ * over primitives: no boxing, no allocation and nothing for the garbage collector to trace.
+ * <p>
+ * Currencies are numbered in alphabetical order, and each owns a contiguous range of two parallel buffers allocated
+ * outside the heap: the days of its rates as ascending epoch days, and the rates as base currency units per unit in
+ * fixed point with {@link #RATE_SCALE} decimals. The rate on a day is the latest one dated on or before it; days
+ * before a currency's first rate use that first rate. The base currency always has the rate 1.
+ */
+public final class FxRateTable {
+
+    public static final int RATE_SCALE = 8;
+
+    private final String baseCurrency;
+    // Sorted, so a currency's index is found by binary search
+    private final String[] currencies;
+    // The rates of currency i are at positions offsets[i] to offsets[i + 1] - 1
+    private final int[] offsets;
+    private final IntBuffer days;
+    private final LongBuffer rates;
+
+    private FxRateTable(String baseCurrency, String[] currencies, int[] offsets, IntBuffer days, LongBuffer rates) {
+        this.baseCurrency = baseCurrency;
+        this.currencies = currencies;
+        this.offsets = offsets;
+        this.days = days;
+        this.rates = rates;
+    }
+
+    /**
+     * @param baseCurrency the currency the rates are quoted in
+     * @return a table that only knows the base currency
+     */
+    public static FxRateTable empty(String baseCurrency) {
+        return of(baseCurrency, Map.of());
+    }
+
+    /**
+     * Builds a table from rates by currency and date.
+     *
+     * @param baseCurrency the currency the rates are quoted in
+     * @param rates for each currency, its rates by date, in units of the base currency per unit
+     * @return the table
+     */
+    public static FxRateTable of(String baseCurrency, Map<String, ? extends SortedMap<LocalDate, BigDecimal>> rates) {
+        String base = normalize(baseCurrency);
+        SortedMap<String, SortedMap<LocalDate, BigDecimal>> byCurrency = new TreeMap<>();
+        rates.forEach((currency, dated) -> byCurrency.put(normalize(currency), dated));
+        // The base currency is worth one of itself on every day, whatever the files say
+        byCurrency.put(base, new TreeMap<>(Map.of(LocalDate.MIN, BigDecimal.ONE)));
+
+        int size = byCurrency.values().stream().mapToInt(Map::size).sum();
+        IntBuffer days = ByteBuffer.allocateDirect(size * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        LongBuffer fixedRates = ByteBuffer.allocateDirect(size * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        String[] currencies = byCurrency.keySet().toArray(new String[0]);
+        int[] offsets = new int[currencies.length + 1];
+
+        int position = 0;
+        for (int i = 0; i < currencies.length; i++) {
+            offsets[i] = position;
+            for (Map.Entry<LocalDate, BigDecimal> rate : byCurrency.get(currencies[i]).entrySet()) {
+                if (rate.getValue().signum() <= 0) {
+                    throw new IllegalArgumentException("Rate of " + currencies[i] + " on " + rate.getKey() + " is not positive");
+                }
+                days.put(position, rate.getKey().equals(LocalDate.MIN) ? Integer.MIN_VALUE : Math.toIntExact(rate.getKey().toEpochDay()));
+                fixedRates.put(position, rate.getValue().setScale(RATE_SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact());
+                position++;
+            }
+        }
+        offsets[currencies.length] = position;
+        return new FxRateTable(base, currencies, offsets, days, fixedRates);
+    }
+
+    /**
+     * Loads every .csv file of a directory, in file name order, so a later file overrides the rates of an earlier one.
+     * Each line holds a date, a currency code and the rate in base currency units per unit, e.g. 2024-07-01,EUR,1.0812.
+     * Blank lines, lines starting with # and a header line starting with "date" are skipped.
+     *
+     * @param directory the directory holding the rate files
+     * @param baseCurrency the currency the rates are quoted in
+     * @return the table
+     * @throws IllegalArgumentException if a line cannot be parsed
+     */
+    public static FxRateTable load(Path directory, String baseCurrency) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.csv")) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+
+        Map<String, SortedMap<LocalDate, BigDecimal>> rates = new TreeMap<>();
+        for (Path file : files) {
+            List<String> lines = Files.readAllLines(file);
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i).strip();
+                if (line.isEmpty() || line.startsWith("#") || line.toLowerCase(Locale.ROOT).startsWith("date")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                try {
+                    if (fields.length != 3) {
+                        throw new IllegalArgumentException("expected date,currency,rate");
+                    }
+                    rates.computeIfAbsent(normalize(fields[1]), currency -> new TreeMap<>())
+                            .put(LocalDate.parse(fields[0].strip()), new BigDecimal(fields[2].strip()));
+                } catch (DateTimeParseException | IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid rate at " + file + ":" + (i + 1) + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return of(baseCurrency, rates);
+    }
+
+    public String getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    /**
+     * @return the currencies of the table, in index order
+     */
+    public List<String> getCurrencies() {
+        return List.of(currencies);
+    }
+
+    /**
+     * @return the number of rates held, the base currency's included
+     */
+    public int size() {
+        return offsets[currencies.length];
+    }
+
+    /**
+     * @param currency a currency code, in any case
+     * @return the currency's index in the table, or -1 if the table has no rates for it
+     */
+    public int indexOf(String currency) {
+        int index = Arrays.binarySearch(currencies, normalize(currency));
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * @param currencyIndex the index of the currency
+     * @param epochDay the day
+     * @return the currency's rate on that day, in base currency units per unit with {@link #RATE_SCALE} decimals
+     */
+    public long rateAt(int currencyIndex, int epochDay) {
+        int low = offsets[currencyIndex];
+        int high = offsets[currencyIndex + 1] - 1;
+        // Find the last rate dated on or before the day, falling back to the first rate
+        int found = low;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (days.get(middle) <= epochDay) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return rates.get(found);
+    }
+
+    /**
+     * Converts an amount between two currencies at their rates on a day. The result keeps the amount's scale, with at
+     * least two decimals, rounding half to even.
+     *
+     * @param amount the amount
+     * @param fromIndex the index of the amount's currency
+     * @param toIndex the index of the currency to convert to
+     * @param epochDay the day of the rates
+     * @return the converted amount
+     */
+    public BigDecimal convert(BigDecimal amount, int fromIndex, int toIndex, int epochDay) {
+        if (fromIndex == toIndex) {
+            return amount;
+        }
+        BigDecimal from = BigDecimal.valueOf(rateAt(fromIndex, epochDay), RATE_SCALE);
+        BigDecimal to = BigDecimal.valueOf(rateAt(toIndex, epochDay), RATE_SCALE);
+        return amount.multiply(from).divide(to, Math.max(amount.scale(), 2), RoundingMode.HALF_EVEN);
+    }
+
+    private static String normalize(String currency) {
+        return currency.strip().toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,45 @@
+package com.gabrielguo.personalfinance.job;
+
+import com.gabrielguo.personalfinance.service.CategorizationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Reloads the category rules once a night and applies them again to every expense and transaction, so edited rules
+ * reach the history. It runs before the expense archive, which keeps whatever categories archived expenses have.
+ */
+@Component
+public class CategorizationJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(CategorizationJob.class);
+
+    @Autowired
+    private CategorizationService categorizationService;
+
+    private final boolean enabled;
+
+    public CategorizationJob(@Value("${categorization.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Scheduled(cron = "${categorization.cron:0 0 3 * * *}")
+    public void recategorize() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        try {
+            int changed = categorizationService.recategorizeAll();
+            logger.info("Recategorized {} expenses and transactions in {} ms", changed, System.currentTimeMillis() - started);
+        } catch (IOException | IllegalArgumentException e) {
+            // The rules in use stay in place
+            logger.error("Failed to reload the category rules", e);
+        }
+    }
+}
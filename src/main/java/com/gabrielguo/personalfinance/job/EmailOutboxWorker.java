@@ -0,0 +1,99 @@
+package com.gabrielguo.personalfinance.job;
+
+import com.gabrielguo.personalfinance.model.OutboxEmail;
+import com.gabrielguo.personalfinance.ratelimit.TokenBucket;
+import com.gabrielguo.personalfinance.service.EmailOutboxService;
+import com.gabrielguo.personalfinance.service.EmailTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the email outbox in batches.
+ * Each poll claims up to a batch of due emails and delivers them on the delivery pool, with every send
+ * drawing from one shared token bucket so the transport's rate limit is respected across all workers.
+ */
+@Component
+public class EmailOutboxWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxWorker.class);
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    // Lazy so the transport is not created with the worker. The Gmail client is still built once the application is
+    // ready unless gmail.warm-up is false, in which case it is built when the first email is delivered.
+    @Autowired
+    @Lazy
+    private EmailTransport emailTransport;
+
+    @Autowired
+    @Qualifier("emailDeliveryExecutor")
+    private Executor emailDeliveryExecutor;
+
+    private final int batchSize;
+    private final TokenBucket sendRate;
+
+    public EmailOutboxWorker(@Value("${email.outbox.batch-size:50}") int batchSize,
+                             @Value("${email.outbox.rate-per-second:5}") double ratePerSecond,
+                             @Value("${email.outbox.burst:10}") double burst) {
+        this.batchSize = batchSize;
+        this.sendRate = new TokenBucket(burst, ratePerSecond, System.nanoTime());
+    }
+
+    /**
+     * Claims and delivers one batch, waiting for it to finish so a slow batch is never claimed twice.
+     */
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval-ms:1000}")
+    public void drain() {
+        long abandoned = emailOutboxService.failAbandoned(new Date());
+        if (abandoned > 0) {
+            logger.warn("Failed {} emails whose lease expired on their last attempt", abandoned);
+        }
+        List<CompletableFuture<Void>> deliveries = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            OutboxEmail email = emailOutboxService.claimNext(new Date());
+            if (email == null) {
+                break;
+            }
+            deliveries.add(CompletableFuture.runAsync(() -> deliver(email), emailDeliveryExecutor));
+        }
+        CompletableFuture.allOf(deliveries.toArray(new CompletableFuture[0])).join();
+    }
+
+    private void deliver(OutboxEmail email) {
+        try {
+            awaitSendPermit();
+            emailTransport.send(email.getTo(), email.getSubject(), email.getBody());
+            if (!emailOutboxService.markSent(email)) {
+                logger.warn("Email {} was sent after its lease expired and may be sent again", email.getId());
+            }
+        } catch (InterruptedException e) {
+            // Left as SENDING; the lease expires and another poll picks it up
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            if (!emailOutboxService.markFailed(email, e.getClass().getSimpleName() + ": " + e.getMessage())) {
+                logger.warn("Failure of email {} not recorded, its lease expired", email.getId());
+            }
+        }
+    }
+
+    private void awaitSendPermit() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = sendRate.tryConsume(1, System.nanoTime())) > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.gabrielguo.personalfinance.job;
+
+import com.gabrielguo.personalfinance.service.ExpenseArchiveService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+
+/**
+ * Compacts old expenses into monthly archive buckets once a night.
+ * Only whole months older than expense.archive.min-age-days are archived, so the months still being
+ * edited stay in the expenses collection.
+ */
+@Component
+public class ExpenseArchiveJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpenseArchiveJob.class);
+
+    @Autowired
+    private ExpenseArchiveService expenseArchiveService;
+
+    private final boolean enabled;
+    private final int minAgeDays;
+
+    public ExpenseArchiveJob(@Value("${expense.archive.enabled:true}") boolean enabled,
+                             @Value("${expense.archive.min-age-days:365}") int minAgeDays) {
+        this.enabled = enabled;
+        this.minAgeDays = minAgeDays;
+    }
+
+    @Scheduled(cron = "${expense.archive.cron:0 30 3 * * *}")
+    public void archive() {
+        if (!enabled) {
+            return;
+        }
+        // Buckets from before totals were kept per currency are read in full until they are summarized again
+        expenseArchiveService.summarizeLegacyBuckets();
+        Date cutoff = ExpenseArchiveService.cutoff(new Date(), minAgeDays);
+        int archived = expenseArchiveService.archiveOlderThan(cutoff);
+        if (archived > 0) {
+            logger.info("Archived {} expenses dated before {}", archived, cutoff);
+        }
+    }
+}
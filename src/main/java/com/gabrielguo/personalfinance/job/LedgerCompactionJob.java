@@ -0,0 +1,31 @@
+package com.gabrielguo.personalfinance.job;
+
+import com.gabrielguo.personalfinance.service.LedgerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Removes the ledger entries of deleted accounts from the full ledger segments once a night.
+ */
+@Component
+public class LedgerCompactionJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerCompactionJob.class);
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Scheduled(cron = "${ledger.compaction-cron:0 30 4 * * *}")
+    public void compact() {
+        if (!ledgerService.isEnabled()) {
+            return;
+        }
+        long removed = ledgerService.compact();
+        if (removed > 0) {
+            logger.info("Removed {} ledger entries of deleted accounts", removed);
+        }
+    }
+}
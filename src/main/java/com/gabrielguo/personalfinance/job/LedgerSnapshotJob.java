@@ -0,0 +1,32 @@
+package com.gabrielguo.personalfinance.job;
+
+import com.gabrielguo.personalfinance.service.LedgerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically snapshots the projections of users whose ledgers grew, so rebuilding a projection never has to
+ * replay more than the entries of one interval, and forces the ledger to disk.
+ */
+@Component
+public class LedgerSnapshotJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerSnapshotJob.class);
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Scheduled(fixedDelayString = "${ledger.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        if (!ledgerService.isEnabled()) {
+            return;
+        }
+        int written = ledgerService.snapshotPending();
+        if (written > 0) {
+            logger.info("Wrote {} ledger snapshots", written);
+        }
+    }
+}
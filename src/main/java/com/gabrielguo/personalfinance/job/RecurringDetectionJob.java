@@ -0,0 +1,39 @@
+package com.gabrielguo.personalfinance.job;
+
+import com.gabrielguo.personalfinance.service.RecurringSeriesService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Detects the recurring expenses of every user once a night, after the expense archive has run.
+ */
+@Component
+public class RecurringDetectionJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecurringDetectionJob.class);
+
+    @Autowired
+    private RecurringSeriesService recurringSeriesService;
+
+    private final boolean enabled;
+
+    public RecurringDetectionJob(@Value("${recurring.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Scheduled(cron = "${recurring.cron:0 0 4 * * *}")
+    public void detect() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        int stored = recurringSeriesService.detectAll(LocalDate.now());
+        logger.info("Stored {} recurring series in {} ms", stored, System.currentTimeMillis() - started);
+    }
+}
@@ -0,0 +1,88 @@
+package com.gabrielguo.personalfinance.job;
+
+import com.gabrielguo.personalfinance.util.ReadRouting;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Measures how far the slowest secondary is behind the primary with replSetGetStatus, so analytical reads
+ * can be kept on the primary while secondaries lag. A deployment that is not a replica set reports an unknown lag,
+ * which keeps analytical reads on the primary as well.
+ */
+@Component
+public class ReplicationLagJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationLagJob.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ReadRouting readRouting;
+
+    private boolean reportedFailure;
+
+    @Scheduled(fixedDelayString = "${storage.read-routing.lag-check-interval-ms:10000}")
+    public void measure() {
+        long lag;
+        try {
+            Document status = mongoTemplate.getMongoDatabaseFactory().getMongoDatabase("admin")
+                    .runCommand(new Document("replSetGetStatus", 1));
+            lag = lagSeconds(status);
+            reportedFailure = false;
+        } catch (RuntimeException e) {
+            if (!reportedFailure) {
+                logger.warn("Cannot measure replication lag, routing analytical reads to the primary: {}", e.getMessage());
+                reportedFailure = true;
+            }
+            lag = ReadRouting.UNKNOWN_LAG;
+        }
+
+        boolean wasLagging = readRouting.isLagging();
+        readRouting.setReplicationLagSeconds(lag);
+        if (readRouting.isLagging() != wasLagging) {
+            if (readRouting.isLagging()) {
+                logger.info("Replication lag is {}, routing analytical reads to the primary", lag == ReadRouting.UNKNOWN_LAG ? "unknown" : lag + "s");
+            } else {
+                logger.info("Replication lag is {}s, routing analytical reads to secondaries", lag);
+            }
+        }
+    }
+
+    /**
+     * @param status the reply of replSetGetStatus
+     * @return the seconds between the primary's last applied operation and the oldest one of a secondary,
+     * 0 without secondaries, or {@link ReadRouting#UNKNOWN_LAG} without a primary
+     */
+    static long lagSeconds(Document status) {
+        Date primary = null;
+        Date oldestSecondary = null;
+        for (Document member : status.getList("members", Document.class, List.of())) {
+            Date optime = member.getDate("optimeDate");
+            if (optime == null) {
+                continue;
+            }
+            if ("PRIMARY".equals(member.getString("stateStr"))) {
+                primary = optime;
+            } else if ("SECONDARY".equals(member.getString("stateStr"))
+                    && (oldestSecondary == null || optime.before(oldestSecondary))) {
+                oldestSecondary = optime;
+            }
+        }
+        if (primary == null) {
+            return ReadRouting.UNKNOWN_LAG;
+        }
+        if (oldestSecondary == null) {
+            return 0;
+        }
+        return Math.max(0, (primary.getTime() - oldestSecondary.getTime()) / 1000);
+    }
+}
@@ -0,0 +1,55 @@
+package com.gabrielguo.personalfinance.ledger;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * One event in the ledger: the state of an entity after a change, as recorded in the log.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LedgerEntry {
+
+    // Assigned by the log; it is stored in the record header rather than in the payload
+    @JsonIgnore
+    private long sequence;
+    private Date recordedAt;
+    private String userId;
+    private LedgerEvent.EntityType entityType;
+    private LedgerEvent.Action action;
+    private String entityId;
+    private BigDecimal amount;
+    private String category;
+    private Date date;
+    private Date endDate;
+
+    public static LedgerEntry from(LedgerEvent event, Date recordedAt) {
+        return new LedgerEntry(0, recordedAt, event.userId(), event.entityType(), event.action(), event.entityId(),
+                event.amount(), event.category(), event.date(), event.endDate());
+    }
+
+    /**
+     * @param userId the ID of the deleted user
+     * @param recordedAt when the account was deleted
+     * @return the tombstone that discards everything recorded for the user before it
+     */
+    public static LedgerEntry accountDeleted(String userId, Date recordedAt) {
+        return new LedgerEntry(0, recordedAt, userId, LedgerEvent.EntityType.ACCOUNT, LedgerEvent.Action.DELETED, userId,
+                null, null, null, null);
+    }
+
+    /**
+     * @return whether this is the tombstone of a deleted account
+     */
+    @JsonIgnore
+    public boolean isAccountDeletion() {
+        return entityType == LedgerEvent.EntityType.ACCOUNT && action == LedgerEvent.Action.DELETED;
+    }
+}
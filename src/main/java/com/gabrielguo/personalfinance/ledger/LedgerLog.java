@@ -0,0 +1,343 @@
+package com.gabrielguo.personalfinance.ledger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of records kept in fixed-size, memory-mapped segment files.
+ * Appending copies the record into the mapped segment, so it costs no system call, and the record survives a crash
+ * of the process because the pages belong to the operating system; it is on disk once the pages are written back or
+ * flush is called. A full segment is forced and a new one is started, named after the sequence number of its first
+ * record, which lets a replay skip whole segments.
+ * <p>
+ * Each record is laid out as: payload length (int), CRC-32 of the rest (int), sequence number (long), payload.
+ * A zero length, a checksum mismatch or an out-of-order sequence number marks the end of the log, so a record
+ * torn by a crash is ignored and overwritten by the next append.
+ * Full segments can be compacted, which drops records and leaves gaps in their sequence numbers; the active
+ * segment is never compacted, so its sequence numbers stay consecutive.
+ */
+public class LedgerLog implements Closeable {
+
+    private static final int HEADER_SIZE = 16;
+    private static final String PREFIX = "ledger-";
+    private static final String SUFFIX = ".seg";
+
+    /**
+     * Receives the records of a replay.
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void handle(long sequence, byte[] payload);
+    }
+
+    /**
+     * Decides which records a compaction keeps.
+     */
+    @FunctionalInterface
+    public interface RecordFilter {
+        boolean keep(long sequence, byte[] payload);
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean forceOnAppend;
+    // Held by a compaction, so that two never rewrite the same segment
+    private final Object compactionLock = new Object();
+
+    // First sequence numbers of the segments, in order; the last one is the active segment
+    private final List<Long> segmentStarts = new ArrayList<>();
+    private long activeStart;
+    private FileChannel activeChannel;
+    private MappedByteBuffer active;
+    private long lastSequence;
+
+    /**
+     * Opens the log in a directory, creating it if needed, and finds the end of the last segment.
+     *
+     * @param directory the directory holding the segment files
+     * @param segmentSize the size of each segment file in bytes, which bounds the size of a record
+     * @param forceOnAppend whether each append waits until the record is on disk
+     */
+    public LedgerLog(Path directory, int segmentSize, boolean forceOnAppend) throws IOException {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size must exceed " + HEADER_SIZE + " bytes");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.forceOnAppend = forceOnAppend;
+        Files.createDirectories(directory);
+
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path segment : segments) {
+                String name = segment.getFileName().toString();
+                segmentStarts.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+            }
+        }
+        segmentStarts.sort(null);
+
+        if (segmentStarts.isEmpty()) {
+            openSegment(1);
+            lastSequence = 0;
+        } else {
+            long start = segmentStarts.remove(segmentStarts.size() - 1);
+            openSegment(start);
+            lastSequence = start - 1;
+            // Move past the valid records of the active segment
+            while (true) {
+                long sequence = readHeader(active, active.position(), lastSequence + 1, lastSequence + 1);
+                if (sequence < 0) {
+                    break;
+                }
+                active.position(active.position() + HEADER_SIZE + active.getInt(active.position()));
+                lastSequence = sequence;
+            }
+        }
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param payload the record
+     * @return the sequence number assigned to the record
+     */
+    public synchronized long append(byte[] payload) throws IOException {
+        int position = write(payload);
+        if (forceOnAppend) {
+            active.force(position, active.position() - position);
+        }
+        return lastSequence;
+    }
+
+    /**
+     * Appends records in order. When appends are forced, the records are forced together once all are written.
+     *
+     * @param payloads the records
+     * @return the sequence number assigned to the last record
+     */
+    public synchronized long appendAll(List<byte[]> payloads) throws IOException {
+        int first = active.position();
+        long firstSequence = lastSequence + 1;
+        for (byte[] payload : payloads) {
+            write(payload);
+        }
+        // A segment that filled up was forced when the next one was started, so only the active one is left
+        if (forceOnAppend && !payloads.isEmpty()) {
+            int from = activeStart < firstSequence ? first : 0;
+            active.force(from, active.position() - from);
+        }
+        return lastSequence;
+    }
+
+    // Writes a record after the last one, starting a new segment if it does not fit, and returns its position
+    private int write(byte[] payload) throws IOException {
+        int size = HEADER_SIZE + payload.length;
+        if (size > segmentSize) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit in a segment");
+        }
+        long sequence = lastSequence + 1;
+        if (active.remaining() < size) {
+            active.force();
+            activeChannel.close();
+            openSegment(sequence);
+        }
+
+        int position = active.position();
+        // The length goes in last, so a record is only visible once it is complete
+        active.putInt(position + 4, checksum(sequence, payload));
+        active.putLong(position + 8, sequence);
+        active.put(position + HEADER_SIZE, payload);
+        active.putInt(position, payload.length);
+        active.position(position + size);
+        lastSequence = sequence;
+        return position;
+    }
+
+    /**
+     * Passes the records after a sequence number to a handler, in order.
+     *
+     * @param afterSequence the sequence number of the last record already seen, or 0 to start from the beginning
+     * @param handler receives each record
+     */
+    public void replay(long afterSequence, RecordHandler handler) throws IOException {
+        List<Long> starts;
+        long currentStart;
+        long end;
+        ByteBuffer activeView;
+        synchronized (this) {
+            starts = new ArrayList<>(segmentStarts);
+            currentStart = activeStart;
+            end = lastSequence;
+            // Only the part written so far
+            activeView = active.duplicate().flip();
+        }
+
+        for (int i = 0; i < starts.size(); i++) {
+            long nextStart = i + 1 < starts.size() ? starts.get(i + 1) : currentStart;
+            if (nextStart - 1 <= afterSequence) {
+                continue; // Every record of the segment was already seen
+            }
+            try (FileChannel channel = FileChannel.open(segmentPath(starts.get(i)), StandardOpenOption.READ)) {
+                readRecords(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), starts.get(i), afterSequence,
+                        Math.min(end, nextStart - 1), false, handler);
+            }
+        }
+        readRecords(activeView, currentStart, afterSequence, end, true, handler);
+    }
+
+    /**
+     * Rewrites the full segments without the records the filter rejects. Each segment that loses records is written
+     * to a temporary file, forced to disk and moved over the original, so a crash leaves either version and a replay
+     * reads one or the other. Kept records keep their sequence numbers.
+     *
+     * @param filter decides which records are kept
+     * @return the number of records removed
+     */
+    public long compact(RecordFilter filter) throws IOException {
+        synchronized (compactionLock) {
+            List<Long> starts;
+            long currentStart;
+            synchronized (this) {
+                starts = new ArrayList<>(segmentStarts);
+                currentStart = activeStart;
+            }
+            long removed = 0;
+            for (int i = 0; i < starts.size(); i++) {
+                long nextStart = i + 1 < starts.size() ? starts.get(i + 1) : currentStart;
+                removed += compactSegment(starts.get(i), nextStart - 1, filter);
+            }
+            return removed;
+        }
+    }
+
+    // Rewrites one full segment without the rejected records, and returns how many were rejected
+    private long compactSegment(long start, long last, RecordFilter filter) throws IOException {
+        Path segment = segmentPath(start);
+        Path temporary = segment.resolveSibling(segment.getFileName() + ".tmp");
+        long[] removed = {0};
+        try (FileChannel source = FileChannel.open(segment, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            readRecords(source.map(FileChannel.MapMode.READ_ONLY, 0, source.size()), start, 0, last, false, (sequence, payload) -> {
+                if (!filter.keep(sequence, payload)) {
+                    removed[0]++;
+                    return;
+                }
+                ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length)
+                        .putInt(payload.length).putInt(checksum(sequence, payload)).putLong(sequence).put(payload).flip();
+                try {
+                    while (record.hasRemaining()) {
+                        target.write(record);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (removed[0] > 0) {
+                target.force(true);
+            }
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temporary);
+            throw e.getCause();
+        }
+        if (removed[0] == 0) {
+            Files.delete(temporary);
+        } else {
+            Files.move(temporary, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return removed[0];
+    }
+
+    /**
+     * @return the sequence number of the last record, or 0 if the log is empty
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Forces the active segment to disk.
+     */
+    public synchronized void flush() {
+        active.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        active.force();
+        activeChannel.close();
+    }
+
+    // Reads the records up to a sequence number; only a compacted segment may skip sequence numbers
+    private static void readRecords(ByteBuffer segment, long firstSequence, long afterSequence, long lastSequence, boolean consecutive,
+                                    RecordHandler handler) {
+        int position = 0;
+        long previous = firstSequence - 1;
+        while (previous < lastSequence) {
+            long sequence = readHeader(segment, position, previous + 1, consecutive ? previous + 1 : lastSequence);
+            if (sequence < 0) {
+                break;
+            }
+            int length = segment.getInt(position);
+            if (sequence > afterSequence) {
+                byte[] payload = new byte[length];
+                segment.get(position + HEADER_SIZE, payload);
+                handler.handle(sequence, payload);
+            }
+            position += HEADER_SIZE + length;
+            previous = sequence;
+        }
+    }
+
+    // Returns the sequence number of a valid record at the position, or -1 at the end of the log
+    private static long readHeader(ByteBuffer segment, int position, long minSequence, long maxSequence) {
+        if (segment.limit() - position < HEADER_SIZE) {
+            return -1;
+        }
+        int length = segment.getInt(position);
+        if (length <= 0 || length > segment.limit() - position - HEADER_SIZE) {
+            return -1;
+        }
+        long sequence = segment.getLong(position + 8);
+        if (sequence < minSequence || sequence > maxSequence) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, sequence));
+        crc.update(segment.slice(position + HEADER_SIZE, length));
+        return (int) crc.getValue() == segment.getInt(position + 4) ? sequence : -1;
+    }
+
+    private static int checksum(long sequence, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, sequence));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        if (activeChannel != null) {
+            segmentStarts.add(activeStart);
+        }
+        activeChannel = FileChannel.open(segmentPath(firstSequence),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // A segment written with a larger segment size keeps its size
+        active = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, activeChannel.size()));
+        activeStart = firstSequence;
+    }
+
+    private Path segmentPath(long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX));
+    }
+}
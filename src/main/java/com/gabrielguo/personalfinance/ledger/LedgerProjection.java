@@ -0,0 +1,135 @@
+package com.gabrielguo.personalfinance.ledger;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.model.UserInsights;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A user's totals as of a point in the ledger, folded from the user's ledger entries.
+ * Every entry carries the full state of its entity, so an update first takes back what the previous state of the
+ * entity contributed, and applying the same entries in the same order always yields the same totals.
+ * Projections are also the snapshots of the ledger, which is why they keep the latest state of each entity; that
+ * state is left out of their JSON form and saved separately by LedgerSnapshotStore.
+ */
+@Data
+@NoArgsConstructor
+public class LedgerProjection {
+
+    static final String UNCATEGORIZED = "Uncategorized";
+
+    private String userId;
+    // The sequence number of the last entry applied, and when it was recorded
+    private long sequence;
+    private Date asOf;
+    private BigDecimal totalExpenses = BigDecimal.ZERO;
+    private BigDecimal totalIncome = BigDecimal.ZERO;
+    private BigDecimal totalTransactions = BigDecimal.ZERO;
+    private SortedMap<String, BigDecimal> expensesByCategory = new TreeMap<>();
+    private SortedMap<String, BigDecimal> incomeByType = new TreeMap<>();
+    // Keyed by month, e.g. 2024-07, in the server's time zone like the insight trends
+    private SortedMap<String, BigDecimal> monthlyExpenses = new TreeMap<>();
+    private SortedMap<String, BigDecimal> monthlyIncome = new TreeMap<>();
+    // The latest state of each live entity, by ID
+    @JsonIgnore
+    private Map<String, LedgerEntry> entities = new HashMap<>();
+
+    public LedgerProjection(String userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * Applies the next entry of the user's ledger. The tombstone of a deleted account discards every total.
+     *
+     * @param entry the entry, which must come after every entry applied so far
+     */
+    public void apply(LedgerEntry entry) {
+        if (entry.isAccountDeletion()) {
+            clear();
+            sequence = entry.getSequence();
+            asOf = entry.getRecordedAt();
+            return;
+        }
+        LedgerEntry previous = entities.remove(entry.getEntityId());
+        if (previous != null) {
+            contribute(previous, -1);
+        }
+        if (entry.getAction() != LedgerEvent.Action.DELETED) {
+            entities.put(entry.getEntityId(), entry);
+            contribute(entry, 1);
+        }
+        sequence = entry.getSequence();
+        asOf = entry.getRecordedAt();
+    }
+
+    /**
+     * @return the totals in the shape of the stored user insights, with the budget balance being income minus expenses
+     */
+    @JsonIgnore
+    public UserInsights toUserInsights() {
+        return new UserInsights(null, userId, totalExpenses, totalIncome, totalIncome.subtract(totalExpenses));
+    }
+
+    private void clear() {
+        totalExpenses = BigDecimal.ZERO;
+        totalIncome = BigDecimal.ZERO;
+        totalTransactions = BigDecimal.ZERO;
+        expensesByCategory.clear();
+        incomeByType.clear();
+        monthlyExpenses.clear();
+        monthlyIncome.clear();
+        entities.clear();
+    }
+
+    private void contribute(LedgerEntry entry, int sign) {
+        if (entry.getAmount() == null) {
+            return;
+        }
+        BigDecimal amount = sign < 0 ? entry.getAmount().negate() : entry.getAmount();
+        String category = entry.getCategory() != null ? entry.getCategory() : UNCATEGORIZED;
+        switch (entry.getEntityType()) {
+            case EXPENSE -> {
+                totalExpenses = totalExpenses.add(amount);
+                add(expensesByCategory, category, amount);
+                if (entry.getDate() != null) {
+                    add(monthlyExpenses, month(entry.getDate()), amount);
+                }
+            }
+            case INCOME -> {
+                totalIncome = totalIncome.add(amount);
+                add(incomeByType, category, amount);
+                if (entry.getDate() != null) {
+                    add(monthlyIncome, month(entry.getDate()), amount);
+                }
+            }
+            case TRANSACTION -> totalTransactions = totalTransactions.add(amount);
+            case BUDGET, ACCOUNT -> {
+                // Budgets only matter through their latest state, kept in entities; accounts carry no amount
+            }
+        }
+    }
+
+    // A key whose total drops back to zero is removed, so categories and months left empty by deletes disappear
+    private static void add(Map<String, BigDecimal> totals, String key, BigDecimal amount) {
+        BigDecimal total = totals.getOrDefault(key, BigDecimal.ZERO).add(amount);
+        if (amount.signum() < 0 && total.signum() == 0) {
+            totals.remove(key);
+        } else {
+            totals.put(key, total);
+        }
+    }
+
+    private static String month(Date date) {
+        return YearMonth.from(date.toInstant().atZone(ZoneId.systemDefault())).toString();
+    }
+}
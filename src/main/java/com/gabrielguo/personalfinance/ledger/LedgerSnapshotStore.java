@@ -0,0 +1,80 @@
+package com.gabrielguo.personalfinance.ledger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps the latest projection of each user as a JSON file, so rebuilding a projection only replays the ledger
+ * entries recorded after it. A snapshot is written to a temporary file first, forced to disk and then moved into
+ * place, so a crash or power loss leaves either the old or the new snapshot.
+ */
+public class LedgerSnapshotStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerSnapshotStore.class);
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+
+    public LedgerSnapshotStore(Path directory, ObjectMapper objectMapper) throws IOException {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * @param userId the ID of the user
+     * @return the user's latest snapshot, if any; a snapshot that cannot be read is ignored, since the ledger can rebuild it
+     */
+    public Optional<LedgerProjection> load(String userId) {
+        Path file = file(userId);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try {
+            Snapshot snapshot = objectMapper.readValue(file.toFile(), Snapshot.class);
+            LedgerProjection projection = snapshot.projection();
+            for (LedgerEntry entity : snapshot.entities()) {
+                projection.getEntities().put(entity.getEntityId(), entity);
+            }
+            return Optional.of(projection);
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable ledger snapshot {}", file, e);
+            return Optional.empty();
+        }
+    }
+
+    public void save(LedgerProjection projection) throws IOException {
+        Path file = file(projection.getUserId());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        byte[] json = objectMapper.writeValueAsBytes(new Snapshot(projection, new ArrayList<>(projection.getEntities().values())));
+        try (FileOutputStream out = new FileOutputStream(temporary.toFile())) {
+            out.write(json);
+            // Otherwise the move can reach the disk before the content, leaving an empty snapshot after a power loss
+            out.getFD().sync();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void delete(String userId) throws IOException {
+        Files.deleteIfExists(file(userId));
+    }
+
+    record Snapshot(LedgerProjection projection, List<LedgerEntry> entities) {
+    }
+
+    private Path file(String userId) {
+        return directory.resolve(URLEncoder.encode(userId, StandardCharsets.UTF_8) + ".json");
+    }
+}
@@ -0,0 +1,42 @@
+package com.gabrielguo.personalfinance.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Progress of a cascading account deletion, keyed by the ID of the deleted user.
+ * The record outlives the user so that an interrupted deletion can be resumed and its progress queried.
+ */
+@Document(collection = "account_deletions")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccountDeletion {
+
+    public enum Status {
+        PENDING, IN_PROGRESS, COMPLETED, FAILED
+    }
+
+    @Id
+    private String userId;
+    private Status status;
+    private Map<String, Long> deletedCounts = new HashMap<>(); // Documents deleted so far, per collection
+    private Date requestedAt;
+    private Date completedAt;
+    private String lastError;
+    private Date leaseExpiresAt; // When the instance running the deletion is presumed dead, while IN_PROGRESS
+    private String leaseHolder; // Identifies the claim running the deletion
+
+    public AccountDeletion(String userId) {
+        this.userId = userId;
+        this.status = Status.PENDING;
+        this.requestedAt = new Date();
+    }
+}
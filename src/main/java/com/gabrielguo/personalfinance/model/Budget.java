@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
@@ -13,6 +14,8 @@ import java.util.Date;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+// Serves the most recent budget lookup: equality on userId, then endDate in descending order, with startDate filtered in the index
+@CompoundIndex(name = "userId_endDate_startDate", def = "{'userId': 1, 'endDate': -1, 'startDate': 1}")
 public class Budget {
 
     @Id
@@ -22,7 +25,10 @@ public class Budget {
     private String description;
     private Date startDate;
     private Date endDate;
+    // ISO 4217 code, e.g. EUR; a budget without one is in fx.default-currency
+    private String currency;
 
-
-
+    public Budget(String id, String userId, BigDecimal amount, String description, Date startDate, Date endDate) {
+        this(id, userId, amount, description, startDate, endDate, null);
+    }
 }
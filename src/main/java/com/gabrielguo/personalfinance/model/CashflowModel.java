@@ -0,0 +1,39 @@
+package com.gabrielguo.personalfinance.model;
+
+import com.gabrielguo.personalfinance.forecast.HoltWinters;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A user's cashflow forecasting state: the smoothed monthly income and expense series up to the last complete
+ * month, and the amounts recorded so far in the current, still open month. Amounts are in fx.default-currency.
+ */
+@Document(collection = "cashflow_models")
+@Data
+@NoArgsConstructor
+public class CashflowModel {
+
+    @Id
+    private String userId;
+    // The open month, e.g. 2024-07; every earlier month has been observed
+    private String openMonth;
+    // Amounts of the incomes and expenses dated in the open month, by ID, so updates and deletes can take them back
+    private Map<String, BigDecimal> openIncome = new HashMap<>();
+    private Map<String, BigDecimal> openExpenses = new HashMap<>();
+    private HoltWinters income = new HoltWinters();
+    private HoltWinters expenses = new HoltWinters();
+    @Version
+    private Long version; // Keeps instances of the application from overwriting each other's updates
+
+    public CashflowModel(String userId, String openMonth) {
+        this.userId = userId;
+        this.openMonth = openMonth;
+    }
+}
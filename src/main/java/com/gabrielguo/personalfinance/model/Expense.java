@@ -4,12 +4,16 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
 import java.util.Date;
 
-@Document(collection = "expenses")
+// "expenses", or a time-series collection when enabled; see TimeSeriesStorage
+@Document(collection = "#{@timeSeriesStorage.expenseCollection}")
+// Serves the per-user date ranges and the users with expenses since a date
+@CompoundIndex(name = "userId_date", def = "{'userId': 1, 'date': 1}")
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -24,8 +28,16 @@ public class Expense {
 
     private Date date;
     private String description;
-
-
-
-
+    // ISO 4217 code, e.g. EUR; an expense without one is in fx.default-currency
+    private String currency;
+    // Whether the category was assigned by the category rules rather than chosen by the user
+    private boolean autoCategorized;
+
+    public Expense(String id, String userId, BigDecimal amount, String category, Date date, String description) {
+        this(id, userId, amount, category, date, description, null);
+    }
+
+    public Expense(String id, String userId, BigDecimal amount, String category, Date date, String description, String currency) {
+        this(id, userId, amount, category, date, description, currency, false);
+    }
 }
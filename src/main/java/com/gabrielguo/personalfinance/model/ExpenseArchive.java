@@ -0,0 +1,68 @@
+package com.gabrielguo.personalfinance.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * One month of a user's archived expenses, embedded together with their pre-summed totals.
+ * Totals are kept per currency, so readers can convert them rather than add up amounts in different currencies.
+ */
+@Document(collection = "expense_archives")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@CompoundIndexes({
+        @CompoundIndex(name = "userId_month", def = "{'userId': 1, 'month': 1}"),
+        // Finds the bucket holding an archived expense by its ID
+        @CompoundIndex(name = "items_id", def = "{'items._id': 1}")
+})
+public class ExpenseArchive {
+
+    @Id
+    private String id; // userId:yyyy-MM, so a user has at most one bucket per month
+    private String userId;
+    private Date month; // Start of the month
+    private Date nextMonth; // Start of the following month, the exclusive end of the bucket
+    private int count;
+    private List<CurrencyTotal> currencyTotals; // Missing in buckets written before totals were kept per currency
+    private List<CategoryTotal> categoryTotals;
+    private List<Expense> items;
+    @Version
+    private Long version; // Guards against the archive job and a user edit rewriting the bucket at the same time
+
+    /**
+     * The spending in one currency within a bucket.
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class CurrencyTotal {
+        private String currency; // Null for expenses in the default currency
+        private BigDecimal total;
+        private int count;
+    }
+
+    /**
+     * The spending of one category in one currency within a bucket. Kept as a list rather than a map,
+     * since category names are free text and may contain characters not allowed in field names.
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class CategoryTotal {
+        private String category;
+        private String currency; // Null for expenses in the default currency
+        private BigDecimal total;
+        private int count;
+    }
+}
@@ -0,0 +1,22 @@
+package com.gabrielguo.personalfinance.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A page of the expenses matching a search, most recently indexed first.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExpenseSearchResult {
+
+    private String query;
+    private int page;
+    private int size;
+    private long totalHits;
+    private List<Expense> hits;
+}
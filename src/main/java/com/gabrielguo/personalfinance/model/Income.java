@@ -10,7 +10,8 @@ import org.springframework.data.mongodb.core.mapping.Document;
 import java.math.BigDecimal;
 import java.util.Date;
 
-@Document(collection = "incomes")
+// "incomes", or a time-series collection when enabled; see TimeSeriesStorage
+@Document(collection = "#{@timeSeriesStorage.incomeCollection}")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -22,7 +23,10 @@ public class Income {
     private String incomeType;
     private BigDecimal amount;
     private Date date;
+    // ISO 4217 code, e.g. EUR; an income without one is in fx.default-currency
+    private String currency;
 
-
-
+    public Income(String id, String userId, String incomeType, BigDecimal amount, Date date) {
+        this(id, userId, incomeType, amount, date, null);
+    }
 }
@@ -0,0 +1,49 @@
+package com.gabrielguo.personalfinance.model;
+
+import com.gabrielguo.personalfinance.model.summary.BudgetAnalysis;
+import com.gabrielguo.personalfinance.model.summary.BudgetUtilization;
+import com.gabrielguo.personalfinance.model.summary.ExpenseSummary;
+import com.gabrielguo.personalfinance.model.summary.FinancialHealth;
+import com.gabrielguo.personalfinance.model.summary.IncomeSummary;
+import com.gabrielguo.personalfinance.model.summary.SavingsGoals;
+import com.gabrielguo.personalfinance.model.trends.BudgetTrend;
+import com.gabrielguo.personalfinance.model.trends.CategorySpending;
+import com.gabrielguo.personalfinance.model.trends.ExpenseTrend;
+import com.gabrielguo.personalfinance.model.trends.IncomeTrend;
+
+/**
+ * The derived insight documents that can be purged in bulk.
+ * Trends are filtered on the month they describe and budget utilization on the start of its period;
+ * summaries carry no date of their own and are filtered on the creation time embedded in their ObjectId.
+ */
+public enum InsightType {
+    INCOME_TREND(IncomeTrend.class, "month"),
+    EXPENSE_TREND(ExpenseTrend.class, "month"),
+    BUDGET_TREND(BudgetTrend.class, "month"),
+    INCOME_SUMMARY(IncomeSummary.class, null),
+    EXPENSE_SUMMARY(ExpenseSummary.class, null),
+    FINANCIAL_HEALTH(FinancialHealth.class, null),
+    SAVINGS_GOALS(SavingsGoals.class, null),
+    BUDGET_ANALYSIS(BudgetAnalysis.class, null),
+    CATEGORY_SPENDING(CategorySpending.class, null),
+    BUDGET_UTILIZATION(BudgetUtilization.class, "periodStart");
+
+    private final Class<?> documentClass;
+    private final String dateField;
+
+    InsightType(Class<?> documentClass, String dateField) {
+        this.documentClass = documentClass;
+        this.dateField = dateField;
+    }
+
+    public Class<?> getDocumentClass() {
+        return documentClass;
+    }
+
+    /**
+     * @return the field a date range applies to, or null when the range applies to the ObjectId timestamp
+     */
+    public String getDateField() {
+        return dateField;
+    }
+}
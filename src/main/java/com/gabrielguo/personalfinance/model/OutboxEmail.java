@@ -0,0 +1,51 @@
+package com.gabrielguo.personalfinance.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * An email waiting in the outbox, or the delivery record of one that has left it.
+ * Delivery records of sent emails expire a week after they were sent.
+ */
+@Document(collection = "email_outbox")
+@CompoundIndex(name = "status_nextAttemptAt", def = "{'status': 1, 'nextAttemptAt': 1}")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OutboxEmail {
+
+    public enum Status {
+        PENDING, SENDING, SENT, FAILED
+    }
+
+    @Id
+    private String id;
+    private String to;
+    private String subject;
+    private String body;
+    private Status status;
+    private int attempts;
+    private Date createdAt;
+    private Date nextAttemptAt; // When a PENDING email may next be claimed
+    private Date leaseExpiresAt; // When a SENDING email is considered abandoned by its worker
+    private String leaseHolder; // Identifies the claim holding the lease, so only that worker records the outcome
+    @Indexed(name = "sentAt_ttl", expireAfter = "7d") // Only sent emails have a sentAt
+    private Date sentAt;
+    private String lastError;
+
+    public OutboxEmail(String to, String subject, String body) {
+        this.to = to;
+        this.subject = subject;
+        this.body = body;
+        this.status = Status.PENDING;
+        this.createdAt = new Date();
+        this.nextAttemptAt = this.createdAt;
+    }
+}
@@ -0,0 +1,75 @@
+package com.gabrielguo.personalfinance.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Date;
+
+/**
+ * A subscription or bill detected in a user's expenses: expenses with the same description and a similar amount,
+ * spaced by a regular period.
+ */
+@Document(collection = "recurring_series")
+@CompoundIndex(name = "userId_nextDate", def = "{'userId': 1, 'nextDate': 1}")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RecurringSeries {
+
+    public enum Period {
+        WEEKLY(7, 1), BIWEEKLY(14, 2), MONTHLY(30, 3), QUARTERLY(91, 7), YEARLY(365, 10);
+
+        private final int days;
+        // How many days an interval may differ from the period and still fit it
+        private final int toleranceDays;
+
+        Period(int days, int toleranceDays) {
+            this.days = days;
+            this.toleranceDays = toleranceDays;
+        }
+
+        public int getDays() {
+            return days;
+        }
+
+        public int getToleranceDays() {
+            return toleranceDays;
+        }
+
+        public boolean fits(long intervalDays) {
+            return Math.abs(intervalDays - days) <= toleranceDays;
+        }
+
+        // Calendar periods keep the day of the month
+        public LocalDate next(LocalDate date) {
+            return switch (this) {
+                case MONTHLY -> date.plusMonths(1);
+                case QUARTERLY -> date.plusMonths(3);
+                case YEARLY -> date.plusYears(1);
+                default -> date.plusDays(days);
+            };
+        }
+    }
+
+    @Id
+    private String id;
+    private String userId;
+    private String normalizedDescription; // The grouping key, e.g. "netflix com"
+    private String description; // As written on the latest expense
+    private String category;
+    private String currency;
+    private BigDecimal amount; // The median amount
+    private Period period;
+    private int occurrences;
+    private Date firstDate;
+    private Date lastDate;
+    private Date nextDate; // When the next expense is expected
+    private boolean active; // Whether the next expense is not overdue by more than the period's tolerance
+    private Date detectedAt;
+}
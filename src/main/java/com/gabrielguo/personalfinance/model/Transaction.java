@@ -19,6 +19,17 @@ public class Transaction {
     private String userId;
     private BigDecimal amount;
     private String description;
+    // ISO 4217 code, e.g. EUR; a transaction without one is in fx.default-currency
+    private String currency;
+    // Assigned from the description by the category rules unless the user chose one
+    private String category;
+    private boolean autoCategorized;
 
+    public Transaction(String id, String userId, BigDecimal amount, String description) {
+        this(id, userId, amount, description, null);
+    }
 
+    public Transaction(String id, String userId, BigDecimal amount, String description, String currency) {
+        this(id, userId, amount, description, currency, null, false);
+    }
 }
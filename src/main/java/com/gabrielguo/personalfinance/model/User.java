@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 
@@ -11,14 +13,20 @@ import org.springframework.data.mongodb.core.mapping.Document;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+// Covers the credential version check made on every authentication, so it never reads the document itself
+@CompoundIndex(name = "email_credentialVersion", def = "{'email': 1, 'credentialVersion': 1}")
 public class User {
 
     @Id
     private String id;
+    @Indexed(unique = true)
     private String email;
     private String username;
     private String password;
+    @Indexed(sparse = true)
     private String resetToken;
+    // Incremented whenever the email or password changes, so principals cached on any instance can be checked
+    private long credentialVersion;
 
     public User(String email, String username, String password) {
         this.email = email;
@@ -26,6 +34,14 @@ public class User {
         this.password = password;
     }
 
+    public User(String id, String email, String username, String password, String resetToken) {
+        this.id = id;
+        this.email = email;
+        this.username = username;
+        this.password = password;
+        this.resetToken = resetToken;
+    }
+
     //Mock test constructor
     public User(String id, String email, String username, String password) {
         this.id = id;
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "usersettings")
@@ -12,15 +13,29 @@ import org.springframework.data.mongodb.core.mapping.Document;
 public class UserSettings {
     @Id
     private String id;
+    // Unique so that concurrent upserts for the same user cannot insert two documents
+    @Indexed(unique = true)
     private String userId;
     private boolean emailNotifications;
     private String theme;
+    // ISO 4217 code the insights are reported in; fx.default-currency when not set
+    private String reportingCurrency;
+    // Incremented by every write, so a cache can tell which of two copies is newer
+    private long version;
 
     public UserSettings() {
         this.emailNotifications = false;
         this.theme = "light";
     }
 
+    public UserSettings(String id, String userId, boolean emailNotifications, String theme) {
+        this(id, userId, emailNotifications, theme, null);
+    }
+
+    public UserSettings(String id, String userId, boolean emailNotifications, String theme, String reportingCurrency) {
+        this(id, userId, emailNotifications, theme, reportingCurrency, 0);
+    }
+
 
 
 }
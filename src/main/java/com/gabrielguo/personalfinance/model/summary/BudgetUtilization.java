@@ -0,0 +1,32 @@
+package com.gabrielguo.personalfinance.model.summary;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+@Document(collection = "budget_utilization")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BudgetUtilization {
+
+    @Id
+    private String id; // The ID of the budget, so recomputing a period replaces its previous result
+    @Indexed
+    private String userId;
+    private String description;
+    private Date periodStart;
+    private Date periodEnd; // Null while the budget is still open
+    private BigDecimal budgeted;
+    private BigDecimal spent;
+    private BigDecimal remaining; // Zero once the budget is exhausted
+    private BigDecimal overrun; // Spending beyond the budgeted amount
+    private String status;
+    private Date computedAt;
+}
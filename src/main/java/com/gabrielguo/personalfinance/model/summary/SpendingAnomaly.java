@@ -0,0 +1,25 @@
+package com.gabrielguo.personalfinance.model.summary;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SpendingAnomaly {
+
+    private String expenseId;
+    private String userId;
+    private String category;
+    private String currency;
+    private BigDecimal amount;
+    // The usual amount in the category when the expense was created, and how far the expense was above it
+    private BigDecimal expectedAmount;
+    private double score;
+    private Date date;
+    private Date detectedAt;
+}
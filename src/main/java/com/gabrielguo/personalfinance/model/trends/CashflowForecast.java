@@ -0,0 +1,20 @@
+package com.gabrielguo.personalfinance.model.trends;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CashflowForecast {
+
+    private String userId;
+    private String month; // The month forecast, e.g. 2024-07
+    private String currency;
+    private BigDecimal income;
+    private BigDecimal expenses;
+    private BigDecimal net;
+}
@@ -0,0 +1,149 @@
+package com.gabrielguo.personalfinance.ratelimit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the number of expensive requests running at once and hands out free slots
+ * round-robin across users. Each user has its own FIFO queue of waiting requests,
+ * so a user with a hundred queued requests gets one slot per turn like everyone else
+ * instead of starving users who only have a single request waiting.
+ */
+@Component
+public class FairRequestScheduler {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, ArrayDeque<Waiter>> queues = new HashMap<>();
+    private final ArrayDeque<String> rotation = new ArrayDeque<>();
+    private final long queueTimeoutNanos;
+    private int available;
+
+    public FairRequestScheduler(@Value("${ratelimit.max-concurrent:16}") int maxConcurrent,
+                                @Value("${ratelimit.queue-timeout-ms:2000}") long queueTimeoutMillis) {
+        this.available = maxConcurrent;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+    }
+
+    /**
+     * Waits for a slot using the configured queue timeout.
+     *
+     * @param userId the ID of the user making the request
+     * @return true if a slot was acquired, false if the request timed out in the queue
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean acquire(String userId) throws InterruptedException {
+        return acquire(userId, queueTimeoutNanos);
+    }
+
+    /**
+     * Waits for a slot. Every successful call must be paired with a call to {@link #release()}.
+     *
+     * @param userId the ID of the user making the request
+     * @param timeoutNanos the maximum time to wait in the queue
+     * @return true if a slot was acquired, false if the request timed out in the queue
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean acquire(String userId, long timeoutNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            if (available > 0 && rotation.isEmpty()) {
+                available--;
+                return true;
+            }
+            Waiter waiter = new Waiter(lock.newCondition());
+            ArrayDeque<Waiter> queue = queues.get(userId);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(userId, queue);
+                rotation.addLast(userId);
+            }
+            queue.addLast(waiter);
+
+            long remaining = timeoutNanos;
+            try {
+                while (!waiter.granted) {
+                    if (remaining <= 0) {
+                        dequeue(userId, waiter);
+                        return false;
+                    }
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+                return true;
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    // The slot was handed over just before the interrupt, pass it on
+                    release();
+                } else {
+                    dequeue(userId, waiter);
+                }
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a slot, handing it directly to the next user in the rotation if anyone is waiting.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            String next = rotation.pollFirst();
+            if (next == null) {
+                available++;
+                return;
+            }
+            ArrayDeque<Waiter> queue = queues.get(next);
+            Waiter waiter = queue.pollFirst();
+            if (queue.isEmpty()) {
+                queues.remove(next);
+            } else {
+                rotation.addLast(next);
+            }
+            waiter.granted = true;
+            waiter.condition.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of requests currently waiting for a slot
+     */
+    public int queuedRequests() {
+        lock.lock();
+        try {
+            return queues.values().stream().mapToInt(ArrayDeque::size).sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dequeue(String userId, Waiter waiter) {
+        ArrayDeque<Waiter> queue = queues.get(userId);
+        if (queue != null) {
+            queue.remove(waiter);
+            if (queue.isEmpty()) {
+                queues.remove(userId);
+                rotation.remove(userId);
+            }
+        }
+    }
+
+    private static final class Waiter {
+        private final Condition condition;
+        private boolean granted;
+
+        private Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.gabrielguo.personalfinance.ratelimit;
+
+import com.gabrielguo.personalfinance.exception.TooManyRequestsException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Admission control for the insights and list endpoints.
+ * A request first pays its cost from the user's token bucket and then waits for a slot
+ * in the fair scheduler. Rejected requests surface as 429 with a Retry-After header.
+ * Imports are charged by their controllers instead, which know how many rows they carry.
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = RateLimitInterceptor.class.getName() + ".PERMIT";
+
+    @Autowired
+    private RequestRateLimiter rateLimiter;
+
+    @Autowired
+    private FairRequestScheduler scheduler;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String userId = request.getParameter("userId");
+        if (!"GET".equals(request.getMethod()) || userId == null) {
+            return true;
+        }
+
+        rateLimiter.acquire(userId, rateLimiter.costOf(request));
+
+        try {
+            if (!scheduler.acquire(userId)) {
+                throw new TooManyRequestsException("Server is busy, please retry shortly.", 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TooManyRequestsException("Request interrupted while waiting for capacity.", 1);
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            scheduler.release();
+        }
+    }
+}
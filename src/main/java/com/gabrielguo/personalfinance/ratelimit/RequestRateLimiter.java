@@ -0,0 +1,117 @@
+package com.gabrielguo.personalfinance.ratelimit;
+
+import com.gabrielguo.personalfinance.exception.TooManyRequestsException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-user admission control backed by one token bucket per userId.
+ * Each request is charged a cost proportional to the work it is expected to cause,
+ * so a trend query over ten years drains a bucket far faster than a single list call,
+ * and an import is charged for every row it writes.
+ */
+@Component
+public class RequestRateLimiter {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    private final double capacity;
+    private final double refillPerSecond;
+    private final double insightsBaseCost;
+    private final double costPerMonth;
+    private final double costPerImportRow;
+    private final int maxTrackedUsers;
+
+    public RequestRateLimiter(@Value("${ratelimit.capacity:60}") double capacity,
+                              @Value("${ratelimit.refill-per-second:1}") double refillPerSecond,
+                              @Value("${ratelimit.insights-base-cost:2}") double insightsBaseCost,
+                              @Value("${ratelimit.cost-per-month:0.5}") double costPerMonth,
+                              @Value("${ratelimit.cost-per-import-row:0.05}") double costPerImportRow,
+                              @Value("${ratelimit.max-tracked-users:100000}") int maxTrackedUsers) {
+        this.capacity = capacity;
+        this.refillPerSecond = refillPerSecond;
+        this.insightsBaseCost = insightsBaseCost;
+        this.costPerMonth = costPerMonth;
+        this.costPerImportRow = costPerImportRow;
+        this.maxTrackedUsers = maxTrackedUsers;
+    }
+
+    /**
+     * Charges the given cost against the user's bucket.
+     *
+     * @param userId the ID of the user making the request
+     * @param cost the cost of the request in tokens
+     * @return 0 if the request is admitted, otherwise the nanoseconds the user should wait before retrying
+     */
+    public long tryAcquire(String userId, double cost) {
+        long now = System.nanoTime();
+        if (buckets.size() >= maxTrackedUsers) {
+            // A full bucket carries no state worth keeping, so idle users can be forgotten
+            buckets.values().removeIf(bucket -> bucket.isFull(now));
+        }
+        TokenBucket bucket = buckets.computeIfAbsent(userId, id -> new TokenBucket(capacity, refillPerSecond, now));
+        return bucket.tryConsume(cost, now);
+    }
+
+    /**
+     * Charges the given cost against the user's bucket, rejecting the request if the bucket cannot pay it.
+     *
+     * @param userId the ID of the user making the request
+     * @param cost the cost of the request in tokens
+     * @throws TooManyRequestsException if the user has to wait before retrying
+     */
+    public void acquire(String userId, double cost) {
+        long waitNanos = tryAcquire(userId, cost);
+        if (waitNanos > 0) {
+            throw new TooManyRequestsException("Rate limit exceeded for user with ID: " + userId,
+                    (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+        }
+    }
+
+    /**
+     * Estimates the cost of a request. List endpoints cost one token, insights endpoints
+     * cost a base amount plus a charge for every month covered by their date range.
+     *
+     * @param request the incoming request
+     * @return the cost of the request in tokens
+     */
+    public double costOf(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith("/api/insights")) {
+            return 1;
+        }
+        double cost = insightsBaseCost;
+        String startDate = request.getParameter("startDate");
+        String endDate = request.getParameter("endDate");
+        if (startDate != null && endDate != null) {
+            try {
+                long months = ChronoUnit.MONTHS.between(LocalDate.parse(startDate), LocalDate.parse(endDate)) + 1;
+                cost += Math.max(0, months) * costPerMonth;
+            } catch (DateTimeParseException e) {
+                // Malformed dates are rejected by the controller, charge the base cost only
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Estimates the cost of an import: one token plus a charge for every row, since each row is written and
+     * passed on to the ledger, forecast, anomaly statistics and search index.
+     *
+     * @param rows the number of rows imported
+     * @return the cost of the import in tokens
+     */
+    public double costOfImport(int rows) {
+        return 1 + rows * costPerImportRow;
+    }
+}
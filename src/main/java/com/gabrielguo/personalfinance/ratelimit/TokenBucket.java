@@ -0,0 +1,66 @@
+package com.gabrielguo.personalfinance.ratelimit;
+
+/**
+ * A token bucket that refills continuously at a fixed rate up to its capacity.
+ * The current time is passed in by the caller so the bucket can be tested without sleeping.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param capacity the maximum number of tokens the bucket can hold
+     * @param refillPerSecond the number of tokens added back per second
+     * @param nowNanos the current time in nanoseconds
+     */
+    public TokenBucket(double capacity, double refillPerSecond, long nowNanos) {
+        if (capacity <= 0 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Capacity and refill rate must be positive");
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * Attempts to take the given number of tokens from the bucket.
+     *
+     * @param cost the number of tokens to take, clamped to the bucket capacity
+     * @param nowNanos the current time in nanoseconds
+     * @return 0 if the tokens were taken, otherwise the nanoseconds until enough tokens will be available
+     */
+    public synchronized long tryConsume(double cost, long nowNanos) {
+        refill(nowNanos);
+        double required = Math.min(cost, capacity);
+        if (tokens >= required) {
+            tokens -= required;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((required - tokens) / tokensPerNano));
+    }
+
+    /**
+     * Checks whether the bucket has refilled completely, meaning its owner has been idle.
+     *
+     * @param nowNanos the current time in nanoseconds
+     * @return true if the bucket holds its full capacity
+     */
+    public synchronized boolean isFull(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= capacity;
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
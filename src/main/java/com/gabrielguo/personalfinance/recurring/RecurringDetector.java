@@ -0,0 +1,159 @@
+package com.gabrielguo.personalfinance.recurring;
+
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.RecurringSeries;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Finds recurring series in a user's expenses without comparing every pair of them.
+ * Expenses are sorted by normalized description, currency and amount, so that the members of a series end up next
+ * to each other, and one sweep cuts the sorted list into groups wherever the description or currency changes or the
+ * amount grows by more than the tolerance over the smallest amount of the group. Each group is then sorted by date
+ * and its intervals are fitted against the known periods.
+ */
+public final class RecurringDetector {
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private static final Comparator<Item> GROUPING_ORDER = Comparator.comparing(Item::key)
+            .thenComparing(Item::currency, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Item::amount);
+
+    private final double amountTolerance;
+    private final int minOccurrences;
+    private final double minFit;
+
+    /**
+     * @param amountTolerance how much larger than the smallest amount of a series its other amounts may be, e.g. 0.1
+     * @param minOccurrences the number of expenses a series needs
+     * @param minFit the fraction of the intervals of a series that must fit its period
+     */
+    public RecurringDetector(double amountTolerance, int minOccurrences, double minFit) {
+        this.amountTolerance = amountTolerance;
+        this.minOccurrences = minOccurrences;
+        this.minFit = minFit;
+    }
+
+    private record Item(String key, String currency, BigDecimal amount, long day, Expense expense) {
+    }
+
+    /**
+     * @param userId the ID of the user
+     * @param expenses the user's expenses; those without a date, an amount or a description are skipped
+     * @param today the day the series are detected on, which decides whether they are still active
+     * @return the detected series
+     */
+    public List<RecurringSeries> detect(String userId, List<Expense> expenses, LocalDate today) {
+        List<Item> items = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            String key = normalize(expense.getDescription());
+            if (expense.getDate() != null && expense.getAmount() != null && expense.getAmount().signum() > 0 && !key.isEmpty()) {
+                items.add(new Item(key, expense.getCurrency(), expense.getAmount(),
+                        LocalDate.ofInstant(expense.getDate().toInstant(), ZONE).toEpochDay(), expense));
+            }
+        }
+        items.sort(GROUPING_ORDER);
+
+        List<RecurringSeries> detected = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= items.size(); i++) {
+            if (i == items.size() || !sameGroup(items.get(start), items.get(i))) {
+                if (i - start >= minOccurrences) {
+                    RecurringSeries series = fit(userId, items.subList(start, i), today);
+                    if (series != null) {
+                        detected.add(series);
+                    }
+                }
+                start = i;
+            }
+        }
+        return detected;
+    }
+
+    /**
+     * Lowercases a description, drops the parts containing digits and splits the rest into words, so that reference
+     * numbers and dates printed on a charge do not split its series, e.g. "NETFLIX.COM 8472" becomes "netflix com".
+     *
+     * @param description the description
+     * @return the normalized description, empty if nothing is left
+     */
+    public static String normalize(String description) {
+        if (description == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder();
+        for (String token : description.toLowerCase(Locale.ROOT).split("\\s+")) {
+            if (token.chars().anyMatch(Character::isDigit)) {
+                continue;
+            }
+            for (String word : token.split("[^\\p{L}]+")) {
+                if (!word.isEmpty()) {
+                    if (!normalized.isEmpty()) {
+                        normalized.append(' ');
+                    }
+                    normalized.append(word);
+                }
+            }
+        }
+        return normalized.toString();
+    }
+
+    private boolean sameGroup(Item first, Item item) {
+        return first.key().equals(item.key()) && Objects.equals(first.currency(), item.currency())
+                && item.amount().doubleValue() <= first.amount().doubleValue() * (1 + amountTolerance);
+    }
+
+    // Fits the group's intervals against each period, keeping the period most of them fit
+    private RecurringSeries fit(String userId, List<Item> group, LocalDate today) {
+        Item[] byDate = group.toArray(new Item[0]);
+        Arrays.sort(byDate, Comparator.comparingLong(Item::day));
+
+        RecurringSeries.Period best = null;
+        int bestFitting = 0;
+        for (RecurringSeries.Period period : RecurringSeries.Period.values()) {
+            int fitting = 0;
+            for (int i = 1; i < byDate.length; i++) {
+                if (period.fits(byDate[i].day() - byDate[i - 1].day())) {
+                    fitting++;
+                }
+            }
+            if (fitting > bestFitting) {
+                best = period;
+                bestFitting = fitting;
+            }
+        }
+        if (best == null || bestFitting < minFit * (byDate.length - 1)) {
+            return null;
+        }
+
+        // The group is sorted by amount, so its middle item has the median amount
+        BigDecimal amount = group.get(group.size() / 2).amount();
+        Item first = byDate[0];
+        Item last = byDate[byDate.length - 1];
+        LocalDate lastDay = LocalDate.ofEpochDay(last.day());
+        LocalDate nextDay = best.next(lastDay);
+        boolean active = !nextDay.plusDays(best.getToleranceDays()).isBefore(today);
+        // Stable across runs while the series keeps its smallest amount, so a rerun replaces it in place
+        String id = UUID.nameUUIDFromBytes((userId + '\u0000' + first.key() + '\u0000' + first.currency() + '\u0000'
+                + group.get(0).amount().stripTrailingZeros().toPlainString() + '\u0000' + best).getBytes(StandardCharsets.UTF_8)).toString();
+        return new RecurringSeries(id, userId, first.key(), last.expense().getDescription(), last.expense().getCategory(),
+                first.currency(), amount, best, byDate.length, date(LocalDate.ofEpochDay(first.day())), date(lastDay),
+                date(nextDay), active, null);
+    }
+
+    private static Date date(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZONE).toInstant());
+    }
+}
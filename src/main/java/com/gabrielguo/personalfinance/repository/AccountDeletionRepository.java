@@ -0,0 +1,12 @@
+package com.gabrielguo.personalfinance.repository;
+
+import com.gabrielguo.personalfinance.model.AccountDeletion;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface AccountDeletionRepository extends MongoRepository<AccountDeletion, String> {
+
+    List<AccountDeletion> findByStatusIn(Collection<AccountDeletion.Status> statuses);
+}
@@ -1,10 +1,15 @@
 package com.gabrielguo.personalfinance.repository;
 
 import com.gabrielguo.personalfinance.model.Budget;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.repository.Aggregation;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.domain.Sort;
 
+import java.math.BigDecimal;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
@@ -14,11 +19,59 @@ public interface BudgetRepository extends MongoRepository<Budget, String> {
     Optional<Budget> findById(String id);
     List<Budget> findByUserId(String userId);
 
+    /**
+     * Finds a user's budgets without the expenses and transactions sharing their collection, which have no start date.
+     *
+     * @param userId the ID of the user
+     * @return the user's budgets
+     */
+    @Query("{ 'userId': ?0, 'startDate': { $exists: true } }")
+    List<Budget> findBudgetsByUserId(String userId);
+
     @Query("{ 'userId': ?0, 'startDate': { $lte: ?1 }, 'endDate': { $gte: ?2 } }")
     List<Budget> findBudgetsByUserIdAndDateRange(String userId, Date startDate, Date endDate, Sort sort);
 
+    /**
+     * Finds the budget covering the range with the latest end date, reading a single entry of the userId/endDate index.
+     *
+     * @param userId the ID of the user
+     * @param startDate the latest start date a matching budget may have
+     * @param endDate the earliest end date a matching budget may have
+     * @return the matching budget that ends last, if any
+     */
+    Optional<Budget> findFirstByUserIdAndStartDateLessThanEqualAndEndDateGreaterThanEqualOrderByEndDateDesc(
+            String userId, Date startDate, Date endDate);
+
     default Budget findMostRecentBudget(String userId, Date startDate, Date endDate) {
-        List<Budget> budgets = findBudgetsByUserIdAndDateRange(userId, startDate, endDate, Sort.by(Sort.Order.desc("endDate")));
-        return budgets.isEmpty() ? null : budgets.get(0);
+        return findFirstByUserIdAndStartDateLessThanEqualAndEndDateGreaterThanEqualOrderByEndDateDesc(userId, startDate, endDate)
+                .orElse(null);
+    }
+
+    /**
+     * Aggregation pipeline returning both the most recent budget and the highest amount among the budgets
+     * covering a date range, in one round trip that yields a single document.
+     *
+     * @param userId the ID of the user
+     * @param startDate the latest start date a matching budget may have
+     * @param endDate the earliest end date a matching budget may have
+     * @return the summary, or null if no budget matches
+     */
+    @Aggregation(pipeline = {
+            "{ $match: { userId: ?0, startDate: { $lte: ?1 }, endDate: { $gte: ?2 } } }",
+            "{ $sort: { endDate: -1 } }",
+            "{ $group: { _id: null, mostRecent: { $first: '$$ROOT' }, highestAmount: { $max: { $toDecimal: '$amount' } } } }",
+            "{ $project: { _id: 0, mostRecent: 1, highestAmount: 1 } }"
+    })
+    RangeSummary summarizeRange(String userId, Date startDate, Date endDate);
+
+    /**
+     * The most recent budget and the highest budgeted amount within a date range.
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    class RangeSummary {
+        private Budget mostRecent;
+        private BigDecimal highestAmount;
     }
 }
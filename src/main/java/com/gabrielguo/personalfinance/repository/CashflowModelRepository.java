@@ -0,0 +1,7 @@
+package com.gabrielguo.personalfinance.repository;
+
+import com.gabrielguo.personalfinance.model.CashflowModel;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface CashflowModelRepository extends MongoRepository<CashflowModel, String> {
+}
@@ -0,0 +1,42 @@
+package com.gabrielguo.personalfinance.repository;
+
+import com.gabrielguo.personalfinance.model.ExpenseArchive;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+public interface ExpenseArchiveRepository extends MongoRepository<ExpenseArchive, String> {
+
+    List<ExpenseArchive> findByUserIdOrderByMonthAsc(String userId);
+
+    /**
+     * Finds the buckets of the months that overlap a date range.
+     *
+     * @param userId the ID of the user
+     * @param startDate the inclusive start of the range
+     * @param endDate the inclusive end of the range
+     * @return the overlapping buckets, ordered by month
+     */
+    @Query(value = "{ userId: ?0, month: { $lte: ?2 }, nextMonth: { $gt: ?1 } }", sort = "{ month: 1 }")
+    List<ExpenseArchive> findOverlapping(String userId, Date startDate, Date endDate);
+
+    /**
+     * Finds the bucket holding an archived expense.
+     *
+     * @param expenseId the ID of the archived expense
+     * @return the bucket, if the expense is archived
+     */
+    Optional<ExpenseArchive> findFirstByItemsId(String expenseId);
+
+    /**
+     * Reads a user's buckets without their items, for the pre-summed totals.
+     *
+     * @param userId the ID of the user
+     * @return the user's buckets without items, ordered by month
+     */
+    @Query(value = "{ userId: ?0 }", fields = "{ items: 0 }", sort = "{ month: 1 }")
+    List<ExpenseArchive> findSummariesByUserId(String userId);
+}
@@ -6,18 +6,39 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 @Repository
-public interface ExpenseRepository extends MongoRepository<Expense, String> {
+public interface ExpenseRepository extends MongoRepository<Expense, String>, ExpenseStreamRepository {
 
     List<Expense> findByUserId(String userId);
 
     Optional<Expense> findById(String id);
 
+    /**
+     * Finds one of a user's expenses by ID. On a time-series collection the userId is the metaField, so the lookup
+     * only reads the user's buckets instead of every bucket.
+     *
+     * @param id the ID of the expense
+     * @param userId the ID of the user owning the expense
+     * @return the expense, or empty if the user has no expense with the ID
+     */
+    Optional<Expense> findByIdAndUserId(String id, String userId);
+
+    /**
+     * Finds those of a user's expenses with one of the IDs. Like findByIdAndUserId, the userId limits a
+     * time-series lookup to the user's buckets.
+     *
+     * @param userId the ID of the user owning the expenses
+     * @param ids the IDs of the expenses
+     * @return the user's expenses with the IDs, in no particular order
+     */
+    List<Expense> findByUserIdAndIdIn(String userId, Collection<String> ids);
+
     /**
      * Aggregation pipeline to get distinct categories for a specific user.
      *
@@ -59,15 +80,28 @@ public interface ExpenseRepository extends MongoRepository<Expense, String> {
     List<Expense> findByUserIdAndDateBetween(String userId, Date startDate, Date endDate);
 
     /**
-     * Aggregation pipeline to calculate total expenses per category.
+     * Aggregation pipeline to calculate total expenses per currency.
+     *
+     * @param userId the ID of the user whose expenses are to be aggregated
+     * @return a list of maps containing currencies and their total expenses; expenses without a currency are grouped under none
+     */
+    @Aggregation(pipeline = {
+            "{ $match: { userId: ?0 } }",
+            "{ $group: { _id: '$currency', totalAmount: { $sum: { $toDecimal: '$amount' } } } }",
+            "{ $project: { _id: 0, currency: '$_id', totalAmount: 1 } }"
+    })
+    List<Map<String, Object>> findTotalExpensesPerCurrency(String userId);
+
+    /**
+     * Aggregation pipeline to calculate total expenses per category, kept apart per currency.
      *
      * @param userId the ID of the user whose expenses are to be aggregated
-     * @return a list of maps containing categories and their total expenses
+     * @return a list of maps containing categories, currencies and their total expenses
      */
     @Aggregation(pipeline = {
             "{ $match: { userId: ?0 } }",
-            "{ $group: { _id: '$category', totalAmount: { $sum: '$amount' } } }",
-            "{ $project: { _id: 0, category: '$_id', totalAmount: 1 } }"
+            "{ $group: { _id: { category: '$category', currency: '$currency' }, totalAmount: { $sum: { $toDecimal: '$amount' } } } }",
+            "{ $project: { _id: 0, category: '$_id.category', currency: '$_id.currency', totalAmount: 1 } }"
     })
     List<Map<String, Object>> findTotalExpensesPerCategory(String userId);
 
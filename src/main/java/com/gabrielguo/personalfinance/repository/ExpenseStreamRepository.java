@@ -0,0 +1,29 @@
+package com.gabrielguo.personalfinance.repository;
+
+import com.gabrielguo.personalfinance.model.Expense;
+
+import java.util.Date;
+import java.util.stream.Stream;
+
+/**
+ * Cursor-backed reads of expenses, which fetch documents in batches of repository.cursor-batch-size as the stream
+ * is consumed instead of loading every match up front. The streams hold a server cursor, so they must be closed.
+ */
+public interface ExpenseStreamRepository {
+
+    /**
+     * @param userId the ID of the user
+     * @return the user's expenses, in no particular order
+     */
+    Stream<Expense> streamByUserId(String userId);
+
+    /**
+     * Streams the expenses dated within a range, both ends included, like findByUserIdAndDateBetween.
+     *
+     * @param userId the ID of the user
+     * @param startDate the start date of the range
+     * @param endDate the end date of the range
+     * @return the matching expenses, ordered by date
+     */
+    Stream<Expense> streamByUserIdAndDateBetween(String userId, Date startDate, Date endDate);
+}
@@ -0,0 +1,38 @@
+package com.gabrielguo.personalfinance.repository;
+
+import com.gabrielguo.personalfinance.model.Expense;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Date;
+import java.util.stream.Stream;
+
+public class ExpenseStreamRepositoryImpl implements ExpenseStreamRepository {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final int batchSize;
+
+    public ExpenseStreamRepositoryImpl(@Value("${repository.cursor-batch-size:500}") int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public Stream<Expense> streamByUserId(String userId) {
+        Query query = new Query(Criteria.where("userId").is(userId)).cursorBatchSize(batchSize);
+        return mongoTemplate.stream(query, Expense.class);
+    }
+
+    @Override
+    public Stream<Expense> streamByUserIdAndDateBetween(String userId, Date startDate, Date endDate) {
+        Query query = new Query(Criteria.where("userId").is(userId).and("date").gte(startDate).lte(endDate))
+                .with(Sort.by("date"))
+                .cursorBatchSize(batchSize);
+        return mongoTemplate.stream(query, Expense.class);
+    }
+}
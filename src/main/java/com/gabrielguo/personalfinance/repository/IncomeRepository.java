@@ -8,13 +8,24 @@ import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
-public interface IncomeRepository extends MongoRepository<Income, String> {
+public interface IncomeRepository extends MongoRepository<Income, String>, IncomeStreamRepository {
 
     Optional<Income> findById(String id);
 
+    /**
+     * Finds one of a user's incomes by ID. On a time-series collection the userId is the metaField, so the lookup
+     * only reads the user's buckets instead of every bucket.
+     *
+     * @param id the ID of the income
+     * @param userId the ID of the user owning the income
+     * @return the income, or empty if the user has no income with the ID
+     */
+    Optional<Income> findByIdAndUserId(String id, String userId);
+
     List<Income> findByUserId(String userId);
 
     @Aggregation(pipeline = {
@@ -39,4 +50,19 @@ public interface IncomeRepository extends MongoRepository<Income, String> {
     Number findTotalIncomeByUserId(String userId);
 
     List<Income> findByUserIdAndDateBetween(String userId, Date startDate, Date endDate);
+
+    @Aggregation(pipeline = {
+            "{ $match: { userId: ?0 } }",
+            "{ $group: { _id: '$currency', totalAmount: { $sum: { $toDecimal: '$amount' } } } }",
+            "{ $project: { _id: 0, currency: '$_id', totalAmount: 1 } }"
+    })
+    List<Map<String, Object>> findTotalIncomePerCurrency(String userId);
+
+    // One row per income type and currency, so every source is totalled in a single query
+    @Aggregation(pipeline = {
+            "{ $match: { userId: ?0 } }",
+            "{ $group: { _id: { incomeType: '$incomeType', currency: '$currency' }, totalAmount: { $sum: { $toDecimal: '$amount' } } } }",
+            "{ $project: { _id: 0, incomeType: '$_id.incomeType', currency: '$_id.currency', totalAmount: 1 } }"
+    })
+    List<Map<String, Object>> findTotalIncomePerType(String userId);
 }
@@ -0,0 +1,22 @@
+package com.gabrielguo.personalfinance.repository;
+
+import com.gabrielguo.personalfinance.model.Income;
+
+import java.util.Date;
+import java.util.stream.Stream;
+
+/**
+ * Cursor-backed reads of incomes, fetched in batches of repository.cursor-batch-size. The streams must be closed.
+ */
+public interface IncomeStreamRepository {
+
+    /**
+     * Streams the incomes dated within a range, both ends excluded, like findByUserIdAndDateBetween.
+     *
+     * @param userId the ID of the user
+     * @param startDate the start date of the range
+     * @param endDate the end date of the range
+     * @return the matching incomes, ordered by date
+     */
+    Stream<Income> streamByUserIdAndDateBetween(String userId, Date startDate, Date endDate);
+}
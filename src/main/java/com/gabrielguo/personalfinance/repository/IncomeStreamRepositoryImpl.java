@@ -0,0 +1,32 @@
+package com.gabrielguo.personalfinance.repository;
+
+import com.gabrielguo.personalfinance.model.Income;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Date;
+import java.util.stream.Stream;
+
+public class IncomeStreamRepositoryImpl implements IncomeStreamRepository {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final int batchSize;
+
+    public IncomeStreamRepositoryImpl(@Value("${repository.cursor-batch-size:500}") int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public Stream<Income> streamByUserIdAndDateBetween(String userId, Date startDate, Date endDate) {
+        Query query = new Query(Criteria.where("userId").is(userId).and("date").gt(startDate).lt(endDate))
+                .with(Sort.by("date"))
+                .cursorBatchSize(batchSize);
+        return mongoTemplate.stream(query, Income.class);
+    }
+}
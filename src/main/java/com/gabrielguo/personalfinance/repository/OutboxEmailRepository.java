@@ -0,0 +1,9 @@
+package com.gabrielguo.personalfinance.repository;
+
+import com.gabrielguo.personalfinance.model.OutboxEmail;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface OutboxEmailRepository extends MongoRepository<OutboxEmail, String> {
+
+    long countByStatus(OutboxEmail.Status status);
+}
@@ -0,0 +1,15 @@
+package com.gabrielguo.personalfinance.repository;
+
+import com.gabrielguo.personalfinance.model.RecurringSeries;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Date;
+import java.util.List;
+
+public interface RecurringSeriesRepository extends MongoRepository<RecurringSeries, String> {
+
+    List<RecurringSeries> findByUserIdOrderByNextDateAsc(String userId);
+
+    // Removes the series a detection run no longer found
+    long deleteByUserIdAndDetectedAtBefore(String userId, Date detectedAt);
+}
@@ -11,7 +11,7 @@ import java.util.Map;
 import java.util.Optional;
 
 @Repository
-public interface TransactionRepository extends MongoRepository<Transaction, String> {
+public interface TransactionRepository extends MongoRepository<Transaction, String>, TransactionStreamRepository {
 
     Optional<Transaction> findById(String id);
 
@@ -30,11 +30,20 @@ public interface TransactionRepository extends MongoRepository<Transaction, Stri
     })
     Number findTotalExpensesByUserId(String userId);
 
-    // Aggregation pipeline to calculate total transactions per category
+    // Aggregation pipeline to calculate total transactions per currency
     @Aggregation(pipeline = {
             "{ $match: { userId: ?0 } }", // Match documents by userId
-            "{ $group: { _id: '$description', totalAmount: { $sum: '$amount' } } }", // Group by description and sum amounts
-            "{ $project: { _id: 0, description: '$_id', totalAmount: 1 } }" // Project the description and totalAmount fields
+            "{ $group: { _id: '$currency', totalAmount: { $sum: { $toDecimal: '$amount' } } } }", // Group by currency and sum amounts
+            "{ $project: { _id: 0, currency: '$_id', totalAmount: 1 } }" // Project the currency and totalAmount fields
+    })
+    List<Map<String, Object>> findTotalTransactionsPerCurrency(String userId);
+
+    // Aggregation pipeline to calculate total transactions per category, kept apart per currency; uncategorized
+    // transactions are totalled together rather than one group per description
+    @Aggregation(pipeline = {
+            "{ $match: { userId: ?0 } }", // Match documents by userId
+            "{ $group: { _id: { category: { $ifNull: ['$category', 'Uncategorized'] }, currency: '$currency' }, totalAmount: { $sum: { $toDecimal: '$amount' } } } }", // Group by category and currency and sum amounts
+            "{ $project: { _id: 0, category: '$_id.category', currency: '$_id.currency', totalAmount: 1 } }" // Project the category, currency and totalAmount fields
     })
     List<Map<String, Object>> findTotalTransactionsPerCategory(String userId);
 }
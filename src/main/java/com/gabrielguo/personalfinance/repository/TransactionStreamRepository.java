@@ -0,0 +1,17 @@
+package com.gabrielguo.personalfinance.repository;
+
+import com.gabrielguo.personalfinance.model.Transaction;
+
+import java.util.stream.Stream;
+
+/**
+ * Cursor-backed reads of transactions, fetched in batches of repository.cursor-batch-size. The streams must be closed.
+ */
+public interface TransactionStreamRepository {
+
+    /**
+     * @param userId the ID of the user
+     * @return the user's transactions, in no particular order
+     */
+    Stream<Transaction> streamByUserId(String userId);
+}
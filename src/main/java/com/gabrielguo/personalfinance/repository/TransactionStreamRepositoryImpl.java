@@ -0,0 +1,28 @@
+package com.gabrielguo.personalfinance.repository;
+
+import com.gabrielguo.personalfinance.model.Transaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.stream.Stream;
+
+public class TransactionStreamRepositoryImpl implements TransactionStreamRepository {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final int batchSize;
+
+    public TransactionStreamRepositoryImpl(@Value("${repository.cursor-batch-size:500}") int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public Stream<Transaction> streamByUserId(String userId) {
+        Query query = new Query(Criteria.where("userId").is(userId)).cursorBatchSize(batchSize);
+        return mongoTemplate.stream(query, Transaction.class);
+    }
+}
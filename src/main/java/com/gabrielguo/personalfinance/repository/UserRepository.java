@@ -2,6 +2,7 @@ package com.gabrielguo.personalfinance.repository;
 
 import com.gabrielguo.personalfinance.model.User;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -11,5 +12,15 @@ public interface UserRepository extends MongoRepository<User, String> {
 
     Optional<User> findByEmail(String email);
     Optional<User> findByResetToken(String token);
+
+    /**
+     * Reads only the credential version of the user with the given email, answered from the
+     * email_credentialVersion index without fetching the document.
+     *
+     * @param email the email the user signs in with
+     * @return a User holding only the credential version, or empty if no user has the email
+     */
+    @Query(value = "{ 'email': ?0 }", fields = "{ 'credentialVersion': 1, '_id': 0 }")
+    Optional<User> findCredentialVersionByEmail(String email);
     boolean existsById(String id);
 }
@@ -0,0 +1,59 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The group stages of the repository aggregation pipelines, evaluated in memory.
+ */
+final class EmbeddedAggregates {
+
+    private EmbeddedAggregates() {
+    }
+
+    /**
+     * Sums amounts as $sum does, skipping missing ones. An empty sum is zero rather than the missing
+     * result MongoDB returns, which every caller would otherwise have to check for.
+     */
+    static <T> BigDecimal sum(List<T> documents, Function<T, BigDecimal> amount) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (T document : documents) {
+            total = total.add(amount(amount.apply(document)));
+        }
+        return total;
+    }
+
+    static BigDecimal amount(BigDecimal amount) {
+        return amount != null ? amount : BigDecimal.ZERO;
+    }
+
+    /**
+     * One {key: group, currency: code, totalAmount: total} row per group and currency, like the pipelines that group
+     * on a field and the currency. Without a key the rows are grouped on the currency alone.
+     */
+    static <T> List<Map<String, Object>> rowsPerCurrency(List<T> documents, Function<T, BigDecimal> amount,
+                                                         Function<T, String> currency, String key, Function<T, ?> group) {
+        Map<List<Object>, BigDecimal> totals = new LinkedHashMap<>();
+        for (T document : documents) {
+            List<Object> groupKey = Arrays.asList(key != null ? group.apply(document) : null, currency.apply(document));
+            totals.merge(groupKey, amount(amount.apply(document)), BigDecimal::add);
+        }
+        List<Map<String, Object>> rows = new ArrayList<>(totals.size());
+        for (Map.Entry<List<Object>, BigDecimal> total : totals.entrySet()) {
+            Map<String, Object> row = new HashMap<>();
+            if (key != null) {
+                row.put(key, total.getKey().get(0));
+            }
+            row.put("currency", total.getKey().get(1));
+            row.put("totalAmount", total.getValue());
+            rows.add(row);
+        }
+        return rows;
+    }
+}
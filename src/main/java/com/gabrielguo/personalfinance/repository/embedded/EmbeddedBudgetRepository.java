@@ -0,0 +1,68 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import com.gabrielguo.personalfinance.model.Budget;
+import com.gabrielguo.personalfinance.repository.BudgetRepository;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * BudgetRepository on embedded storage. Each user's budgets are ordered by start date, so a range lookup
+ * only reads the budgets starting before the range and filters them by end date.
+ */
+public class EmbeddedBudgetRepository extends EmbeddedRepository<Budget> implements BudgetRepository {
+
+    public EmbeddedBudgetRepository(EmbeddedDatabase database) {
+        super(database.createStore("budgets", Budget.class, Budget::getId, Budget::setId, Budget::getUserId, Budget::getStartDate));
+    }
+
+    @Override
+    public List<Budget> findByUserId(String userId) {
+        return store.findByUser(userId);
+    }
+
+    @Override
+    public List<Budget> findBudgetsByUserId(String userId) {
+        List<Budget> budgets = store.findByUser(userId);
+        budgets.removeIf(budget -> budget.getStartDate() == null);
+        return budgets;
+    }
+
+    @Override
+    public List<Budget> findBudgetsByUserIdAndDateRange(String userId, Date startDate, Date endDate, Sort sort) {
+        return sorted(covering(userId, startDate, endDate), sort);
+    }
+
+    @Override
+    public Optional<Budget> findFirstByUserIdAndStartDateLessThanEqualAndEndDateGreaterThanEqualOrderByEndDateDesc(
+            String userId, Date startDate, Date endDate) {
+        return sorted(covering(userId, startDate, endDate), Sort.by(Sort.Direction.DESC, "endDate")).stream().findFirst();
+    }
+
+    @Override
+    public RangeSummary summarizeRange(String userId, Date startDate, Date endDate) {
+        Optional<Budget> mostRecent = findFirstByUserIdAndStartDateLessThanEqualAndEndDateGreaterThanEqualOrderByEndDateDesc(
+                userId, startDate, endDate);
+        return mostRecent.map(budget -> new RangeSummary(budget, highestAmount(userId, startDate, endDate))).orElse(null);
+    }
+
+    private BigDecimal highestAmount(String userId, Date startDate, Date endDate) {
+        BigDecimal highest = null;
+        for (Budget budget : covering(userId, startDate, endDate)) {
+            if (budget.getAmount() != null && (highest == null || budget.getAmount().compareTo(highest) > 0)) {
+                highest = budget.getAmount();
+            }
+        }
+        return highest;
+    }
+
+    // Budgets starting on or before startDate and ending on or after endDate; budgets missing either date never match
+    private List<Budget> covering(String userId, Date startDate, Date endDate) {
+        List<Budget> budgets = store.findByUserBetween(userId, Long.MIN_VALUE + 1, startDate.getTime() + 1);
+        budgets.removeIf(budget -> budget.getEndDate() == null || budget.getEndDate().before(endDate));
+        return budgets;
+    }
+}
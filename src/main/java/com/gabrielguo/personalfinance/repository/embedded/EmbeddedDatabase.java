@@ -0,0 +1,338 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * An in-process document database for single-node deployments and tests.
+ * Documents live in memory in named stores; every change is appended as a JSON line to one shared log, which is
+ * replayed when the database is opened and rewritten without superseded records whenever it contains any.
+ * Deleting a user compacts the log as well, so none of the user's documents outlive the deletion on disk.
+ */
+public class EmbeddedDatabase implements Closeable {
+
+    static final String PUT = "put";
+    static final String DELETE = "delete";
+    static final String CLEAR = "clear";
+
+    // BigDecimal amounts keep their exact value and scale through the log
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .nodeFactory(JsonNodeFactory.withExactBigDecimals(true))
+            .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    // Documents recovered from the log, by store name and ID, until their store is created
+    private final Map<String, Map<String, JsonNode>> recovered = new LinkedHashMap<>();
+    private final Map<String, EmbeddedStore<?>> stores = new LinkedHashMap<>();
+    private final Path file;
+    private final EmbeddedLog log;
+
+    private EmbeddedDatabase() {
+        this.file = null;
+        this.log = null;
+    }
+
+    /**
+     * Opens a database persisted in a log file, replaying the file if it exists.
+     *
+     * @param file the log file
+     * @param syncWrites whether each write waits until it is on disk
+     */
+    public EmbeddedDatabase(Path file, boolean syncWrites) throws IOException {
+        boolean superseded = Files.exists(file) && replay(file);
+        if (superseded) {
+            rewrite(file, writer -> {
+                for (Map.Entry<String, Map<String, JsonNode>> store : recovered.entrySet()) {
+                    for (Map.Entry<String, JsonNode> document : store.getValue().entrySet()) {
+                        writer.write(store.getKey(), document.getKey(), document.getValue());
+                    }
+                }
+            });
+        }
+        this.file = file;
+        this.log = new EmbeddedLog(file, syncWrites);
+    }
+
+    /**
+     * @return a database that keeps everything in memory, for tests
+     */
+    public static EmbeddedDatabase inMemory() {
+        return new EmbeddedDatabase();
+    }
+
+    /**
+     * Creates a store and loads the documents recovered for it.
+     *
+     * @param name the name of the store, which identifies its records in the log
+     * @param type the document class
+     * @param id reads the ID of a document
+     * @param setId assigns a generated ID to a new document
+     * @param userId reads the owner of a document, or null if documents have no owner; deleting a user deletes
+     *        every document they own
+     * @param sortDate reads the date a user's documents are ordered by, or null to order them by ID
+     * @return the store
+     */
+    public synchronized <T> EmbeddedStore<T> createStore(String name, Class<T> type, Function<T, String> id, BiConsumer<T, String> setId,
+                                                         Function<T, String> userId, Function<T, Date> sortDate) {
+        if (stores.containsKey(name)) {
+            throw new IllegalStateException("Store " + name + " already exists");
+        }
+        EmbeddedStore<T> store = new EmbeddedStore<>(this, name, type, id, setId, userId, sortDate);
+        stores.put(name, store);
+        Map<String, JsonNode> documents = recovered.remove(name);
+        if (documents != null) {
+            for (JsonNode document : documents.values()) {
+                store.load(fromJson(document, type));
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Deletes every document a user owns, in every store, then compacts the log so that the deleted documents
+     * are no longer on disk either. Compacting rewrites the whole log while writes wait, which suits the
+     * single-node deployments embedded storage is meant for.
+     *
+     * @param userId the ID of the user
+     * @return the number of documents deleted, by store name
+     */
+    public Map<String, Long> deleteUser(String userId) {
+        Map<String, Long> deleted = new LinkedHashMap<>();
+        List<EmbeddedStore<?>> all;
+        synchronized (this) {
+            all = new ArrayList<>(stores.values());
+        }
+        for (EmbeddedStore<?> store : all) {
+            deleted.put(store.getName(), (long) store.deleteByUser(userId));
+        }
+        try {
+            compact();
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not compact the embedded storage log", e);
+        }
+        return deleted;
+    }
+
+    /**
+     * Rewrites the log with only the live documents. Every store is locked for writing meanwhile, so nothing
+     * is appended between taking the documents and swapping the new log in.
+     */
+    public synchronized void compact() throws IOException {
+        if (log == null) {
+            return;
+        }
+        List<EmbeddedStore<?>> locked = new ArrayList<>();
+        try {
+            for (EmbeddedStore<?> store : stores.values()) {
+                store.lockWrites();
+                locked.add(store);
+            }
+            Path compacted = rewriteTo(file, writer -> {
+                for (EmbeddedStore<?> store : locked) {
+                    writeLive(writer, store);
+                }
+                // Stores that were never created in this run keep their recovered documents
+                for (Map.Entry<String, Map<String, JsonNode>> store : recovered.entrySet()) {
+                    for (Map.Entry<String, JsonNode> document : store.getValue().entrySet()) {
+                        writer.write(store.getKey(), document.getKey(), document.getValue());
+                    }
+                }
+            });
+            log.replace(compacted);
+        } finally {
+            for (EmbeddedStore<?> store : locked) {
+                store.unlockWrites();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    /**
+     * Appends a change to the log.
+     *
+     * @return the sequence number to wait for with awaitDurable, or 0 when nothing is persisted
+     */
+    long write(String store, String operation, String id, Object document) {
+        Map<String, Object> documents = new LinkedHashMap<>();
+        documents.put(id, document);
+        return writeAll(store, operation, documents);
+    }
+
+    /**
+     * Appends one change per document to the log in a single write, so either all of them are logged or none is.
+     *
+     * @param documents the documents by ID; a null document writes a record without one
+     * @return the sequence number to wait for with awaitDurable, or 0 when nothing is persisted
+     */
+    long writeAll(String store, String operation, Map<String, ?> documents) {
+        if (log == null || documents.isEmpty()) {
+            return 0;
+        }
+        try {
+            List<byte[]> records = new ArrayList<>(documents.size());
+            for (Map.Entry<String, ?> document : documents.entrySet()) {
+                records.add(objectMapper.writeValueAsBytes(record(store, operation, document.getKey(), document.getValue())));
+            }
+            return log.appendAll(records);
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not append to the embedded storage log", e);
+        }
+    }
+
+    void awaitDurable(long sequence) {
+        if (log == null || sequence == 0) {
+            return;
+        }
+        try {
+            log.awaitDurable(sequence);
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not force the embedded storage log to disk", e);
+        }
+    }
+
+    long getForceCount() {
+        return log != null ? log.getForceCount() : 0;
+    }
+
+    // Documents are copied through their JSON form, so callers never share instances with the store
+    <T> T copy(T document, Class<T> type) {
+        return fromJson(objectMapper.valueToTree(document), type);
+    }
+
+    private <T> T fromJson(JsonNode document, Class<T> type) {
+        try {
+            return objectMapper.treeToValue(document, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read a " + type.getSimpleName() + " document", e);
+        }
+    }
+
+    private ObjectNode record(String store, String operation, String id, Object document) {
+        ObjectNode record = objectMapper.createObjectNode();
+        record.put("store", store);
+        record.put("op", operation);
+        if (id != null) {
+            record.put("id", id);
+        }
+        if (document != null) {
+            record.set("doc", document instanceof JsonNode node ? node : objectMapper.valueToTree(document));
+        }
+        return record;
+    }
+
+    /**
+     * Replays the log into the recovered documents. A record cut short by a crash can only be the last one,
+     * and it is dropped, since its write was never acknowledged.
+     *
+     * @return whether the log holds records that no longer contribute a document
+     */
+    private boolean replay(Path file) throws IOException {
+        long records = 0;
+        boolean torn = false;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            long lineNumber = 0;
+            while (line != null) {
+                String next = reader.readLine();
+                lineNumber++;
+                JsonNode record;
+                try {
+                    record = objectMapper.readTree(line);
+                } catch (JsonProcessingException e) {
+                    if (next != null) {
+                        throw new IllegalStateException("Corrupt record at line " + lineNumber + " of " + file, e);
+                    }
+                    System.err.println("Dropping an incomplete last record in " + file);
+                    torn = true;
+                    break;
+                }
+                apply(record);
+                records++;
+                line = next;
+            }
+        }
+
+        long live = 0;
+        for (Map<String, JsonNode> documents : recovered.values()) {
+            live += documents.size();
+        }
+        return torn || records > live;
+    }
+
+    private void apply(JsonNode record) {
+        Map<String, JsonNode> documents = recovered.computeIfAbsent(record.path("store").asText(), store -> new LinkedHashMap<>());
+        switch (record.path("op").asText()) {
+            case PUT -> documents.put(record.path("id").asText(), record.get("doc"));
+            case DELETE -> documents.remove(record.path("id").asText());
+            case CLEAR -> documents.clear();
+            default -> throw new IllegalStateException("Unknown log operation: " + record.path("op").asText());
+        }
+    }
+
+    // Writes the records to a new file and swaps it in atomically, so a crash leaves either log intact
+    private void rewrite(Path file, RecordSource source) throws IOException {
+        Files.move(rewriteTo(file, source), file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Writes the records to a file next to the log and forces it to disk
+    private Path rewriteTo(Path file, RecordSource source) throws IOException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            BufferedWriter writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+            source.writeTo((store, id, document) -> {
+                writer.write(objectMapper.writeValueAsString(record(store, PUT, id, document)));
+                writer.newLine();
+            });
+            writer.flush();
+            channel.force(true);
+        }
+        return compacted;
+    }
+
+    private static <T> void writeLive(RecordWriter writer, EmbeddedStore<T> store) throws IOException {
+        for (T document : store.documents()) {
+            writer.write(store.getName(), store.idOf(document), document);
+        }
+    }
+
+    private interface RecordSource {
+        void writeTo(RecordWriter writer) throws IOException;
+    }
+
+    private interface RecordWriter {
+        void write(String store, String id, Object document) throws IOException;
+    }
+}
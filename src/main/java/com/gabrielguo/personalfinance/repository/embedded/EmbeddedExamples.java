@@ -0,0 +1,101 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Query by example, evaluated in memory the way MongoDB evaluates the query built from an example: every property
+ * set on the probe, nested objects included, is one condition on the same path of the document, and the matcher
+ * decides whether all or any of the conditions must hold. Documents of another type than the probe never match.
+ */
+final class EmbeddedExamples {
+
+    private EmbeddedExamples() {
+    }
+
+    /**
+     * @param example the probe and matcher
+     * @param document a stored document
+     * @return whether the document matches the example
+     */
+    static boolean matches(Example<?> example, Object document) {
+        if (!example.getProbeType().isInstance(document)) {
+            return false;
+        }
+        List<Boolean> conditions = new ArrayList<>();
+        collect(example.getMatcher(), new BeanWrapperImpl(example.getProbe()), document, "", conditions);
+        if (conditions.isEmpty()) {
+            return true;
+        }
+        return example.getMatcher().isAllMatching() ? !conditions.contains(false) : conditions.contains(true);
+    }
+
+    // Evaluates one condition per property path set on the probe; document is null when a parent path is missing
+    private static void collect(ExampleMatcher matcher, BeanWrapper probe, Object document, String prefix, List<Boolean> conditions) {
+        BeanWrapper stored = document != null ? new BeanWrapperImpl(document) : null;
+        for (PropertyDescriptor property : probe.getPropertyDescriptors()) {
+            String name = property.getName();
+            String path = prefix + name;
+            if (property.getReadMethod() == null || name.equals("class") || matcher.isIgnoredPath(path)) {
+                continue;
+            }
+            ExampleMatcher.PropertySpecifier specifier = matcher.getPropertySpecifiers().getForPath(path);
+            Object expected = probe.getPropertyValue(name);
+            if (specifier != null) {
+                expected = specifier.transformValue(Optional.ofNullable(expected)).orElse(null);
+            }
+            Object actual = stored != null && stored.isReadableProperty(name) ? stored.getPropertyValue(name) : null;
+
+            if (expected == null) {
+                if (matcher.getNullHandler() == ExampleMatcher.NullHandler.INCLUDE) {
+                    conditions.add(actual == null);
+                }
+            } else if (isNested(expected)) {
+                collect(matcher, new BeanWrapperImpl(expected), actual, path + ".", conditions);
+            } else if (expected instanceof String text) {
+                ExampleMatcher.StringMatcher stringMatcher = specifier != null && specifier.getStringMatcher() != null
+                        ? specifier.getStringMatcher() : matcher.getDefaultStringMatcher();
+                boolean ignoreCase = specifier != null && specifier.getIgnoreCase() != null
+                        ? specifier.getIgnoreCase() : matcher.isIgnoreCaseEnabled();
+                conditions.add(actual instanceof String candidate && matches(stringMatcher, ignoreCase, text, candidate));
+            } else {
+                conditions.add(Objects.equals(expected, actual));
+            }
+        }
+    }
+
+    private static boolean matches(ExampleMatcher.StringMatcher stringMatcher, boolean ignoreCase, String expected, String actual) {
+        if (stringMatcher == ExampleMatcher.StringMatcher.REGEX) {
+            return Pattern.compile(expected, ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0).matcher(actual).find();
+        }
+        if (ignoreCase) {
+            expected = expected.toLowerCase(Locale.ROOT);
+            actual = actual.toLowerCase(Locale.ROOT);
+        }
+        return switch (stringMatcher) {
+            case STARTING -> actual.startsWith(expected);
+            case ENDING -> actual.endsWith(expected);
+            case CONTAINING -> actual.contains(expected);
+            default -> actual.equals(expected);
+        };
+    }
+
+    // Objects whose own properties become conditions, as opposed to values compared as a whole
+    private static boolean isNested(Object value) {
+        return !BeanUtils.isSimpleValueType(value.getClass()) && !(value instanceof Collection<?>) && !(value instanceof Map<?, ?>)
+                && !value.getClass().isArray() && !(value instanceof Number);
+    }
+}
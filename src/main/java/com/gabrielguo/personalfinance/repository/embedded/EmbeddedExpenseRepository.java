@@ -0,0 +1,88 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.repository.ExpenseRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * ExpenseRepository on embedded storage. Each user's expenses are ordered by date, so range lookups
+ * read only the matching slice.
+ */
+public class EmbeddedExpenseRepository extends EmbeddedRepository<Expense> implements ExpenseRepository {
+
+    public EmbeddedExpenseRepository(EmbeddedDatabase database) {
+        super(database.createStore("expenses", Expense.class, Expense::getId, Expense::setId, Expense::getUserId, Expense::getDate));
+    }
+
+    @Override
+    public Optional<Expense> findByIdAndUserId(String id, String userId) {
+        return store.findById(id).filter(expense -> userId.equals(expense.getUserId()));
+    }
+
+    @Override
+    public List<Expense> findByUserIdAndIdIn(String userId, Collection<String> ids) {
+        List<Expense> found = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            findByIdAndUserId(id, userId).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    @Override
+    public List<Expense> findByUserId(String userId) {
+        return store.findByUser(userId);
+    }
+
+    @Override
+    public List<String> findDistinctCategoriesByUserId(String userId) {
+        Set<String> categories = new LinkedHashSet<>();
+        for (Expense expense : store.findByUser(userId)) {
+            if (expense.getCategory() != null) {
+                categories.add(expense.getCategory());
+            }
+        }
+        return new ArrayList<>(categories);
+    }
+
+    @Override
+    public Number findTotalExpensesByUserId(String userId) {
+        return EmbeddedAggregates.sum(store.findByUser(userId), Expense::getAmount);
+    }
+
+    @Override
+    public List<Expense> findByUserIdAndDateBetween(String userId, Date startDate, Date endDate) {
+        // Both ends are inclusive, like the $gte/$lte match of the MongoDB pipeline
+        return store.findByUserBetween(userId, startDate.getTime(), endDate.getTime() + 1);
+    }
+
+    // The store answers from memory, so the streams are backed by the copied results rather than a cursor
+    @Override
+    public Stream<Expense> streamByUserId(String userId) {
+        return findByUserId(userId).stream();
+    }
+
+    @Override
+    public Stream<Expense> streamByUserIdAndDateBetween(String userId, Date startDate, Date endDate) {
+        return findByUserIdAndDateBetween(userId, startDate, endDate).stream();
+    }
+
+    @Override
+    public List<Map<String, Object>> findTotalExpensesPerCurrency(String userId) {
+        return EmbeddedAggregates.rowsPerCurrency(store.findByUser(userId), Expense::getAmount, Expense::getCurrency, null, null);
+    }
+
+    @Override
+    public List<Map<String, Object>> findTotalExpensesPerCategory(String userId) {
+        return EmbeddedAggregates.rowsPerCurrency(store.findByUser(userId), Expense::getAmount, Expense::getCurrency,
+                "category", Expense::getCategory);
+    }
+}
@@ -0,0 +1,118 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.repository.query.FluentQuery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * The fluent form of query by example over documents that already matched. Projections to an interface are proxies
+ * as in Spring Data; projections to a class copy the properties the class shares with the document. Restricting the
+ * projected properties has no effect, since the documents are already in memory.
+ *
+ * @param <T> the result type
+ */
+final class EmbeddedFluentQuery<T> implements FluentQuery.FetchableFluentQuery<T> {
+
+    private static final SpelAwareProxyProjectionFactory PROJECTIONS = new SpelAwareProxyProjectionFactory();
+
+    private final List<?> documents;
+    private final Function<Object, T> projection;
+    private final Sort sort;
+
+    private EmbeddedFluentQuery(List<?> documents, Function<Object, T> projection, Sort sort) {
+        this.documents = documents;
+        this.projection = projection;
+        this.sort = sort;
+    }
+
+    /**
+     * @param matches the documents matching the example
+     * @return a query returning the documents themselves
+     */
+    @SuppressWarnings("unchecked")
+    static <S> EmbeddedFluentQuery<S> of(List<S> matches) {
+        return new EmbeddedFluentQuery<>(matches, document -> (S) document, Sort.unsorted());
+    }
+
+    @Override
+    public FetchableFluentQuery<T> sortBy(Sort sort) {
+        return new EmbeddedFluentQuery<>(documents, projection, this.sort.and(sort));
+    }
+
+    @Override
+    public <R> FetchableFluentQuery<R> as(Class<R> resultType) {
+        return new EmbeddedFluentQuery<>(documents, document -> project(document, resultType), sort);
+    }
+
+    @Override
+    public FetchableFluentQuery<T> project(Collection<String> properties) {
+        return this;
+    }
+
+    @Override
+    public T oneValue() {
+        List<T> results = all();
+        if (results.size() > 1) {
+            throw new IncorrectResultSizeDataAccessException(1, results.size());
+        }
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    @Override
+    public T firstValue() {
+        List<T> results = all();
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    @Override
+    public List<T> all() {
+        List<Object> sorted = EmbeddedRepository.sorted(new ArrayList<>(documents), sort);
+        List<T> results = new ArrayList<>(sorted.size());
+        for (Object document : sorted) {
+            results.add(projection.apply(document));
+        }
+        return results;
+    }
+
+    @Override
+    public Page<T> page(Pageable pageable) {
+        return EmbeddedRepository.page(sortBy(pageable.getSort()).all(), pageable);
+    }
+
+    @Override
+    public Stream<T> stream() {
+        return all().stream();
+    }
+
+    @Override
+    public long count() {
+        return documents.size();
+    }
+
+    @Override
+    public boolean exists() {
+        return !documents.isEmpty();
+    }
+
+    private static <R> R project(Object document, Class<R> resultType) {
+        if (resultType.isInstance(document)) {
+            return resultType.cast(document);
+        }
+        if (resultType.isInterface()) {
+            return PROJECTIONS.createProjection(resultType, document);
+        }
+        R result = BeanUtils.instantiateClass(resultType);
+        BeanUtils.copyProperties(document, result);
+        return result;
+    }
+}
@@ -0,0 +1,79 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import com.gabrielguo.personalfinance.model.Income;
+import com.gabrielguo.personalfinance.repository.IncomeRepository;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * IncomeRepository on embedded storage, with each user's incomes ordered by date.
+ */
+public class EmbeddedIncomeRepository extends EmbeddedRepository<Income> implements IncomeRepository {
+
+    public EmbeddedIncomeRepository(EmbeddedDatabase database) {
+        super(database.createStore("incomes", Income.class, Income::getId, Income::setId, Income::getUserId, Income::getDate));
+    }
+
+    @Override
+    public Optional<Income> findByIdAndUserId(String id, String userId) {
+        return store.findById(id).filter(income -> userId.equals(income.getUserId()));
+    }
+
+    @Override
+    public List<Income> findByUserId(String userId) {
+        return store.findByUser(userId);
+    }
+
+    @Override
+    public List<String> findDistinctIncomeTypesByUserId(String userId) {
+        Set<String> incomeTypes = new LinkedHashSet<>();
+        for (Income income : store.findByUser(userId)) {
+            if (income.getIncomeType() != null) {
+                incomeTypes.add(income.getIncomeType());
+            }
+        }
+        return new ArrayList<>(incomeTypes);
+    }
+
+    @Override
+    public Number findTotalIncomeByTypeAndUserId(String userId, String incomeType) {
+        List<Income> incomes = store.findByUser(userId);
+        incomes.removeIf(income -> !Objects.equals(income.getIncomeType(), incomeType));
+        return EmbeddedAggregates.sum(incomes, Income::getAmount);
+    }
+
+    @Override
+    public Number findTotalIncomeByUserId(String userId) {
+        return EmbeddedAggregates.sum(store.findByUser(userId), Income::getAmount);
+    }
+
+    @Override
+    public List<Income> findByUserIdAndDateBetween(String userId, Date startDate, Date endDate) {
+        // A derived Between query excludes both ends
+        return store.findByUserBetween(userId, startDate.getTime() + 1, endDate.getTime());
+    }
+
+    @Override
+    public List<Map<String, Object>> findTotalIncomePerCurrency(String userId) {
+        return EmbeddedAggregates.rowsPerCurrency(store.findByUser(userId), Income::getAmount, Income::getCurrency, null, null);
+    }
+
+    @Override
+    public List<Map<String, Object>> findTotalIncomePerType(String userId) {
+        return EmbeddedAggregates.rowsPerCurrency(store.findByUser(userId), Income::getAmount, Income::getCurrency,
+                "incomeType", Income::getIncomeType);
+    }
+
+    @Override
+    public Stream<Income> streamByUserIdAndDateBetween(String userId, Date startDate, Date endDate) {
+        return findByUserIdAndDateBetween(userId, startDate, endDate).stream();
+    }
+}
@@ -0,0 +1,176 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * An append-only file of newline-terminated records with group commit.
+ * A writer waiting for its record to reach the disk forces the file itself unless another writer is already
+ * doing so; in that case it waits for that fsync and only forces again if its record came after it started.
+ * Concurrent writers therefore share fsyncs instead of paying for one each.
+ */
+class EmbeddedLog implements Closeable {
+
+    private final Path file;
+    private final boolean syncWrites;
+    private FileChannel channel;
+
+    private final Object lock = new Object();
+    private long appended; // Records written to the file
+    private long synced; // Records known to be on disk
+    private boolean flushing;
+    private long forceCount;
+
+    /**
+     * @param file the log file, created if missing
+     * @param syncWrites whether awaitDurable waits for an fsync; otherwise the file is only forced on close
+     */
+    EmbeddedLog(Path file, boolean syncWrites) throws IOException {
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        this.file = file;
+        this.channel = open(file);
+        this.syncWrites = syncWrites;
+    }
+
+    /**
+     * Appends a record, which must not contain a newline.
+     *
+     * @param record the encoded record
+     * @return the sequence number of the record, to pass to awaitDurable
+     */
+    long append(byte[] record) throws IOException {
+        return appendAll(List.of(record));
+    }
+
+    /**
+     * Appends records in one write. If the write fails, the file is cut back to where it was, so the records
+     * are either all in the log or none of them is.
+     *
+     * @param records the encoded records, none containing a newline
+     * @return the sequence number of the last record, to pass to awaitDurable
+     */
+    long appendAll(List<byte[]> records) throws IOException {
+        int size = 0;
+        for (byte[] record : records) {
+            size += record.length + 1;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] record : records) {
+            buffer.put(record).put((byte) '\n');
+        }
+        buffer.flip();
+        synchronized (lock) {
+            long start = channel.size();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                channel.truncate(start);
+                throw e;
+            }
+            appended += records.size();
+            return appended;
+        }
+    }
+
+    /**
+     * Replaces the log with a compacted copy that is already on disk. The caller keeps every writer out while
+     * the copy is written and swapped in, so everything appended so far is in the copy and counts as durable.
+     *
+     * @param compacted the compacted copy, moved over the log file
+     */
+    void replace(Path compacted) throws IOException {
+        synchronized (lock) {
+            while (flushing) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the log to be forced");
+                }
+            }
+            channel.close();
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = open(file);
+            synced = appended;
+        }
+    }
+
+    /**
+     * Blocks until the record with the given sequence number is on disk.
+     *
+     * @param sequence the sequence number returned by append
+     */
+    void awaitDurable(long sequence) throws IOException {
+        if (!syncWrites) {
+            return;
+        }
+        long target;
+        FileChannel forcing;
+        synchronized (lock) {
+            while (synced < sequence && flushing) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the log to be forced");
+                }
+            }
+            if (synced >= sequence) {
+                return;
+            }
+            // Everything appended so far is covered by the fsync below
+            flushing = true;
+            target = appended;
+            forcing = channel;
+        }
+
+        boolean forced = false;
+        try {
+            // The channel is only replaced while no fsync is in flight
+            forcing.force(false);
+            forced = true;
+        } finally {
+            synchronized (lock) {
+                flushing = false;
+                if (forced) {
+                    synced = Math.max(synced, target);
+                    forceCount++;
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    long getForceCount() {
+        synchronized (lock) {
+            return forceCount;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            try {
+                channel.force(false);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
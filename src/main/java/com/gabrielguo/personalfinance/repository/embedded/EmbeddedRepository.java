@@ -0,0 +1,230 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.repository.query.FluentQuery;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * The CRUD, sorting and paging part of MongoRepository on top of an EmbeddedStore, shared by the embedded
+ * repositories, which add their entity's finders. Queries by example are evaluated in memory by EmbeddedExamples.
+ *
+ * @param <T> the entity type
+ */
+public abstract class EmbeddedRepository<T> implements MongoRepository<T, String> {
+
+    protected final EmbeddedStore<T> store;
+
+    protected EmbeddedRepository(EmbeddedStore<T> store) {
+        this.store = store;
+    }
+
+    @Override
+    public <S extends T> S save(S entity) {
+        store.save(entity);
+        return entity;
+    }
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> entities) {
+        List<S> saved = toList(entities);
+        store.saveAll(new ArrayList<T>(saved));
+        return saved;
+    }
+
+    @Override
+    public <S extends T> S insert(S entity) {
+        store.insert(List.<T>of(entity));
+        return entity;
+    }
+
+    @Override
+    public <S extends T> List<S> insert(Iterable<S> entities) {
+        List<S> inserted = toList(entities);
+        store.insert(new ArrayList<T>(inserted));
+        return inserted;
+    }
+
+    @Override
+    public Optional<T> findById(String id) {
+        return store.findById(id);
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return store.existsById(id);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return store.findAll();
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<String> ids) {
+        List<T> found = new ArrayList<>();
+        for (String id : ids) {
+            store.findById(id).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    @Override
+    public long count() {
+        return store.count();
+    }
+
+    @Override
+    public void deleteById(String id) {
+        store.deleteById(id);
+    }
+
+    @Override
+    public void delete(T entity) {
+        String id = store.idOf(entity);
+        if (id != null) {
+            store.deleteById(id);
+        }
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends String> ids) {
+        for (String id : ids) {
+            store.deleteById(id);
+        }
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> entities) {
+        for (T entity : entities) {
+            delete(entity);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        store.deleteAll();
+    }
+
+    @Override
+    public List<T> findAll(Sort sort) {
+        return sorted(store.findAll(), sort);
+    }
+
+    @Override
+    public Page<T> findAll(Pageable pageable) {
+        return page(sorted(store.findAll(), pageable.getSort()), pageable);
+    }
+
+    @Override
+    public <S extends T> Optional<S> findOne(Example<S> example) {
+        List<S> matches = matching(example);
+        if (matches.size() > 1) {
+            throw new IncorrectResultSizeDataAccessException(1, matches.size());
+        }
+        return matches.stream().findFirst();
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example) {
+        return matching(example);
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example, Sort sort) {
+        return sorted(matching(example), sort);
+    }
+
+    @Override
+    public <S extends T> Page<S> findAll(Example<S> example, Pageable pageable) {
+        return page(sorted(matching(example), pageable.getSort()), pageable);
+    }
+
+    @Override
+    public <S extends T> long count(Example<S> example) {
+        return matching(example).size();
+    }
+
+    @Override
+    public <S extends T> boolean exists(Example<S> example) {
+        for (T entity : store.findAll()) {
+            if (EmbeddedExamples.matches(example, entity)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public <S extends T, R> R findBy(Example<S> example, Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction) {
+        return queryFunction.apply(EmbeddedFluentQuery.of(matching(example)));
+    }
+
+    /**
+     * Sorts entities by their properties, placing nulls first in ascending order as MongoDB does.
+     *
+     * @param entities the entities, which are sorted in place
+     * @param sort the order
+     * @return the entities
+     */
+    @SuppressWarnings("unchecked")
+    protected static <E> List<E> sorted(List<E> entities, Sort sort) {
+        Comparator<E> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<E> byProperty = Comparator.<E, Comparable<Object>>comparing(
+                    entity -> (Comparable<Object>) new BeanWrapperImpl(entity).getPropertyValue(order.getProperty()),
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+            if (order.isDescending()) {
+                byProperty = byProperty.reversed();
+            }
+            comparator = comparator == null ? byProperty : comparator.thenComparing(byProperty);
+        }
+        if (comparator != null) {
+            entities.sort(comparator);
+        }
+        return entities;
+    }
+
+    /**
+     * @param entities the entities, already sorted
+     * @param pageable the page to return
+     * @return the entities on the page, along with their total count
+     */
+    protected static <E> Page<E> page(List<E> entities, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(entities, pageable, entities.size());
+        }
+        int from = (int) Math.min(pageable.getOffset(), entities.size());
+        int to = Math.min(from + pageable.getPageSize(), entities.size());
+        return new PageImpl<>(new ArrayList<>(entities.subList(from, to)), pageable, entities.size());
+    }
+
+    // The stored entities matching the example, which are of the probe's type
+    @SuppressWarnings("unchecked")
+    private <S extends T> List<S> matching(Example<S> example) {
+        List<S> matches = new ArrayList<>();
+        for (T entity : store.findAll()) {
+            if (EmbeddedExamples.matches(example, entity)) {
+                matches.add((S) entity);
+            }
+        }
+        return matches;
+    }
+
+    private static <S> List<S> toList(Iterable<S> entities) {
+        List<S> list = new ArrayList<>();
+        entities.forEach(list::add);
+        return list;
+    }
+}
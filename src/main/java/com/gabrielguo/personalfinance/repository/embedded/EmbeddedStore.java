@@ -0,0 +1,451 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * The documents of one type in an EmbeddedDatabase.
+ * Besides the primary map by ID, each user's documents are kept in a tree ordered by date, so per-user lookups
+ * and date ranges never scan other users' data, and secondary indexes map a field value to IDs.
+ * Documents are copied on the way in and out, so callers can modify what they get without affecting the store.
+ *
+ * @param <T> the document type
+ */
+public class EmbeddedStore<T> {
+
+    private final EmbeddedDatabase database;
+    private final String name;
+    private final Class<T> type;
+    private final Function<T, String> idFn;
+    private final BiConsumer<T, String> setIdFn;
+    private final Function<T, String> userIdFn;
+    private final Function<T, Date> sortDateFn;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, T> byId = new HashMap<>();
+    private final Map<String, TreeMap<SortKey, T>> byUser = new HashMap<>();
+    private final Map<String, Index<T>> indexes = new LinkedHashMap<>();
+
+    EmbeddedStore(EmbeddedDatabase database, String name, Class<T> type, Function<T, String> idFn, BiConsumer<T, String> setIdFn,
+                  Function<T, String> userIdFn, Function<T, Date> sortDateFn) {
+        this.database = database;
+        this.name = name;
+        this.type = type;
+        this.idFn = idFn;
+        this.setIdFn = setIdFn;
+        this.userIdFn = userIdFn;
+        this.sortDateFn = sortDateFn;
+    }
+
+    /**
+     * Adds a sparse secondary index: documents whose key is null are not indexed.
+     *
+     * @param indexName the name to look the index up by
+     * @param key reads the indexed value
+     * @param unique whether two documents may not share a value
+     * @return this store
+     */
+    public EmbeddedStore<T> addIndex(String indexName, Function<T, String> key, boolean unique) {
+        lock.writeLock().lock();
+        try {
+            Index<T> index = new Index<>(key, unique);
+            Map<String, String> keys = new HashMap<>();
+            for (T document : byId.values()) {
+                index.check(document, idFn.apply(document), keys);
+                index.add(document, idFn.apply(document));
+            }
+            indexes.put(indexName, index);
+            return this;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stores a document, replacing any with the same ID. A document without an ID is given a new one,
+     * which is also set on the passed instance, as MongoDB repositories do.
+     *
+     * @param document the document to store
+     * @return the passed document
+     */
+    public T save(T document) {
+        saveAll(List.of(document), false);
+        return document;
+    }
+
+    /**
+     * Stores documents, replacing any with the same IDs.
+     *
+     * @param documents the documents to store
+     * @return the passed documents
+     */
+    public List<T> saveAll(Collection<T> documents) {
+        saveAll(documents, false);
+        return new ArrayList<>(documents);
+    }
+
+    /**
+     * Stores new documents.
+     *
+     * @param documents the documents to insert
+     * @throws DuplicateKeyException if a document with one of the IDs already exists; nothing is stored then
+     */
+    public void insert(Collection<T> documents) {
+        saveAll(documents, true);
+    }
+
+    public Optional<T> findById(String id) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(byId.get(id)).map(this::copy);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean existsById(String id) {
+        lock.readLock().lock();
+        try {
+            return byId.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<T> findAll() {
+        lock.readLock().lock();
+        try {
+            return copies(byId.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param userId the owner
+     * @return the user's documents, ordered by date, with undated ones first
+     */
+    public List<T> findByUser(String userId) {
+        lock.readLock().lock();
+        try {
+            TreeMap<SortKey, T> documents = byUser.get(userId);
+            return documents == null ? new ArrayList<>() : copies(documents.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param userId the owner
+     * @param fromInclusive the earliest date, in epoch milliseconds
+     * @param toExclusive the date after the last one, in epoch milliseconds
+     * @return the user's documents dated within the range, ordered by date
+     */
+    public List<T> findByUserBetween(String userId, long fromInclusive, long toExclusive) {
+        lock.readLock().lock();
+        try {
+            TreeMap<SortKey, T> documents = byUser.get(userId);
+            if (documents == null || fromInclusive >= toExclusive) {
+                return new ArrayList<>();
+            }
+            return copies(documents.subMap(new SortKey(fromInclusive, ""), true, new SortKey(toExclusive, ""), false).values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param indexName the name of the index
+     * @param value the indexed value
+     * @return the documents with that value
+     */
+    public List<T> findByIndex(String indexName, String value) {
+        lock.readLock().lock();
+        try {
+            Set<String> ids = index(indexName).get(value);
+            List<T> documents = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                documents.add(copy(byId.get(id)));
+            }
+            return documents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<T> findFirstByIndex(String indexName, String value) {
+        return findByIndex(indexName, value).stream().findFirst();
+    }
+
+    public void deleteById(String id) {
+        long sequence;
+        lock.writeLock().lock();
+        try {
+            T removed = byId.get(id);
+            if (removed == null) {
+                return;
+            }
+            sequence = database.write(name, EmbeddedDatabase.DELETE, id, null);
+            unindex(removed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        database.awaitDurable(sequence);
+    }
+
+    /**
+     * Deletes every document a user owns.
+     *
+     * @param userId the owner
+     * @return the number of documents deleted
+     */
+    public int deleteByUser(String userId) {
+        long sequence;
+        int deleted;
+        lock.writeLock().lock();
+        try {
+            TreeMap<SortKey, T> documents = byUser.get(userId);
+            if (documents == null) {
+                return 0;
+            }
+            List<T> removed = new ArrayList<>(documents.values());
+            Map<String, Object> ids = new LinkedHashMap<>();
+            for (T document : removed) {
+                ids.put(idFn.apply(document), null);
+            }
+            sequence = database.writeAll(name, EmbeddedDatabase.DELETE, ids);
+            removed.forEach(this::unindex);
+            deleted = removed.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        database.awaitDurable(sequence);
+        return deleted;
+    }
+
+    public void deleteAll() {
+        long sequence;
+        lock.writeLock().lock();
+        try {
+            sequence = database.write(name, EmbeddedDatabase.CLEAR, null, null);
+            byId.clear();
+            byUser.clear();
+            indexes.values().forEach(Index::clear);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        database.awaitDurable(sequence);
+    }
+
+    public String idOf(T document) {
+        return idFn.apply(document);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    // Keeps writers out while the database compacts its log
+    void lockWrites() {
+        lock.writeLock().lock();
+    }
+
+    void unlockWrites() {
+        lock.writeLock().unlock();
+    }
+
+    // The stored documents themselves, for a caller holding the write lock
+    Collection<T> documents() {
+        return byId.values();
+    }
+
+    // Adds a document recovered from the log, without writing it back
+    void load(T document) {
+        lock.writeLock().lock();
+        try {
+            index(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Validates the whole batch before changing anything, appends it to the log in one write and only then
+     * applies it in memory, so a conflict or a failed write leaves both the store and the log as they were.
+     * The lock is held until the batch is applied, keeping the log in the same order as the in-memory changes,
+     * but the wait for the fsync happens after it is released, so concurrent writers can share one.
+     */
+    private void saveAll(Collection<T> documents, boolean insert) {
+        long sequence;
+        lock.writeLock().lock();
+        try {
+            Map<String, T> stored = new LinkedHashMap<>();
+            // The unique keys claimed so far in the batch, by index
+            Map<Index<T>, Map<String, String>> batchKeys = new HashMap<>();
+            for (T document : documents) {
+                if (idFn.apply(document) == null) {
+                    setIdFn.accept(document, new ObjectId().toHexString());
+                }
+                String id = idFn.apply(document);
+                if (insert && (stored.containsKey(id) || byId.containsKey(id))) {
+                    throw new DuplicateKeyException("Duplicate ID " + id + " in " + name);
+                }
+                for (Index<T> index : indexes.values()) {
+                    index.check(document, id, batchKeys.computeIfAbsent(index, i -> new HashMap<>()));
+                }
+                stored.put(id, copy(document));
+            }
+            sequence = database.writeAll(name, EmbeddedDatabase.PUT, stored);
+            for (T document : stored.values()) {
+                T previous = byId.get(idFn.apply(document));
+                if (previous != null) {
+                    unindex(previous);
+                }
+                index(document);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        database.awaitDurable(sequence);
+    }
+
+    private void index(T document) {
+        String id = idFn.apply(document);
+        byId.put(id, document);
+        String userId = userIdFn != null ? userIdFn.apply(document) : null;
+        if (userId != null) {
+            byUser.computeIfAbsent(userId, user -> new TreeMap<>()).put(sortKey(document), document);
+        }
+        for (Index<T> index : indexes.values()) {
+            index.add(document, id);
+        }
+    }
+
+    private void unindex(T document) {
+        String id = idFn.apply(document);
+        byId.remove(id);
+        String userId = userIdFn != null ? userIdFn.apply(document) : null;
+        if (userId != null) {
+            TreeMap<SortKey, T> documents = byUser.get(userId);
+            documents.remove(sortKey(document));
+            if (documents.isEmpty()) {
+                byUser.remove(userId);
+            }
+        }
+        for (Index<T> index : indexes.values()) {
+            index.remove(document, id);
+        }
+    }
+
+    private SortKey sortKey(T document) {
+        Date date = sortDateFn != null ? sortDateFn.apply(document) : null;
+        return new SortKey(date != null ? date.getTime() : Long.MIN_VALUE, idFn.apply(document));
+    }
+
+    private Index<T> index(String indexName) {
+        Index<T> index = indexes.get(indexName);
+        if (index == null) {
+            throw new IllegalArgumentException("No index " + indexName + " on " + name);
+        }
+        return index;
+    }
+
+    private T copy(T document) {
+        return database.copy(document, type);
+    }
+
+    private List<T> copies(Collection<T> documents) {
+        List<T> copies = new ArrayList<>(documents.size());
+        for (T document : documents) {
+            copies.add(copy(document));
+        }
+        return copies;
+    }
+
+    // Orders a user's documents by date, then ID, so documents sharing a date stay distinct
+    private record SortKey(long time, String id) implements Comparable<SortKey> {
+        @Override
+        public int compareTo(SortKey other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : id.compareTo(other.id);
+        }
+    }
+
+    private static class Index<T> {
+
+        private final Function<T, String> key;
+        private final boolean unique;
+        private final Map<String, Set<String>> ids = new HashMap<>();
+
+        Index(Function<T, String> key, boolean unique) {
+            this.key = key;
+            this.unique = unique;
+        }
+
+        // Rejects a value held by another document, stored or earlier in the same batch
+        void check(T document, String id, Map<String, String> batch) {
+            String value = key.apply(document);
+            if (!unique || value == null) {
+                return;
+            }
+            Set<String> existing = ids.get(value);
+            String claimed = batch.putIfAbsent(value, id);
+            if ((claimed != null && !claimed.equals(id)) || (existing != null && !(existing.size() == 1 && existing.contains(id)))) {
+                throw new DuplicateKeyException("Duplicate key " + value);
+            }
+        }
+
+        void add(T document, String id) {
+            String value = key.apply(document);
+            if (value != null) {
+                ids.computeIfAbsent(value, v -> new HashSet<>()).add(id);
+            }
+        }
+
+        void remove(T document, String id) {
+            String value = key.apply(document);
+            Set<String> existing = value != null ? ids.get(value) : null;
+            if (existing != null) {
+                existing.remove(id);
+                if (existing.isEmpty()) {
+                    ids.remove(value);
+                }
+            }
+        }
+
+        Set<String> get(String value) {
+            return Objects.requireNonNullElse(ids.get(value), Collections.emptySet());
+        }
+
+        void clear() {
+            ids.clear();
+        }
+    }
+}
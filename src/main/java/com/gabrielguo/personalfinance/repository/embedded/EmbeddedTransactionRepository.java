@@ -0,0 +1,46 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import com.gabrielguo.personalfinance.model.Transaction;
+import com.gabrielguo.personalfinance.repository.TransactionRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * TransactionRepository on embedded storage. Transactions have no date, so each user's are ordered by ID.
+ */
+public class EmbeddedTransactionRepository extends EmbeddedRepository<Transaction> implements TransactionRepository {
+
+    public EmbeddedTransactionRepository(EmbeddedDatabase database) {
+        super(database.createStore("transactions", Transaction.class, Transaction::getId, Transaction::setId,
+                Transaction::getUserId, null));
+    }
+
+    @Override
+    public List<Transaction> findByUserId(String userId) {
+        return store.findByUser(userId);
+    }
+
+    @Override
+    public Stream<Transaction> streamByUserId(String userId) {
+        return findByUserId(userId).stream();
+    }
+
+    @Override
+    public Number findTotalExpensesByUserId(String userId) {
+        return EmbeddedAggregates.sum(store.findByUser(userId), Transaction::getAmount);
+    }
+
+    @Override
+    public List<Map<String, Object>> findTotalTransactionsPerCurrency(String userId) {
+        return EmbeddedAggregates.rowsPerCurrency(store.findByUser(userId), Transaction::getAmount, Transaction::getCurrency,
+                null, null);
+    }
+
+    @Override
+    public List<Map<String, Object>> findTotalTransactionsPerCategory(String userId) {
+        return EmbeddedAggregates.rowsPerCurrency(store.findByUser(userId), Transaction::getAmount, Transaction::getCurrency,
+                "description", Transaction::getDescription);
+    }
+}
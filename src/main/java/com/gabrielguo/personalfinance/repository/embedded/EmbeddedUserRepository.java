@@ -0,0 +1,38 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import com.gabrielguo.personalfinance.model.User;
+import com.gabrielguo.personalfinance.repository.UserRepository;
+
+import java.util.Optional;
+
+/**
+ * UserRepository on embedded storage, enforcing the unique email index of the MongoDB collection.
+ * A user owns their own document, so deleting the user's data deletes it too.
+ */
+public class EmbeddedUserRepository extends EmbeddedRepository<User> implements UserRepository {
+
+    private static final String EMAIL = "email";
+    private static final String RESET_TOKEN = "resetToken";
+
+    public EmbeddedUserRepository(EmbeddedDatabase database) {
+        super(database.createStore("users", User.class, User::getId, User::setId, User::getId, null)
+                .addIndex(EMAIL, User::getEmail, true)
+                .addIndex(RESET_TOKEN, User::getResetToken, false));
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return store.findFirstByIndex(EMAIL, email);
+    }
+
+    @Override
+    public Optional<User> findCredentialVersionByEmail(String email) {
+        // The document is already in memory, so there is nothing to save by projecting it
+        return findByEmail(email);
+    }
+
+    @Override
+    public Optional<User> findByResetToken(String token) {
+        return store.findFirstByIndex(RESET_TOKEN, token);
+    }
+}
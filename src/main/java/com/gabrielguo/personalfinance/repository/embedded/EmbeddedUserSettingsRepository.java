@@ -0,0 +1,25 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import com.gabrielguo.personalfinance.model.UserSettings;
+import com.gabrielguo.personalfinance.repository.UserSettingsRepository;
+
+import java.util.Optional;
+
+/**
+ * UserSettingsRepository on embedded storage, allowing at most one settings document per user.
+ */
+public class EmbeddedUserSettingsRepository extends EmbeddedRepository<UserSettings> implements UserSettingsRepository {
+
+    private static final String USER_ID = "userId";
+
+    public EmbeddedUserSettingsRepository(EmbeddedDatabase database) {
+        super(database.createStore("usersettings", UserSettings.class, UserSettings::getId, UserSettings::setId,
+                        UserSettings::getUserId, null)
+                .addIndex(USER_ID, UserSettings::getUserId, true));
+    }
+
+    @Override
+    public Optional<UserSettings> findByUserId(String userId) {
+        return store.findFirstByIndex(USER_ID, userId);
+    }
+}
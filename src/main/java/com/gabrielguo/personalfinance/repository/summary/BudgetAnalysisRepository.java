@@ -10,4 +10,6 @@ import java.util.List;
 @Repository
 public interface BudgetAnalysisRepository extends MongoRepository<BudgetAnalysis, String> {
     List<BudgetAnalysis> findByUserId(String userId);
+
+    long deleteByIdAndUserId(String id, String userId);
 }
@@ -0,0 +1,14 @@
+package com.gabrielguo.personalfinance.repository.summary;
+
+import com.gabrielguo.personalfinance.model.summary.BudgetUtilization;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BudgetUtilizationRepository extends MongoRepository<BudgetUtilization, String> {
+    List<BudgetUtilization> findByUserIdOrderByPeriodStartAsc(String userId);
+
+    long countByUserId(String userId);
+}
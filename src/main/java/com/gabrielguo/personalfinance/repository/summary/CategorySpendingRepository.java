@@ -10,4 +10,6 @@ import java.util.List;
 public interface CategorySpendingRepository extends MongoRepository<CategorySpending, String> {
 
     List<CategorySpending> findByUserId(String userId);
+
+    long deleteByIdAndUserId(String id, String userId);
 }
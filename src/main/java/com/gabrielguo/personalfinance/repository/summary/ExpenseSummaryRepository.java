@@ -22,4 +22,6 @@ public interface ExpenseSummaryRepository extends MongoRepository<ExpenseSummary
                 .orElse(BigDecimal.ZERO);
     }
     List<ExpenseSummary> findByUserId(String userId);
+
+    long deleteByIdAndUserId(String id, String userId);
 }
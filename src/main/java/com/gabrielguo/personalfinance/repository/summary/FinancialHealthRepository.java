@@ -11,4 +11,6 @@ import java.util.List;
 public interface FinancialHealthRepository extends MongoRepository<FinancialHealth, String> {
 
     List<FinancialHealth> findByUserId(String userId);
+
+    long deleteByIdAndUserId(String id, String userId);
 }
@@ -23,4 +23,6 @@ public interface IncomeSummaryRepository extends MongoRepository<IncomeSummary,
     }
 
     List<IncomeSummary> findByUserId(String userId);
+
+    long deleteByIdAndUserId(String id, String userId);
 }
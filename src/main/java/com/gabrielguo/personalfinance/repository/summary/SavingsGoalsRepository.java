@@ -10,5 +10,7 @@ import java.util.List;
 public interface SavingsGoalsRepository extends MongoRepository<SavingsGoals, String> {
     List<SavingsGoals> findByUserId(String userId);
 
+    long deleteByIdAndUserId(String id, String userId);
+
 
 }
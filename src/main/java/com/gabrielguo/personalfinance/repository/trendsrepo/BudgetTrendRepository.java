@@ -11,4 +11,6 @@ import java.util.List;
 @Repository
 public interface BudgetTrendRepository extends MongoRepository<BudgetTrend, String> {
     List<BudgetTrend> findByUserId(String userId);
+
+    long deleteByIdAndUserId(String id, String userId);
 }
@@ -11,4 +11,6 @@ import java.util.List;
 @Repository
 public interface ExpenseTrendRepository extends MongoRepository<ExpenseTrend, String> {
     List<ExpenseTrend> findByUserId(String userId);
+
+    long deleteByIdAndUserId(String id, String userId);
 }
@@ -11,4 +11,6 @@ import java.util.List;
 public interface IncomeTrendRepository extends MongoRepository<IncomeTrend, String> {
     List<IncomeTrend> findByUserId(String userId);
 
+    long deleteByIdAndUserId(String id, String userId);
+
 }
@@ -0,0 +1,289 @@
+package com.gabrielguo.personalfinance.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A full-text index over the descriptions and categories of one user's expenses.
+ * The words are kept in a trie whose nodes carry the postings of the word ending there: the numbers of the
+ * documents containing it, in increasing order. A query intersects the postings of its words, matching its last
+ * word as a prefix, and pages through the matches from the most recently indexed expense.
+ * An update indexes the expense again under a new document number and retires the old one; retired numbers are
+ * dropped from the postings once they make up half of the index.
+ * Not thread-safe.
+ */
+public class ExpenseIndex {
+
+    // Documents beyond which retired numbers are worth compacting away
+    private static final int MIN_COMPACTION = 1024;
+
+    /**
+     * A page of matches.
+     *
+     * @param expenseIds the IDs of the matching expenses on the page
+     * @param totalHits the number of matching expenses
+     */
+    public record Hits(List<String> expenseIds, int totalHits) {
+    }
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        // Postings of the word ending at this node, and how many of them are live
+        private int[] postings;
+        private int postingCount;
+        private int liveCount;
+
+        private Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node addChild(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            keys = insert(keys, insertAt, key);
+            Node[] grown = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(grown, insertAt, grown, insertAt + 1, children.length - insertAt);
+            grown[insertAt] = new Node();
+            children = grown;
+            return grown[insertAt];
+        }
+
+        private void addPosting(int document) {
+            if (postings == null) {
+                postings = new int[4];
+            } else if (postingCount == postings.length) {
+                postings = Arrays.copyOf(postings, postingCount * 2);
+            }
+            postings[postingCount++] = document;
+            liveCount++;
+        }
+
+        private static char[] insert(char[] keys, int at, char key) {
+            char[] grown = Arrays.copyOf(keys, keys.length + 1);
+            System.arraycopy(grown, at, grown, at + 1, keys.length - at);
+            grown[at] = key;
+            return grown;
+        }
+    }
+
+    private final Node root = new Node();
+    // By document number: the expense ID and the word nodes, or null once retired
+    private final List<String> expenseIds = new ArrayList<>();
+    private final List<Node[]> documentWords = new ArrayList<>();
+    private final BitSet live = new BitSet();
+    private final Map<String, Integer> documents = new HashMap<>();
+
+    /**
+     * Indexes an expense, replacing what was indexed for it before.
+     *
+     * @param expenseId the ID of the expense
+     * @param description the description
+     * @param category the category
+     */
+    public void put(String expenseId, String description, String category) {
+        remove(expenseId);
+        Set<String> words = new LinkedHashSet<>(tokenize(description));
+        words.addAll(tokenize(category));
+        int document = expenseIds.size();
+        Node[] nodes = new Node[words.size()];
+        int i = 0;
+        for (String word : words) {
+            Node node = root;
+            for (int c = 0; c < word.length(); c++) {
+                node = node.addChild(word.charAt(c));
+            }
+            node.addPosting(document);
+            nodes[i++] = node;
+        }
+        expenseIds.add(expenseId);
+        documentWords.add(nodes);
+        live.set(document);
+        documents.put(expenseId, document);
+    }
+
+    /**
+     * @param expenseId the ID of the expense to drop from the index
+     */
+    public void remove(String expenseId) {
+        Integer document = documents.remove(expenseId);
+        if (document == null) {
+            return;
+        }
+        for (Node node : documentWords.get(document)) {
+            node.liveCount--;
+        }
+        expenseIds.set(document, null);
+        documentWords.set(document, null);
+        live.clear(document);
+        if (expenseIds.size() >= MIN_COMPACTION && documents.size() * 2 < expenseIds.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * @return the number of expenses indexed
+     */
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Finds the expenses containing every word of a query, the last one as a prefix unless the query ends with a space.
+     *
+     * @param query the words to look for
+     * @param offset the number of matches to skip
+     * @param limit the maximum number of matches to return
+     * @return the page of matches, most recently indexed first
+     */
+    public Hits search(String query, int offset, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return new Hits(List.of(), 0);
+        }
+        boolean lastIsPrefix = !Character.isWhitespace(query.charAt(query.length() - 1));
+        BitSet matches = (BitSet) live.clone();
+        for (int i = 0; i < words.size() && !matches.isEmpty(); i++) {
+            BitSet wordMatches = new BitSet(expenseIds.size());
+            Node node = find(words.get(i));
+            if (node != null) {
+                if (lastIsPrefix && i == words.size() - 1) {
+                    collectPostings(node, wordMatches);
+                } else {
+                    addPostings(node, wordMatches);
+                }
+            }
+            matches.and(wordMatches);
+        }
+
+        List<String> page = new ArrayList<>(Math.min(limit, 100));
+        int skipped = 0;
+        for (int document = matches.length() - 1; document >= 0 && page.size() < limit; document = matches.previousSetBit(document - 1)) {
+            if (skipped++ >= offset) {
+                page.add(expenseIds.get(document));
+            }
+        }
+        return new Hits(page, matches.cardinality());
+    }
+
+    /**
+     * Completes a prefix to the indexed words starting with it.
+     *
+     * @param prefix the start of a word
+     * @param limit the maximum number of words
+     * @return the words, those in the most expenses first
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String start = prefix.toLowerCase(Locale.ROOT).strip();
+        Node node = find(start);
+        if (node == null || limit <= 0) {
+            return List.of();
+        }
+        Map<String, Integer> words = new HashMap<>();
+        collectWords(node, new StringBuilder(start), words);
+        return words.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Splits text into lowercase words of letters and digits.
+     *
+     * @param text the text, may be null
+     * @return the words, in order
+     */
+    public static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private Node find(String word) {
+        Node node = root;
+        for (int c = 0; c < word.length() && node != null; c++) {
+            node = node.child(word.charAt(c));
+        }
+        return node;
+    }
+
+    private static void addPostings(Node node, BitSet matches) {
+        for (int i = 0; i < node.postingCount; i++) {
+            matches.set(node.postings[i]);
+        }
+    }
+
+    private static void collectPostings(Node node, BitSet matches) {
+        if (node.liveCount > 0) {
+            addPostings(node, matches);
+        }
+        for (Node child : node.children) {
+            collectPostings(child, matches);
+        }
+    }
+
+    private static void collectWords(Node node, StringBuilder word, Map<String, Integer> words) {
+        if (node.liveCount > 0) {
+            words.put(word.toString(), node.liveCount);
+        }
+        for (int i = 0; i < node.children.length; i++) {
+            word.append(node.keys[i]);
+            collectWords(node.children[i], word, words);
+            word.setLength(word.length() - 1);
+        }
+    }
+
+    // Renumbers the live documents in order and rebuilds the postings without the retired ones
+    private void compact() {
+        clearPostings(root);
+        List<String> liveIds = new ArrayList<>(documents.size());
+        List<Node[]> liveWords = new ArrayList<>(documents.size());
+        for (int document = live.nextSetBit(0); document >= 0; document = live.nextSetBit(document + 1)) {
+            int renumbered = liveIds.size();
+            for (Node node : documentWords.get(document)) {
+                node.addPosting(renumbered);
+            }
+            liveIds.add(expenseIds.get(document));
+            liveWords.add(documentWords.get(document));
+        }
+        expenseIds.clear();
+        expenseIds.addAll(liveIds);
+        documentWords.clear();
+        documentWords.addAll(liveWords);
+        live.clear();
+        live.set(0, liveIds.size());
+        documents.clear();
+        for (int document = 0; document < liveIds.size(); document++) {
+            documents.put(liveIds.get(document), document);
+        }
+    }
+
+    private static void clearPostings(Node node) {
+        node.postings = null;
+        node.postingCount = 0;
+        node.liveCount = 0;
+        for (Node child : node.children) {
+            clearPostings(child);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.gabrielguo.personalfinance.security;
+
+import com.gabrielguo.personalfinance.exception.ServiceOverloadedException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashes and verifies passwords on a dedicated pool sized to the available cores.
+ * BCrypt is pure CPU work, so running it on request threads lets a burst of signups pin every Tomcat thread;
+ * here the work queue is bounded and requests beyond it are rejected straight away with a 503.
+ * The BCrypt cost is calibrated at startup so one hash takes about the configured target time on this hardware.
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    private final ThreadPoolExecutor executor;
+    private final long targetMillis;
+    private final int minStrength;
+    private final int maxStrength;
+
+    private volatile BCryptPasswordEncoder encoder;
+    private volatile int strength;
+    private volatile long hashMillis;
+
+    public PasswordHashingService(@Value("${password-hashing.threads:0}") int threads,
+                                  @Value("${password-hashing.queue-capacity:64}") int queueCapacity,
+                                  @Value("${password-hashing.target-millis:250}") long targetMillis,
+                                  @Value("${password-hashing.min-strength:10}") int minStrength,
+                                  @Value("${password-hashing.max-strength:14}") int maxStrength) {
+        // Hashing never blocks, so there is nothing to gain from more threads than cores
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.targetMillis = targetMillis;
+        this.minStrength = minStrength;
+        this.maxStrength = maxStrength;
+        this.encoder = new BCryptPasswordEncoder(minStrength);
+        this.strength = minStrength;
+    }
+
+    /**
+     * Picks the highest BCrypt strength whose hash time stays within the target.
+     * Each step of strength doubles the work, so a single timing at the minimum strength is enough to extrapolate.
+     */
+    @PostConstruct
+    public void calibrate() {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(minStrength);
+        probe.encode("calibration"); // Warm up the JIT before timing
+        long start = System.nanoTime();
+        probe.encode("calibration");
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        int calibrated = minStrength;
+        long estimate = elapsedMillis;
+        while (calibrated < maxStrength && estimate * 2 <= targetMillis) {
+            calibrated++;
+            estimate *= 2;
+        }
+        this.encoder = new BCryptPasswordEncoder(calibrated);
+        this.strength = calibrated;
+        this.hashMillis = estimate;
+        logger.info("Calibrated BCrypt strength {} (~{} ms per hash)", calibrated, estimate);
+    }
+
+    /**
+     * Hashes a password on the hashing pool.
+     *
+     * @param rawPassword the password to hash
+     * @return the BCrypt hash
+     * @throws ServiceOverloadedException if the hashing queue is full
+     */
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * Checks a password against a hash on the hashing pool. Hashes made at an earlier strength still verify,
+     * since BCrypt stores the strength inside the hash.
+     *
+     * @param rawPassword the password to check
+     * @param encodedPassword the stored BCrypt hash
+     * @return true if the password matches the hash
+     * @throws ServiceOverloadedException if the hashing queue is full
+     */
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * @return the BCrypt strength currently used for new hashes
+     */
+    public int getStrength() {
+        return strength;
+    }
+
+    /**
+     * @return the number of hashes waiting for a worker
+     */
+    public int getQueuedTasks() {
+        return executor.getQueue().size();
+    }
+
+    <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new ServiceOverloadedException("Too many password operations in progress, please retry shortly.", retryAfterSeconds());
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private long retryAfterSeconds() {
+        // Roughly how long the workers need to drain a full queue
+        long drainMillis = hashMillis * executor.getQueue().size() / executor.getMaximumPoolSize();
+        return Math.max(1, (drainMillis + 999) / 1000);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,4 +1,84 @@
 package com.gabrielguo.personalfinance.security;
 
-public class UserDetailsServiceImpl {
+import com.gabrielguo.personalfinance.repository.UserRepository;
+import com.gabrielguo.personalfinance.util.TtlCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves users for authentication by email.
+ * Principals are cached as immutable snapshots tagged with the user's credential version. Every lookup reads the
+ * current version from an index and only uses a snapshot taken at that version, so a password changed on any
+ * instance takes effect everywhere at once, and a slow load that finishes after a change can never be served.
+ * UserServiceImpl still evicts a changed user here, which frees the entry early on the instance that changed it.
+ */
+@Service
+public class UserDetailsServiceImpl implements UserDetailsService {
+
+    private static final String DEFAULT_ROLE = "USER";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final TtlCache<String, PrincipalSnapshot> cache;
+
+    /**
+     * The fields authentication needs, copied out of the User document.
+     */
+    record PrincipalSnapshot(String userId, String email, String passwordHash, long credentialVersion) {
+    }
+
+    public UserDetailsServiceImpl(@Value("${user-details-cache.max-size:10000}") int maxSize,
+                                  @Value("${user-details-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.cache = new TtlCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Loads the user with the given email, from the cache when the cached snapshot is still current.
+     *
+     * @param email the email the user signs in with
+     * @return a new UserDetails for the user
+     * @throws UsernameNotFoundException if no user has the given email
+     */
+    @Override
+    public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        long currentVersion = userRepository.findCredentialVersionByEmail(email)
+                .map(user -> user.getCredentialVersion())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
+
+        PrincipalSnapshot snapshot = cache.get(email);
+        if (snapshot == null || snapshot.credentialVersion() != currentVersion) {
+            snapshot = userRepository.findByEmail(email)
+                    .map(user -> new PrincipalSnapshot(user.getId(), user.getEmail(), user.getPassword(), user.getCredentialVersion()))
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
+            // A snapshot older than the version just read is never cached; the next lookup would only discard it
+            if (snapshot.credentialVersion() >= currentVersion) {
+                cache.put(email, snapshot);
+            }
+        }
+
+        // A new UserDetails per call, since Spring Security erases the credentials of the one it authenticates
+        return User.withUsername(snapshot.email())
+                .password(snapshot.passwordHash())
+                .roles(DEFAULT_ROLE)
+                .build();
+    }
+
+    /**
+     * Drops the cached principal for an email, so the next authentication reads the user again.
+     *
+     * @param email the email of the changed user
+     */
+    public void evict(String email) {
+        if (email != null) {
+            cache.invalidate(email);
+        }
+    }
 }
@@ -0,0 +1,320 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.model.AccountDeletion;
+import com.gabrielguo.personalfinance.model.Budget;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.ExpenseArchive;
+import com.gabrielguo.personalfinance.model.Income;
+import com.gabrielguo.personalfinance.model.InsightType;
+import com.gabrielguo.personalfinance.model.RecurringSeries;
+import com.gabrielguo.personalfinance.model.Transaction;
+import com.gabrielguo.personalfinance.model.User;
+import com.gabrielguo.personalfinance.model.UserInsights;
+import com.gabrielguo.personalfinance.model.UserSettings;
+import com.gabrielguo.personalfinance.repository.AccountDeletionRepository;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Service that removes everything a deleted user owns.
+ * Every user-owned collection is emptied concurrently in bounded batches, and progress is persisted
+ * after each batch so that a deletion interrupted by a restart picks up where it left off.
+ * An instance claims a deletion with a lease before running it, like the email outbox, so a deletion runs on
+ * one instance at a time and is taken over once the lease of a stopped instance expires.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.embedded.enabled", havingValue = "false", matchIfMissing = true)
+public class AccountDeletionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountDeletionService.class);
+
+    // Every class whose documents belong to a user through a userId field
+    private static final List<Class<?>> USER_OWNED_CLASSES = userOwnedClasses();
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private AccountDeletionRepository accountDeletionRepository;
+
+    @Autowired
+    private UserSettingsService userSettingsService;
+
+    @Autowired
+    private SpendingAnomalyService spendingAnomalyService;
+
+    @Autowired
+    private CashflowForecastService cashflowForecastService;
+
+    @Autowired
+    private ExpenseSearchService expenseSearchService;
+
+    @Autowired
+    private BudgetService budgetService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    @Qualifier("accountDeletionExecutor")
+    private Executor accountDeletionExecutor;
+
+    @Autowired
+    @Qualifier("bulkDeleteExecutor")
+    private Executor bulkDeleteExecutor;
+
+    @Value("${account-deletion.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${account-deletion.lease-seconds:300}")
+    private long leaseSeconds = 300;
+
+    // Lease holder of each deletion running on this instance, by user ID
+    private final Map<String, String> leases = new ConcurrentHashMap<>();
+
+    /**
+     * Records that a user's data must be deleted. The record is written before the user is removed,
+     * so a crash in between still leaves a deletion to resume.
+     *
+     * @param userId the ID of the user being deleted
+     * @return the persisted deletion record
+     */
+    public AccountDeletion requestDeletion(String userId) {
+        return accountDeletionRepository.save(new AccountDeletion(userId));
+    }
+
+    /**
+     * Starts deleting the user's data in the background, unless another instance has already claimed the deletion.
+     *
+     * @param userId the ID of the user being deleted
+     * @return a future that completes once every collection has been emptied, or at once if the deletion is not
+     *         run here; it fails if the deletion executor's queue is full, and the deletion is then resumed later
+     */
+    public CompletableFuture<Void> startDeletion(String userId) {
+        AccountDeletion deletion = claim(userId, false, new Date());
+        if (deletion == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(deletion);
+    }
+
+    /**
+     * Retrieves the progress of a user's account deletion.
+     *
+     * @param userId the ID of the deleted user
+     * @return the deletion record
+     * @throws ResourceNotFoundException if no deletion was requested for the user
+     */
+    public AccountDeletion getDeletionStatus(String userId) {
+        return accountDeletionRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("No account deletion found for user with ID: " + userId));
+    }
+
+    /**
+     * Resumes deletions that were interrupted or failed before the application last stopped.
+     * Every instance runs this at startup; each deletion is only claimed by one of them.
+     * Deletes are idempotent, so documents already removed are simply not matched again.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedDeletions() {
+        resume(true);
+    }
+
+    /**
+     * Resumes deletions that were never started or whose instance stopped while running them.
+     * Failed deletions are only retried at startup.
+     */
+    @Scheduled(fixedDelayString = "${account-deletion.resume-interval-ms:60000}",
+            initialDelayString = "${account-deletion.resume-interval-ms:60000}")
+    public void resumeAbandonedDeletions() {
+        resume(false);
+    }
+
+    private void resume(boolean retryFailed) {
+        EnumSet<AccountDeletion.Status> statuses = EnumSet.of(AccountDeletion.Status.PENDING, AccountDeletion.Status.IN_PROGRESS);
+        if (retryFailed) {
+            statuses.add(AccountDeletion.Status.FAILED);
+        }
+        Date now = new Date();
+        for (AccountDeletion unfinished : accountDeletionRepository.findByStatusIn(statuses)) {
+            AccountDeletion deletion = claim(unfinished.getUserId(), retryFailed, now);
+            if (deletion != null && submit(deletion).isCompletedExceptionally()) {
+                // The queue is full; the remaining deletions wait for the next pass
+                return;
+            }
+        }
+    }
+
+    /**
+     * Claims a deletion that is pending, failed if allowed, or in progress under an expired lease.
+     * Deletions recorded before leases existed have none and are claimable too.
+     *
+     * @return the claimed deletion, or null if it is finished or another instance holds it
+     */
+    private AccountDeletion claim(String userId, boolean retryFailed, Date now) {
+        List<Criteria> claimable = new ArrayList<>(List.of(
+                Criteria.where("status").is(AccountDeletion.Status.PENDING),
+                Criteria.where("status").is(AccountDeletion.Status.IN_PROGRESS).and("leaseExpiresAt").lte(now),
+                Criteria.where("status").is(AccountDeletion.Status.IN_PROGRESS).and("leaseExpiresAt").exists(false)));
+        if (retryFailed) {
+            claimable.add(Criteria.where("status").is(AccountDeletion.Status.FAILED));
+        }
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("_id").is(userId), new Criteria().orOperator(claimable)));
+        Update update = new Update()
+                .set("status", AccountDeletion.Status.IN_PROGRESS)
+                .set("leaseExpiresAt", leaseExpiry())
+                .set("leaseHolder", UUID.randomUUID().toString())
+                .unset("lastError");
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), AccountDeletion.class);
+    }
+
+    private CompletableFuture<Void> submit(AccountDeletion deletion) {
+        try {
+            return CompletableFuture.runAsync(() -> cascade(deletion), accountDeletionExecutor);
+        } catch (RejectedExecutionException e) {
+            // Let the lease lapse so the next resume pass claims the deletion again
+            mongoTemplate.updateFirst(leased(deletion.getUserId(), deletion.getLeaseHolder()),
+                    new Update().set("leaseExpiresAt", new Date()), AccountDeletion.class);
+            logger.warn("Account deletion of user {} deferred, the deletion queue is full", deletion.getUserId());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void cascade(AccountDeletion deletion) {
+        String userId = deletion.getUserId();
+        leases.put(userId, deletion.getLeaseHolder());
+        try {
+            deleteDocuments(userId);
+            // The settings were removed underneath the settings cache
+            userSettingsService.evict(userId);
+            spendingAnomalyService.forget(userId);
+            cashflowForecastService.forget(userId);
+            expenseSearchService.forget(userId);
+            budgetService.forget(userId);
+            ledgerService.forget(userId);
+
+            updateDeletion(userId, new Update().set("status", AccountDeletion.Status.COMPLETED).set("completedAt", new Date())
+                    .unset("leaseExpiresAt").unset("leaseHolder"));
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.error("Account deletion of user {} failed", userId, cause);
+            updateDeletion(userId, new Update().set("status", AccountDeletion.Status.FAILED).set("lastError", cause.getMessage())
+                    .unset("leaseExpiresAt").unset("leaseHolder"));
+        } finally {
+            leases.remove(userId);
+        }
+    }
+
+    /**
+     * Deletes the user's document and everything the user owns from storage.
+     *
+     * @param userId the ID of the deleted user
+     */
+    protected void deleteDocuments(String userId) {
+        // The user document itself, in case the process stopped before it was removed
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(userId)), User.class);
+
+        List<CompletableFuture<Void>> collections = new ArrayList<>();
+        for (String collectionName : userOwnedCollections()) {
+            collections.add(CompletableFuture.runAsync(() -> deleteInBatches(userId, collectionName), bulkDeleteExecutor));
+        }
+        CompletableFuture.allOf(collections.toArray(new CompletableFuture[0])).join();
+    }
+
+    /**
+     * Adds to the number of documents deleted from a collection, shown in the deletion's progress,
+     * and renews the lease on the deletion.
+     *
+     * @param userId the ID of the deleted user
+     * @param collectionName the collection
+     * @param deleted the number of documents just deleted
+     * @throws IllegalStateException if the lease expired and another instance took the deletion over
+     */
+    protected void countDeleted(String userId, String collectionName, long deleted) {
+        if (!updateDeletion(userId, new Update().inc("deletedCounts." + collectionName, deleted).set("leaseExpiresAt", leaseExpiry()))) {
+            throw new IllegalStateException("The lease on the account deletion of user " + userId + " was lost");
+        }
+    }
+
+    /**
+     * Deletes a user's documents from one collection a batch at a time, so a very large account never
+     * holds a single long-running delete and its progress is visible while it runs.
+     */
+    private void deleteInBatches(String userId, String collectionName) {
+        while (true) {
+            Query batchQuery = new Query(Criteria.where("userId").is(userId)).limit(batchSize);
+            batchQuery.fields().include("_id");
+            List<Object> ids = new ArrayList<>();
+            for (Document document : mongoTemplate.find(batchQuery, Document.class, collectionName)) {
+                ids.add(document.get("_id"));
+            }
+            if (ids.isEmpty()) {
+                return;
+            }
+
+            long deleted = mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), collectionName).getDeletedCount();
+            countDeleted(userId, collectionName, deleted);
+        }
+    }
+
+    // Updates the deletion as long as this instance still holds its lease
+    private boolean updateDeletion(String userId, Update update) {
+        return mongoTemplate.updateFirst(leased(userId, leases.get(userId)), update, AccountDeletion.class).getModifiedCount() > 0;
+    }
+
+    private Query leased(String userId, String leaseHolder) {
+        return new Query(Criteria.where("_id").is(userId).and("leaseHolder").is(leaseHolder));
+    }
+
+    private Date leaseExpiry() {
+        return new Date(System.currentTimeMillis() + leaseSeconds * 1000);
+    }
+
+    private Set<String> userOwnedCollections() {
+        // Several models share a collection, so each collection is only purged once
+        Set<String> collectionNames = new LinkedHashSet<>();
+        for (Class<?> documentClass : USER_OWNED_CLASSES) {
+            collectionNames.add(mongoTemplate.getCollectionName(documentClass));
+        }
+        return collectionNames;
+    }
+
+    private static List<Class<?>> userOwnedClasses() {
+        List<Class<?>> classes = new ArrayList<>(List.of(
+                Expense.class, ExpenseArchive.class, Income.class, Budget.class, Transaction.class, UserSettings.class, UserInsights.class,
+                RecurringSeries.class));
+        for (InsightType type : InsightType.values()) {
+            classes.add(type.getDocumentClass());
+        }
+        return List.copyOf(classes);
+    }
+}
@@ -1,10 +1,17 @@
 package com.gabrielguo.personalfinance.service;
 
+import com.gabrielguo.personalfinance.event.BudgetChangedEvent;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
 import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.exception.UnsupportedCurrencyException;
 import com.gabrielguo.personalfinance.model.Budget;
 import com.gabrielguo.personalfinance.repository.BudgetRepository;
 import com.gabrielguo.personalfinance.repository.UserRepository;
+import com.gabrielguo.personalfinance.util.IntervalIndex;
+import com.gabrielguo.personalfinance.util.TtlCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Service;
 
@@ -13,6 +20,8 @@ import java.time.ZoneId;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class BudgetService {
@@ -23,6 +32,25 @@ public class BudgetService {
     @Autowired
     private UserRepository userRepository;
 
+    // Notifies derived data, such as budget utilization and the ledger, of changed budget periods
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Rejects currencies without exchange rates, which the insights could not convert
+    @Autowired
+    private FxRateService fxRateService;
+
+    // Per-user interval index over budget periods, dropped whenever one of the user's budgets changes
+    private final TtlCache<String, IntervalIndex<Budget>> activeBudgetIndexes;
+
+    // Incremented whenever any user's budgets change, so an index built from budgets read before the change is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public BudgetService(@Value("${budget-index-cache.max-size:10000}") int maxSize,
+                         @Value("${budget-index-cache.ttl-seconds:600}") long ttlSeconds) {
+        this.activeBudgetIndexes = new TtlCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+    }
+
     /**
      * Creates a new budget and associates it with a user.
      * Sets the end date to null initially.
@@ -31,14 +59,20 @@ public class BudgetService {
      * @param userId the ID of the user who is creating the budget
      * @return the created Budget
      * @throws ResourceNotFoundException if the user does not exist
+     * @throws UnsupportedCurrencyException if there are no exchange rates for the budget's currency
      */
     public Budget createBudget(Budget budget, String userId) {
         if (!userRepository.existsById(userId)) {
             throw new ResourceNotFoundException("User not found with ID: " + userId);
         }
+        fxRateService.requireSupported(budget.getCurrency());
         budget.setUserId(userId);
         budget.setEndDate(null); // Set end date to null when creating a new budget
-        return budgetRepository.save(budget);
+        Budget savedBudget = budgetRepository.save(budget);
+        eventPublisher.publishEvent(new BudgetChangedEvent(userId, savedBudget.getId()));
+        eventPublisher.publishEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, budget));
+        invalidate(userId);
+        return savedBudget;
     }
 
     /**
@@ -51,6 +85,31 @@ public class BudgetService {
         return budgetRepository.findByUserId(userId);
     }
 
+    /**
+     * Retrieves the budgets of a user that were active on a given date, i.e. started on or before it and
+     * not yet closed before it. Budgets without an end date are still open.
+     *
+     * @param userId the ID of the user whose budgets are to be retrieved
+     * @param asOf the date to look up
+     * @return the budgets active on the date, ordered by start date
+     */
+    public List<Budget> getActiveBudgets(String userId, Date asOf) {
+        IntervalIndex<Budget> index = activeBudgetIndexes.get(userId);
+        if (index == null) {
+            long readGeneration = generation.get();
+            index = new IntervalIndex<>(budgetRepository.findBudgetsByUserId(userId),
+                    budget -> budget.getStartDate().getTime(),
+                    budget -> budget.getEndDate() != null ? budget.getEndDate().getTime() : Long.MAX_VALUE);
+            // Checked and cached under the cache's lock, which invalidate holds while it moves the generation on
+            synchronized (activeBudgetIndexes) {
+                if (generation.get() == readGeneration) {
+                    activeBudgetIndexes.put(userId, index);
+                }
+            }
+        }
+        return index.stab(asOf.getTime());
+    }
+
     /**
      * Retrieves a specific budget by its ID and checks if it belongs to the given user.
      *
@@ -105,7 +164,11 @@ public class BudgetService {
         existingBudget.setDescription(updatedBudget.getDescription());
 
         // Save and return the updated budget
-        return budgetRepository.save(existingBudget);
+        Budget savedBudget = budgetRepository.save(existingBudget);
+        eventPublisher.publishEvent(new BudgetChangedEvent(userId, budgetId));
+        eventPublisher.publishEvent(LedgerEvent.of(LedgerEvent.Action.UPDATED, existingBudget));
+        invalidate(userId);
+        return savedBudget;
     }
 
     /**
@@ -134,7 +197,26 @@ public class BudgetService {
         // Set the end date to the current date
         existingBudget.setEndDate(Date.from(LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant()));
 
-        // Save the updated budget with the new end date
+        // Save the updated budget with the new end date; the ledger sees an update, since the budget is kept
         budgetRepository.save(existingBudget);
+        eventPublisher.publishEvent(new BudgetChangedEvent(userId, budgetId));
+        eventPublisher.publishEvent(LedgerEvent.of(LedgerEvent.Action.UPDATED, existingBudget));
+        invalidate(userId);
+    }
+
+    /**
+     * Drops a user's cached budget index, for when the user's budgets were removed without going through this service.
+     *
+     * @param userId the ID of the user
+     */
+    public void forget(String userId) {
+        invalidate(userId);
+    }
+
+    private void invalidate(String userId) {
+        synchronized (activeBudgetIndexes) {
+            generation.incrementAndGet();
+            activeBudgetIndexes.invalidate(userId);
+        }
     }
 }
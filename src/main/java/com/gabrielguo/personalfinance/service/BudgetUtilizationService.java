@@ -0,0 +1,292 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.event.BudgetChangedEvent;
+import com.gabrielguo.personalfinance.event.ExpenseChangedEvent;
+import com.gabrielguo.personalfinance.model.Budget;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.summary.BudgetUtilization;
+import com.gabrielguo.personalfinance.repository.summary.BudgetUtilizationRepository;
+import com.gabrielguo.personalfinance.util.ReadRouting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Computes spent, remaining and overrun amounts for every budget period.
+ * Budgets and expenses share a collection, so budgets are told apart by their startDate and expenses by their date.
+ * Results are kept in the budget_utilization collection: a change to an expense only recomputes the budget periods
+ * containing its date, and a change to a budget only recomputes that budget. The reads behind every stored result are
+ * routed as writes, so they are served by the primary whatever route the caller is on.
+ * A result records when its inputs were read, and only replaces a stored result read no later than that, so a slow
+ * refresh finishing after a newer one does not overwrite it.
+ * With embedded storage, EmbeddedBudgetUtilizationService computes the results on each read instead.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.embedded.enabled", havingValue = "false", matchIfMissing = true)
+public class BudgetUtilizationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BudgetUtilizationService.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private BudgetUtilizationRepository budgetUtilizationRepository;
+
+    @Autowired
+    private ExpenseArchiveService expenseArchiveService;
+
+    @Autowired
+    private ReadRouting readRouting;
+
+    /**
+     * Retrieves the utilization of every budget period of a user, rebuilding it first when
+     * the stored results do not cover the user's budgets (e.g. on first use or after a purge).
+     *
+     * @param userId the ID of the user
+     * @return the utilization of each budget period, ordered by period start
+     */
+    public List<BudgetUtilization> getUtilization(String userId) {
+        boolean incomplete = readRouting.route(ReadRouting.Route.WRITE,
+                () -> budgetUtilizationRepository.countByUserId(userId) != mongoTemplate.count(budgetsOf(userId), Budget.class));
+        if (incomplete) {
+            rebuild(userId);
+        }
+        return budgetUtilizationRepository.findByUserIdOrderByPeriodStartAsc(userId);
+    }
+
+    /**
+     * Recomputes every budget period of a user with a single sweep over all their expenses,
+     * replacing whatever was stored before.
+     *
+     * @param userId the ID of the user
+     * @return the recomputed utilization of each budget period
+     */
+    public List<BudgetUtilization> rebuild(String userId) {
+        return readRouting.route(ReadRouting.Route.WRITE, () -> {
+            Date readAt = new Date();
+            List<Budget> budgets = mongoTemplate.find(budgetsOf(userId), Budget.class);
+            List<Expense> expenses = new ArrayList<>(expenseArchiveService.findExpenses(userId));
+            expenses.addAll(mongoTemplate.find(expensesOf(userId), Expense.class));
+            List<BudgetUtilization> utilizations = sweep(userId, budgets, expenses, readAt);
+
+            // Results of budgets that no longer exist, unless they were refreshed since the budgets were read
+            List<String> ids = new ArrayList<>();
+            for (BudgetUtilization utilization : utilizations) {
+                ids.add(utilization.getId());
+            }
+            mongoTemplate.remove(new Query(Criteria.where("userId").is(userId).and("_id").nin(ids).and("computedAt").lte(readAt)),
+                    BudgetUtilization.class);
+            store(utilizations);
+            return utilizations;
+        });
+    }
+
+    /**
+     * Recomputes the budget periods that contain any of the changed expense dates.
+     *
+     * @param event the expense change
+     */
+    @EventListener
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        if (event.dates().isEmpty()) {
+            return;
+        }
+        List<Criteria> containing = new ArrayList<>();
+        for (Date date : event.dates()) {
+            containing.add(new Criteria().andOperator(
+                    Criteria.where("startDate").lte(date),
+                    new Criteria().orOperator(Criteria.where("endDate").gte(date), Criteria.where("endDate").is(null))));
+        }
+        Query query = new Query(Criteria.where("userId").is(event.userId()).and("startDate").exists(true).orOperator(containing));
+        try {
+            Date readAt = new Date();
+            refresh(event.userId(), readRouting.route(ReadRouting.Route.WRITE, () -> mongoTemplate.find(query, Budget.class)), readAt);
+        } catch (RuntimeException e) {
+            reportRefreshFailure(event.userId(), e);
+        }
+    }
+
+    /**
+     * Recomputes the period of a created, updated or closed budget.
+     *
+     * @param event the budget change
+     */
+    @EventListener
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        try {
+            Date readAt = new Date();
+            Budget budget = readRouting.route(ReadRouting.Route.WRITE, () -> mongoTemplate.findById(event.budgetId(), Budget.class));
+            if (budget == null || budget.getStartDate() == null) {
+                budgetUtilizationRepository.deleteById(event.budgetId());
+                return;
+            }
+            refresh(event.userId(), List.of(budget), readAt);
+        } catch (RuntimeException e) {
+            reportRefreshFailure(event.userId(), e);
+        }
+    }
+
+    // Sweeps only the expenses within the span of the given budgets, read no earlier than readAt, and stores their new results
+    private void refresh(String userId, List<Budget> budgets, Date readAt) {
+        if (budgets.isEmpty()) {
+            return;
+        }
+        Date from = null;
+        Date to = null;
+        boolean open = false;
+        for (Budget budget : budgets) {
+            if (from == null || budget.getStartDate().before(from)) {
+                from = budget.getStartDate();
+            }
+            if (budget.getEndDate() == null) {
+                open = true;
+            } else if (to == null || budget.getEndDate().after(to)) {
+                to = budget.getEndDate();
+            }
+        }
+        Criteria dateRange = open ? Criteria.where("date").gte(from) : Criteria.where("date").gte(from).lte(to);
+        Query expenseQuery = new Query(Criteria.where("userId").is(userId)).addCriteria(dateRange);
+        Date start = from;
+        Date end = open ? null : to;
+        List<Expense> expenses = readRouting.route(ReadRouting.Route.WRITE, () -> {
+            List<Expense> found = new ArrayList<>(mongoTemplate.find(expenseQuery, Expense.class));
+            found.addAll(expenseArchiveService.findExpensesBetween(userId, start, end));
+            return found;
+        });
+
+        store(sweep(userId, budgets, expenses, readAt));
+    }
+
+    /**
+     * Stores each result unless the stored one was computed from a later read.
+     * A result that is not replaced is matched by neither the filter nor, being a duplicate _id, the upsert.
+     */
+    private void store(List<BudgetUtilization> utilizations) {
+        for (BudgetUtilization utilization : utilizations) {
+            Query notNewer = new Query(Criteria.where("_id").is(utilization.getId()).and("computedAt").lte(utilization.getComputedAt()));
+            try {
+                mongoTemplate.findAndReplace(notNewer, utilization, FindAndReplaceOptions.options().upsert());
+            } catch (DuplicateKeyException e) {
+                logger.debug("Kept the newer utilization of budget {}", utilization.getId());
+            }
+        }
+    }
+
+    private static void reportRefreshFailure(String userId, RuntimeException e) {
+        // The change itself has been saved; the stale periods are corrected by the next change or rebuild
+        logger.error("Failed to refresh budget utilization for user {}", userId, e);
+    }
+
+    private static Query budgetsOf(String userId) {
+        return new Query(Criteria.where("userId").is(userId).and("startDate").exists(true));
+    }
+
+    private static Query expensesOf(String userId) {
+        return new Query(Criteria.where("userId").is(userId).and("date").exists(true)).with(Sort.by("date"));
+    }
+
+    /**
+     * Attributes expenses to budget periods with one sweep over time.
+     * Budget starts, expenses and budget ends are each sorted once and then merged in time order while keeping a
+     * running total of spending; a budget's spending is the running total at its end minus the total at its start.
+     * This costs O(n log n + m log m) for n expenses and m budgets, however much the periods overlap.
+     * Both ends of a period are inclusive, so on a tie starts are handled before expenses and expenses before ends.
+     *
+     * @param userId   the owner of the budgets
+     * @param budgets  the budgets to evaluate; budgets without a start date are ignored
+     * @param expenses the expenses that may fall within the budgets; expenses without a date or amount are ignored
+     * @param now      the time the inputs were read, recorded on the results
+     * @return the utilization of each budget period
+     */
+    static List<BudgetUtilization> sweep(String userId, List<Budget> budgets, List<Expense> expenses, Date now) {
+        List<Budget> byStart = new ArrayList<>();
+        for (Budget budget : budgets) {
+            if (budget.getStartDate() != null) {
+                byStart.add(budget);
+            }
+        }
+        byStart.sort(Comparator.comparing(Budget::getStartDate));
+
+        // Closed budgets only; open budgets run until the end of the sweep
+        List<Integer> byEnd = new ArrayList<>();
+        for (int i = 0; i < byStart.size(); i++) {
+            if (byStart.get(i).getEndDate() != null) {
+                byEnd.add(i);
+            }
+        }
+        byEnd.sort(Comparator.comparingLong(i -> endMillis(byStart.get(i))));
+
+        List<Expense> byDate = new ArrayList<>();
+        for (Expense expense : expenses) {
+            if (expense.getDate() != null && expense.getAmount() != null) {
+                byDate.add(expense);
+            }
+        }
+        byDate.sort(Comparator.comparing(Expense::getDate));
+
+        BigDecimal[] totalAtStart = new BigDecimal[byStart.size()];
+        BigDecimal[] spent = new BigDecimal[byStart.size()];
+        BigDecimal running = BigDecimal.ZERO;
+        int s = 0;
+        int x = 0;
+        int e = 0;
+        while (s < byStart.size() || x < byDate.size() || e < byEnd.size()) {
+            long startAt = s < byStart.size() ? byStart.get(s).getStartDate().getTime() : Long.MAX_VALUE;
+            long expenseAt = x < byDate.size() ? byDate.get(x).getDate().getTime() : Long.MAX_VALUE;
+            long endAt = e < byEnd.size() ? endMillis(byStart.get(byEnd.get(e))) : Long.MAX_VALUE;
+
+            if (s < byStart.size() && startAt <= expenseAt && startAt <= endAt) {
+                totalAtStart[s++] = running;
+            } else if (x < byDate.size() && expenseAt <= endAt) {
+                running = running.add(byDate.get(x++).getAmount());
+            } else {
+                int budget = byEnd.get(e++);
+                spent[budget] = running.subtract(totalAtStart[budget]);
+            }
+        }
+
+        List<BudgetUtilization> utilizations = new ArrayList<>(byStart.size());
+        for (int i = 0; i < byStart.size(); i++) {
+            Budget budget = byStart.get(i);
+            BigDecimal budgetSpent = spent[i] != null ? spent[i] : running.subtract(totalAtStart[i]);
+            BigDecimal budgeted = budget.getAmount() != null ? budget.getAmount() : BigDecimal.ZERO;
+            BigDecimal difference = budgeted.subtract(budgetSpent);
+
+            BudgetUtilization utilization = new BudgetUtilization();
+            utilization.setId(budget.getId());
+            utilization.setUserId(userId);
+            utilization.setDescription(budget.getDescription());
+            utilization.setPeriodStart(budget.getStartDate());
+            utilization.setPeriodEnd(budget.getEndDate());
+            utilization.setBudgeted(budgeted);
+            utilization.setSpent(budgetSpent);
+            utilization.setRemaining(difference.max(BigDecimal.ZERO));
+            utilization.setOverrun(difference.negate().max(BigDecimal.ZERO));
+            utilization.setStatus(difference.signum() >= 0 ? "within_budget" : "over_budget");
+            utilization.setComputedAt(now);
+            utilizations.add(utilization);
+        }
+        return utilizations;
+    }
+
+    // An end before the start is treated as a period of zero length
+    private static long endMillis(Budget budget) {
+        return Math.max(budget.getEndDate().getTime(), budget.getStartDate().getTime());
+    }
+}
@@ -0,0 +1,337 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.event.LedgerBatchEvent;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.forecast.HoltWinters;
+import com.gabrielguo.personalfinance.fx.CurrencyTotals;
+import com.gabrielguo.personalfinance.model.CashflowModel;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.Income;
+import com.gabrielguo.personalfinance.model.trends.CashflowForecast;
+import com.gabrielguo.personalfinance.repository.CashflowModelRepository;
+import com.gabrielguo.personalfinance.repository.ExpenseRepository;
+import com.gabrielguo.personalfinance.repository.IncomeRepository;
+import com.gabrielguo.personalfinance.util.TtlCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Forecasts each user's monthly income and expenses with Holt-Winters smoothing.
+ * A user's model is updated as incomes and expenses are written and saved with every update, or once per batch for
+ * imports, so a forecast is computed from the stored state alone. Models are versioned: an update that lost the race against another instance
+ * reads the model again and is applied to the newer version. The model of a user who has none yet is built once from their history.
+ * Months are taken in the server's time zone, like the insight trends.
+ */
+@Service
+public class CashflowForecastService {
+
+    @Autowired
+    private CashflowModelRepository cashflowModelRepository;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private IncomeRepository incomeRepository;
+
+    @Autowired
+    private ExpenseArchiveService expenseArchiveService;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    // Attempts at saving an update before giving up on it
+    private static final int SAVE_ATTEMPTS = 3;
+
+    // Recently used models, so forecasts and updates do not read them back from the database. A model is mutable,
+    // so it is only read or changed while holding its lock. Entries expire, which bounds how long a forecast may
+    // miss updates made by other instances.
+    private final TtlCache<String, CashflowModel> models;
+
+    private final boolean enabled;
+    private final double alpha;
+    private final double beta;
+    private final double gamma;
+    private final int horizon;
+
+    public CashflowForecastService(@Value("${forecast.enabled:true}") boolean enabled,
+                                   @Value("${forecast.alpha:0.3}") double alpha,
+                                   @Value("${forecast.beta:0.1}") double beta,
+                                   @Value("${forecast.gamma:0.2}") double gamma,
+                                   @Value("${forecast.horizon-months:12}") int horizon,
+                                   @Value("${forecast.model-cache.max-size:10000}") int cacheSize,
+                                   @Value("${forecast.model-cache.ttl-seconds:300}") long cacheTtlSeconds) {
+        this.models = new TtlCache<>(cacheSize, cacheTtlSeconds, TimeUnit.SECONDS);
+        this.enabled = enabled;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.gamma = gamma;
+        this.horizon = horizon;
+    }
+
+    /**
+     * Updates the user's model with a changed income or expense. The change is already stored, so a failure to
+     * update the model is reported rather than passed on to the request that made it.
+     *
+     * @param event the change
+     */
+    @EventListener
+    public void onLedgerEvent(LedgerEvent event) {
+        if (!enabled || !isCashflow(event)) {
+            return;
+        }
+        try {
+            apply(event, YearMonth.now());
+        } catch (RuntimeException e) {
+            System.err.println("Failed to update the cashflow forecast of user " + event.userId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Updates the user's model with a batch of changed incomes and expenses, saving it once for the whole batch.
+     *
+     * @param batch the changes
+     */
+    @EventListener
+    public void onLedgerBatch(LedgerBatchEvent batch) {
+        if (!enabled) {
+            return;
+        }
+        List<LedgerEvent> changes = batch.events().stream().filter(CashflowForecastService::isCashflow).toList();
+        if (changes.isEmpty()) {
+            return;
+        }
+        try {
+            apply(batch.userId(), changes, YearMonth.now());
+        } catch (RuntimeException e) {
+            System.err.println("Failed to update the cashflow forecast of user " + batch.userId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forecasts a user's income and expenses for the current month and the following ones, forecast.horizon-months
+     * in all, in the user's reporting currency.
+     *
+     * @param userId the ID of the user
+     * @return the forecast of each month, in order
+     * @throws ResourceNotFoundException if forecasting is not enabled
+     */
+    public List<CashflowForecast> getForecast(String userId) {
+        return getForecast(userId, YearMonth.now());
+    }
+
+    /**
+     * Drops a user's model.
+     *
+     * @param userId the ID of the user
+     */
+    public void forget(String userId) {
+        models.invalidate(userId);
+        cashflowModelRepository.deleteById(userId);
+    }
+
+    void apply(LedgerEvent event, YearMonth now) {
+        apply(event.userId(), List.of(event), now);
+    }
+
+    // Applies changes of one user to their model and saves it once
+    void apply(String userId, List<LedgerEvent> events, YearMonth now) {
+        for (int attempt = 1; ; attempt++) {
+            CashflowModel model = model(userId, now);
+            try {
+                synchronized (model) {
+                    roll(model, now);
+                    for (LedgerEvent event : events) {
+                        Map<String, BigDecimal> open = event.entityType() == LedgerEvent.EntityType.EXPENSE ? model.getOpenExpenses() : model.getOpenIncome();
+                        open.remove(event.entityId());
+                        // Changes dated in earlier months are left out; those months are already part of the smoothed series
+                        if (event.action() != LedgerEvent.Action.DELETED && event.amount() != null && event.date() != null
+                                && month(event.date()).toString().equals(model.getOpenMonth())) {
+                            open.put(event.entityId(), newTotals().add(event.currency(), event.date(), event.amount()).total());
+                        }
+                    }
+                    cashflowModelRepository.save(model);
+                }
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                // Another instance saved the model since it was read; the changes are applied again to what it saved,
+                // which is safe since a change replaces the entry's previous amount
+                models.invalidate(userId);
+                if (attempt == SAVE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    List<CashflowForecast> getForecast(String userId, YearMonth now) {
+        if (!enabled) {
+            throw new ResourceNotFoundException("Cashflow forecasting is not enabled");
+        }
+        CashflowModel model = model(userId, now);
+        HoltWinters income;
+        HoltWinters expenses;
+        YearMonth month;
+        BigDecimal openIncome;
+        BigDecimal openExpenses;
+        synchronized (model) {
+            income = model.getIncome().copy();
+            expenses = model.getExpenses().copy();
+            month = YearMonth.parse(model.getOpenMonth());
+            openIncome = sum(model.getOpenIncome());
+            openExpenses = sum(model.getOpenExpenses());
+        }
+        // Months that ended since the last change are observed on the copies, leaving the stored model as it is
+        for (; month.isBefore(now); month = month.plusMonths(1)) {
+            observe(income, expenses, month, openIncome, openExpenses);
+            openIncome = BigDecimal.ZERO;
+            openExpenses = BigDecimal.ZERO;
+        }
+
+        String reportingCurrency = fxRateService.getReportingCurrency(userId);
+        List<CashflowForecast> forecasts = new ArrayList<>(horizon);
+        for (int step = 1; step <= horizon; step++) {
+            YearMonth target = now.plusMonths(step - 1);
+            int season = target.getMonthValue() - 1;
+            BigDecimal expectedIncome = toReporting(income.forecast(step, season), reportingCurrency);
+            BigDecimal expectedExpenses = toReporting(expenses.forecast(step, season), reportingCurrency);
+            forecasts.add(new CashflowForecast(userId, target.toString(), reportingCurrency, expectedIncome, expectedExpenses,
+                    expectedIncome.subtract(expectedExpenses)));
+        }
+        return forecasts;
+    }
+
+    // Closes every month before now, observing the open month's totals and nothing for any month without changes
+    private void roll(CashflowModel model, YearMonth now) {
+        YearMonth month = YearMonth.parse(model.getOpenMonth());
+        if (!month.isBefore(now)) {
+            return;
+        }
+        observe(model.getIncome(), model.getExpenses(), month, sum(model.getOpenIncome()), sum(model.getOpenExpenses()));
+        for (month = month.plusMonths(1); month.isBefore(now); month = month.plusMonths(1)) {
+            observe(model.getIncome(), model.getExpenses(), month, BigDecimal.ZERO, BigDecimal.ZERO);
+        }
+        model.getOpenIncome().clear();
+        model.getOpenExpenses().clear();
+        model.setOpenMonth(now.toString());
+    }
+
+    private void observe(HoltWinters income, HoltWinters expenses, YearMonth month, BigDecimal incomeTotal, BigDecimal expenseTotal) {
+        int season = month.getMonthValue() - 1;
+        income.observe(incomeTotal.doubleValue(), season, alpha, beta, gamma);
+        expenses.observe(expenseTotal.doubleValue(), season, alpha, beta, gamma);
+    }
+
+    private CashflowModel model(String userId, YearMonth now) {
+        CashflowModel model = models.get(userId);
+        if (model != null) {
+            return model;
+        }
+        CashflowModel loaded;
+        try {
+            loaded = cashflowModelRepository.findById(userId).orElseGet(() -> build(userId, now));
+        } catch (DuplicateKeyException e) {
+            // Another instance built the model first
+            loaded = cashflowModelRepository.findById(userId).orElseThrow(() -> e);
+        }
+        // Two threads loading at once may cache different copies; the versions keep either from losing the other's saves
+        models.put(userId, loaded);
+        return loaded;
+    }
+
+    // Builds a model from the user's history, observing every month from the first one with an income or expense
+    private CashflowModel build(String userId, YearMonth now) {
+        CashflowModel model = new CashflowModel(userId, now.toString());
+        TreeMap<YearMonth, CurrencyTotals> monthlyIncome = new TreeMap<>();
+        TreeMap<YearMonth, CurrencyTotals> monthlyExpenses = new TreeMap<>();
+        Date end = Date.from(now.plusMonths(1).atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+
+        try (Stream<Expense> expenses = expenseRepository.streamByUserId(userId)) {
+            expenses.forEach(expense -> {
+                if (expense.getDate() != null && expense.getAmount() != null && expense.getDate().before(end)) {
+                    monthlyExpenses.computeIfAbsent(month(expense.getDate()), month -> newTotals())
+                            .add(expense.getCurrency(), expense.getDate(), expense.getAmount());
+                    if (month(expense.getDate()).equals(now)) {
+                        model.getOpenExpenses().put(expense.getId(),
+                                newTotals().add(expense.getCurrency(), expense.getDate(), expense.getAmount()).total());
+                    }
+                }
+            });
+        }
+        expenseArchiveService.addMonthlyTotals(userId, new Date(0), end, month -> monthlyExpenses.computeIfAbsent(month, key -> newTotals()));
+        try (Stream<Income> incomes = incomeRepository.streamByUserIdAndDateBetween(userId, new Date(0), end)) {
+            incomes.forEach(income -> {
+                if (income.getAmount() != null) {
+                    monthlyIncome.computeIfAbsent(month(income.getDate()), month -> newTotals())
+                            .add(income.getCurrency(), income.getDate(), income.getAmount());
+                    if (month(income.getDate()).equals(now)) {
+                        model.getOpenIncome().put(income.getId(),
+                                newTotals().add(income.getCurrency(), income.getDate(), income.getAmount()).total());
+                    }
+                }
+            });
+        }
+
+        YearMonth first = now;
+        if (!monthlyIncome.isEmpty() && monthlyIncome.firstKey().isBefore(first)) {
+            first = monthlyIncome.firstKey();
+        }
+        if (!monthlyExpenses.isEmpty() && monthlyExpenses.firstKey().isBefore(first)) {
+            first = monthlyExpenses.firstKey();
+        }
+        for (YearMonth month = first; month.isBefore(now); month = month.plusMonths(1)) {
+            CurrencyTotals income = monthlyIncome.get(month);
+            CurrencyTotals expenses = monthlyExpenses.get(month);
+            observe(model.getIncome(), model.getExpenses(), month,
+                    income != null ? fxRateService.total(userId, income) : BigDecimal.ZERO,
+                    expenses != null ? fxRateService.total(userId, expenses) : BigDecimal.ZERO);
+        }
+        cashflowModelRepository.save(model);
+        return model;
+    }
+
+    private CurrencyTotals newTotals() {
+        return fxRateService.newTotals(fxRateService.getDefaultCurrency());
+    }
+
+    private BigDecimal toReporting(double amount, String reportingCurrency) {
+        BigDecimal value = BigDecimal.valueOf(Math.max(amount, 0)).setScale(2, RoundingMode.HALF_EVEN);
+        if (reportingCurrency.equals(fxRateService.getDefaultCurrency())) {
+            return value;
+        }
+        return fxRateService.newTotals(reportingCurrency).add(null, value).total().setScale(2, RoundingMode.HALF_EVEN);
+    }
+
+    private static boolean isCashflow(LedgerEvent event) {
+        return event.entityType() == LedgerEvent.EntityType.EXPENSE || event.entityType() == LedgerEvent.EntityType.INCOME;
+    }
+
+    private static BigDecimal sum(Map<String, BigDecimal> amounts) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal amount : amounts.values()) {
+            total = total.add(amount);
+        }
+        return total;
+    }
+
+    private static YearMonth month(Date date) {
+        return YearMonth.from(date.toInstant().atZone(ZoneId.systemDefault()));
+    }
+}
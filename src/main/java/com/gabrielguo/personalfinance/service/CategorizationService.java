@@ -0,0 +1,258 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.categorization.CategoryMatcher;
+import com.gabrielguo.personalfinance.event.LedgerBatchEvent;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.Transaction;
+import com.mongodb.bulk.BulkWriteResult;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Assigns categories to expenses and transactions from their descriptions, using the merchant and keyword rules
+ * in categorization.rules-path. Expenses and transactions are categorized as they are written; a category the user
+ * chose is kept, while one assigned by the rules is reassigned whenever the description changes or the rules are
+ * applied again by the re-categorization job.
+ */
+@Service
+public class CategorizationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CategorizationService.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // Keeps the ledger, search indexes and spending statistics in line with reassigned categories
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final Path rulesFile;
+    private final int batchSize;
+    private volatile CategoryMatcher matcher = CategoryMatcher.compile(List.of());
+
+    public CategorizationService(@Value("${categorization.rules-path:data/category-rules.csv}") String rulesFile,
+                                 @Value("${categorization.batch-size:1000}") int batchSize) {
+        this.rulesFile = Path.of(rulesFile);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Loads the rules, replacing the ones in use. Without a rules file nothing is categorized.
+     */
+    @PostConstruct
+    public void load() throws IOException {
+        if (!Files.isRegularFile(rulesFile)) {
+            logger.info("No category rules found in {}, descriptions will not be categorized", rulesFile);
+            return;
+        }
+        CategoryMatcher loaded = CategoryMatcher.load(rulesFile);
+        matcher = loaded;
+        logger.info("Loaded {} category rules into {} states", loaded.size(), loaded.getStateCount());
+    }
+
+    /**
+     * @param description the description of an expense or transaction
+     * @return the category the rules assign to it, or null if no rule matches
+     */
+    public String categorize(String description) {
+        return matcher.match(description);
+    }
+
+    /**
+     * Assigns a category to an expense without one, or reassigns the category the rules gave it.
+     *
+     * @param expense the expense, changed in place
+     * @return whether its category changed
+     */
+    public boolean categorize(Expense expense) {
+        if (isChosen(expense.getCategory(), expense.isAutoCategorized())) {
+            return false;
+        }
+        String category = categorize(expense.getDescription());
+        if (category == null && !expense.isAutoCategorized()) {
+            return false; // Nothing to assign, and nothing assigned before
+        }
+        boolean changed = !Objects.equals(category, expense.getCategory());
+        expense.setCategory(category);
+        expense.setAutoCategorized(category != null);
+        return changed;
+    }
+
+    /**
+     * Assigns a category to a transaction without one, or reassigns the category the rules gave it.
+     *
+     * @param transaction the transaction, changed in place
+     * @return whether its category changed
+     */
+    public boolean categorize(Transaction transaction) {
+        if (isChosen(transaction.getCategory(), transaction.isAutoCategorized())) {
+            return false;
+        }
+        String category = categorize(transaction.getDescription());
+        if (category == null && !transaction.isAutoCategorized()) {
+            return false;
+        }
+        boolean changed = !Objects.equals(category, transaction.getCategory());
+        transaction.setCategory(category);
+        transaction.setAutoCategorized(category != null);
+        return changed;
+    }
+
+    /**
+     * Reloads the rules and applies them again to the expenses and transactions of every user.
+     * A failure for one user is reported and does not stop the others.
+     *
+     * @return the number of expenses and transactions whose category changed
+     */
+    public int recategorizeAll() throws IOException {
+        load();
+        Set<String> userIds = new LinkedHashSet<>(mongoTemplate.findDistinct(new Query(), "userId", Expense.class, String.class));
+        userIds.addAll(mongoTemplate.findDistinct(new Query(), "userId", Transaction.class, String.class));
+        int changed = 0;
+        for (String userId : userIds) {
+            try {
+                changed += recategorizeUser(userId);
+            } catch (RuntimeException e) {
+                logger.error("Failed to recategorize the expenses of user {}", userId, e);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Applies the rules again to a user's expenses and transactions, archived expenses aside, writing the changed
+     * categories in batches of categorization.batch-size.
+     *
+     * @param userId the ID of the user
+     * @return the number of expenses and transactions whose category changed
+     */
+    public int recategorizeUser(String userId) {
+        int changed = 0;
+        // Expenses, transactions and budgets can share a collection, so each read is restricted to its own type
+        Query expenses = new Query(Criteria.where("userId").is(userId)).restrict(Expense.class).cursorBatchSize(batchSize);
+        try (Stream<Expense> stream = mongoTemplate.stream(expenses, Expense.class)) {
+            List<Recategorized<Expense>> batch = new ArrayList<>();
+            for (Iterator<Expense> iterator = stream.iterator(); iterator.hasNext(); ) {
+                Expense expense = iterator.next();
+                String readCategory = expense.getCategory();
+                boolean readAutoCategorized = expense.isAutoCategorized();
+                if (categorize(expense)) {
+                    batch.add(new Recategorized<>(expense, expense.getId(), readCategory, readAutoCategorized, expense.getCategory()));
+                }
+                if (batch.size() == batchSize || (!iterator.hasNext() && !batch.isEmpty())) {
+                    changed += write(userId, Expense.class, batch, expense -> LedgerEvent.of(LedgerEvent.Action.UPDATED, expense));
+                    batch.clear();
+                }
+            }
+        }
+        Query transactions = new Query(Criteria.where("userId").is(userId)).restrict(Transaction.class).cursorBatchSize(batchSize);
+        try (Stream<Transaction> stream = mongoTemplate.stream(transactions, Transaction.class)) {
+            List<Recategorized<Transaction>> batch = new ArrayList<>();
+            for (Iterator<Transaction> iterator = stream.iterator(); iterator.hasNext(); ) {
+                Transaction transaction = iterator.next();
+                String readCategory = transaction.getCategory();
+                boolean readAutoCategorized = transaction.isAutoCategorized();
+                if (categorize(transaction)) {
+                    batch.add(new Recategorized<>(transaction, transaction.getId(), readCategory, readAutoCategorized, transaction.getCategory()));
+                }
+                if (batch.size() == batchSize || (!iterator.hasNext() && !batch.isEmpty())) {
+                    changed += write(userId, Transaction.class, batch,
+                            transaction -> LedgerEvent.of(LedgerEvent.Action.UPDATED, transaction));
+                    batch.clear();
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * A row whose category the rules changed, along with the category it was read with.
+     */
+    private record Recategorized<T>(T row, String id, String readCategory, boolean readAutoCategorized, String category) {
+    }
+
+    /**
+     * Writes a batch of changed categories and publishes them to the listeners as one LedgerBatchEvent.
+     * Only the category fields are set, since a whole-document save cannot update a time-series collection. Each
+     * update only matches the row if it still has the category it was read with, so a category the user chose in the
+     * meantime is kept, and the row is categorized again from its new description on the next run.
+     */
+    private <T> int write(String userId, Class<T> type, List<Recategorized<T>> rows, Function<T, LedgerEvent> eventOf) {
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type);
+        for (Recategorized<T> row : rows) {
+            Criteria unchanged = Criteria.where("_id").is(row.id()).and("category").is(row.readCategory());
+            // Rows written before categorization have no autoCategorized field at all
+            unchanged = row.readAutoCategorized() ? unchanged.and("autoCategorized").is(true) : unchanged.and("autoCategorized").ne(true);
+            operations.updateOne(new Query(unchanged), categoryUpdate(row.category(), row.category() != null));
+        }
+        BulkWriteResult result = operations.execute();
+
+        List<Recategorized<T>> written = result.getMatchedCount() < rows.size() ? stillRecategorized(type, rows) : rows;
+        if (!written.isEmpty()) {
+            List<LedgerEvent> events = new ArrayList<>(written.size());
+            for (Recategorized<T> row : written) {
+                events.add(eventOf.apply(row.row()));
+            }
+            eventPublisher.publishEvent(new LedgerBatchEvent(userId, events));
+        }
+        return written.size();
+    }
+
+    // The rows of a batch that hold the category written to them, when some updates matched nothing
+    private <T> List<Recategorized<T>> stillRecategorized(Class<T> type, List<Recategorized<T>> rows) {
+        List<String> ids = new ArrayList<>(rows.size());
+        for (Recategorized<T> row : rows) {
+            ids.add(row.id());
+        }
+        Query query = new Query(Criteria.where("_id").in(ids));
+        query.fields().include("category", "autoCategorized");
+        Map<String, Document> stored = new HashMap<>();
+        for (Document document : mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(type))) {
+            stored.put(String.valueOf(document.get("_id")), document);
+        }
+        List<Recategorized<T>> still = new ArrayList<>();
+        for (Recategorized<T> row : rows) {
+            Document document = stored.get(row.id());
+            if (document != null && Objects.equals(document.getString("category"), row.category())
+                    && Boolean.TRUE.equals(document.getBoolean("autoCategorized")) == (row.category() != null)) {
+                still.add(row);
+            }
+        }
+        return still;
+    }
+
+    private static Update categoryUpdate(String category, boolean autoCategorized) {
+        return new Update().set("category", category).set("autoCategorized", autoCategorized);
+    }
+
+    // A category set by the user, which the rules never replace
+    private static boolean isChosen(String category, boolean autoCategorized) {
+        return category != null && !category.isBlank() && !autoCategorized;
+    }
+}
@@ -0,0 +1,157 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.model.OutboxEmail;
+import com.gabrielguo.personalfinance.repository.OutboxEmailRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Persisted outbox for outgoing email.
+ * Requests only insert into the outbox; EmailOutboxWorker claims emails, delivers them and records the outcome here.
+ */
+@Service
+public class EmailOutboxService {
+
+    @Autowired
+    private OutboxEmailRepository outboxEmailRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${email.outbox.max-attempts:8}")
+    private int maxAttempts = 8;
+
+    @Value("${email.outbox.retry-base-ms:30000}")
+    private long retryBaseMillis = 30_000;
+
+    @Value("${email.outbox.retry-max-ms:3600000}")
+    private long retryMaxMillis = 3_600_000;
+
+    @Value("${email.outbox.lease-ms:120000}")
+    private long leaseMillis = 120_000;
+
+    /**
+     * Queues an email for delivery with a single insert.
+     *
+     * @param to the recipient's email address
+     * @param subject the subject of the email
+     * @param bodyText the body content of the email
+     * @return the queued email
+     */
+    public OutboxEmail enqueue(String to, String subject, String bodyText) {
+        return outboxEmailRepository.insert(new OutboxEmail(to, subject, bodyText));
+    }
+
+    /**
+     * Atomically claims the next email that is due, so that concurrent workers never send the same email twice.
+     * Emails whose worker stopped before recording an outcome become claimable again once their lease expires.
+     * Each claim gets a new lease holder, which the outcome must carry to be recorded, and counts as an attempt,
+     * so an email whose sends keep stalling its worker still runs out of attempts.
+     *
+     * @param now the current time
+     * @return the claimed email, or null if none is due
+     */
+    public OutboxEmail claimNext(Date now) {
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("status").is(OutboxEmail.Status.PENDING).and("nextAttemptAt").lte(now),
+                Criteria.where("status").is(OutboxEmail.Status.SENDING).and("leaseExpiresAt").lte(now).and("attempts").lt(maxAttempts)))
+                .with(Sort.by(Sort.Direction.ASC, "nextAttemptAt"));
+        Update update = new Update()
+                .set("status", OutboxEmail.Status.SENDING)
+                .set("leaseExpiresAt", new Date(now.getTime() + leaseMillis))
+                .set("leaseHolder", UUID.randomUUID().toString())
+                .inc("attempts", 1);
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), OutboxEmail.class);
+    }
+
+    /**
+     * Fails the emails whose lease expired on their last attempt, which claimNext no longer claims.
+     *
+     * @param now the current time
+     * @return the number of emails failed
+     */
+    public long failAbandoned(Date now) {
+        Query query = new Query(Criteria.where("status").is(OutboxEmail.Status.SENDING)
+                .and("leaseExpiresAt").lte(now)
+                .and("attempts").gte(maxAttempts));
+        Update update = new Update()
+                .set("status", OutboxEmail.Status.FAILED)
+                .set("lastError", "Lease expired on the last attempt")
+                .unset("leaseExpiresAt")
+                .unset("leaseHolder");
+        return mongoTemplate.updateMulti(query, update, OutboxEmail.class).getModifiedCount();
+    }
+
+    /**
+     * Records a successful delivery, unless the email's lease expired and another worker claimed it since.
+     *
+     * @param email the delivered email, as claimed
+     * @return whether the delivery was recorded
+     */
+    public boolean markSent(OutboxEmail email) {
+        Update update = new Update()
+                .set("status", OutboxEmail.Status.SENT)
+                .set("sentAt", new Date())
+                .unset("leaseExpiresAt")
+                .unset("leaseHolder");
+        return mongoTemplate.updateFirst(leased(email), update, OutboxEmail.class).getModifiedCount() > 0;
+    }
+
+    /**
+     * Records a failed delivery. The email is retried with exponential backoff until it runs out of attempts.
+     * Like a delivery, a failure is only recorded while the email is still leased by the claim that tried it.
+     *
+     * @param email the email that could not be delivered, as claimed, with this attempt already counted
+     * @param error a description of the failure
+     * @return whether the failure was recorded
+     */
+    public boolean markFailed(OutboxEmail email, String error) {
+        int attempts = email.getAttempts();
+        Update update = new Update()
+                .set("lastError", error)
+                .unset("leaseExpiresAt")
+                .unset("leaseHolder");
+        if (attempts >= maxAttempts) {
+            update.set("status", OutboxEmail.Status.FAILED);
+        } else {
+            update.set("status", OutboxEmail.Status.PENDING)
+                    .set("nextAttemptAt", new Date(System.currentTimeMillis() + retryDelayMillis(attempts)));
+        }
+        return mongoTemplate.updateFirst(leased(email), update, OutboxEmail.class).getModifiedCount() > 0;
+    }
+
+    // Matches the email only while the claim that returned it still holds the lease
+    private static Query leased(OutboxEmail email) {
+        return new Query(Criteria.where("_id").is(email.getId())
+                .and("status").is(OutboxEmail.Status.SENDING)
+                .and("leaseHolder").is(email.getLeaseHolder()));
+    }
+
+    /**
+     * Exponential backoff with jitter: somewhere between half and all of base * 2^(attempts - 1), capped at the maximum.
+     * The jitter keeps emails that failed together from all being retried at the same moment.
+     *
+     * @param attempts the number of failed attempts so far
+     * @return the delay before the next attempt in milliseconds
+     */
+    long retryDelayMillis(int attempts) {
+        long delay = retryBaseMillis;
+        for (int i = 1; i < attempts && delay < retryMaxMillis; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, retryMaxMillis);
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+}
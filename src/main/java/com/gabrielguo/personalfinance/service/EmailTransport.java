@@ -0,0 +1,22 @@
+package com.gabrielguo.personalfinance.service;
+
+import jakarta.mail.MessagingException;
+
+import java.io.IOException;
+
+/**
+ * Delivers a single email. Implementations throw on any failure so that the outbox can retry the delivery.
+ */
+public interface EmailTransport {
+
+    /**
+     * Sends an email.
+     *
+     * @param to the recipient's email address
+     * @param subject the subject of the email
+     * @param bodyText the body content of the email
+     * @throws MessagingException if the email cannot be built
+     * @throws IOException if the email cannot be delivered
+     */
+    void send(String to, String subject, String bodyText) throws MessagingException, IOException;
+}
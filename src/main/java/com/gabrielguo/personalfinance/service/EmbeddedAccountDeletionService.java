@@ -0,0 +1,29 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedDatabase;
+
+import java.util.Map;
+
+/**
+ * AccountDeletionService on embedded storage. The collections that stay in MongoDB are emptied as before; the
+ * user's documents in the embedded stores are then deleted and the embedded log is compacted, so the deleted
+ * data is neither in memory nor on disk afterwards.
+ */
+public class EmbeddedAccountDeletionService extends AccountDeletionService {
+
+    private final EmbeddedDatabase database;
+
+    public EmbeddedAccountDeletionService(EmbeddedDatabase database) {
+        this.database = database;
+    }
+
+    @Override
+    protected void deleteDocuments(String userId) {
+        super.deleteDocuments(userId);
+        for (Map.Entry<String, Long> deleted : database.deleteUser(userId).entrySet()) {
+            if (deleted.getValue() > 0) {
+                countDeleted(userId, deleted.getKey(), deleted.getValue());
+            }
+        }
+    }
+}
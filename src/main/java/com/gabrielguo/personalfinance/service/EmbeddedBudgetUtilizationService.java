@@ -0,0 +1,45 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.event.BudgetChangedEvent;
+import com.gabrielguo.personalfinance.event.ExpenseChangedEvent;
+import com.gabrielguo.personalfinance.model.summary.BudgetUtilization;
+import com.gabrielguo.personalfinance.repository.BudgetRepository;
+import com.gabrielguo.personalfinance.repository.ExpenseRepository;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * BudgetUtilizationService on embedded storage. Nothing is stored: each read sweeps the user's budgets and expenses,
+ * which embedded storage already holds in memory ordered by date, so changes need no refresh.
+ */
+public class EmbeddedBudgetUtilizationService extends BudgetUtilizationService {
+
+    private final BudgetRepository budgetRepository;
+    private final ExpenseRepository expenseRepository;
+
+    public EmbeddedBudgetUtilizationService(BudgetRepository budgetRepository, ExpenseRepository expenseRepository) {
+        this.budgetRepository = budgetRepository;
+        this.expenseRepository = expenseRepository;
+    }
+
+    @Override
+    public List<BudgetUtilization> getUtilization(String userId) {
+        return rebuild(userId);
+    }
+
+    @Override
+    public List<BudgetUtilization> rebuild(String userId) {
+        return sweep(userId, budgetRepository.findBudgetsByUserId(userId), expenseRepository.findByUserId(userId), new Date());
+    }
+
+    @Override
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        // Computed on read
+    }
+
+    @Override
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        // Computed on read
+    }
+}
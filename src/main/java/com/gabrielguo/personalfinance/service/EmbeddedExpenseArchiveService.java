@@ -0,0 +1,75 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.fx.CurrencyTotals;
+import com.gabrielguo.personalfinance.model.Expense;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * ExpenseArchiveService on embedded storage. Embedded storage already keeps each user's expenses ordered by date,
+ * so expenses are never moved into archive buckets and the archive is always empty.
+ */
+public class EmbeddedExpenseArchiveService extends ExpenseArchiveService {
+
+    public EmbeddedExpenseArchiveService() {
+        super(0);
+    }
+
+    @Override
+    public int archiveOlderThan(Date cutoff) {
+        return 0;
+    }
+
+    @Override
+    public int archiveUser(String userId, Date cutoff) {
+        return 0;
+    }
+
+    @Override
+    public List<Expense> findExpenses(String userId) {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public List<Expense> findExpensesBetween(String userId, Date startDate, Date endDate) {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public Optional<Expense> findExpense(String expenseId) {
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean removeExpense(String expenseId) {
+        return false;
+    }
+
+    @Override
+    public CurrencyTotals addTotal(String userId, CurrencyTotals totals) {
+        return totals;
+    }
+
+    @Override
+    public void addCategoryTotals(String userId, Function<String, CurrencyTotals> totalsOf) {
+    }
+
+    @Override
+    public List<String> getCategories(String userId) {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public void addMonthlyTotals(String userId, Date startDate, Date endDate, Function<YearMonth, CurrencyTotals> totalsOf) {
+    }
+
+    @Override
+    public int summarizeLegacyBuckets() {
+        return 0;
+    }
+}
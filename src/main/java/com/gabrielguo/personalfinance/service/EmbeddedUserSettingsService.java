@@ -0,0 +1,40 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.model.UserSettings;
+import com.gabrielguo.personalfinance.repository.UserSettingsRepository;
+
+/**
+ * UserSettingsService on embedded storage. The upserts become a read followed by a write of the settings
+ * repository, made atomic by holding the service's lock, since embedded storage serves a single node.
+ */
+public class EmbeddedUserSettingsService extends UserSettingsService {
+
+    private final UserSettingsRepository userSettingsRepository;
+
+    public EmbeddedUserSettingsService(int maxSize, long ttlSeconds, UserSettingsRepository userSettingsRepository) {
+        super(maxSize, ttlSeconds);
+        this.userSettingsRepository = userSettingsRepository;
+    }
+
+    @Override
+    protected synchronized UserSettings findOrCreate(String userId) {
+        return userSettingsRepository.findByUserId(userId).orElseGet(() -> userSettingsRepository.insert(defaults(userId)));
+    }
+
+    @Override
+    protected synchronized UserSettings write(String userId, UserSettings userSettings) {
+        // The document is matched on userId, so any ID sent by the client is ignored
+        UserSettings settings = userSettingsRepository.findByUserId(userId).orElseGet(() -> defaults(userId));
+        settings.setEmailNotifications(userSettings.isEmailNotifications());
+        settings.setTheme(userSettings.getTheme());
+        settings.setReportingCurrency(userSettings.getReportingCurrency());
+        settings.setVersion(settings.getVersion() + 1);
+        return userSettingsRepository.save(settings);
+    }
+
+    private static UserSettings defaults(String userId) {
+        UserSettings settings = new UserSettings();
+        settings.setUserId(userId);
+        return settings;
+    }
+}
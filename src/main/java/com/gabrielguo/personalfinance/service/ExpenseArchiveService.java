@@ -0,0 +1,444 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.fx.CurrencyTotals;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.ExpenseArchive;
+import com.gabrielguo.personalfinance.repository.ExpenseArchiveRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Moves old expenses into one archive bucket per user and month, and reads them back.
+ * A bucket embeds the month's expenses along with their total and per-category totals, so a power user's
+ * history costs one document per month instead of one per expense, and totals are read without unpacking items.
+ * The services reading expenses combine the expenses collection with the results of this service.
+ * Embedded storage keeps every expense in place, so there EmbeddedExpenseArchiveService archives nothing.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.embedded.enabled", havingValue = "false", matchIfMissing = true)
+public class ExpenseArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpenseArchiveService.class);
+
+    // Attempts at rewriting a bucket that another writer changed in the meantime
+    private static final int SAVE_ATTEMPTS = 3;
+
+    // Months follow the server's time zone, like the monthly expense trends
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ExpenseArchiveRepository expenseArchiveRepository;
+
+    private final int maxItemsPerBucket;
+
+    public ExpenseArchiveService(@Value("${expense.archive.max-items-per-bucket:20000}") int maxItemsPerBucket) {
+        this.maxItemsPerBucket = maxItemsPerBucket;
+    }
+
+    /**
+     * Archives the expenses of every user dated before the cutoff.
+     * A failure for one user is reported and does not stop the others.
+     *
+     * @param cutoff the exclusive upper bound of the archived dates, normally the start of a month
+     * @return the number of expenses archived
+     */
+    public int archiveOlderThan(Date cutoff) {
+        List<String> userIds = mongoTemplate.findDistinct(new Query(archivable(cutoff)), "userId", Expense.class, String.class);
+        int archived = 0;
+        for (String userId : userIds) {
+            try {
+                archived += archiveUser(userId, cutoff);
+            } catch (RuntimeException e) {
+                logger.error("Failed to archive expenses of user {}", userId, e);
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * Archives a user's expenses dated before the cutoff, one month at a time.
+     * Expenses are read in date order from a cursor, so only one month is held in memory.
+     *
+     * @param userId the ID of the user
+     * @param cutoff the exclusive upper bound of the archived dates
+     * @return the number of expenses archived
+     */
+    public int archiveUser(String userId, Date cutoff) {
+        Query query = new Query(Criteria.where("userId").is(userId)).addCriteria(archivable(cutoff)).with(Sort.by("date"));
+        int archived = 0;
+        YearMonth month = null;
+        List<Expense> monthExpenses = new ArrayList<>();
+        try (Stream<Expense> expenses = mongoTemplate.stream(query, Expense.class)) {
+            Iterator<Expense> iterator = expenses.iterator();
+            while (iterator.hasNext()) {
+                Expense expense = iterator.next();
+                YearMonth expenseMonth = monthOf(expense.getDate());
+                if (!expenseMonth.equals(month) && !monthExpenses.isEmpty()) {
+                    archived += archiveMonth(userId, month, monthExpenses);
+                    monthExpenses = new ArrayList<>();
+                }
+                month = expenseMonth;
+                monthExpenses.add(expense);
+            }
+        }
+        if (!monthExpenses.isEmpty()) {
+            archived += archiveMonth(userId, month, monthExpenses);
+        }
+        return archived;
+    }
+
+    /**
+     * @param userId the ID of the user
+     * @return every archived expense of the user, oldest month first
+     */
+    public List<Expense> findExpenses(String userId) {
+        List<Expense> expenses = new ArrayList<>();
+        for (ExpenseArchive bucket : expenseArchiveRepository.findByUserIdOrderByMonthAsc(userId)) {
+            expenses.addAll(bucket.getItems());
+        }
+        return expenses;
+    }
+
+    /**
+     * @param userId the ID of the user
+     * @param startDate the inclusive start of the range
+     * @param endDate the inclusive end of the range, or null for no upper bound
+     * @return the archived expenses of the user dated within the range
+     */
+    public List<Expense> findExpensesBetween(String userId, Date startDate, Date endDate) {
+        Date end = endDate != null ? endDate : new Date(Long.MAX_VALUE);
+        List<Expense> expenses = new ArrayList<>();
+        for (ExpenseArchive bucket : expenseArchiveRepository.findOverlapping(userId, startDate, end)) {
+            for (Expense item : bucket.getItems()) {
+                if (!item.getDate().before(startDate) && !item.getDate().after(end)) {
+                    expenses.add(item);
+                }
+            }
+        }
+        return expenses;
+    }
+
+    /**
+     * @param expenseId the ID of the expense
+     * @return the expense, if it is archived
+     */
+    public Optional<Expense> findExpense(String expenseId) {
+        return expenseArchiveRepository.findFirstByItemsId(expenseId)
+                .flatMap(bucket -> bucket.getItems().stream().filter(item -> expenseId.equals(item.getId())).findFirst());
+    }
+
+    /**
+     * Removes an expense from its bucket and updates the bucket's totals, deleting the bucket once it is empty.
+     *
+     * @param expenseId the ID of the expense
+     * @return whether the expense was archived
+     */
+    public boolean removeExpense(String expenseId) {
+        for (int attempt = 1; ; attempt++) {
+            Optional<ExpenseArchive> found = expenseArchiveRepository.findFirstByItemsId(expenseId);
+            if (found.isEmpty()) {
+                return false;
+            }
+            ExpenseArchive bucket = found.get();
+            bucket.getItems().removeIf(item -> expenseId.equals(item.getId()));
+            try {
+                rewrite(bucket);
+                return true;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt == SAVE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the user's archived expenses to a total. Each month's spending in each currency is converted at the
+     * rate of the first day of the month, since buckets keep one total per currency rather than one per day.
+     *
+     * @param userId the ID of the user
+     * @param totals the totals to add to
+     * @return the same totals
+     */
+    public CurrencyTotals addTotal(String userId, CurrencyTotals totals) {
+        for (ExpenseArchive bucket : findSummaries(userId)) {
+            for (ExpenseArchive.CurrencyTotal currencyTotal : bucket.getCurrencyTotals()) {
+                totals.add(currencyTotal.getCurrency(), bucket.getMonth(), currencyTotal.getTotal());
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Adds the user's archived expenses to per-category totals, each month's spending per currency being converted
+     * at the rate of the first day of the month.
+     *
+     * @param userId the ID of the user
+     * @param totalsOf the totals of a category
+     */
+    public void addCategoryTotals(String userId, Function<String, CurrencyTotals> totalsOf) {
+        for (ExpenseArchive bucket : findSummaries(userId)) {
+            for (ExpenseArchive.CategoryTotal categoryTotal : bucket.getCategoryTotals()) {
+                totalsOf.apply(categoryTotal.getCategory()).add(categoryTotal.getCurrency(), bucket.getMonth(), categoryTotal.getTotal());
+            }
+        }
+    }
+
+    /**
+     * @param userId the ID of the user
+     * @return the distinct categories of the user's archived expenses
+     */
+    public List<String> getCategories(String userId) {
+        Set<String> categories = new LinkedHashSet<>();
+        for (ExpenseArchive bucket : findSummaries(userId)) {
+            for (ExpenseArchive.CategoryTotal categoryTotal : bucket.getCategoryTotals()) {
+                categories.add(categoryTotal.getCategory());
+            }
+        }
+        return new ArrayList<>(categories);
+    }
+
+    /**
+     * Adds archived spending within a date range to per-month totals. Months lying entirely within the range are
+     * taken from the bucket totals, each currency at the rate of the first day of the month; only the months cut by
+     * the ends of the range are added item by item, at the rate of each expense's date.
+     *
+     * @param userId the ID of the user
+     * @param startDate the inclusive start of the range
+     * @param endDate the inclusive end of the range
+     * @param totalsOf the totals of a month
+     */
+    public void addMonthlyTotals(String userId, Date startDate, Date endDate, Function<YearMonth, CurrencyTotals> totalsOf) {
+        for (ExpenseArchive bucket : expenseArchiveRepository.findOverlapping(userId, startDate, endDate)) {
+            CurrencyTotals totals = totalsOf.apply(monthOf(bucket.getMonth()));
+            if (bucket.getCurrencyTotals() != null
+                    && !bucket.getMonth().before(startDate) && bucket.getNextMonth().getTime() - 1 <= endDate.getTime()) {
+                for (ExpenseArchive.CurrencyTotal currencyTotal : bucket.getCurrencyTotals()) {
+                    totals.add(currencyTotal.getCurrency(), bucket.getMonth(), currencyTotal.getTotal());
+                }
+            } else {
+                for (Expense item : bucket.getItems()) {
+                    if (!item.getDate().before(startDate) && !item.getDate().after(endDate)) {
+                        totals.add(item.getCurrency(), item.getDate(), item.getAmount());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes the totals of buckets written before totals were kept per currency.
+     *
+     * @return the number of buckets updated
+     */
+    public int summarizeLegacyBuckets() {
+        int updated = 0;
+        for (ExpenseArchive bucket : mongoTemplate.find(new Query(Criteria.where("currencyTotals").exists(false)), ExpenseArchive.class)) {
+            summarize(bucket);
+            try {
+                mongoTemplate.save(bucket);
+                updated++;
+            } catch (OptimisticLockingFailureException e) {
+                // Whoever changed the bucket summarized it again
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * The archive cutoff for a minimum age: the start of the month containing the day that is that old.
+     * Everything before it lies in months that ended at least the minimum age ago.
+     *
+     * @param now the current time
+     * @param minAgeDays the minimum age of archived expenses, in days
+     * @return the exclusive upper bound of the dates to archive
+     */
+    public static Date cutoff(Date now, int minAgeDays) {
+        LocalDate oldest = now.toInstant().atZone(ZONE).toLocalDate().minusDays(minAgeDays);
+        return startOf(YearMonth.from(oldest));
+    }
+
+    /**
+     * Recomputes the count, per-currency totals and per-category totals of a bucket from its items.
+     *
+     * @param bucket the bucket to summarize
+     */
+    static void summarize(ExpenseArchive bucket) {
+        Map<String, ExpenseArchive.CurrencyTotal> byCurrency = new LinkedHashMap<>();
+        Map<List<String>, ExpenseArchive.CategoryTotal> byCategory = new LinkedHashMap<>();
+        for (Expense item : bucket.getItems()) {
+            BigDecimal amount = amountOf(item);
+            ExpenseArchive.CurrencyTotal currencyTotal = byCurrency.computeIfAbsent(item.getCurrency(),
+                    currency -> new ExpenseArchive.CurrencyTotal(currency, BigDecimal.ZERO, 0));
+            currencyTotal.setTotal(currencyTotal.getTotal().add(amount));
+            currencyTotal.setCount(currencyTotal.getCount() + 1);
+            ExpenseArchive.CategoryTotal categoryTotal = byCategory.computeIfAbsent(Arrays.asList(item.getCategory(), item.getCurrency()),
+                    key -> new ExpenseArchive.CategoryTotal(item.getCategory(), item.getCurrency(), BigDecimal.ZERO, 0));
+            categoryTotal.setTotal(categoryTotal.getTotal().add(amount));
+            categoryTotal.setCount(categoryTotal.getCount() + 1);
+        }
+        bucket.setCount(bucket.getItems().size());
+        bucket.setCurrencyTotals(new ArrayList<>(byCurrency.values()));
+        bucket.setCategoryTotals(new ArrayList<>(byCategory.values()));
+    }
+
+    /**
+     * Merges one month of expenses into its bucket, then removes them from the expenses collection.
+     * They are only removed once the bucket is saved, so an interruption leaves copies in both places,
+     * which the next run merges by ID rather than duplicating.
+     * Each expense is only removed if it still holds what was read. One edited or deleted in the meantime is taken
+     * back out of the bucket, so the expenses collection keeps the edit and the next run archives it.
+     */
+    private int archiveMonth(String userId, YearMonth month, List<Expense> expenses) {
+        String bucketId = userId + ":" + month;
+        for (int attempt = 1; ; attempt++) {
+            ExpenseArchive bucket = mongoTemplate.findById(bucketId, ExpenseArchive.class);
+            if (bucket == null) {
+                bucket = new ExpenseArchive(bucketId, userId, startOf(month), startOf(month.plusMonths(1)), 0,
+                        new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), null);
+            }
+
+            Map<String, Expense> items = new LinkedHashMap<>();
+            for (Expense item : bucket.getItems()) {
+                items.put(item.getId(), item);
+            }
+            for (Expense expense : expenses) {
+                items.put(expense.getId(), expense);
+            }
+            if (items.size() > maxItemsPerBucket) {
+                // Keeps the bucket well below MongoDB's document size limit; the month stays in the expenses collection
+                logger.warn("Not archiving {} of user {}: {} expenses exceed the bucket limit", month, userId, items.size());
+                return 0;
+            }
+            bucket.setItems(new ArrayList<>(items.values()));
+            summarize(bucket);
+
+            try {
+                mongoTemplate.save(bucket);
+                break;
+            } catch (OptimisticLockingFailureException | DuplicateKeyException e) {
+                if (attempt == SAVE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+
+        // One remove per expense, since a bulk result only counts the removed expenses without saying which
+        Set<String> changed = new LinkedHashSet<>();
+        for (Expense expense : expenses) {
+            if (mongoTemplate.remove(new Query(unchanged(expense)), Expense.class).getDeletedCount() == 0) {
+                changed.add(expense.getId());
+            }
+        }
+        if (!changed.isEmpty()) {
+            logger.info("Leaving {} expenses of user {} changed during archiving of {} for the next run", changed.size(), userId, month);
+            removeItems(bucketId, changed);
+        }
+        return expenses.size() - changed.size();
+    }
+
+    // Takes items back out of a bucket, unless they are no longer in it
+    private void removeItems(String bucketId, Set<String> itemIds) {
+        for (int attempt = 1; ; attempt++) {
+            ExpenseArchive bucket = mongoTemplate.findById(bucketId, ExpenseArchive.class);
+            if (bucket == null || !bucket.getItems().removeIf(item -> itemIds.contains(item.getId()))) {
+                return;
+            }
+            try {
+                rewrite(bucket);
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt == SAVE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Saves a bucket whose items changed with its totals recomputed, or deletes it once it is empty
+    private void rewrite(ExpenseArchive bucket) {
+        if (bucket.getItems().isEmpty()) {
+            Query unchanged = new Query(Criteria.where("_id").is(bucket.getId()).and("version").is(bucket.getVersion()));
+            if (mongoTemplate.remove(unchanged, ExpenseArchive.class).getDeletedCount() == 0) {
+                throw new OptimisticLockingFailureException("Archive bucket " + bucket.getId() + " changed while removing an expense");
+            }
+        } else {
+            summarize(bucket);
+            mongoTemplate.save(bucket);
+        }
+    }
+
+    // Matches an expense that still holds every field it was read with; the userId serves time-series collections
+    private static Criteria unchanged(Expense expense) {
+        Criteria criteria = Criteria.where("_id").is(expense.getId()).and("userId").is(expense.getUserId())
+                .and("amount").is(expense.getAmount()).and("category").is(expense.getCategory())
+                .and("date").is(expense.getDate()).and("description").is(expense.getDescription())
+                .and("currency").is(expense.getCurrency());
+        // Expenses written before categorization have no autoCategorized field at all
+        return expense.isAutoCategorized() ? criteria.and("autoCategorized").is(true) : criteria.and("autoCategorized").ne(true);
+    }
+
+    // Buckets without items; one written before totals were kept per currency is read in full and summarized here
+    private List<ExpenseArchive> findSummaries(String userId) {
+        List<ExpenseArchive> buckets = expenseArchiveRepository.findSummariesByUserId(userId);
+        for (int i = 0; i < buckets.size(); i++) {
+            if (buckets.get(i).getCurrencyTotals() == null) {
+                ExpenseArchive bucket = expenseArchiveRepository.findById(buckets.get(i).getId()).orElse(null);
+                if (bucket == null) {
+                    buckets.remove(i--);
+                } else {
+                    summarize(bucket);
+                    buckets.set(i, bucket);
+                }
+            }
+        }
+        return buckets;
+    }
+
+    // Budgets share the expenses collection and transactions have no date, so only dated non-budget documents qualify
+    private static Criteria archivable(Date cutoff) {
+        return Criteria.where("date").lt(cutoff).and("startDate").exists(false);
+    }
+
+    private static YearMonth monthOf(Date date) {
+        return YearMonth.from(date.toInstant().atZone(ZONE));
+    }
+
+    private static Date startOf(YearMonth month) {
+        return Date.from(month.atDay(1).atStartOfDay(ZONE).toInstant());
+    }
+
+    private static BigDecimal amountOf(Expense expense) {
+        return expense.getAmount() != null ? expense.getAmount() : BigDecimal.ZERO;
+    }
+}
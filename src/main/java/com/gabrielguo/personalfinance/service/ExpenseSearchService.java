@@ -0,0 +1,203 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.event.LedgerBatchEvent;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.ExpenseSearchResult;
+import com.gabrielguo.personalfinance.repository.ExpenseRepository;
+import com.gabrielguo.personalfinance.search.ExpenseIndex;
+import com.gabrielguo.personalfinance.util.TtlCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Searches the descriptions and categories of a user's expenses through an in-memory index per user.
+ * A user's index is built from their expenses, archived ones included, on their first search, and kept up to date
+ * from then on as expenses are written through this instance. At most search.max-indexed-users indexes are kept;
+ * the least recently used one is dropped beyond that and rebuilt when needed again.
+ * Writes through other instances are not seen, so an index is also rebuilt search.index-ttl-minutes after it was
+ * built, and as soon as a search hits an expense that no longer exists.
+ */
+@Service
+public class ExpenseSearchService {
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private ExpenseArchiveService expenseArchiveService;
+
+    private final TtlCache<String, ExpenseIndex> indexes;
+    private final int maxPageSize;
+
+    public ExpenseSearchService(@Value("${search.max-indexed-users:100}") int maxIndexedUsers,
+                                @Value("${search.index-ttl-minutes:10}") long indexTtlMinutes,
+                                @Value("${search.max-page-size:100}") int maxPageSize) {
+        this.indexes = new TtlCache<>(maxIndexedUsers, indexTtlMinutes, TimeUnit.MINUTES);
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Applies a changed expense to its user's index, if the user has one.
+     *
+     * @param event the change
+     */
+    @EventListener
+    public void onLedgerEvent(LedgerEvent event) {
+        if (event.entityType() != LedgerEvent.EntityType.EXPENSE) {
+            return;
+        }
+        ExpenseIndex index = indexes.get(event.userId());
+        if (index == null) {
+            return;
+        }
+        synchronized (index) {
+            apply(index, event);
+        }
+    }
+
+    /**
+     * Applies a batch of changed expenses to their user's index, if the user has one, under a single lock.
+     *
+     * @param batch the changes
+     */
+    @EventListener
+    public void onLedgerBatch(LedgerBatchEvent batch) {
+        ExpenseIndex index = indexes.get(batch.userId());
+        if (index == null) {
+            return;
+        }
+        synchronized (index) {
+            for (LedgerEvent event : batch.events()) {
+                if (event.entityType() == LedgerEvent.EntityType.EXPENSE) {
+                    apply(index, event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the expenses of a user whose description or category contains every word of a query. The last word
+     * also matches as the start of a word, so results can follow the user's typing.
+     *
+     * @param userId the ID of the user
+     * @param query the words to look for
+     * @param page the page number, from 0
+     * @param size the page size, at most search.max-page-size
+     * @return the page of matching expenses, most recently written first
+     */
+    public ExpenseSearchResult search(String userId, String query, int page, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        int pageNumber = Math.max(0, page);
+        ExpenseIndex index = index(userId);
+        ExpenseIndex.Hits hits = search(index, query, pageNumber * pageSize, pageSize);
+        List<Expense> expenses = load(userId, hits.expenseIds());
+        if (expenses.size() < hits.expenseIds().size()) {
+            // The index holds expenses deleted through another instance, so it is rebuilt and searched again
+            indexes.invalidate(userId, index);
+            hits = search(index(userId), query, pageNumber * pageSize, pageSize);
+            expenses = load(userId, hits.expenseIds());
+        }
+        // Hits still missing were deleted during the rebuild and are not counted either
+        int totalHits = hits.totalHits() - (hits.expenseIds().size() - expenses.size());
+        return new ExpenseSearchResult(query, pageNumber, pageSize, totalHits, expenses);
+    }
+
+    /**
+     * Completes the start of a word from the descriptions and categories of a user's expenses.
+     *
+     * @param userId the ID of the user
+     * @param prefix the start of the word
+     * @param limit the maximum number of words
+     * @return the words, those in the most expenses first
+     */
+    public List<String> suggest(String userId, String prefix, int limit) {
+        ExpenseIndex index = index(userId);
+        synchronized (index) {
+            return index.suggest(prefix, Math.min(limit, maxPageSize));
+        }
+    }
+
+    /**
+     * Drops a user's index.
+     *
+     * @param userId the ID of the user
+     */
+    public void forget(String userId) {
+        indexes.invalidate(userId);
+    }
+
+    // The user's index, built under its own lock so that searches and writes for the user wait until it is complete
+    private ExpenseIndex index(String userId) {
+        ExpenseIndex index = indexes.get(userId);
+        if (index != null) {
+            return index;
+        }
+        ExpenseIndex built = new ExpenseIndex();
+        synchronized (built) {
+            ExpenseIndex existing = indexes.putIfAbsent(userId, built);
+            if (existing != null) {
+                return existing;
+            }
+            try {
+                List<Expense> expenses = new ArrayList<>(expenseArchiveService.findExpenses(userId));
+                try (Stream<Expense> stream = expenseRepository.streamByUserId(userId)) {
+                    stream.forEach(expenses::add);
+                }
+                // Oldest first, so that matches come back newest first
+                expenses.sort(Comparator.comparing(Expense::getDate, Comparator.nullsFirst(Comparator.<Date>naturalOrder())));
+                for (Expense expense : expenses) {
+                    built.put(expense.getId(), expense.getDescription(), expense.getCategory());
+                }
+            } catch (RuntimeException e) {
+                indexes.invalidate(userId, built);
+                throw e;
+            }
+        }
+        return built;
+    }
+
+    private static ExpenseIndex.Hits search(ExpenseIndex index, String query, int offset, int limit) {
+        synchronized (index) {
+            return index.search(query, offset, limit);
+        }
+    }
+
+    private static void apply(ExpenseIndex index, LedgerEvent event) {
+        if (event.action() == LedgerEvent.Action.DELETED) {
+            index.remove(event.entityId());
+        } else {
+            index.put(event.entityId(), event.description(), event.category());
+        }
+    }
+
+    // The user's expenses with the IDs, in the same order, looking in the archive for those not in the expenses collection
+    private List<Expense> load(String userId, List<String> expenseIds) {
+        Map<String, Expense> found = new HashMap<>();
+        for (Expense expense : expenseRepository.findByUserIdAndIdIn(userId, expenseIds)) {
+            found.put(expense.getId(), expense);
+        }
+        List<Expense> expenses = new ArrayList<>(expenseIds.size());
+        for (String expenseId : expenseIds) {
+            Expense expense = found.get(expenseId);
+            if (expense == null) {
+                expense = expenseArchiveService.findExpense(expenseId).filter(archived -> userId.equals(archived.getUserId())).orElse(null);
+            }
+            if (expense != null) {
+                expenses.add(expense);
+            }
+        }
+        return expenses;
+    }
+}
@@ -1,14 +1,28 @@
 package com.gabrielguo.personalfinance.service;
 
+import com.gabrielguo.personalfinance.config.TimeSeriesStorage;
+import com.gabrielguo.personalfinance.event.ExpenseChangedEvent;
+import com.gabrielguo.personalfinance.event.LedgerBatchEvent;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.exception.ImportTooLargeException;
 import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.exception.UnsupportedCurrencyException;
 import com.gabrielguo.personalfinance.model.Expense;
 import com.gabrielguo.personalfinance.repository.ExpenseRepository;
 import com.gabrielguo.personalfinance.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 // Service class for managing expenses
 @Service
@@ -20,31 +34,106 @@ public class ExpenseService {
     @Autowired
     private UserRepository userRepository;
 
+    // Notifies derived data, such as budget utilization and the ledger, of changed spending
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TimeSeriesStorage timeSeriesStorage;
+
+    // Holds expenses from months old enough to have been archived
+    @Autowired
+    private ExpenseArchiveService expenseArchiveService;
+
+    // Fills in categories from descriptions
+    @Autowired
+    private CategorizationService categorizationService;
+
+    // Rejects currencies without exchange rates, which the insights could not convert
+    @Autowired
+    private FxRateService fxRateService;
+
+    private final int maxImportRows;
+
+    public ExpenseService(@Value("${import.max-rows:1000}") int maxImportRows) {
+        this.maxImportRows = maxImportRows;
+    }
+
     /**
      * Creates a new expense and associates it with a user.
-     * Checks if the user exists before creating the expense.
+     * Checks if the user exists before creating the expense. An expense without a category gets one from the
+     * category rules when its description matches one.
      *
      * @param expense the expense details to be created
      * @param userId the ID of the user who is creating the expense
      * @return the created Expense
      * @throws ResourceNotFoundException if the user does not exist
+     * @throws UnsupportedCurrencyException if there are no exchange rates for the expense's currency
      */
     public Expense createExpense(Expense expense, String userId) {
         if (!userRepository.existsById(userId)) {
             throw new ResourceNotFoundException("User not found with ID: " + userId);
         }
+        fxRateService.requireSupported(expense.getCurrency());
         expense.setUserId(userId);
-        return expenseRepository.save(expense);
+        if (expense.getDate() == null && timeSeriesStorage.isEnabled()) {
+            expense.setDate(new Date()); // Every document in a time-series collection needs a timestamp
+        }
+        categorizationService.categorize(expense);
+        Expense savedExpense = expenseRepository.save(expense);
+        publishChange(userId, expense.getDate());
+        eventPublisher.publishEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, expense));
+        return savedExpense;
     }
 
     /**
-     * Retrieves all expenses associated with a specific user.
+     * Creates many expenses for a user at once, such as those of an imported bank statement, categorizing them
+     * like single expenses and inserting them in one batch. At most import.max-rows expenses are imported at once.
+     *
+     * @param expenses the expenses to be created
+     * @param userId the ID of the user who is importing the expenses
+     * @return the created Expenses
+     * @throws ResourceNotFoundException if the user does not exist
+     * @throws ImportTooLargeException if there are more than import.max-rows expenses
+     * @throws UnsupportedCurrencyException if there are no exchange rates for the currency of an expense, in which
+     *         case none is created
+     */
+    public List<Expense> importExpenses(List<Expense> expenses, String userId) {
+        if (expenses.size() > maxImportRows) {
+            throw new ImportTooLargeException("An import may have at most " + maxImportRows + " expenses, not " + expenses.size());
+        }
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User not found with ID: " + userId);
+        }
+        expenses.forEach(expense -> fxRateService.requireSupported(expense.getCurrency()));
+        for (Expense expense : expenses) {
+            expense.setUserId(userId);
+            if (expense.getDate() == null && timeSeriesStorage.isEnabled()) {
+                expense.setDate(new Date());
+            }
+            categorizationService.categorize(expense);
+        }
+        List<Expense> savedExpenses = expenseRepository.insert(expenses);
+        publishChange(userId, expenses.stream().map(Expense::getDate).toArray(Date[]::new));
+        // One event for the whole import, so that listeners apply it at once rather than row by row
+        List<LedgerEvent> events = new ArrayList<>(savedExpenses.size());
+        for (Expense expense : savedExpenses) {
+            events.add(LedgerEvent.of(LedgerEvent.Action.CREATED, expense));
+        }
+        eventPublisher.publishEvent(new LedgerBatchEvent(userId, events));
+        return savedExpenses;
+    }
+
+    /**
+     * Retrieves all expenses associated with a specific user, archived ones included.
      *
      * @param userId the ID of the user whose expenses are to be retrieved
      * @return a list of Expenses for the specified user
      */
     public List<Expense> getAllExpenses(String userId) {
-        return expenseRepository.findByUserId(userId);
+        List<Expense> expenses = new ArrayList<>(expenseArchiveService.findExpenses(userId));
+        expenses.addAll(expenseRepository.findByUserId(userId));
+        return expenses;
     }
 
     /**
@@ -56,7 +145,7 @@ public class ExpenseService {
      * @throws ResourceNotFoundException if the expense is not found or does not belong to the user
      */
     public Expense getExpenseById(String expenseId, String userId) {
-        Optional<Expense> expenseOptional = expenseRepository.findById(expenseId);
+        Optional<Expense> expenseOptional = findExpense(expenseId, userId);
         if (expenseOptional.isPresent()) {
             Expense expense = expenseOptional.get();
             // Check if the expense belongs to the given user
@@ -72,7 +161,8 @@ public class ExpenseService {
 
     /**
      * Updates an existing expense identified by its ID.
-     * Only the fields allowed to be modified are updated.
+     * Only the fields allowed to be modified are updated, and a category assigned by the category rules is
+     * reassigned from the new description unless the user changes it.
      * Validates that the userId associated with the expense matches the user making the request.
      *
      * @param expenseId the ID of the expense to be updated
@@ -83,7 +173,12 @@ public class ExpenseService {
      */
     public Expense updateExpense(String expenseId, Expense updatedExpense, String userId) {
         // Find the existing expense
-        Optional<Expense> existingExpenseOptional = expenseRepository.findById(expenseId);
+        Optional<Expense> existingExpenseOptional = findStored(expenseId, userId);
+        boolean archived = false;
+        if (!existingExpenseOptional.isPresent()) {
+            existingExpenseOptional = expenseArchiveService.findExpense(expenseId);
+            archived = existingExpenseOptional.isPresent();
+        }
         if (!existingExpenseOptional.isPresent()) {
             throw new ResourceNotFoundException("Expense not found with ID: " + expenseId);
         }
@@ -96,14 +191,43 @@ public class ExpenseService {
             throw new ResourceNotFoundException("User not authorized to update this expense.");
         }
 
+        // Remember the previous date, since moving an expense changes the spending on both dates
+        Date previousDate = existingExpense.getDate();
+
         // Update fields with new values
         existingExpense.setAmount(updatedExpense.getAmount());
-        existingExpense.setCategory(updatedExpense.getCategory());
+        if (!Objects.equals(updatedExpense.getCategory(), existingExpense.getCategory())) {
+            existingExpense.setCategory(updatedExpense.getCategory());
+            existingExpense.setAutoCategorized(false);
+        }
         existingExpense.setDate(updatedExpense.getDate());
         existingExpense.setDescription(updatedExpense.getDescription());
+        categorizationService.categorize(existingExpense);
 
         // Save and return the updated expense
-        return expenseRepository.save(existingExpense);
+        Expense savedExpense;
+        if (timeSeriesStorage.isEnabled() && existingExpense.getDate() == null) {
+            existingExpense.setDate(previousDate); // The timeField cannot be removed
+        }
+        if (archived) {
+            // An edited archived expense becomes a regular one again, and is archived anew if it is still old enough.
+            // It is inserted before leaving its bucket, so a failure in between cannot lose it.
+            savedExpense = expenseRepository.insert(existingExpense);
+            expenseArchiveService.removeExpense(expenseId);
+        } else if (timeSeriesStorage.isEnabled()) {
+            timeSeriesStorage.update(expenseId, userId, new Update()
+                    .set("amount", existingExpense.getAmount())
+                    .set("category", existingExpense.getCategory())
+                    .set("autoCategorized", existingExpense.isAutoCategorized())
+                    .set("date", existingExpense.getDate())
+                    .set("description", existingExpense.getDescription()), Expense.class);
+            savedExpense = existingExpense;
+        } else {
+            savedExpense = expenseRepository.save(existingExpense);
+        }
+        publishChange(userId, previousDate, updatedExpense.getDate());
+        eventPublisher.publishEvent(LedgerEvent.of(LedgerEvent.Action.UPDATED, existingExpense));
+        return savedExpense;
     }
 
     /**
@@ -116,7 +240,12 @@ public class ExpenseService {
      */
     public void deleteExpense(String expenseId, String userId) {
         // Find the existing expense
-        Optional<Expense> existingExpenseOptional = expenseRepository.findById(expenseId);
+        Optional<Expense> existingExpenseOptional = findStored(expenseId, userId);
+        boolean archived = false;
+        if (!existingExpenseOptional.isPresent()) {
+            existingExpenseOptional = expenseArchiveService.findExpense(expenseId);
+            archived = existingExpenseOptional.isPresent();
+        }
         if (!existingExpenseOptional.isPresent()) {
             throw new ResourceNotFoundException("Expense not found with ID: " + expenseId);
         }
@@ -130,7 +259,15 @@ public class ExpenseService {
         }
 
         // Delete the expense
-        expenseRepository.deleteById(expenseId);
+        if (archived) {
+            expenseArchiveService.removeExpense(expenseId);
+        } else if (timeSeriesStorage.isEnabled()) {
+            timeSeriesStorage.delete(expenseId, userId, Expense.class);
+        } else {
+            expenseRepository.deleteById(expenseId);
+        }
+        publishChange(userId, existingExpense.getDate());
+        eventPublisher.publishEvent(LedgerEvent.of(LedgerEvent.Action.DELETED, existingExpense));
     }
 
     /**
@@ -140,6 +277,31 @@ public class ExpenseService {
      * @return a list of unique categories for the specified user
      */
     public List<String> getAllCategories(String userId) {
-        return expenseRepository.findDistinctCategoriesByUserId(userId);
+        Set<String> categories = new LinkedHashSet<>(expenseRepository.findDistinctCategoriesByUserId(userId));
+        categories.addAll(expenseArchiveService.getCategories(userId));
+        return new ArrayList<>(categories);
+    }
+
+    // Looks in the expenses collection first, then in the archive
+    private Optional<Expense> findExpense(String expenseId, String userId) {
+        Optional<Expense> expense = findStored(expenseId, userId);
+        return expense.isPresent() ? expense : expenseArchiveService.findExpense(expenseId);
+    }
+
+    // A time-series collection is only indexed by its metaField, so there the lookup includes the userId
+    private Optional<Expense> findStored(String expenseId, String userId) {
+        return timeSeriesStorage.isEnabled() ? expenseRepository.findByIdAndUserId(expenseId, userId) : expenseRepository.findById(expenseId);
+    }
+
+    private void publishChange(String userId, Date... dates) {
+        List<Date> changedDates = new ArrayList<>();
+        for (Date date : dates) {
+            if (date != null && !changedDates.contains(date)) {
+                changedDates.add(date);
+            }
+        }
+        if (!changedDates.isEmpty()) {
+            eventPublisher.publishEvent(new ExpenseChangedEvent(userId, changedDates));
+        }
     }
 }
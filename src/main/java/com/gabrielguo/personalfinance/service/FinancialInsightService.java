@@ -19,10 +19,23 @@ import com.gabrielguo.personalfinance.repository.summary.IncomeSummaryRepository
 import com.gabrielguo.personalfinance.repository.summary.SavingsGoalsRepository;
 import com.gabrielguo.personalfinance.repository.summary.CategorySpendingRepository;
 import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.model.InsightType;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class FinancialInsightService {
@@ -54,6 +67,19 @@ public class FinancialInsightService {
     @Autowired
     private CategorySpendingRepository categorySpendingRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private BudgetService budgetService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    @Qualifier("bulkDeleteExecutor")
+    private Executor bulkDeleteExecutor;
+
     /**
      * Deletes an income trend identified by its ID.
      * Validates that the userId associated with the income trend matches the user making the request.
@@ -63,18 +89,10 @@ public class FinancialInsightService {
      * @throws ResourceNotFoundException if the income trend is not found or if the user is not authorized to delete it
      */
     public void deleteIncomeTrend(String incomeTrendId, String userId) {
-        Optional<IncomeTrend> existingIncomeTrendOptional = incomeTrendRepository.findById(incomeTrendId);
-        if (!existingIncomeTrendOptional.isPresent()) {
-            throw new ResourceNotFoundException("IncomeTrend not found with ID: " + incomeTrendId);
-        }
-
-        IncomeTrend existingIncomeTrend = existingIncomeTrendOptional.get();
-
-        if (!existingIncomeTrend.getUserId().equals(userId)) {
-            throw new ResourceNotFoundException("User not authorized to delete this IncomeTrend.");
+        // Ownership is part of the filter, so a foreign or missing document is a single no-op delete
+        if (incomeTrendRepository.deleteByIdAndUserId(incomeTrendId, userId) == 0) {
+            throw new ResourceNotFoundException("IncomeTrend not found with ID: " + incomeTrendId + " for user with ID: " + userId);
         }
-
-        incomeTrendRepository.deleteById(incomeTrendId);
     }
 
     /**
@@ -86,18 +104,9 @@ public class FinancialInsightService {
      * @throws ResourceNotFoundException if the expense trend is not found or if the user is not authorized to delete it
      */
     public void deleteExpenseTrend(String expenseTrendId, String userId) {
-        Optional<ExpenseTrend> existingExpenseTrendOptional = expenseTrendRepository.findById(expenseTrendId);
-        if (!existingExpenseTrendOptional.isPresent()) {
-            throw new ResourceNotFoundException("ExpenseTrend not found with ID: " + expenseTrendId);
-        }
-
-        ExpenseTrend existingExpenseTrend = existingExpenseTrendOptional.get();
-
-        if (!existingExpenseTrend.getUserId().equals(userId)) {
-            throw new ResourceNotFoundException("User not authorized to delete this ExpenseTrend.");
+        if (expenseTrendRepository.deleteByIdAndUserId(expenseTrendId, userId) == 0) {
+            throw new ResourceNotFoundException("ExpenseTrend not found with ID: " + expenseTrendId + " for user with ID: " + userId);
         }
-
-        expenseTrendRepository.deleteById(expenseTrendId);
     }
 
     /**
@@ -109,18 +118,9 @@ public class FinancialInsightService {
      * @throws ResourceNotFoundException if the budget trend is not found or if the user is not authorized to delete it
      */
     public void deleteBudgetTrend(String budgetTrendId, String userId) {
-        Optional<BudgetTrend> existingBudgetTrendOptional = budgetTrendRepository.findById(budgetTrendId);
-        if (!existingBudgetTrendOptional.isPresent()) {
-            throw new ResourceNotFoundException("BudgetTrend not found with ID: " + budgetTrendId);
+        if (budgetTrendRepository.deleteByIdAndUserId(budgetTrendId, userId) == 0) {
+            throw new ResourceNotFoundException("BudgetTrend not found with ID: " + budgetTrendId + " for user with ID: " + userId);
         }
-
-        BudgetTrend existingBudgetTrend = existingBudgetTrendOptional.get();
-
-        if (!existingBudgetTrend.getUserId().equals(userId)) {
-            throw new ResourceNotFoundException("User not authorized to delete this BudgetTrend.");
-        }
-
-        budgetTrendRepository.deleteById(budgetTrendId);
     }
 
     /**
@@ -132,18 +132,9 @@ public class FinancialInsightService {
      * @throws ResourceNotFoundException if the income summary is not found or if the user is not authorized to delete it
      */
     public void deleteIncomeSummary(String incomeSummaryId, String userId) {
-        Optional<IncomeSummary> existingIncomeSummaryOptional = incomeSummaryRepository.findById(incomeSummaryId);
-        if (!existingIncomeSummaryOptional.isPresent()) {
-            throw new ResourceNotFoundException("IncomeSummary not found with ID: " + incomeSummaryId);
+        if (incomeSummaryRepository.deleteByIdAndUserId(incomeSummaryId, userId) == 0) {
+            throw new ResourceNotFoundException("IncomeSummary not found with ID: " + incomeSummaryId + " for user with ID: " + userId);
         }
-
-        IncomeSummary existingIncomeSummary = existingIncomeSummaryOptional.get();
-
-        if (!existingIncomeSummary.getUserId().equals(userId)) {
-            throw new ResourceNotFoundException("User not authorized to delete this IncomeSummary.");
-        }
-
-        incomeSummaryRepository.deleteById(incomeSummaryId);
     }
 
     /**
@@ -155,18 +146,9 @@ public class FinancialInsightService {
      * @throws ResourceNotFoundException if the expense summary is not found or if the user is not authorized to delete it
      */
     public void deleteExpenseSummary(String expenseSummaryId, String userId) {
-        Optional<ExpenseSummary> existingExpenseSummaryOptional = expenseSummaryRepository.findById(expenseSummaryId);
-        if (!existingExpenseSummaryOptional.isPresent()) {
-            throw new ResourceNotFoundException("ExpenseSummary not found with ID: " + expenseSummaryId);
-        }
-
-        ExpenseSummary existingExpenseSummary = existingExpenseSummaryOptional.get();
-
-        if (!existingExpenseSummary.getUserId().equals(userId)) {
-            throw new ResourceNotFoundException("User not authorized to delete this ExpenseSummary.");
+        if (expenseSummaryRepository.deleteByIdAndUserId(expenseSummaryId, userId) == 0) {
+            throw new ResourceNotFoundException("ExpenseSummary not found with ID: " + expenseSummaryId + " for user with ID: " + userId);
         }
-
-        expenseSummaryRepository.deleteById(expenseSummaryId);
     }
 
     /**
@@ -178,18 +160,9 @@ public class FinancialInsightService {
      * @throws ResourceNotFoundException if the financial health record is not found or if the user is not authorized to delete it
      */
     public void deleteFinancialHealth(String financialHealthId, String userId) {
-        Optional<FinancialHealth> existingFinancialHealthOptional = financialHealthRepository.findById(financialHealthId);
-        if (!existingFinancialHealthOptional.isPresent()) {
-            throw new ResourceNotFoundException("FinancialHealth not found with ID: " + financialHealthId);
+        if (financialHealthRepository.deleteByIdAndUserId(financialHealthId, userId) == 0) {
+            throw new ResourceNotFoundException("FinancialHealth not found with ID: " + financialHealthId + " for user with ID: " + userId);
         }
-
-        FinancialHealth existingFinancialHealth = existingFinancialHealthOptional.get();
-
-        if (!existingFinancialHealth.getUserId().equals(userId)) {
-            throw new ResourceNotFoundException("User not authorized to delete this FinancialHealth.");
-        }
-
-        financialHealthRepository.deleteById(financialHealthId);
     }
 
     /**
@@ -201,18 +174,9 @@ public class FinancialInsightService {
      * @throws ResourceNotFoundException if the savings goals are not found or if the user is not authorized to delete it
      */
     public void deleteSavingsGoals(String savingsGoalsId, String userId) {
-        Optional<SavingsGoals> existingSavingsGoalsOptional = savingsGoalsRepository.findById(savingsGoalsId);
-        if (!existingSavingsGoalsOptional.isPresent()) {
-            throw new ResourceNotFoundException("SavingsGoals not found with ID: " + savingsGoalsId);
+        if (savingsGoalsRepository.deleteByIdAndUserId(savingsGoalsId, userId) == 0) {
+            throw new ResourceNotFoundException("SavingsGoals not found with ID: " + savingsGoalsId + " for user with ID: " + userId);
         }
-
-        SavingsGoals existingSavingsGoals = existingSavingsGoalsOptional.get();
-
-        if (!existingSavingsGoals.getUserId().equals(userId)) {
-            throw new ResourceNotFoundException("User not authorized to delete this SavingsGoals.");
-        }
-
-        savingsGoalsRepository.deleteById(savingsGoalsId);
     }
 
     /**
@@ -224,18 +188,9 @@ public class FinancialInsightService {
      * @throws ResourceNotFoundException if the budget analysis is not found or if the user is not authorized to delete it
      */
     public void deleteBudgetAnalysis(String budgetAnalysisId, String userId) {
-        Optional<BudgetAnalysis> existingBudgetAnalysisOptional = budgetAnalysisRepository.findById(budgetAnalysisId);
-        if (!existingBudgetAnalysisOptional.isPresent()) {
-            throw new ResourceNotFoundException("BudgetAnalysis not found with ID: " + budgetAnalysisId);
-        }
-
-        BudgetAnalysis existingBudgetAnalysis = existingBudgetAnalysisOptional.get();
-
-        if (!existingBudgetAnalysis.getUserId().equals(userId)) {
-            throw new ResourceNotFoundException("User not authorized to delete this BudgetAnalysis.");
+        if (budgetAnalysisRepository.deleteByIdAndUserId(budgetAnalysisId, userId) == 0) {
+            throw new ResourceNotFoundException("BudgetAnalysis not found with ID: " + budgetAnalysisId + " for user with ID: " + userId);
         }
-
-        budgetAnalysisRepository.deleteById(budgetAnalysisId);
     }
 
     /**
@@ -247,17 +202,70 @@ public class FinancialInsightService {
      * @throws ResourceNotFoundException if the category spending is not found or if the user is not authorized to delete it
      */
     public void deleteCategorySpending(String categorySpendingId, String userId) {
-        Optional<CategorySpending> existingCategorySpendingOptional = categorySpendingRepository.findById(categorySpendingId);
-        if (!existingCategorySpendingOptional.isPresent()) {
-            throw new ResourceNotFoundException("CategorySpending not found with ID: " + categorySpendingId);
+        if (categorySpendingRepository.deleteByIdAndUserId(categorySpendingId, userId) == 0) {
+            throw new ResourceNotFoundException("CategorySpending not found with ID: " + categorySpendingId + " for user with ID: " + userId);
         }
+    }
 
-        CategorySpending existingCategorySpending = existingCategorySpendingOptional.get();
+    /**
+     * Purges a user's derived insights, one deleteMany per collection, with the collections purged in parallel.
+     * Trends are matched on their month; summaries are matched on when they were created.
+     * Purging budget insights also drops the user's cached budget index, and any purge drops the user's ledger snapshot.
+     *
+     * @param userId the ID of the user whose insights are purged
+     * @param types the insight types to purge; null or empty purges every type
+     * @param startDate the inclusive start of the date range, or null for no lower bound
+     * @param endDate the inclusive end day of the date range, or null for no upper bound
+     * @return the number of documents deleted per insight type
+     */
+    public Map<InsightType, Long> purgeInsights(String userId, Set<InsightType> types, Date startDate, Date endDate) {
+        Set<InsightType> selected = types == null || types.isEmpty() ? EnumSet.allOf(InsightType.class) : EnumSet.copyOf(types);
+
+        Map<InsightType, CompletableFuture<Long>> pending = new EnumMap<>(InsightType.class);
+        for (InsightType type : selected) {
+            Query query = purgeQuery(userId, type, startDate, endDate);
+            pending.put(type, CompletableFuture.supplyAsync(
+                    () -> mongoTemplate.remove(query, type.getDocumentClass()).getDeletedCount(), bulkDeleteExecutor));
+        }
 
-        if (!existingCategorySpending.getUserId().equals(userId)) {
-            throw new ResourceNotFoundException("User not authorized to delete this CategorySpending.");
+        Map<InsightType, Long> deleted = new EnumMap<>(InsightType.class);
+        pending.forEach((type, future) -> deleted.put(type, future.join()));
+        if (selected.contains(InsightType.BUDGET_UTILIZATION) || selected.contains(InsightType.BUDGET_TREND)) {
+            // Budget insights are rebuilt from the budgets, so the cached budget index is rebuilt from them too
+            budgetService.forget(userId);
         }
+        // The ledger snapshot is derived too; the user's totals are rebuilt from the ledger on the next read
+        ledgerService.dropSnapshot(userId);
+        return deleted;
+    }
 
-        categorySpendingRepository.deleteById(categorySpendingId);
+    private Query purgeQuery(String userId, InsightType type, Date startDate, Date endDate) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (startDate == null && endDate == null) {
+            return new Query(criteria);
+        }
+
+        // The end date names a whole day, so the range runs up to the start of the following day
+        Date endExclusive = endDate == null ? null : new Date(endDate.getTime() + TimeUnit.DAYS.toMillis(1));
+        if (type.getDateField() != null) {
+            Criteria range = Criteria.where(type.getDateField());
+            if (startDate != null) {
+                range = range.gte(startDate);
+            }
+            if (endExclusive != null) {
+                range = range.lt(endExclusive);
+            }
+            return new Query(criteria.andOperator(range));
+        }
+
+        // Summaries have no date field; an ObjectId built from a date sorts before any id generated in that second
+        Criteria range = Criteria.where("_id");
+        if (startDate != null) {
+            range = range.gte(new ObjectId(startDate));
+        }
+        if (endExclusive != null) {
+            range = range.lt(new ObjectId(endExclusive));
+        }
+        return new Query(criteria.andOperator(range));
     }
 }
@@ -0,0 +1,118 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.exception.UnsupportedCurrencyException;
+import com.gabrielguo.personalfinance.fx.CurrencyTotals;
+import com.gabrielguo.personalfinance.fx.FxRateTable;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Holds the exchange rates loaded from the files in fx.rates-path and knows which currency each user reports in.
+ * Amounts stored without a currency are in fx.default-currency, which is also the reporting currency of users who
+ * have not chosen one, so data from before currencies were recorded is reported unchanged.
+ * Only currencies with loaded rates can be written, so every stored amount can be converted.
+ */
+@Service
+public class FxRateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FxRateService.class);
+
+    @Autowired
+    private UserSettingsService userSettingsService;
+
+    private final Path directory;
+    private final String defaultCurrency;
+    private volatile FxRateTable table;
+
+    public FxRateService(@Value("${fx.rates-path:data/fx-rates}") String directory,
+                         @Value("${fx.base-currency:USD}") String baseCurrency,
+                         @Value("${fx.default-currency:USD}") String defaultCurrency) {
+        this.directory = Path.of(directory);
+        this.defaultCurrency = defaultCurrency;
+        this.table = FxRateTable.empty(baseCurrency);
+    }
+
+    /**
+     * Loads the rate files, replacing the rates in use. Without a rate directory only same-currency totals are possible.
+     */
+    @PostConstruct
+    public void load() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            logger.info("No exchange rates found in {}, amounts will not be converted", directory);
+            return;
+        }
+        FxRateTable loaded = FxRateTable.load(directory, table.getBaseCurrency());
+        table = loaded;
+        logger.info("Loaded {} exchange rates for {} currencies", loaded.size(), loaded.getCurrencies().size());
+    }
+
+    public FxRateTable getTable() {
+        return table;
+    }
+
+    public String getDefaultCurrency() {
+        return defaultCurrency;
+    }
+
+    /**
+     * @param currency a currency code, or null for the default currency
+     * @return whether amounts in the currency can be converted
+     */
+    public boolean isSupported(String currency) {
+        return currency == null || getTable().indexOf(currency) >= 0;
+    }
+
+    /**
+     * Checks a currency about to be written.
+     *
+     * @param currency a currency code, or null for the default currency
+     * @throws UnsupportedCurrencyException if there are no exchange rates for the currency
+     */
+    public void requireSupported(String currency) {
+        if (!isSupported(currency)) {
+            throw new UnsupportedCurrencyException("Unsupported currency: " + currency + ". Supported currencies are "
+                    + String.join(", ", getTable().getCurrencies()));
+        }
+    }
+
+    /**
+     * @param userId the ID of the user
+     * @return the currency the user's insights are reported in; a chosen currency whose rates are no longer loaded
+     *         falls back to the default currency
+     */
+    public String getReportingCurrency(String userId) {
+        String reportingCurrency = userSettingsService.getUserSettings(userId).getReportingCurrency();
+        return reportingCurrency != null && isSupported(reportingCurrency) ? reportingCurrency : defaultCurrency;
+    }
+
+    /**
+     * @param reportingCurrency the currency to total in
+     * @return empty totals over the current rates
+     */
+    public CurrencyTotals newTotals(String reportingCurrency) {
+        return new CurrencyTotals(getTable(), reportingCurrency, defaultCurrency);
+    }
+
+    /**
+     * Reads a total, logging when amounts were left out of it because there are no exchange rates for their currency.
+     *
+     * @param userId the ID of the user the total is reported to
+     * @param totals the totals to read
+     * @return the total in the reporting currency
+     */
+    public BigDecimal total(String userId, CurrencyTotals totals) {
+        if (!totals.isComplete()) {
+            logger.warn("Amounts without exchange rates to {} were left out of a total for user {}", totals.getReportingCurrency(), userId);
+        }
+        return totals.total();
+    }
+}
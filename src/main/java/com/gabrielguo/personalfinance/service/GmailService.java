@@ -14,13 +14,17 @@ import com.google.api.client.util.store.FileDataStoreFactory;
 import com.google.api.services.gmail.Gmail;
 import com.google.api.services.gmail.GmailScopes;
 import com.google.api.services.gmail.model.Message;
-import jakarta.annotation.PostConstruct;
 import jakarta.mail.MessagingException;
 import jakarta.mail.Session;
 import jakarta.mail.internet.AddressException;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 import org.apache.commons.codec.binary.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
@@ -28,12 +32,15 @@ import java.security.GeneralSecurityException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Service class to handle Gmail operations such as sending emails using the Gmail API.
  */
 @Service
-public class GmailService {
+public class GmailService implements EmailTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(GmailService.class);
 
     // Application name used for identification with the Gmail API.
     private static final String APPLICATION_NAME = "Personal Finance App";
@@ -50,35 +57,138 @@ public class GmailService {
     // Path to the credentials file containing OAuth2 client secrets.
     private static final String CREDENTIALS_FILE_PATH = "/credentials.json";
 
-    // Gmail service object used to interact with the Gmail API.
-    private Gmail service;
+    // Key of the stored OAuth2 credential in the tokens directory.
+    private static final String CREDENTIAL_USER = "user";
+
+    // Lifecycle of the Gmail client, reported by GmailHealthIndicator.
+    public enum Status {
+        NOT_STARTED, INITIALIZING, READY, FAILED
+    }
+
+    // Whether to build the client in the background once the application is ready, rather than on first send.
+    @Value("${gmail.warm-up:true}")
+    private boolean warmUp = true;
+
+    // Gmail service object used to interact with the Gmail API, built on first use.
+    private volatile Gmail service;
+
+    private volatile Status status = Status.NOT_STARTED;
+
+    // Why the last initialization attempt failed, if it did.
+    private volatile Exception initFailure;
+
+    // Held while the client is built, which may include waiting on the interactive OAuth flow.
+    private final ReentrantLock initLock = new ReentrantLock();
 
     /**
-     * Initializes the Gmail API client service.
-     * This method is invoked after the bean is constructed and its dependencies are injected.
+     * Initializes the Gmail API client service if it has not been initialized yet.
+     * This no longer runs during startup, since it reads credentials and may wait on an OAuth flow;
+     * it runs in the background once the application is ready, which is the only place the OAuth flow is started.
+     * A failed attempt is retried on the next call.
      *
      * @throws GeneralSecurityException if a security error occurs.
      * @throws IOException if an I/O error occurs while reading the credentials file.
      */
-    @PostConstruct
     public void init() throws GeneralSecurityException, IOException {
-        // Create a trusted transport layer for HTTP connections.
-        final NetHttpTransport HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
+        initLock.lock();
+        try {
+            build(true);
+        } finally {
+            initLock.unlock();
+        }
+    }
 
-        // Build the Gmail service client with authorization credentials.
-        service = new Gmail.Builder(HTTP_TRANSPORT, JSON_FACTORY, getCredentials(HTTP_TRANSPORT))
-                .setApplicationName(APPLICATION_NAME)
-                .build();
+    // Builds the client unless it exists; without the interactive flow, only a stored credential is used
+    private void build(boolean interactive) throws GeneralSecurityException, IOException {
+        if (service != null) {
+            status = Status.READY;
+            return;
+        }
+        status = Status.INITIALIZING;
+        try {
+            // Create a trusted transport layer for HTTP connections.
+            final NetHttpTransport HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
+
+            // Build the Gmail service client with authorization credentials.
+            service = new Gmail.Builder(HTTP_TRANSPORT, JSON_FACTORY, getCredentials(HTTP_TRANSPORT, interactive))
+                    .setApplicationName(APPLICATION_NAME)
+                    .build();
+            initFailure = null;
+            status = Status.READY;
+        } catch (GeneralSecurityException | IOException | RuntimeException e) {
+            initFailure = e;
+            status = Status.FAILED;
+            throw e;
+        }
+    }
+
+    /**
+     * Builds the Gmail client on a background thread once the application is ready,
+     * so the first email does not pay for it and startup does not wait for it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!warmUp || service != null) {
+            return;
+        }
+        Thread warmUpThread = new Thread(() -> {
+            try {
+                init();
+            } catch (Exception e) {
+                logger.error("Gmail client could not be initialized", e);
+            }
+        }, "gmail-warm-up");
+        warmUpThread.setDaemon(true);
+        warmUpThread.start();
+    }
+
+    /**
+     * @return the current state of the Gmail client
+     */
+    public Status getStatus() {
+        return service != null ? Status.READY : status;
+    }
+
+    /**
+     * @return the failure of the last initialization attempt, or null
+     */
+    public Exception getInitFailure() {
+        return initFailure;
+    }
+
+    /**
+     * Returns the Gmail client, building it first from the stored credential if needed.
+     * Sending never waits on the OAuth flow: it fails at once while the client is being authorized or when no
+     * credential is stored, and the outbox retries the email later.
+     */
+    private Gmail client() throws IOException {
+        Gmail client = service;
+        if (client != null) {
+            return client;
+        }
+        if (!initLock.tryLock()) {
+            throw new IOException("The Gmail client is being initialized");
+        }
+        try {
+            build(false);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Unable to initialize the Gmail client", e);
+        } finally {
+            initLock.unlock();
+        }
+        return service;
     }
 
     /**
      * Loads OAuth2 credentials from the credentials file and sets up the authorization flow.
      *
      * @param HTTP_TRANSPORT the HTTP transport layer to be used.
+     * @param interactive whether to run the OAuth flow when no usable credential is stored.
      * @return an authorized Credential object.
-     * @throws IOException if an I/O error occurs while reading the credentials file.
+     * @throws IOException if an I/O error occurs while reading the credentials file, or no credential is stored
+     *                     and the flow may not run.
      */
-    private static Credential getCredentials(final NetHttpTransport HTTP_TRANSPORT) throws IOException {
+    private static Credential getCredentials(final NetHttpTransport HTTP_TRANSPORT, boolean interactive) throws IOException {
         // Load the client secrets from the specified file.
         InputStream in = GmailService.class.getResourceAsStream(CREDENTIALS_FILE_PATH);
         if (in == null) {
@@ -93,15 +203,26 @@ public class GmailService {
                 .setAccessType("offline")
                 .build();
 
+        // Use the stored credential if it can still be used or refreshed, as the OAuth flow itself would.
+        Credential stored = flow.loadCredential(CREDENTIAL_USER);
+        if (stored != null && (stored.getRefreshToken() != null || stored.getExpiresInSeconds() == null
+                || stored.getExpiresInSeconds() > 60)) {
+            return stored;
+        }
+        if (!interactive) {
+            throw new IOException("No stored Gmail credential in " + TOKENS_DIRECTORY_PATH + "; authorize the application with gmail.warm-up=true");
+        }
+
         // Set up the receiver to handle the OAuth2 authorization code exchange.
         LocalServerReceiver receiver = new LocalServerReceiver.Builder().setPort(8888).build();
 
         // Authorize the client and return the credential object.
-        return new AuthorizationCodeInstalledApp(flow, receiver).authorize("user");
+        return new AuthorizationCodeInstalledApp(flow, receiver).authorize(CREDENTIAL_USER);
     }
 
     /**
      * Sends an email using the Gmail API.
+     * A 403 from Gmail is logged and otherwise ignored.
      *
      * @param to the recipient's email address.
      * @param subject the subject of the email.
@@ -111,6 +232,40 @@ public class GmailService {
      * @throws AddressException if an error occurs with email address formatting.
      */
     public void sendEmail(String to, String subject, String bodyText) throws MessagingException, IOException, AddressException {
+        try {
+            send(to, subject, bodyText);
+        } catch (GoogleJsonResponseException e) {
+            // Handle specific errors based on the response code.
+            if (e.getDetails().getCode() == 403) {
+                logger.warn("Unable to send message: {}", e.getDetails());
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Sends an email using the Gmail API, propagating every failure so the outbox can retry it.
+     *
+     * @param to the recipient's email address.
+     * @param subject the subject of the email.
+     * @param bodyText the body content of the email.
+     * @throws MessagingException if an error occurs while creating the email.
+     * @throws IOException if the Gmail API rejects the email or cannot be reached.
+     */
+    @Override
+    public void send(String to, String subject, String bodyText) throws MessagingException, IOException {
+        Message message = createMessage(to, subject, bodyText);
+
+        // Send the email using the Gmail API and log the message ID.
+        message = client().users().messages().send("me", message).execute();
+        logger.debug("Sent message {}", message.getId());
+    }
+
+    /**
+     * Builds a Gmail API message holding the base64 encoded MIME email.
+     */
+    private Message createMessage(String to, String subject, String bodyText) throws MessagingException, IOException {
         // Setup mail server properties.
         Properties props = new Properties();
         props.put("mail.smtp.host", "smtp.gmail.com"); // SMTP server host.
@@ -137,19 +292,6 @@ public class GmailService {
         // Create a Gmail API message object with the encoded email content.
         Message message = new Message();
         message.setRaw(encodedEmail);
-
-        try {
-            // Send the email using the Gmail API and print the message ID and details.
-            message = service.users().messages().send("me", message).execute();
-            System.out.println("Message id: " + message.getId());
-            System.out.println(message.toPrettyString());
-        } catch (GoogleJsonResponseException e) {
-            // Handle specific errors based on the response code.
-            if (e.getDetails().getCode() == 403) {
-                System.err.println("Unable to send message: " + e.getDetails());
-            } else {
-                throw e;
-            }
-        }
+        return message;
     }
 }
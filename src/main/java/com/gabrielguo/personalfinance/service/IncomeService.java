@@ -1,10 +1,14 @@
 package com.gabrielguo.personalfinance.service;
 
+import com.gabrielguo.personalfinance.config.TimeSeriesStorage;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
 import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
 import com.gabrielguo.personalfinance.model.Income;
 import com.gabrielguo.personalfinance.repository.IncomeRepository;
 import com.gabrielguo.personalfinance.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.util.Date;
@@ -20,15 +24,29 @@ public class IncomeService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private TimeSeriesStorage timeSeriesStorage;
+
+    // Records income changes in the ledger
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Rejects currencies without exchange rates, which the insights could not convert
+    @Autowired
+    private FxRateService fxRateService;
+
     public Income createIncome(Income income, String userId) {
         if (!userRepository.existsById(userId)) {
             throw new ResourceNotFoundException("User not found with ID: " + userId);
         }
+        fxRateService.requireSupported(income.getCurrency());
         income.setUserId(userId);
         if (income.getDate() == null) {
             income.setDate(new Date()); // Set current date if not provided
         }
-        return incomeRepository.save(income);
+        Income savedIncome = incomeRepository.save(income);
+        eventPublisher.publishEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, income));
+        return savedIncome;
     }
 
     public List<Income> getAllIncomes(String userId) {
@@ -36,7 +54,7 @@ public class IncomeService {
     }
 
     public Income getIncomeById(String incomeId, String userId) {
-        Optional<Income> incomeOptional = incomeRepository.findById(incomeId);
+        Optional<Income> incomeOptional = findStored(incomeId, userId);
         if (incomeOptional.isPresent()) {
             Income income = incomeOptional.get();
             if (income.getUserId().equals(userId)) {
@@ -50,7 +68,7 @@ public class IncomeService {
     }
 
     public Income updateIncome(String incomeId, Income updatedIncome, String userId) {
-        Optional<Income> existingIncomeOptional = incomeRepository.findById(incomeId);
+        Optional<Income> existingIncomeOptional = findStored(incomeId, userId);
         if (!existingIncomeOptional.isPresent()) {
             throw new ResourceNotFoundException("Income not found with ID: " + incomeId);
         }
@@ -65,11 +83,21 @@ public class IncomeService {
         existingIncome.setIncomeType(updatedIncome.getIncomeType());
         existingIncome.setDate(updatedIncome.getDate() != null ? updatedIncome.getDate() : existingIncome.getDate());
 
-        return incomeRepository.save(existingIncome);
+        if (timeSeriesStorage.isEnabled()) {
+            timeSeriesStorage.update(incomeId, userId, new Update()
+                    .set("amount", existingIncome.getAmount())
+                    .set("incomeType", existingIncome.getIncomeType())
+                    .set("date", existingIncome.getDate()), Income.class);
+            eventPublisher.publishEvent(LedgerEvent.of(LedgerEvent.Action.UPDATED, existingIncome));
+            return existingIncome;
+        }
+        Income savedIncome = incomeRepository.save(existingIncome);
+        eventPublisher.publishEvent(LedgerEvent.of(LedgerEvent.Action.UPDATED, existingIncome));
+        return savedIncome;
     }
 
     public void deleteIncome(String incomeId, String userId) {
-        Optional<Income> existingIncomeOptional = incomeRepository.findById(incomeId);
+        Optional<Income> existingIncomeOptional = findStored(incomeId, userId);
         if (!existingIncomeOptional.isPresent()) {
             throw new ResourceNotFoundException("Income not found with ID: " + incomeId);
         }
@@ -80,7 +108,12 @@ public class IncomeService {
             throw new ResourceNotFoundException("User not authorized to delete this income.");
         }
 
-        incomeRepository.deleteById(incomeId);
+        if (timeSeriesStorage.isEnabled()) {
+            timeSeriesStorage.delete(incomeId, userId, Income.class);
+        } else {
+            incomeRepository.deleteById(incomeId);
+        }
+        eventPublisher.publishEvent(LedgerEvent.of(LedgerEvent.Action.DELETED, existingIncome));
     }
 
     public List<String> getAllIncomeTypes(String userId) {
@@ -91,4 +124,9 @@ public class IncomeService {
     public List<Income> getIncomesByDateRange(String userId, Date startDate, Date endDate) {
         return incomeRepository.findByUserIdAndDateBetween(userId, startDate, endDate);
     }
-}
\ No newline at end of file
+
+    // A time-series collection is only indexed by its metaField, so there the lookup includes the userId
+    private Optional<Income> findStored(String incomeId, String userId) {
+        return timeSeriesStorage.isEnabled() ? incomeRepository.findByIdAndUserId(incomeId, userId) : incomeRepository.findById(incomeId);
+    }
+}
@@ -3,6 +3,7 @@ package com.gabrielguo.personalfinance.service;
 import com.gabrielguo.personalfinance.model.summary.ExpenseSummary;
 import com.gabrielguo.personalfinance.model.summary.IncomeSummary;
 import com.gabrielguo.personalfinance.model.summary.BudgetAnalysis;
+import com.gabrielguo.personalfinance.model.summary.BudgetUtilization;
 import com.gabrielguo.personalfinance.model.summary.SavingsGoals;
 import com.gabrielguo.personalfinance.model.trends.CategorySpending;
 import com.gabrielguo.personalfinance.model.trends.ExpenseTrend;
@@ -26,4 +27,5 @@ public interface InsightsService {
     List<CategorySpending> getCategorySpending(String userId);
     List<Income> getIncomeSources(String userId);
     FinancialHealth getFinancialHealth(String userId);
+    List<BudgetUtilization> getBudgetUtilization(String userId);
 }
@@ -1,4 +1,5 @@
 package com.gabrielguo.personalfinance.service;
+import com.gabrielguo.personalfinance.fx.CurrencyTotals;
 import com.gabrielguo.personalfinance.model.Budget;
 import com.gabrielguo.personalfinance.model.Expense;
 import com.gabrielguo.personalfinance.model.Income;
@@ -14,12 +15,15 @@ import com.gabrielguo.personalfinance.repository.summary.*;
 import com.gabrielguo.personalfinance.repository.trendsrepo.BudgetTrendRepository;
 import com.gabrielguo.personalfinance.repository.trendsrepo.ExpenseTrendRepository;
 import com.gabrielguo.personalfinance.repository.trendsrepo.IncomeTrendRepository;
+import com.gabrielguo.personalfinance.util.ReadRouting;
+import com.gabrielguo.personalfinance.util.SingleFlight;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
 public class InsightsServiceImpl implements InsightsService {
@@ -63,13 +67,44 @@ public class InsightsServiceImpl implements InsightsService {
     @Autowired
     private FinancialHealthRepository financialHealthRepository;
 
+    @Autowired
+    private BudgetUtilizationService budgetUtilizationService;
+
+    // Archived months are read from their pre-summed bucket totals
+    @Autowired
+    private ExpenseArchiveService expenseArchiveService;
+
+    // Shares one computation between concurrent identical requests
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private ReadRouting readRouting;
+
+    // Converts amounts to each user's reporting currency
+    @Autowired
+    private FxRateService fxRateService;
+
+    // Insights can be computed from slightly stale data, so their reads may be served by secondaries
+    private <T> T analytical(Object key, Supplier<T> computation) {
+        return singleFlight.execute(key, () -> readRouting.route(ReadRouting.Route.ANALYTICAL_READ, computation));
+    }
+
     @Override
     public ExpenseSummary getExpenseSummary(String userId) {
-        // Calculate total expenses from ExpenseRepository
-        BigDecimal totalExpenseAmount = new BigDecimal(expenseRepository.findTotalExpensesByUserId(userId).toString());
+        return analytical(SingleFlight.key(userId, "getExpenseSummary"), () -> computeExpenseSummary(userId));
+    }
+
+    private ExpenseSummary computeExpenseSummary(String userId) {
+        String reportingCurrency = fxRateService.getReportingCurrency(userId);
+
+        // Calculate total expenses from ExpenseRepository and the archive, whose totals are kept per currency and month
+        CurrencyTotals expenseTotals = addRows(fxRateService.newTotals(reportingCurrency), expenseRepository.findTotalExpensesPerCurrency(userId));
+        BigDecimal totalExpenseAmount = fxRateService.total(userId, expenseArchiveService.addTotal(userId, expenseTotals));
 
         // Calculate total transactions from TransactionRepository
-        BigDecimal totalTransactionAmount = new BigDecimal(transactionRepository.findTotalExpensesByUserId(userId).toString());
+        BigDecimal totalTransactionAmount = fxRateService.total(userId, addRows(fxRateService.newTotals(reportingCurrency),
+                transactionRepository.findTotalTransactionsPerCurrency(userId)));
 
         // Combine expenses and transactions
         ExpenseSummary expenseSummary = getExpenseSummary(userId, totalExpenseAmount, totalTransactionAmount);
@@ -100,8 +135,12 @@ public class InsightsServiceImpl implements InsightsService {
 
     @Override
     public IncomeSummary getIncomeSummary(String userId) {
+        return analytical(SingleFlight.key(userId, "getIncomeSummary"), () -> computeIncomeSummary(userId));
+    }
+
+    private IncomeSummary computeIncomeSummary(String userId) {
         // Aggregate income data for the user
-        BigDecimal totalIncome = new BigDecimal(incomeRepository.findTotalIncomeByUserId(userId).toString());
+        BigDecimal totalIncome = totalIncome(userId, fxRateService.getReportingCurrency(userId));
 
         // Define the threshold value
         BigDecimal threshold = new BigDecimal(10000); // Example threshold value
@@ -123,24 +162,27 @@ public class InsightsServiceImpl implements InsightsService {
 
     @Override
     public BudgetAnalysis getBudgetAnalysis(String userId) {
-        // Retrieve budgets, expenses, and transactions for the user
-        List<Budget> budgets = budgetRepository.findByUserId(userId);
-        List<Expense> expenses = expenseRepository.findByUserId(userId);
-        List<Transaction> transactions = transactionRepository.findByUserId(userId);
+        return analytical(SingleFlight.key(userId, "getBudgetAnalysis"), () -> computeBudgetAnalysis(userId));
+    }
+
+    private BudgetAnalysis computeBudgetAnalysis(String userId) {
+        String reportingCurrency = fxRateService.getReportingCurrency(userId);
 
-        // Calculate total budgeted amount
-        BigDecimal totalBudgeted = budgets.stream()
-                .map(Budget::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // Calculate total budgeted amount, converting each budget at the rate of its start date
+        CurrencyTotals budgeted = fxRateService.newTotals(reportingCurrency);
+        for (Budget budget : budgetRepository.findByUserId(userId)) {
+            budgeted.add(budget.getCurrency(), budget.getStartDate(), budget.getAmount());
+        }
+        BigDecimal totalBudgeted = fxRateService.total(userId, budgeted);
 
-        // Calculate total spent amount (expenses and transactions)
-        BigDecimal totalExpenses = expenses.stream()
-                .map(Expense::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // Calculate total spent amount (expenses and transactions), reading them through cursors
+        CurrencyTotals expenseTotals = expenseArchiveService.addTotal(userId, fxRateService.newTotals(reportingCurrency));
+        try (Stream<Expense> expenses = expenseRepository.streamByUserId(userId)) {
+            expenses.forEach(expense -> expenseTotals.add(expense.getCurrency(), expense.getDate(), expense.getAmount()));
+        }
+        BigDecimal totalExpenses = fxRateService.total(userId, expenseTotals);
 
-        BigDecimal totalTransactions = transactions.stream()
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal totalTransactions = sumTransactions(userId, reportingCurrency);
 
         BigDecimal totalSpent = totalExpenses.add(totalTransactions);
 
@@ -162,18 +204,21 @@ public class InsightsServiceImpl implements InsightsService {
 
     @Override
     public SavingsGoals getSavingsGoals(String userId) {
+        return analytical(SingleFlight.key(userId, "getSavingsGoals"), () -> computeSavingsGoals(userId));
+    }
+
+    private SavingsGoals computeSavingsGoals(String userId) {
+        String reportingCurrency = fxRateService.getReportingCurrency(userId);
+
         // Retrieve total income for the user
-        BigDecimal totalIncome = new BigDecimal(incomeRepository.findTotalIncomeByUserId(userId).toString());
+        BigDecimal totalIncome = totalIncome(userId, reportingCurrency);
 
         // Define savings goal as a percentage of income, e.g., 20%
         BigDecimal savingsGoalPercentage = new BigDecimal("0.20");
         BigDecimal totalSavingsGoals = totalIncome.multiply(savingsGoalPercentage);
 
         // Calculate achieved savings
-        List<Transaction> transactions = transactionRepository.findByUserId(userId);
-        BigDecimal totalSavings = transactions.stream()
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal totalSavings = sumTransactions(userId, reportingCurrency);
 
 
         // Determine the status based on achieved savings
@@ -192,26 +237,60 @@ public class InsightsServiceImpl implements InsightsService {
         return savingsGoals;
     }
 
+    // Transactions have no date, so they are converted at today's rates
+    private BigDecimal sumTransactions(String userId, String reportingCurrency) {
+        CurrencyTotals totals = fxRateService.newTotals(reportingCurrency);
+        try (Stream<Transaction> transactions = transactionRepository.streamByUserId(userId)) {
+            transactions.forEach(transaction -> totals.add(transaction.getCurrency(), transaction.getAmount()));
+        }
+        return fxRateService.total(userId, totals);
+    }
+
+    private BigDecimal totalIncome(String userId, String reportingCurrency) {
+        return fxRateService.total(userId, addRows(fxRateService.newTotals(reportingCurrency), incomeRepository.findTotalIncomePerCurrency(userId)));
+    }
+
+    // Adds the {currency, totalAmount} rows of a per-currency aggregation, converted at today's rates
+    private static CurrencyTotals addRows(CurrencyTotals totals, List<Map<String, Object>> rows) {
+        for (Map<String, Object> row : rows) {
+            totals.add((String) row.get("currency"), amountOf(row.get("totalAmount")));
+        }
+        return totals;
+    }
+
+    private static BigDecimal amountOf(Object totalAmount) {
+        if (totalAmount == null || totalAmount instanceof BigDecimal) {
+            return (BigDecimal) totalAmount;
+        }
+        return new BigDecimal(totalAmount.toString());
+    }
+
 
     @Override
     public List<ExpenseTrend> getExpenseTrends(String userId, Date startDate, Date endDate) {
-        // Retrieve and analyze expense trends for the user
-        List<Expense> expenses = expenseRepository.findByUserIdAndDateBetween(userId, startDate, endDate);
+        return analytical(SingleFlight.key(userId, "getExpenseTrends", startDate, endDate),
+                () -> computeExpenseTrends(userId, startDate, endDate));
+    }
 
-        // Map expenses to monthly trends
-        Map<String, BigDecimal> monthlyExpenseMap = new HashMap<>();
+    private List<ExpenseTrend> computeExpenseTrends(String userId, Date startDate, Date endDate) {
+        // Map expenses to monthly trends, folding them in as the cursor yields them, each at the rate of its date
+        String reportingCurrency = fxRateService.getReportingCurrency(userId);
+        Map<String, CurrencyTotals> monthlyTotals = new HashMap<>();
         Calendar calendar = Calendar.getInstance();
 
-        for (Expense expense : expenses) {
-            calendar.setTime(expense.getDate());
-            int year = calendar.get(Calendar.YEAR);
-            int month = calendar.get(Calendar.MONTH); // January is 0, December is 11
-            String monthKey = String.format("%d-%02d", year, month + 1); // Format as "YYYY-MM"
-
-            monthlyExpenseMap.putIfAbsent(monthKey, BigDecimal.ZERO);
-            monthlyExpenseMap.put(monthKey, monthlyExpenseMap.get(monthKey).add(expense.getAmount()));
+        try (Stream<Expense> expenses = expenseRepository.streamByUserIdAndDateBetween(userId, startDate, endDate)) {
+            expenses.forEach(expense -> monthlyTotals
+                    .computeIfAbsent(monthKey(calendar, expense.getDate()), month -> fxRateService.newTotals(reportingCurrency))
+                    .add(expense.getCurrency(), expense.getDate(), expense.getAmount()));
         }
 
+        // Add archived months, whose keys have the same "YYYY-MM" format
+        expenseArchiveService.addMonthlyTotals(userId, startDate, endDate,
+                month -> monthlyTotals.computeIfAbsent(month.toString(), key -> fxRateService.newTotals(reportingCurrency)));
+
+        Map<String, BigDecimal> monthlyExpenseMap = new HashMap<>();
+        monthlyTotals.forEach((month, totals) -> monthlyExpenseMap.put(month, fxRateService.total(userId, totals)));
+
         // Convert to List<ExpenseTrend>
         List<ExpenseTrend> expenseTrends = new ArrayList<>();
         for (Map.Entry<String, BigDecimal> entry : monthlyExpenseMap.entrySet()) {
@@ -238,29 +317,38 @@ public class InsightsServiceImpl implements InsightsService {
 
     @Override
     public List<IncomeTrend> getIncomeTrends(String userId, Date startDate, Date endDate) {
-        // Retrieve all incomes for the user within the specified date range
-        List<Income> incomes = incomeRepository.findByUserIdAndDateBetween(userId, startDate, endDate);
+        return analytical(SingleFlight.key(userId, "getIncomeTrends", startDate, endDate),
+                () -> computeIncomeTrends(userId, startDate, endDate));
+    }
+
+    private List<IncomeTrend> computeIncomeTrends(String userId, Date startDate, Date endDate) {
+        // Total the incomes within the range per month in a single pass over the cursor,
+        // along with the totals at the start and end of the period
+        String reportingCurrency = fxRateService.getReportingCurrency(userId);
+        Map<String, CurrencyTotals> monthlyTotals = new HashMap<>();
+        CurrencyTotals[] periodTotals = {fxRateService.newTotals(reportingCurrency), fxRateService.newTotals(reportingCurrency)};
+        Calendar calendar = Calendar.getInstance();
+
+        try (Stream<Income> incomes = incomeRepository.streamByUserIdAndDateBetween(userId, startDate, endDate)) {
+            incomes.forEach(income -> {
+                monthlyTotals.computeIfAbsent(monthKey(calendar, income.getDate()), month -> fxRateService.newTotals(reportingCurrency))
+                        .add(income.getCurrency(), income.getDate(), income.getAmount());
+                addToPeriodTotals(periodTotals, startDate, endDate, income);
+            });
+        }
 
-        // Calculate the total income at the start and end of the period
-        String status = getString(startDate, endDate, incomes);
+        // Determine the income trend status based on whether income increased
+        String status = fxRateService.total(userId, periodTotals[1]).compareTo(fxRateService.total(userId, periodTotals[0])) > 0 ? "good" : "bad";
 
         // Create an IncomeTrend object for each month in the range and set the status
         List<IncomeTrend> incomeTrends = new ArrayList<>();
-        Calendar calendar = Calendar.getInstance();
         calendar.setTime(startDate);
 
         while (!calendar.getTime().after(endDate)) {
             Date monthDate = calendar.getTime();
 
-            BigDecimal monthlyIncome = incomes.stream()
-                    .filter(income -> {
-                        Calendar incomeCalendar = Calendar.getInstance();
-                        incomeCalendar.setTime(income.getDate());
-                        return incomeCalendar.get(Calendar.MONTH) == calendar.get(Calendar.MONTH) &&
-                                incomeCalendar.get(Calendar.YEAR) == calendar.get(Calendar.YEAR);
-                    })
-                    .map(Income::getAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            CurrencyTotals monthTotals = monthlyTotals.get(monthKey(calendar, monthDate));
+            BigDecimal monthlyIncome = monthTotals != null ? fxRateService.total(userId, monthTotals) : BigDecimal.ZERO;
 
             IncomeTrend trend = new IncomeTrend();
             trend.setUserId(userId);
@@ -279,44 +367,38 @@ public class InsightsServiceImpl implements InsightsService {
         return incomeTrends;
     }
 
-    private static String getString(Date startDate, Date endDate, List<Income> incomes) {
-        BigDecimal totalIncomeAtStart = BigDecimal.ZERO;
-        BigDecimal totalIncomeAtEnd = BigDecimal.ZERO;
-
-        for (Income income : incomes) {
-            if (income.getDate().before(startDate)) {
-                totalIncomeAtStart = totalIncomeAtStart.add(income.getAmount());
-            } else if (!income.getDate().after(endDate)) {
-                totalIncomeAtEnd = totalIncomeAtEnd.add(income.getAmount());
-            }
+    // Adds an income to the total at the start (index 0) or at the end (index 1) of the period
+    private static void addToPeriodTotals(CurrencyTotals[] periodTotals, Date startDate, Date endDate, Income income) {
+        if (income.getDate().before(startDate)) {
+            periodTotals[0].add(income.getCurrency(), income.getDate(), income.getAmount());
+        } else if (!income.getDate().after(endDate)) {
+            periodTotals[1].add(income.getCurrency(), income.getDate(), income.getAmount());
         }
+    }
 
-        // Determine the income trend status based on whether income increased
-        return totalIncomeAtEnd.compareTo(totalIncomeAtStart) > 0 ? "good" : "bad";
+    // Formats a date as "YYYY-MM" in the calendar's time zone, moving the calendar to that date
+    private static String monthKey(Calendar calendar, Date date) {
+        calendar.setTime(date);
+        return String.format("%d-%02d", calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1); // Calendar months are 0-based
     }
 
     @Override
     public List<BudgetTrend> getBudgetTrends(String userId, Date startDate, Date endDate) {
-        // Retrieve the most recent budget for the user within the specified date range
-        Budget mostRecentBudget = budgetRepository.findMostRecentBudget(userId, startDate, endDate);
-
-        // Retrieve all budgets for the user within the specified date range
-        List<Budget> budgets = budgetRepository.findBudgetsByUserIdAndDateRange(userId, startDate, endDate,
-                Sort.by(Sort.Order.desc("endDate")));
+        return analytical(SingleFlight.key(userId, "getBudgetTrends", startDate, endDate),
+                () -> computeBudgetTrends(userId, startDate, endDate));
+    }
 
-        // Determine the highest budget amount
-        BigDecimal highestBudgetAmount = BigDecimal.ZERO;
+    private List<BudgetTrend> computeBudgetTrends(String userId, Date startDate, Date endDate) {
+        // One aggregation returns the most recent budget covering the range and the highest amount among those budgets
+        BudgetRepository.RangeSummary summary = budgetRepository.summarizeRange(userId, startDate, endDate);
 
-        if (mostRecentBudget != null) {
-            // Find the highest budget amount
-            for (Budget budget : budgets) {
-                if (budget.getAmount().compareTo(highestBudgetAmount) > 0) {
-                    highestBudgetAmount = budget.getAmount();
-                }
-            }
+        // A budget stored without an amount has nothing to compare
+        if (summary != null && summary.getMostRecent() != null && summary.getMostRecent().getAmount() != null) {
+            Budget mostRecentBudget = summary.getMostRecent();
 
             // Check if the most recent budget amount is the highest budget amount found
-            boolean isGoodTrend = mostRecentBudget.getAmount().compareTo(highestBudgetAmount) >= 0;
+            boolean isGoodTrend = summary.getHighestAmount() == null
+                    || mostRecentBudget.getAmount().compareTo(summary.getHighestAmount()) >= 0;
 
             // Create a BudgetTrend object to reflect the status
             List<BudgetTrend> budgetTrends = new ArrayList<>();
@@ -343,36 +425,45 @@ public class InsightsServiceImpl implements InsightsService {
 
     @Override
     public List<CategorySpending> getCategorySpending(String userId) {
+        return analytical(SingleFlight.key(userId, "getCategorySpending"), () -> computeCategorySpending(userId));
+    }
+
+    private List<CategorySpending> computeCategorySpending(String userId) {
         // Retrieve total expenses per category
         List<Map<String, Object>> expenseCategoryTotals = expenseRepository.findTotalExpensesPerCategory(userId);
 
         // Retrieve total transactions per category
         List<Map<String, Object>> transactionCategoryTotals = transactionRepository.findTotalTransactionsPerCategory(userId);
 
-        // Combine totals into a single map
-        Map<String, BigDecimal> combinedTotals = new HashMap<>();
+        // Combine totals into a single map, each category totalled in the reporting currency
+        String reportingCurrency = fxRateService.getReportingCurrency(userId);
+        Map<String, CurrencyTotals> combinedTotals = new HashMap<>();
 
         // Add expense totals to combinedTotals
         for (Map<String, Object> entry : expenseCategoryTotals) {
             String category = (String) entry.get("category");
-            BigDecimal totalAmount = (BigDecimal) entry.get("totalAmount");
-            combinedTotals.merge(category, totalAmount, BigDecimal::add);
+            combinedTotals.computeIfAbsent(category, key -> fxRateService.newTotals(reportingCurrency))
+                    .add((String) entry.get("currency"), amountOf(entry.get("totalAmount")));
         }
 
+        // Add archived expense totals, which are kept per currency and month, to combinedTotals
+        expenseArchiveService.addCategoryTotals(userId,
+                category -> combinedTotals.computeIfAbsent(category, key -> fxRateService.newTotals(reportingCurrency)));
+
         // Add transaction totals to combinedTotals
         for (Map<String, Object> entry : transactionCategoryTotals) {
-            String category = (String) entry.get("description");
-            BigDecimal totalAmount = (BigDecimal) entry.get("totalAmount");
-            combinedTotals.merge(category, totalAmount, BigDecimal::add);
+            String category = (String) entry.get("category");
+            combinedTotals.computeIfAbsent(category, key -> fxRateService.newTotals(reportingCurrency))
+                    .add((String) entry.get("currency"), amountOf(entry.get("totalAmount")));
         }
 
         // Create CategorySpending objects and save them
         List<CategorySpending> categorySpendings = new ArrayList<>();
-        for (Map.Entry<String, BigDecimal> entry : combinedTotals.entrySet()) {
+        for (Map.Entry<String, CurrencyTotals> entry : combinedTotals.entrySet()) {
             CategorySpending spending = new CategorySpending();
             spending.setUserId(userId);
             spending.setCategory(entry.getKey());
-            spending.setTotalSpending(entry.getValue());
+            spending.setTotalSpending(fxRateService.total(userId, entry.getValue()));
             categorySpendings.add(spending);
         }
 
@@ -386,22 +477,28 @@ public class InsightsServiceImpl implements InsightsService {
 
     @Override
     public List<Income> getIncomeSources(String userId) {
-        // Retrieve distinct income types for the user
-        List<String> incomeTypes = incomeRepository.findDistinctIncomeTypesByUserId(userId);
+        return analytical(SingleFlight.key(userId, "getIncomeSources"), () -> computeIncomeSources(userId));
+    }
+
+    private List<Income> computeIncomeSources(String userId) {
+        // Retrieve the total income per type and currency in one aggregation, and total each type in the reporting currency
+        String reportingCurrency = fxRateService.getReportingCurrency(userId);
+        Map<String, CurrencyTotals> totalsByType = new LinkedHashMap<>();
+        for (Map<String, Object> entry : incomeRepository.findTotalIncomePerType(userId)) {
+            totalsByType.computeIfAbsent((String) entry.get("incomeType"), key -> fxRateService.newTotals(reportingCurrency))
+                    .add((String) entry.get("currency"), amountOf(entry.get("totalAmount")));
+        }
 
         // Initialize a list to hold the results
         List<Income> incomeSources = new ArrayList<>();
 
-        // Calculate the total income for each type
-        for (String incomeType : incomeTypes) {
-            // Aggregate total income for the current income type
-            BigDecimal totalIncome = new BigDecimal(incomeRepository.findTotalIncomeByTypeAndUserId(userId, incomeType).toString());
-
+        for (Map.Entry<String, CurrencyTotals> entry : totalsByType.entrySet()) {
             // Create an Income object for the result
             Income income = new Income();
             income.setUserId(userId);
-            income.setIncomeType(incomeType);
-            income.setAmount(totalIncome);
+            income.setIncomeType(entry.getKey());
+            income.setAmount(fxRateService.total(userId, entry.getValue()));
+            income.setCurrency(reportingCurrency);
 
             // Add the Income object to the list
             incomeSources.add(income);
@@ -412,6 +509,10 @@ public class InsightsServiceImpl implements InsightsService {
 
     @Override
     public FinancialHealth getFinancialHealth(String userId) {
+        return analytical(SingleFlight.key(userId, "getFinancialHealth"), () -> computeFinancialHealth(userId));
+    }
+
+    private FinancialHealth computeFinancialHealth(String userId) {
         // Retrieve the most recent total income
         BigDecimal totalIncome = incomeSummaryRepository.findMostRecentTotalByUserId(userId);
 
@@ -447,4 +548,11 @@ public class InsightsServiceImpl implements InsightsService {
         return financialHealth;
     }
 
+    @Override
+    public List<BudgetUtilization> getBudgetUtilization(String userId) {
+        // Kept up to date as expenses and budgets change, so this is normally a single read. It is a critical read,
+        // since missing results are rebuilt and stored, and stale data from a secondary must not be written back.
+        return singleFlight.execute(SingleFlight.key(userId, "getBudgetUtilization"),
+                () -> readRouting.route(ReadRouting.Route.CRITICAL_READ, () -> budgetUtilizationService.getUtilization(userId)));
+    }
 }
@@ -0,0 +1,350 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.gabrielguo.personalfinance.event.LedgerBatchEvent;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.ledger.LedgerEntry;
+import com.gabrielguo.personalfinance.ledger.LedgerLog;
+import com.gabrielguo.personalfinance.ledger.LedgerProjection;
+import com.gabrielguo.personalfinance.ledger.LedgerSnapshotStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Records every change to expenses, incomes, transactions and budgets in an append-only ledger and rebuilds
+ * per-user projections from it. A projection starts from the user's latest snapshot and replays the entries
+ * recorded since, so totals can be rebuilt at any time, or as of any past moment, without reading the collections.
+ * Enabled with ledger.enabled=true; the ledger only holds changes made while it was enabled.
+ */
+@Service
+public class LedgerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerService.class);
+
+    // Keeps amounts exact, scale included
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .nodeFactory(JsonNodeFactory.withExactBigDecimals(true))
+            .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    // Users with entries recorded since their last snapshot, and how many
+    private final Map<String, AtomicLong> unsnapshotted = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean forceOnAppend;
+    private final int snapshotEvery;
+
+    private LedgerLog log;
+    private LedgerSnapshotStore snapshots;
+
+    public LedgerService(@Value("${ledger.enabled:false}") boolean enabled,
+                         @Value("${ledger.path:data/ledger}") String directory,
+                         @Value("${ledger.segment-size-bytes:67108864}") int segmentSize,
+                         @Value("${ledger.force-on-append:false}") boolean forceOnAppend,
+                         @Value("${ledger.snapshot-every:1000}") int snapshotEvery) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentSize = segmentSize;
+        this.forceOnAppend = forceOnAppend;
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        log = new LedgerLog(directory.resolve("segments"), segmentSize, forceOnAppend);
+        snapshots = new LedgerSnapshotStore(directory.resolve("snapshots"), objectMapper);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends a change to the ledger. The change is already stored, so a failure to record it is reported
+     * rather than passed on to the request that made it.
+     *
+     * @param event the change
+     */
+    @EventListener
+    public void onLedgerEvent(LedgerEvent event) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            log.append(objectMapper.writeValueAsBytes(LedgerEntry.from(event, new Date())));
+            unsnapshotted.computeIfAbsent(event.userId(), userId -> new AtomicLong()).incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to record a ledger entry for user {}", event.userId(), e);
+        }
+    }
+
+    /**
+     * Appends a batch of changes to the ledger in one write, forcing it to disk once rather than once per change.
+     * As with a single change, a failure to record the batch is reported rather than passed on.
+     *
+     * @param batch the changes
+     */
+    @EventListener
+    public void onLedgerBatch(LedgerBatchEvent batch) {
+        if (!enabled || batch.events().isEmpty()) {
+            return;
+        }
+        try {
+            Date recordedAt = new Date();
+            List<byte[]> payloads = new ArrayList<>(batch.events().size());
+            for (LedgerEvent event : batch.events()) {
+                payloads.add(objectMapper.writeValueAsBytes(LedgerEntry.from(event, recordedAt)));
+            }
+            log.appendAll(payloads);
+            unsnapshotted.computeIfAbsent(batch.userId(), userId -> new AtomicLong()).addAndGet(payloads.size());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to record {} ledger entries for user {}", batch.events().size(), batch.userId(), e);
+        }
+    }
+
+    /**
+     * Records the deletion of a user's account and deletes the user's snapshot. The ledger is append-only, so a
+     * tombstone is appended instead of removing the user's entries; replaying it discards everything before it,
+     * so no projection of the user, current or past, shows the deleted data. The next compaction removes the
+     * entries from disk.
+     *
+     * @param userId the ID of the deleted user
+     */
+    public void forget(String userId) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            log.append(objectMapper.writeValueAsBytes(LedgerEntry.accountDeleted(userId, new Date())));
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to record the account deletion of user {} in the ledger", userId, e);
+        }
+        dropSnapshot(userId);
+    }
+
+    /**
+     * Deletes a user's snapshot, so that their next projection is rebuilt from the ledger itself.
+     *
+     * @param userId the ID of the user
+     */
+    public void dropSnapshot(String userId) {
+        if (!enabled) {
+            return;
+        }
+        unsnapshotted.remove(userId);
+        try {
+            snapshots.delete(userId);
+        } catch (IOException e) {
+            logger.error("Failed to delete the ledger snapshot of user {}", userId, e);
+        }
+    }
+
+    /**
+     * Rebuilds a user's projection from the latest snapshot and the entries recorded since. The snapshot is
+     * replaced once ledger.snapshot-every entries had to be replayed on top of it. A user without a snapshot has
+     * to be replayed from the start of the ledger, so one is saved right away unless the user has nothing left.
+     *
+     * @param userId the ID of the user
+     * @return the user's current projection
+     * @throws ResourceNotFoundException if the ledger is not enabled
+     */
+    public LedgerProjection getProjection(String userId) {
+        requireEnabled();
+        Optional<LedgerProjection> snapshot = snapshots.load(userId);
+        LedgerProjection projection = snapshot.orElseGet(() -> new LedgerProjection(userId));
+        long[] replayed = {0};
+        replay(userId, projection.getSequence(), entry -> {
+            projection.apply(entry);
+            replayed[0]++;
+        });
+        if (replayed[0] >= snapshotEvery || (snapshot.isEmpty() && !projection.getEntities().isEmpty())) {
+            saveSnapshot(projection);
+        }
+        return projection;
+    }
+
+    /**
+     * Rebuilds a user's projection as it was at a past moment, from the entries recorded up to then.
+     * The latest snapshot is used as the starting point only if it was taken no later than that moment.
+     * The deletion of the user's account applies whenever it happened, so a deleted account has no past totals either.
+     *
+     * @param userId the ID of the user
+     * @param asOf the moment, compared with when each change was recorded
+     * @return the user's projection at that moment
+     * @throws ResourceNotFoundException if the ledger is not enabled
+     */
+    public LedgerProjection getProjectionAt(String userId, Date asOf) {
+        requireEnabled();
+        LedgerProjection projection = snapshots.load(userId)
+                .filter(snapshot -> snapshot.getAsOf() == null || !snapshot.getAsOf().after(asOf))
+                .orElseGet(() -> new LedgerProjection(userId));
+        replay(userId, projection.getSequence(), entry -> {
+            if (!entry.getRecordedAt().after(asOf) || entry.isAccountDeletion()) {
+                projection.apply(entry);
+            }
+        });
+        return projection;
+    }
+
+    /**
+     * Passes a user's entries after a sequence number to a consumer, in the order they were recorded.
+     * New projections can be backfilled by replaying from sequence 0.
+     *
+     * @param userId the ID of the user
+     * @param afterSequence the sequence number of the last entry already seen
+     * @param consumer receives each entry
+     * @throws ResourceNotFoundException if the ledger is not enabled
+     */
+    public void replay(String userId, long afterSequence, Consumer<LedgerEntry> consumer) {
+        requireEnabled();
+        try {
+            // Only the user's own entries are decoded in full
+            log.replay(afterSequence, (sequence, payload) -> {
+                if (userId.equals(userIdOf(payload))) {
+                    LedgerEntry entry = read(payload);
+                    entry.setSequence(sequence);
+                    consumer.accept(entry);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the ledger", e);
+        }
+    }
+
+    /**
+     * Snapshots every user with entries recorded since their last snapshot, then forces the ledger to disk.
+     *
+     * @return the number of snapshots written
+     */
+    public int snapshotPending() {
+        if (!enabled) {
+            return 0;
+        }
+        int written = 0;
+        for (String userId : new ArrayList<>(unsnapshotted.keySet())) {
+            try {
+                if (saveSnapshot(getProjection(userId))) {
+                    written++;
+                }
+            } catch (RuntimeException e) {
+                logger.error("Failed to snapshot the ledger of user {}", userId, e);
+            }
+        }
+        log.flush();
+        return written;
+    }
+
+    /**
+     * Removes the entries of deleted accounts from the full segments of the ledger: every entry of a user recorded
+     * before the user's tombstone, and the tombstone itself, which has nothing left to discard once it is compacted
+     * too. Segments are compacted oldest first, so a crash midway never loses a tombstone before the entries it
+     * discards. The segment being appended to is left as it is until it is full.
+     *
+     * @return the number of entries removed
+     */
+    public long compact() {
+        if (!enabled) {
+            return 0;
+        }
+        Map<String, Long> tombstones = new HashMap<>();
+        try {
+            log.replay(0, (sequence, payload) -> {
+                LedgerEntry entry = read(payload);
+                if (entry.isAccountDeletion()) {
+                    tombstones.put(entry.getUserId(), sequence);
+                }
+            });
+            if (tombstones.isEmpty()) {
+                return 0;
+            }
+            return log.compact((sequence, payload) -> {
+                Long tombstone = tombstones.get(userIdOf(payload));
+                return tombstone == null || sequence > tombstone;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact the ledger", e);
+        }
+    }
+
+    private boolean saveSnapshot(LedgerProjection projection) {
+        try {
+            snapshots.save(projection);
+            unsnapshotted.remove(projection.getUserId());
+            return true;
+        } catch (IOException e) {
+            logger.error("Failed to save the ledger snapshot of user {}", projection.getUserId(), e);
+            return false;
+        }
+    }
+
+    // Reads only the userId of an entry, skipping the fields around it
+    private String userIdOf(byte[] payload) {
+        try (JsonParser parser = objectMapper.getFactory().createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("userId".equals(field)) {
+                    return parser.getValueAsString();
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable ledger entry", e);
+        }
+    }
+
+    private LedgerEntry read(byte[] payload) {
+        try {
+            return objectMapper.readValue(payload, LedgerEntry.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable ledger entry", e);
+        }
+    }
+
+    private void requireEnabled() {
+        if (!enabled) {
+            throw new ResourceNotFoundException("The ledger is not enabled");
+        }
+    }
+}
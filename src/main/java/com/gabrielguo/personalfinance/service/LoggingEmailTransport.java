@@ -0,0 +1,20 @@
+package com.gabrielguo.personalfinance.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+/**
+ * Local stand-in for the Gmail transport that prints emails instead of sending them.
+ * Enabled with email.transport=logging for development and tests without Gmail credentials.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "email.transport", havingValue = "logging")
+public class LoggingEmailTransport implements EmailTransport {
+
+    @Override
+    public void send(String to, String subject, String bodyText) {
+        System.out.println("Email to " + to + ": " + subject + "\n" + bodyText);
+    }
+}
@@ -0,0 +1,184 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.RecurringSeries;
+import com.gabrielguo.personalfinance.recurring.RecurringDetector;
+import com.gabrielguo.personalfinance.repository.ExpenseRepository;
+import com.gabrielguo.personalfinance.repository.RecurringSeriesRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Detects the subscriptions and bills of every user in a batch and stores them as recurring series, so upcoming
+ * bills are read from the stored series instead of the expense history.
+ * Only expenses are searched, since transactions carry no date to fit a period to. The lookback reaches past
+ * expense.archive.min-age-days, so the archived expenses within it are searched too.
+ */
+@Service
+public class RecurringSeriesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecurringSeriesService.class);
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private RecurringSeriesRepository recurringSeriesRepository;
+
+    @Autowired
+    private ExpenseArchiveService expenseArchiveService;
+
+    @Autowired
+    @Qualifier("recurringDetectionExecutor")
+    private Executor recurringDetectionExecutor;
+
+    private final RecurringDetector detector;
+    private final int lookbackMonths;
+    // The days min-occurrences expenses of the longest period can span, which the lookback always covers
+    private final long longestSpanDays;
+    private final int partitions;
+
+    public RecurringSeriesService(@Value("${recurring.amount-tolerance:0.1}") double amountTolerance,
+                                  @Value("${recurring.min-occurrences:3}") int minOccurrences,
+                                  @Value("${recurring.min-fit:0.75}") double minFit,
+                                  @Value("${recurring.lookback-months:13}") int lookbackMonths,
+                                  @Value("${recurring.partitions:4}") int partitions) {
+        this.detector = new RecurringDetector(amountTolerance, minOccurrences, minFit);
+        this.lookbackMonths = lookbackMonths;
+        this.longestSpanDays = (long) (minOccurrences - 1) * Arrays.stream(RecurringSeries.Period.values())
+                .mapToInt(period -> period.getDays() + period.getToleranceDays()).max().orElse(0);
+        this.partitions = partitions;
+    }
+
+    /**
+     * Detects the series of every user with expenses in the lookback: the last recurring.lookback-months months, or
+     * longer if that is too short to hold recurring.min-occurrences expenses of a yearly series. Users are split
+     * into recurring.partitions partitions by ID, which run in parallel on the detection executor.
+     * A failure for one user is reported and does not stop the others.
+     * Users are found by their unarchived expenses, through the {userId: 1, date: 1} index of the expenses. A user
+     * whose expenses are all archived has had none for a year, so none of their series is still active.
+     *
+     * @param today the day to detect on
+     * @return the number of series stored
+     */
+    public int detectAll(LocalDate today) {
+        Date since = since(today);
+        List<String> userIds = mongoTemplate.findDistinct(new Query(Criteria.where("date").gte(since)), "userId", Expense.class, String.class);
+        List<List<String>> partitioned = new ArrayList<>();
+        for (int i = 0; i < partitions; i++) {
+            partitioned.add(new ArrayList<>());
+        }
+        for (String userId : userIds) {
+            partitioned.get(Math.floorMod(userId.hashCode(), partitions)).add(userId);
+        }
+
+        AtomicInteger stored = new AtomicInteger();
+        List<CompletableFuture<Void>> runs = new ArrayList<>();
+        for (List<String> partition : partitioned) {
+            if (partition.isEmpty()) {
+                continue;
+            }
+            runs.add(CompletableFuture.runAsync(() -> {
+                for (String userId : partition) {
+                    try {
+                        stored.addAndGet(detectUser(userId, today).size());
+                    } catch (RuntimeException e) {
+                        logger.error("Failed to detect recurring expenses of user {}", userId, e);
+                    }
+                }
+            }, recurringDetectionExecutor));
+        }
+        CompletableFuture.allOf(runs.toArray(new CompletableFuture[0])).join();
+        return stored.get();
+    }
+
+    /**
+     * Detects a user's series in their expenses and archived expenses, and replaces the stored ones. Series found
+     * again keep their IDs; series no longer found are removed once the new ones are stored.
+     *
+     * @param userId the ID of the user
+     * @param today the day to detect on
+     * @return the detected series
+     */
+    public List<RecurringSeries> detectUser(String userId, LocalDate today) {
+        Date since = since(today);
+        Date until = date(today.plusDays(1));
+        // By ID, since an expense being archived is briefly in both its bucket and the expenses
+        Map<String, Expense> expenses = new LinkedHashMap<>();
+        for (Expense archived : expenseArchiveService.findExpensesBetween(userId, since, until)) {
+            expenses.put(archived.getId(), archived);
+        }
+        try (Stream<Expense> stream = expenseRepository.streamByUserIdAndDateBetween(userId, since, until)) {
+            stream.forEach(expense -> expenses.put(expense.getId(), expense));
+        }
+        Date detectedAt = new Date();
+        List<RecurringSeries> detected = detector.detect(userId, new ArrayList<>(expenses.values()), today);
+        for (RecurringSeries series : detected) {
+            series.setDetectedAt(detectedAt);
+        }
+        recurringSeriesRepository.saveAll(detected);
+        recurringSeriesRepository.deleteByUserIdAndDetectedAtBefore(userId, detectedAt);
+        return detected;
+    }
+
+    /**
+     * @param userId the ID of the user
+     * @return the user's stored series, by next expected date
+     */
+    public List<RecurringSeries> getRecurringSeries(String userId) {
+        return recurringSeriesRepository.findByUserIdOrderByNextDateAsc(userId);
+    }
+
+    /**
+     * Retrieves the bills a user can expect within a number of days, from the stored series of the last detection.
+     *
+     * @param userId the ID of the user
+     * @param days how many days ahead to look
+     * @return the active series expected by then, overdue ones included, by next expected date
+     */
+    public List<RecurringSeries> getUpcoming(String userId, int days) {
+        Date until = date(LocalDate.now(ZONE).plusDays(days + 1L));
+        List<RecurringSeries> upcoming = new ArrayList<>();
+        for (RecurringSeries series : getRecurringSeries(userId)) {
+            if (series.isActive() && series.getNextDate().before(until)) {
+                upcoming.add(series);
+            }
+        }
+        return upcoming;
+    }
+
+    private Date since(LocalDate today) {
+        LocalDate configured = today.minusMonths(lookbackMonths);
+        LocalDate longest = today.minusDays(longestSpanDays);
+        return date(configured.isBefore(longest) ? configured : longest);
+    }
+
+    private static Date date(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZONE).toInstant());
+    }
+}
@@ -0,0 +1,214 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.anomaly.SpendingStats;
+import com.gabrielguo.personalfinance.event.LedgerBatchEvent;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.summary.SpendingAnomaly;
+import com.gabrielguo.personalfinance.repository.ExpenseRepository;
+import com.gabrielguo.personalfinance.util.TtlCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Flags expenses that are unusually large for their category as they are created.
+ * Each user keeps running statistics per category and currency, so checking a new expense neither reads past
+ * expenses nor grows with them. The statistics of at most anomaly.max-users users are kept in memory. A user's are
+ * rebuilt from their last anomaly.history-months months of expenses when missing: after a restart, after being
+ * evicted, and anomaly.ttl-minutes after they were built, which also picks up the expenses created through other
+ * instances. Rebuilt statistics replay the expenses by date, so updated and deleted expenses count as they are now.
+ */
+@Service
+public class SpendingAnomalyService {
+
+    private static final String UNCATEGORIZED = "Uncategorized";
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private ExpenseArchiveService expenseArchiveService;
+
+    private final TtlCache<String, UserSpending> users;
+
+    private final boolean enabled;
+    private final double smoothing;
+    private final int minSamples;
+    private final double threshold;
+    private final double minDeviationRatio;
+    private final int maxRecent;
+    private final int historyMonths;
+
+    public SpendingAnomalyService(@Value("${anomaly.enabled:true}") boolean enabled,
+                                  @Value("${anomaly.smoothing:0.1}") double smoothing,
+                                  @Value("${anomaly.min-samples:5}") int minSamples,
+                                  @Value("${anomaly.threshold:3.0}") double threshold,
+                                  @Value("${anomaly.min-deviation-ratio:0.1}") double minDeviationRatio,
+                                  @Value("${anomaly.max-recent:50}") int maxRecent,
+                                  @Value("${anomaly.max-users:10000}") int maxUsers,
+                                  @Value("${anomaly.ttl-minutes:60}") long ttlMinutes,
+                                  @Value("${anomaly.history-months:12}") int historyMonths) {
+        this.enabled = enabled;
+        this.smoothing = smoothing;
+        this.minSamples = minSamples;
+        this.threshold = threshold;
+        this.minDeviationRatio = minDeviationRatio;
+        this.maxRecent = maxRecent;
+        this.users = new TtlCache<>(maxUsers, ttlMinutes, TimeUnit.MINUTES);
+        this.historyMonths = historyMonths;
+    }
+
+    /**
+     * Checks each newly created expense against the usual spending in its category, then adds it to that spending.
+     *
+     * @param event the change
+     */
+    @EventListener
+    public void onLedgerEvent(LedgerEvent event) {
+        if (isChecked(event)) {
+            observe(spending(event.userId(), Set.of(event.entityId())), event);
+        }
+    }
+
+    /**
+     * Checks each expense created by a batch, in the order they were created.
+     *
+     * @param batch the changes
+     */
+    @EventListener
+    public void onLedgerBatch(LedgerBatchEvent batch) {
+        List<LedgerEvent> created = batch.events().stream().filter(this::isChecked).toList();
+        if (created.isEmpty()) {
+            return;
+        }
+        Set<String> createdIds = new HashSet<>();
+        for (LedgerEvent event : created) {
+            createdIds.add(event.entityId());
+        }
+        UserSpending spending = spending(batch.userId(), createdIds);
+        for (LedgerEvent event : created) {
+            observe(spending, event);
+        }
+    }
+
+    /**
+     * Retrieves the latest anomalies of a user, at most anomaly.max-recent of them.
+     *
+     * @param userId the ID of the user
+     * @return the anomalies, newest first
+     */
+    public List<SpendingAnomaly> getAnomalies(String userId) {
+        if (!enabled) {
+            return new ArrayList<>();
+        }
+        UserSpending spending = spending(userId, Set.of());
+        synchronized (spending) {
+            return new ArrayList<>(spending.recent);
+        }
+    }
+
+    /**
+     * Drops everything kept about a user.
+     *
+     * @param userId the ID of the user
+     */
+    public void forget(String userId) {
+        users.invalidate(userId);
+    }
+
+    private boolean isChecked(LedgerEvent event) {
+        return enabled && event.entityType() == LedgerEvent.EntityType.EXPENSE && event.action() == LedgerEvent.Action.CREATED
+                && event.amount() != null;
+    }
+
+    private SpendingAnomaly observe(UserSpending spending, LedgerEvent event) {
+        synchronized (spending) {
+            return check(spending, event.entityId(), event.userId(), event.category(), event.currency(), event.amount(), event.date());
+        }
+    }
+
+    // The user's statistics, rebuilt when missing; the expenses about to be observed are left out of the rebuild
+    private UserSpending spending(String userId, Set<String> pendingIds) {
+        UserSpending spending = users.get(userId);
+        if (spending != null) {
+            return spending;
+        }
+        UserSpending rebuilt = rebuild(userId, pendingIds);
+        UserSpending existing = users.putIfAbsent(userId, rebuilt);
+        return existing != null ? existing : rebuilt;
+    }
+
+    // Replays the user's recent expenses, archived ones included, oldest first
+    private UserSpending rebuild(String userId, Set<String> skippedIds) {
+        LocalDate today = LocalDate.now(ZONE);
+        Date since = Date.from(today.minusMonths(historyMonths).atStartOfDay(ZONE).toInstant());
+        // Expenses dated ahead, such as planned bills, are replayed too
+        Date until = Date.from(today.plusYears(1).atStartOfDay(ZONE).toInstant());
+        // By ID, since an expense being archived is briefly in both its bucket and the expenses
+        Map<String, Expense> expenses = new LinkedHashMap<>();
+        for (Expense archived : expenseArchiveService.findExpensesBetween(userId, since, until)) {
+            expenses.put(archived.getId(), archived);
+        }
+        try (Stream<Expense> stream = expenseRepository.streamByUserIdAndDateBetween(userId, since, until)) {
+            stream.forEach(expense -> expenses.put(expense.getId(), expense));
+        }
+        List<Expense> history = new ArrayList<>(expenses.values());
+        history.sort(Comparator.comparing(Expense::getDate, Comparator.nullsFirst(Comparator.<Date>naturalOrder())));
+
+        UserSpending spending = new UserSpending();
+        for (Expense expense : history) {
+            if (expense.getAmount() != null && !skippedIds.contains(expense.getId())) {
+                check(spending, expense.getId(), userId, expense.getCategory(), expense.getCurrency(), expense.getAmount(), expense.getDate());
+            }
+        }
+        return spending;
+    }
+
+    private SpendingAnomaly check(UserSpending spending, String expenseId, String userId, String category, String currency,
+                                  BigDecimal amount, Date date) {
+        String key = category != null ? category : UNCATEGORIZED;
+        SpendingStats stats = spending.categories.computeIfAbsent(key + '\u0000' + currency, ignored -> new SpendingStats());
+        SpendingAnomaly anomaly = null;
+        if (stats.getCount() >= minSamples) {
+            double score = stats.score(amount.doubleValue(), minDeviationRatio);
+            if (score >= threshold) {
+                anomaly = new SpendingAnomaly(expenseId, userId, key, currency, amount,
+                        BigDecimal.valueOf(stats.getMean()).setScale(Math.max(amount.scale(), 2), RoundingMode.HALF_EVEN),
+                        score, date, new Date());
+                spending.recent.addFirst(anomaly);
+                if (spending.recent.size() > maxRecent) {
+                    spending.recent.removeLast();
+                }
+            }
+        }
+        stats.add(amount.doubleValue(), smoothing);
+        return anomaly;
+    }
+
+    // A user's statistics, keyed by category and currency, and latest anomalies
+    private static final class UserSpending {
+        private final Map<String, SpendingStats> categories = new HashMap<>();
+        private final ArrayDeque<SpendingAnomaly> recent = new ArrayDeque<>();
+    }
+}
@@ -1,13 +1,21 @@
 package com.gabrielguo.personalfinance.service;
 
+import com.gabrielguo.personalfinance.event.LedgerBatchEvent;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.exception.ImportTooLargeException;
 import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.exception.UnsupportedCurrencyException;
 import com.gabrielguo.personalfinance.model.Transaction;
 import com.gabrielguo.personalfinance.repository.TransactionRepository;
 import com.gabrielguo.personalfinance.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -19,21 +27,80 @@ public class TransactionService {
     @Autowired
     private UserRepository userRepository;
 
+    // Records transaction changes in the ledger
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Assigns categories from descriptions
+    @Autowired
+    private CategorizationService categorizationService;
+
+    // Rejects currencies without exchange rates, which the insights could not convert
+    @Autowired
+    private FxRateService fxRateService;
+
+    private final int maxImportRows;
+
+    public TransactionService(@Value("${import.max-rows:1000}") int maxImportRows) {
+        this.maxImportRows = maxImportRows;
+    }
+
     /**
      * Creates a new transaction and associates it with a user.
-     * Checks if the user exists before creating the transaction.
+     * Checks if the user exists before creating the transaction. A transaction without a category gets one
+     * from the category rules when its description matches one.
      *
      * @param transaction the transaction details to be created
      * @param userId the ID of the user who is creating the transaction
      * @return the created Transaction
      * @throws ResourceNotFoundException if the user does not exist
+     * @throws UnsupportedCurrencyException if there are no exchange rates for the transaction's currency
      */
     public Transaction createTransaction(Transaction transaction, String userId) {
         if (!userRepository.existsById(userId)) {
             throw new ResourceNotFoundException("User not found with ID: " + userId);
         }
+        fxRateService.requireSupported(transaction.getCurrency());
         transaction.setUserId(userId);
-        return transactionRepository.save(transaction);
+        categorizationService.categorize(transaction);
+        Transaction savedTransaction = transactionRepository.save(transaction);
+        eventPublisher.publishEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, transaction));
+        return savedTransaction;
+    }
+
+    /**
+     * Creates many transactions for a user at once, such as those of an imported bank statement, categorizing
+     * them like single transactions and inserting them in one batch. At most import.max-rows transactions are
+     * imported at once.
+     *
+     * @param transactions the transactions to be created
+     * @param userId the ID of the user who is importing the transactions
+     * @return the created Transactions
+     * @throws ResourceNotFoundException if the user does not exist
+     * @throws ImportTooLargeException if there are more than import.max-rows transactions
+     * @throws UnsupportedCurrencyException if there are no exchange rates for the currency of a transaction, in which
+     *         case none is created
+     */
+    public List<Transaction> importTransactions(List<Transaction> transactions, String userId) {
+        if (transactions.size() > maxImportRows) {
+            throw new ImportTooLargeException("An import may have at most " + maxImportRows + " transactions, not " + transactions.size());
+        }
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User not found with ID: " + userId);
+        }
+        transactions.forEach(transaction -> fxRateService.requireSupported(transaction.getCurrency()));
+        for (Transaction transaction : transactions) {
+            transaction.setUserId(userId);
+            categorizationService.categorize(transaction);
+        }
+        List<Transaction> savedTransactions = transactionRepository.insert(transactions);
+        // One event for the whole import, so that listeners apply it at once rather than row by row
+        List<LedgerEvent> events = new ArrayList<>(savedTransactions.size());
+        for (Transaction transaction : savedTransactions) {
+            events.add(LedgerEvent.of(LedgerEvent.Action.CREATED, transaction));
+        }
+        eventPublisher.publishEvent(new LedgerBatchEvent(userId, events));
+        return savedTransactions;
     }
 
     /**
@@ -71,7 +138,8 @@ public class TransactionService {
 
     /**
      * Updates an existing transaction identified by its ID.
-     * Only the fields allowed to be modified are updated.
+     * Only the fields allowed to be modified are updated, and a category assigned by the category rules is
+     * reassigned from the new description unless the user changes it.
      * Validates that the userId associated with the transaction matches the user making the request.
      *
      * @param transactionId the ID of the transaction to be updated
@@ -98,9 +166,16 @@ public class TransactionService {
         // Update fields with new values
         existingTransaction.setAmount(updatedTransaction.getAmount());
         existingTransaction.setDescription(updatedTransaction.getDescription());
+        if (!Objects.equals(updatedTransaction.getCategory(), existingTransaction.getCategory())) {
+            existingTransaction.setCategory(updatedTransaction.getCategory());
+            existingTransaction.setAutoCategorized(false);
+        }
+        categorizationService.categorize(existingTransaction);
 
         // Save and return the updated transaction
-        return transactionRepository.save(existingTransaction);
+        Transaction savedTransaction = transactionRepository.save(existingTransaction);
+        eventPublisher.publishEvent(LedgerEvent.of(LedgerEvent.Action.UPDATED, existingTransaction));
+        return savedTransaction;
     }
 
     /**
@@ -128,5 +203,6 @@ public class TransactionService {
 
         // Delete the transaction
         transactionRepository.deleteById(transactionId);
+        eventPublisher.publishEvent(LedgerEvent.of(LedgerEvent.Action.DELETED, existingTransaction));
     }
 }
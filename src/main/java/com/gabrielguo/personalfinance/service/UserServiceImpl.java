@@ -1,15 +1,18 @@
 package com.gabrielguo.personalfinance.service;
 
 import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.exception.ServiceOverloadedException;
 import com.gabrielguo.personalfinance.model.User;
 import com.gabrielguo.personalfinance.repository.UserRepository;
+import com.gabrielguo.personalfinance.security.PasswordHashingService;
+import com.gabrielguo.personalfinance.security.UserDetailsServiceImpl;
 import jakarta.mail.MessagingException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import java.util.UUID;
 import java.io.IOException;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -23,22 +26,36 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private final UserRepository userRepository;
 
-    // Service for sending emails, injected for password reset functionality
+    // Outbox for sending emails, injected for password reset functionality
     @Autowired
-    private final GmailService gmailService;
+    private final EmailOutboxService emailOutboxService;
 
-    // Password encoder for securely hashing user passwords
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    // Service that removes the data owned by deleted users
+    private final AccountDeletionService accountDeletionService;
+
+    // Hashes passwords off the request thread on a bounded pool
+    private final PasswordHashingService passwordHashingService;
+
+    // Caches principals for authentication; evicted whenever a user changes
+    private final UserDetailsServiceImpl userDetailsService;
 
     /**
      * Constructor for dependency injection.
      *
      * @param userRepository the repository for user data
-     * @param gmailService the service for sending emails
+     * @param emailOutboxService the outbox for sending emails
+     * @param accountDeletionService the service for deleting the data owned by a user
+     * @param passwordHashingService the service for hashing passwords
+     * @param userDetailsService the service resolving principals for authentication
      */
-    public UserServiceImpl(UserRepository userRepository, GmailService gmailService) {
+    public UserServiceImpl(UserRepository userRepository, EmailOutboxService emailOutboxService,
+                           AccountDeletionService accountDeletionService, PasswordHashingService passwordHashingService,
+                           UserDetailsServiceImpl userDetailsService) {
         this.userRepository = userRepository;
-        this.gmailService = gmailService;
+        this.emailOutboxService = emailOutboxService;
+        this.accountDeletionService = accountDeletionService;
+        this.passwordHashingService = passwordHashingService;
+        this.userDetailsService = userDetailsService;
     }
 
     /**
@@ -49,11 +66,12 @@ public class UserServiceImpl implements UserService {
      * @param username the username of the new user
      * @param password the password of the new user
      * @return the created User object
+     * @throws ServiceOverloadedException if too many passwords are already waiting to be hashed
      */
     @Override
     public User createUser(String email, String username, String password) {
         // Hash the password before creating the user
-        String hashedPassword = passwordEncoder.encode(password);
+        String hashedPassword = passwordHashingService.encode(password);
         User newUser = new User(email, username, hashedPassword);
         User savedUser = userRepository.save(newUser);
         System.out.println("Created User: " + savedUser); // Logging created user details
@@ -107,21 +125,37 @@ public class UserServiceImpl implements UserService {
     @Override
     public User updateUser(String userId, User user) {
         User existingUser = getUserById(userId);
+        String previousEmail = existingUser.getEmail();
+        if (!Objects.equals(previousEmail, user.getEmail())
+                || !Objects.equals(existingUser.getPassword(), user.getPassword())) {
+            // Principals cached on every instance are checked against this version
+            existingUser.setCredentialVersion(existingUser.getCredentialVersion() + 1);
+        }
         existingUser.setEmail(user.getEmail());
         existingUser.setUsername(user.getUsername());
         existingUser.setPassword(user.getPassword()); // Ensure password is hashed if updated
-        return userRepository.save(existingUser);
+        User savedUser = userRepository.save(existingUser);
+        // Both the old and the new email may have a cached principal
+        userDetailsService.evict(previousEmail);
+        userDetailsService.evict(savedUser.getEmail());
+        return savedUser;
     }
 
     /**
      * Deletes a user by their unique ID.
+     * The user is removed immediately; the data they own is deleted in the background.
      *
      * @param userId the ID of the user to delete
+     * @throws ResourceNotFoundException if no user is found with the given ID
      */
     @Override
     public void deleteUser(String userId) {
         User user = getUserById(userId);
+        // Record the deletion first so it can be resumed if the process stops part way through
+        accountDeletionService.requestDeletion(userId);
         userRepository.delete(user);
+        userDetailsService.evict(user.getEmail());
+        accountDeletionService.startDeletion(userId);
     }
 
     /**
@@ -152,10 +186,10 @@ public class UserServiceImpl implements UserService {
         user.setResetToken(resetToken);
         userRepository.save(user);
 
-        // Send the password reset email with the reset link
+        // Queue the password reset email with the reset link; it is delivered in the background
         String subject = "Password Reset Request";
         String message = "Click the link below to reset your password:\n" + resetLink;
-        gmailService.sendEmail(email, subject, message);
+        emailOutboxService.enqueue(email, subject, message);
     }
 
     /**
@@ -178,9 +212,11 @@ public class UserServiceImpl implements UserService {
         }
 
         User user = userOptional.get();
-        user.setPassword(passwordEncoder.encode(newPassword)); // Hash the new password
+        user.setPassword(passwordHashingService.encode(newPassword)); // Hash the new password
         user.setResetToken(null); // Clear the reset token
+        user.setCredentialVersion(user.getCredentialVersion() + 1); // Invalidates the principal cached on every instance
         userRepository.save(user);
+        userDetailsService.evict(user.getEmail());
     }
 
 }
@@ -1,45 +1,66 @@
 package com.gabrielguo.personalfinance.service;
 
+import com.gabrielguo.personalfinance.exception.UnsupportedCurrencyException;
 import com.gabrielguo.personalfinance.model.UserSettings;
-import com.gabrielguo.personalfinance.repository.UserSettingsRepository;
+import com.gabrielguo.personalfinance.util.TtlCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service class for managing user settings.
  * Provides methods to retrieve, update, and reset user settings.
+ * Every write is an upsert keyed on the unique userId, so a user never ends up with two settings documents,
+ * and the result is written through to an in-process cache that serves the frequent reads.
+ * Every write increments the document's version, and the cache keeps the copy with the highest one, so a read
+ * that loaded the settings before a concurrent write cannot cache them over the written ones.
+ * With embedded storage, EmbeddedUserSettingsService replaces the upserts.
  */
 @Service
+@ConditionalOnProperty(name = "storage.embedded.enabled", havingValue = "false", matchIfMissing = true)
 public class UserSettingsService {
 
-    // Repository for accessing user settings data
+    // Used for the atomic upserts on the settings collection
     @Autowired
-    private UserSettingsRepository userSettingsRepository;
+    private MongoTemplate mongoTemplate;
+
+    // Rejects reporting currencies without exchange rates; lazy, since FxRateService reads the settings in turn
+    @Autowired
+    @Lazy
+    private FxRateService fxRateService;
+
+    // Cached copies keyed by userId; callers always get their own copy, since UserSettings is mutable
+    private final TtlCache<String, UserSettings> cache;
+
+    public UserSettingsService(@Value("${user-settings-cache.max-size:10000}") int maxSize,
+                               @Value("${user-settings-cache.ttl-seconds:600}") long ttlSeconds) {
+        this.cache = new TtlCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+    }
 
     /**
      * Retrieves the settings for a specific user. If no settings are found,
-     * a new set of settings is created and saved for the user.
+     * a new set of default settings is created and saved for the user in the same atomic operation,
+     * so concurrent first requests all see the one document that was inserted.
      *
      * @param userId the ID of the user whose settings are to be retrieved
      * @return the UserSettings object for the specified user
      */
     public UserSettings getUserSettings(String userId) {
-        // Attempt to find existing user settings in the repository
-        Optional<UserSettings> settingsOptional = userSettingsRepository.findByUserId(userId);
-
-        // If settings are found, return them
-        if (settingsOptional.isPresent()) {
-            return settingsOptional.get();
-        } else {
-            // If no settings are found, create new settings
-            UserSettings settings = new UserSettings();
-            settings.setUserId(userId);
-            // Save the new settings to the repository
-            userSettingsRepository.save(settings);
-            return settings;
+        UserSettings cached = cache.get(userId);
+        if (cached != null) {
+            return copyOf(cached);
         }
+
+        return cached(userId, findOrCreate(userId));
     }
 
     /**
@@ -49,12 +70,11 @@ public class UserSettingsService {
      * @param userId the ID of the user whose settings are to be updated
      * @param userSettings the new settings to be saved for the user
      * @return the updated UserSettings object
+     * @throws UnsupportedCurrencyException if there are no exchange rates for the reporting currency
      */
     public UserSettings updateUserSettings(String userId, UserSettings userSettings) {
-        // Ensure that the userId is set on the provided settings object
-        userSettings.setUserId(userId);
-        // Save and return the updated settings
-        return userSettingsRepository.save(userSettings);
+        fxRateService.requireSupported(userSettings.getReportingCurrency());
+        return cached(userId, write(userId, userSettings));
     }
 
     /**
@@ -62,14 +82,67 @@ public class UserSettingsService {
      * are replaced with a new set of default settings.
      *
      * @param userId the ID of the user whose settings are to be reset
-     * @return the newly created UserSettings object with default values
+     * @return the UserSettings object with default values
      */
     public UserSettings resetUserSettings(String userId) {
-        // Create a new UserSettings object with default values
-        UserSettings resetSettings = new UserSettings();
-        resetSettings.setUserId(userId);
-        // Save the reset settings to the repository
-        userSettingsRepository.save(resetSettings);
-        return resetSettings;
+        return updateUserSettings(userId, new UserSettings());
+    }
+
+    /**
+     * Drops the cached settings for a user, e.g. after their data was deleted directly in the database.
+     *
+     * @param userId the ID of the user
+     */
+    public void evict(String userId) {
+        cache.invalidate(userId);
+    }
+
+    /**
+     * Reads the user's settings document, inserting one with the default settings if there is none.
+     *
+     * @param userId the ID of the user
+     * @return the stored settings
+     */
+    protected UserSettings findOrCreate(String userId) {
+        // Defaults only apply when the document is inserted; an existing document is returned untouched
+        UserSettings defaults = new UserSettings();
+        Update update = new Update()
+                .setOnInsert("emailNotifications", defaults.isEmailNotifications())
+                .setOnInsert("theme", defaults.getTheme())
+                .setOnInsert("version", 0L);
+        return upsert(userId, update);
+    }
+
+    /**
+     * Writes the modifiable settings to the user's settings document, inserting it if there is none.
+     *
+     * @param userId the ID of the user
+     * @param userSettings the new settings
+     * @return the stored settings
+     */
+    protected UserSettings write(String userId, UserSettings userSettings) {
+        // The document is matched on userId, so any ID sent by the client is ignored
+        Update update = new Update()
+                .set("emailNotifications", userSettings.isEmailNotifications())
+                .set("theme", userSettings.getTheme())
+                .set("reportingCurrency", userSettings.getReportingCurrency())
+                .inc("version", 1L);
+        return upsert(userId, update);
+    }
+
+    // Applies the update to the user's settings document, creating it if needed
+    private UserSettings upsert(String userId, Update update) {
+        Query query = new Query(Criteria.where("userId").is(userId));
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().upsert(true).returnNew(true), UserSettings.class);
+    }
+
+    private UserSettings cached(String userId, UserSettings settings) {
+        cache.putIfNewer(userId, copyOf(settings), UserSettings::getVersion);
+        return settings;
+    }
+
+    private static UserSettings copyOf(UserSettings settings) {
+        return new UserSettings(settings.getId(), settings.getUserId(), settings.isEmailNotifications(), settings.getTheme(),
+                settings.getReportingCurrency(), settings.getVersion());
     }
 }
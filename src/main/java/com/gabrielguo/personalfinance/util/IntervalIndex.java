@@ -0,0 +1,84 @@
+package com.gabrielguo.personalfinance.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * An immutable index of closed intervals answering "which intervals contain point x" in O(log n + k).
+ * The intervals are sorted by start and viewed as an implicit balanced tree over that array, where every
+ * subtree records the latest end it contains; subtrees ending before x, and everything starting after x, are skipped.
+ *
+ * @param <T> the type of the indexed items
+ */
+public class IntervalIndex<T> {
+
+    private final List<T> items;
+    private final long[] starts;
+    private final long[] ends;
+    // maxEnds[mid] is the latest end within the subtree rooted at mid, i.e. the subarray it splits
+    private final long[] maxEnds;
+
+    /**
+     * @param items the items to index; they are copied, so later changes to the list are not seen
+     * @param start the start of an item's interval
+     * @param end   the inclusive end of an item's interval; use Long.MAX_VALUE for intervals that never end
+     */
+    public IntervalIndex(List<T> items, ToLongFunction<T> start, ToLongFunction<T> end) {
+        List<T> sorted = new ArrayList<>(items);
+        sorted.sort(Comparator.comparingLong(start));
+        this.items = List.copyOf(sorted);
+        this.starts = new long[sorted.size()];
+        this.ends = new long[sorted.size()];
+        this.maxEnds = new long[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            starts[i] = start.applyAsLong(sorted.get(i));
+            ends[i] = end.applyAsLong(sorted.get(i));
+        }
+        computeMaxEnds(0, sorted.size());
+    }
+
+    /**
+     * @param point the point to look up
+     * @return the items whose interval contains the point, ordered by start
+     */
+    public List<T> stab(long point) {
+        List<T> matches = new ArrayList<>();
+        stab(0, items.size(), point, matches);
+        return matches;
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    private long computeMaxEnds(int from, int to) {
+        if (from >= to) {
+            return Long.MIN_VALUE;
+        }
+        int mid = (from + to) >>> 1;
+        long max = Math.max(ends[mid], Math.max(computeMaxEnds(from, mid), computeMaxEnds(mid + 1, to)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    private void stab(int from, int to, long point, List<T> matches) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        if (maxEnds[mid] < point) {
+            return;
+        }
+        stab(from, mid, point, matches);
+        if (starts[mid] > point) {
+            // Everything to the right starts even later
+            return;
+        }
+        if (ends[mid] >= point) {
+            matches.add(items.get(mid));
+        }
+        stab(mid + 1, to, point, matches);
+    }
+}
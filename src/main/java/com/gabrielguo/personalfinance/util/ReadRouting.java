@@ -0,0 +1,128 @@
+package com.gabrielguo.personalfinance.util;
+
+import com.mongodb.ReadPreference;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Decides which replica set member serves the MongoDB reads of the current thread.
+ * Calls are tagged by running them through {@link #route}; untagged calls are critical reads.
+ * Critical reads and writes always use the primary. Reads made to compute a write, such as a rebuild of stored
+ * results, are tagged as writes, so they use the primary even when nested in an analytical read.
+ * Analytical reads go to a secondary that is at most storage.read-routing.max-staleness-seconds behind, and the driver falls back to the primary when no
+ * secondary qualifies. They also go to the primary while the measured replication lag exceeds
+ * storage.read-routing.max-lag-seconds, which can be set well below the driver's 90-second staleness minimum,
+ * and while the lag is unknown, before the first measurement or after a failed one.
+ */
+@Component
+public class ReadRouting {
+
+    public enum Route {
+        CRITICAL_READ,
+        ANALYTICAL_READ,
+        // Reads whose results are written back, which must not see stale data
+        WRITE
+    }
+
+    // Lag reported before the first measurement, or when the deployment is not a replica set
+    public static final long UNKNOWN_LAG = -1;
+
+    private final ThreadLocal<Route> current = new ThreadLocal<>();
+    private final LongAdder analyticalToSecondary = new LongAdder();
+    private final LongAdder analyticalToPrimary = new LongAdder();
+
+    private final boolean enabled;
+    private final ReadPreference analyticalPreference;
+    private final long maxLagSeconds;
+    private volatile long replicationLagSeconds = UNKNOWN_LAG;
+
+    public ReadRouting(@Value("${storage.read-routing.enabled:true}") boolean enabled,
+                       @Value("${storage.read-routing.max-staleness-seconds:90}") long maxStalenessSeconds,
+                       @Value("${storage.read-routing.max-lag-seconds:30}") long maxLagSeconds) {
+        this.enabled = enabled;
+        this.analyticalPreference = ReadPreference.secondaryPreferred(maxStalenessSeconds, TimeUnit.SECONDS);
+        this.maxLagSeconds = maxLagSeconds;
+    }
+
+    /**
+     * Runs a computation with its MongoDB calls tagged with a route. The previous route is restored afterwards,
+     * so routed computations can be nested.
+     *
+     * @param route the route of the calls made by the computation
+     * @param computation the computation to run
+     * @return the result of the computation
+     */
+    public <T> T route(Route route, Supplier<T> computation) {
+        Route previous = current.get();
+        current.set(route);
+        try {
+            return computation.get();
+        } finally {
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return the route of the current thread's calls
+     */
+    public Route currentRoute() {
+        Route route = current.get();
+        return route != null ? route : Route.CRITICAL_READ;
+    }
+
+    /**
+     * @return the read preference for the current thread's calls, or null to keep the collection's default, the primary
+     */
+    public ReadPreference readPreference() {
+        if (!enabled || currentRoute() != Route.ANALYTICAL_READ) {
+            return null;
+        }
+        if (isLagging()) {
+            analyticalToPrimary.increment();
+            return ReadPreference.primary();
+        }
+        analyticalToSecondary.increment();
+        return analyticalPreference;
+    }
+
+    /**
+     * @return whether the replication lag is unknown or high enough to keep analytical reads on the primary
+     */
+    public boolean isLagging() {
+        long lag = replicationLagSeconds;
+        return lag == UNKNOWN_LAG || lag > maxLagSeconds;
+    }
+
+    /**
+     * @param replicationLagSeconds how far the slowest secondary is behind the primary, or {@link #UNKNOWN_LAG}
+     */
+    public void setReplicationLagSeconds(long replicationLagSeconds) {
+        this.replicationLagSeconds = replicationLagSeconds;
+    }
+
+    public long getReplicationLagSeconds() {
+        return replicationLagSeconds;
+    }
+
+    /**
+     * @return the number of collections prepared for analytical reads that were allowed to use a secondary
+     */
+    public long getAnalyticalToSecondary() {
+        return analyticalToSecondary.sum();
+    }
+
+    /**
+     * @return the number of collections prepared for analytical reads that were kept on the primary because of lag, measured or unknown
+     */
+    public long getAnalyticalToPrimary() {
+        return analyticalToPrimary.sum();
+    }
+}
@@ -0,0 +1,100 @@
+package com.gabrielguo.personalfinance.util;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls that share the same key into a single computation.
+ * The first caller runs the computation, callers arriving while it is in flight wait
+ * for it and receive the same result (or the same exception). Nothing is cached once
+ * the computation finishes, so later calls always see fresh data.
+ */
+@Component
+public class SingleFlight {
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Builds a key from its parts, e.g. (userId, method name, arguments...).
+     *
+     * @param parts the parts identifying the computation, may contain nulls
+     * @return a key with value-based equality
+     */
+    public static Object key(Object... parts) {
+        return Arrays.asList(parts.clone());
+    }
+
+    /**
+     * Runs the computation unless an identical one is already in flight, in which case
+     * this call waits for and shares its result.
+     *
+     * @param key the key identifying the computation
+     * @param computation the computation to run
+     * @return the result of the computation
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Object key, Supplier<T> computation) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+            return (T) await(existing);
+        }
+
+        executions.increment();
+        try {
+            T result = computation.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * @return the number of computations that actually ran
+     */
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    /**
+     * @return the number of calls that shared an in-flight computation instead of running their own
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return the number of computations currently in flight
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
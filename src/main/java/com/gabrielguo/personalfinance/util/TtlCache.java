@@ -0,0 +1,121 @@
+package com.gabrielguo.personalfinance.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * A bounded cache whose entries expire a fixed time after they were written.
+ * When full, the least recently used entry is evicted. Values should be immutable,
+ * since the same instance is handed to every caller until it expires.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class TtlCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private record Entry<V>(V value, long expiresAtNanos) {
+    }
+
+    public TtlCache(int maxSize, long ttl, TimeUnit unit) {
+        this(maxSize, ttl, unit, System::nanoTime);
+    }
+
+    public TtlCache(int maxSize, long ttl, TimeUnit unit, LongSupplier nanoClock) {
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.nanoClock = nanoClock;
+        // Access order turns the map into an LRU list
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > TtlCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the cached value, or null if absent or expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (nanoClock.getAsLong() - entry.expiresAtNanos() >= 0) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, nanoClock.getAsLong() + ttlNanos));
+    }
+
+    /**
+     * Caches a value unless the key already holds one that has not expired.
+     *
+     * @param key the key to cache the value under
+     * @param value the value to cache
+     * @return the value already cached, or null if the given one was cached
+     */
+    public synchronized V putIfAbsent(K key, V value) {
+        V existing = get(key);
+        if (existing == null) {
+            put(key, value);
+        }
+        return existing;
+    }
+
+    /**
+     * Caches a value unless the key holds an unexpired value with a higher version, so that a slow load
+     * finishing after a newer value was cached does not overwrite it.
+     *
+     * @param key the key to cache the value under
+     * @param value the value to cache
+     * @param version the version of a value
+     * @return whether the given value was cached
+     */
+    public synchronized boolean putIfNewer(K key, V value, ToLongFunction<? super V> version) {
+        V existing = get(key);
+        if (existing != null && version.applyAsLong(existing) > version.applyAsLong(value)) {
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Removes a key only while it still holds the value, so that a value cached since is kept.
+     *
+     * @param key the key to remove
+     * @param value the value the key must hold
+     */
+    public synchronized void invalidate(K key, V value) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.value() == value) {
+            entries.remove(key);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,57 @@
+package com.gabrielguo.personalfinance.anomaly;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the SpendingStats class
+public class SpendingStatsTest {
+
+    @Test
+    public void testAdd_MatchesPopulationStatisticsWhileWarmingUp() {
+        SpendingStats stats = new SpendingStats();
+        for (double amount : new double[]{2, 4, 4, 4, 5, 5, 7, 9}) {
+            stats.add(amount, 0.1);
+        }
+
+        assertEquals(8, stats.getCount());
+        assertEquals(5.0, stats.getMean(), 1e-9);
+        assertEquals(2.0, stats.getStandardDeviation(), 1e-9);
+    }
+
+    @Test
+    public void testAdd_FollowsAChangeInSpendingOnceWarmedUp() {
+        SpendingStats stats = new SpendingStats();
+        for (int i = 0; i < 100; i++) {
+            stats.add(50, 0.1);
+        }
+        for (int i = 0; i < 50; i++) {
+            stats.add(80, 0.1);
+        }
+
+        // Equal weights would give a mean of 60
+        assertEquals(80.0, stats.getMean(), 0.5);
+    }
+
+    @Test
+    public void testScore() {
+        SpendingStats stats = new SpendingStats();
+        for (double amount : new double[]{40, 60, 40, 60}) {
+            stats.add(amount, 0.1);
+        }
+
+        assertEquals(2.0, stats.score(70, 0.1), 1e-9);
+        assertEquals(-1.0, stats.score(40, 0.1), 1e-9);
+    }
+
+    @Test
+    public void testScore_UsesTheMinimumDeviationForIdenticalAmounts() {
+        SpendingStats stats = new SpendingStats();
+        stats.add(100, 0.1);
+        stats.add(100, 0.1);
+
+        assertEquals(0.0, stats.getStandardDeviation());
+        assertEquals(1.0, stats.score(110, 0.1), 1e-9);
+        assertEquals(100.0, new SpendingStats().score(1, 0.1), 1e-9); // Nothing seen yet: a cent per deviation
+    }
+}
@@ -0,0 +1,101 @@
+package com.gabrielguo.personalfinance.benchmark;
+
+import com.gabrielguo.personalfinance.categorization.CategoryMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Measures how many bank statement descriptions per second CategoryMatcher categorizes, on one thread and on
+ * several, against checking each rule in turn with String.contains. Rules are one or two word merchant names;
+ * descriptions look like card statement lines, most of them naming one of the merchants among terminal codes,
+ * references and cities.
+ *
+ * Usage: CategorizationBenchmark [rules] [descriptions] [threads]
+ */
+public class CategorizationBenchmark {
+
+    private static final String[] CATEGORIES = {"Food", "Groceries", "Transport", "Shopping", "Utilities", "Entertainment", "Health", "Travel"};
+    private static final String[] CITIES = {"SEATTLE WA", "LONDON GB", "PARIS FR", "BERLIN DE", "AUSTIN TX", "TORONTO ON"};
+
+    public static void main(String[] args) {
+        int ruleCount = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int descriptionCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        Random random = new Random(42);
+        List<CategoryMatcher.Rule> rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            String merchant = word(random) + (random.nextInt(3) == 0 ? " " + word(random) : "");
+            rules.add(new CategoryMatcher.Rule(merchant, CATEGORIES[random.nextInt(CATEGORIES.length)]));
+        }
+        String[] descriptions = new String[descriptionCount];
+        long characters = 0;
+        for (int i = 0; i < descriptionCount; i++) {
+            String merchant = random.nextInt(10) < 8 ? rules.get(random.nextInt(ruleCount)).pattern() : word(random);
+            descriptions[i] = String.format("POS %04d %s*%06X %s", random.nextInt(10_000),
+                    merchant.toUpperCase(Locale.ROOT), random.nextInt(1 << 24), CITIES[random.nextInt(CITIES.length)]);
+            characters += descriptions[i].length();
+        }
+
+        long begin = System.nanoTime();
+        CategoryMatcher matcher = CategoryMatcher.compile(rules);
+        System.out.printf("Compiled %,d rules into %,d states in %,d ms%n", ruleCount, matcher.getStateCount(),
+                (System.nanoTime() - begin) / 1_000_000);
+        System.out.printf("%,d descriptions of %.1f characters on average%n", descriptionCount, (double) characters / descriptionCount);
+
+        for (int round = 1; round <= 5; round++) {
+            begin = System.nanoTime();
+            int matched = 0;
+            for (String description : descriptions) {
+                if (matcher.match(description) != null) {
+                    matched++;
+                }
+            }
+            report("automaton, 1 thread, round " + round, descriptionCount, System.nanoTime() - begin, matched);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        for (int round = 1; round <= 3; round++) {
+            begin = System.nanoTime();
+            long matched = pool.submit(() -> IntStream.range(0, descriptionCount).parallel()
+                    .filter(i -> matcher.match(descriptions[i]) != null)
+                    .count()).join();
+            report("automaton, " + threads + " threads, round " + round, descriptionCount, System.nanoTime() - begin, matched);
+        }
+        pool.shutdown();
+
+        // One rule at a time is far slower, so it only gets a sample
+        int sample = Math.max(1, descriptionCount / 100);
+        String[] patterns = rules.stream().map(rule -> " " + rule.pattern()).toArray(String[]::new);
+        begin = System.nanoTime();
+        int matched = 0;
+        for (int i = 0; i < sample; i++) {
+            String description = " " + descriptions[i].toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ");
+            for (String pattern : patterns) {
+                if (description.contains(pattern)) {
+                    matched++;
+                    break;
+                }
+            }
+        }
+        report("contains per rule, 1 thread", sample, System.nanoTime() - begin, matched);
+    }
+
+    private static void report(String name, int descriptions, long nanos, long matched) {
+        System.out.printf("%-34s: %,12.0f descriptions/s (%,d matched)%n", name, descriptions / (nanos / 1e9), matched);
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 4 + random.nextInt(6);
+        for (int c = 0; c < length; c++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package com.gabrielguo.personalfinance.benchmark;
+
+import com.gabrielguo.personalfinance.search.ExpenseIndex;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Measures ExpenseIndex for one user with many expenses: how long indexing them takes, and the latency of
+ * first-page searches with a rare word, a common word, two words and a short prefix, and of word suggestions.
+ * Descriptions are drawn from a vocabulary whose word frequencies fall off like those of real merchant names.
+ *
+ * Usage: ExpenseSearchBenchmark [expenses] [vocabulary] [queries]
+ */
+public class ExpenseSearchBenchmark {
+
+    private static final String[] CATEGORIES = {"Food", "Groceries", "Transport", "Rent", "Utilities", "Entertainment", "Health", "Travel"};
+
+    public static void main(String[] args) {
+        int expenses = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int vocabularySize = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+
+        Random random = new Random(42);
+        String[] vocabulary = new String[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 3 + random.nextInt(7);
+            for (int c = 0; c < length; c++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            vocabulary[i] = word.toString();
+        }
+
+        ExpenseIndex index = new ExpenseIndex();
+        long begin = System.nanoTime();
+        for (int i = 0; i < expenses; i++) {
+            int words = 1 + random.nextInt(4);
+            StringBuilder description = new StringBuilder();
+            for (int w = 0; w < words; w++) {
+                description.append(vocabulary[zipf(random, vocabularySize)]).append(' ');
+            }
+            index.put("e" + i, description.toString(), CATEGORIES[random.nextInt(CATEGORIES.length)]);
+        }
+        System.out.printf("Indexed %,d expenses in %,d ms%n", expenses, (System.nanoTime() - begin) / 1_000_000);
+
+        run("rare word", queries, index, () -> vocabulary[vocabularySize - 1 - random.nextInt(100)] + " ");
+        run("common word", queries, index, () -> vocabulary[random.nextInt(10)] + " ");
+        run("two words", queries, index, () -> vocabulary[random.nextInt(50)] + " " + CATEGORIES[random.nextInt(CATEGORIES.length)] + " ");
+        run("prefix", queries, index, () -> vocabulary[random.nextInt(vocabularySize)].substring(0, 2));
+
+        begin = System.nanoTime();
+        int suggestions = 0;
+        for (int q = 0; q < queries; q++) {
+            suggestions += index.suggest(vocabulary[random.nextInt(vocabularySize)].substring(0, 2), 10).size();
+        }
+        System.out.printf("%-12s: %8.3f ms per query (%d suggestions)%n", "suggest",
+                (System.nanoTime() - begin) / 1e6 / queries, suggestions);
+    }
+
+    private static void run(String name, int queries, ExpenseIndex index, Supplier<String> query) {
+        long hits = 0;
+        long begin = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            hits += index.search(query.get(), 0, 20).totalHits();
+        }
+        System.out.printf("%-12s: %8.3f ms per query (%,d hits on average)%n", name,
+                (System.nanoTime() - begin) / 1e6 / queries, hits / queries);
+    }
+
+    // Word ranks with frequencies proportional to 1 / rank
+    private static int zipf(Random random, int size) {
+        return (int) Math.min(size - 1, Math.floor(Math.exp(random.nextDouble() * Math.log(size))) - 1);
+    }
+}
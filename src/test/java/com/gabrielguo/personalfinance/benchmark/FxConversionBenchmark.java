@@ -0,0 +1,97 @@
+package com.gabrielguo.personalfinance.benchmark;
+
+import com.gabrielguo.personalfinance.fx.CurrencyTotals;
+import com.gabrielguo.personalfinance.fx.FxRateTable;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Measures how fast amounts in mixed currencies are totalled in one reporting currency: with CurrencyTotals, which
+ * converts once per currency and day; converting every row through the packed rate table; and converting every row
+ * through boxed per-currency TreeMaps of rates, the straightforward alternative to the table.
+ *
+ * Usage: FxConversionBenchmark [rows] [currencies] [yearsOfRates] [rounds]
+ */
+public class FxConversionBenchmark {
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int currencyCount = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int years = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        Random random = new Random(42);
+        LocalDate first = LocalDate.now().minusYears(years);
+        int days = (int) (LocalDate.now().toEpochDay() - first.toEpochDay());
+
+        Map<String, TreeMap<LocalDate, BigDecimal>> rates = new HashMap<>();
+        String[] currencies = new String[currencyCount];
+        for (int c = 0; c < currencyCount; c++) {
+            currencies[c] = "C" + (char) ('A' + c / 26) + (char) ('A' + c % 26);
+            TreeMap<LocalDate, BigDecimal> dated = new TreeMap<>();
+            for (int d = 0; d < days; d++) {
+                dated.put(first.plusDays(d), BigDecimal.valueOf(50 + random.nextInt(10_000), 4));
+            }
+            rates.put(currencies[c], dated);
+        }
+        FxRateTable table = FxRateTable.of("USD", rates);
+
+        String[] rowCurrencies = new String[rows];
+        Date[] rowDates = new Date[rows];
+        BigDecimal[] rowAmounts = new BigDecimal[rows];
+        for (int i = 0; i < rows; i++) {
+            // A quarter of the rows are already in the reporting currency
+            rowCurrencies[i] = random.nextInt(4) == 0 ? "USD" : currencies[random.nextInt(currencyCount)];
+            rowDates[i] = Date.from(first.plusDays(random.nextInt(days)).atStartOfDay(ZoneId.systemDefault()).toInstant());
+            rowAmounts[i] = BigDecimal.valueOf(random.nextInt(1_000_000), 2);
+        }
+
+        System.out.println(rows + " rows, " + currencyCount + " currencies, " + table.size() + " rates");
+        for (int round = 0; round < rounds; round++) {
+            long begin = System.nanoTime();
+            CurrencyTotals totals = new CurrencyTotals(table, "USD", "USD");
+            for (int i = 0; i < rows; i++) {
+                totals.add(rowCurrencies[i], rowDates[i], rowAmounts[i]);
+            }
+            BigDecimal onePass = totals.total();
+            report("one pass      ", rows, begin, onePass);
+
+            begin = System.nanoTime();
+            int usd = table.indexOf("USD");
+            BigDecimal perRow = BigDecimal.ZERO;
+            for (int i = 0; i < rows; i++) {
+                int day = (int) LocalDate.ofInstant(rowDates[i].toInstant(), ZoneId.systemDefault()).toEpochDay();
+                perRow = perRow.add(table.convert(rowAmounts[i], table.indexOf(rowCurrencies[i]), usd, day));
+            }
+            report("per-row table ", rows, begin, perRow);
+
+            begin = System.nanoTime();
+            BigDecimal boxed = BigDecimal.ZERO;
+            for (int i = 0; i < rows; i++) {
+                if (rowCurrencies[i].equals("USD")) {
+                    boxed = boxed.add(rowAmounts[i]);
+                    continue;
+                }
+                LocalDate date = LocalDate.ofInstant(rowDates[i].toInstant(), ZoneId.systemDefault());
+                SortedMap<LocalDate, BigDecimal> upTo = rates.get(rowCurrencies[i]).headMap(date.plusDays(1));
+                BigDecimal rate = upTo.get(upTo.lastKey());
+                boxed = boxed.add(rowAmounts[i].multiply(rate).setScale(2, RoundingMode.HALF_EVEN));
+            }
+            report("per-row boxed ", rows, begin, boxed);
+        }
+    }
+
+    private static void report(String label, int rows, long begin, BigDecimal total) {
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        System.out.printf("%s: %,12.0f rows/s, total %s%n", label, rows / seconds, total);
+    }
+}
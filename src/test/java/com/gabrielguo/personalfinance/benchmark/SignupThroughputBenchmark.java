@@ -0,0 +1,89 @@
+package com.gabrielguo.personalfinance.benchmark;
+
+import com.gabrielguo.personalfinance.exception.ServiceOverloadedException;
+import com.gabrielguo.personalfinance.security.PasswordHashingService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Compares signup hashing under load: BCrypt on the request threads, as before, against the bounded hashing pool.
+ * Simulates a burst from as many client threads as Tomcat's default pool and reports throughput, latency and rejections.
+ *
+ * Usage: SignupThroughputBenchmark [clients] [signupsPerClient] [strength]
+ */
+public class SignupThroughputBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int signupsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int strength = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        System.out.println(clients + " clients x " + signupsPerClient + " signups, BCrypt strength " + strength
+                + ", " + Runtime.getRuntime().availableProcessors() + " cores");
+
+        BCryptPasswordEncoder direct = new BCryptPasswordEncoder(strength);
+        run("request thread", clients, signupsPerClient, password -> direct.encode(password));
+
+        PasswordHashingService pool = new PasswordHashingService(0, 64, 250, strength, strength);
+        try {
+            run("hashing pool  ", clients, signupsPerClient, pool::encode);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void run(String label, int clients, int signupsPerClient, Consumer<String> hash) throws InterruptedException {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < signupsPerClient; i++) {
+                    long begin = System.nanoTime();
+                    try {
+                        hash.accept("password-" + client + "-" + i);
+                        latencies.add(System.nanoTime() - begin);
+                    } catch (ServiceOverloadedException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("%s: %6.1f signups/s, p50 %5d ms, p99 %5d ms, rejected %d%n",
+                label, sorted.size() / seconds, percentile(sorted, 0.50), percentile(sorted, 0.99), rejected.get());
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.size() - 1, Math.round(percentile * (sorted.size() - 1)));
+        return sorted.get(index) / 1_000_000;
+    }
+}
@@ -0,0 +1,126 @@
+package com.gabrielguo.personalfinance.benchmark;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.TimeSeriesGranularity;
+import com.mongodb.client.model.TimeSeriesOptions;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a regular expenses collection, indexed on {userId, date}, with a time-series collection keyed the same way.
+ * Inserts the same synthetic expenses into both, then reports storage size and the latency of per-user date range reads.
+ * Runs against MONGODB_URI, or a local MongoDB 7.0+ when unset, in a throwaway database that is dropped afterwards.
+ *
+ * Usage: TimeSeriesStorageBenchmark [users] [expensesPerUser] [queries]
+ */
+public class TimeSeriesStorageBenchmark {
+
+    private static final String DATABASE = "personalfinance-benchmark";
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final String[] CATEGORIES = {"Food", "Rent", "Transport", "Utilities", "Entertainment", "Health"};
+
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int expensesPerUser = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        String uri = System.getenv().getOrDefault("MONGODB_URI", "mongodb://localhost:27017");
+
+        try (MongoClient client = MongoClients.create(uri)) {
+            MongoDatabase database = client.getDatabase(DATABASE);
+            database.drop();
+            try {
+                database.getCollection("expenses").createIndex(Indexes.ascending("userId", "date"));
+                database.createCollection("expenses_ts", new CreateCollectionOptions().timeSeriesOptions(
+                        new TimeSeriesOptions("date").metaField("userId").granularity(TimeSeriesGranularity.HOURS)));
+
+                System.out.println(users + " users x " + expensesPerUser + " expenses, " + queries + " range queries");
+                for (String name : List.of("expenses", "expenses_ts")) {
+                    MongoCollection<Document> collection = database.getCollection(name);
+                    long insertMillis = insert(collection, users, expensesPerUser);
+                    report(database, name, insertMillis, queryLatencies(collection, users, expensesPerUser, queries));
+                }
+            } finally {
+                database.drop();
+            }
+        }
+    }
+
+    // Roughly one expense every few hours per user, going back from now, with the same seed for both collections
+    private static long insert(MongoCollection<Document> collection, int users, int expensesPerUser) {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        long begin = System.nanoTime();
+        for (int u = 0; u < users; u++) {
+            List<Document> batch = new ArrayList<>(expensesPerUser);
+            for (int i = 0; i < expensesPerUser; i++) {
+                batch.add(new Document("userId", userId(u))
+                        .append("amount", String.valueOf(1 + random.nextInt(20000) / 100.0))
+                        .append("category", CATEGORIES[random.nextInt(CATEGORIES.length)])
+                        .append("date", new Date(now - (long) i * DAY_MILLIS / 6 - random.nextInt(3_600_000)))
+                        .append("description", "expense " + i));
+            }
+            collection.insertMany(batch);
+        }
+        return (System.nanoTime() - begin) / 1_000_000;
+    }
+
+    // One-month windows for random users, as read by the monthly summaries and date range filters
+    private static List<Long> queryLatencies(MongoCollection<Document> collection, int users, int expensesPerUser, int queries) {
+        Random random = new Random(7);
+        long now = System.currentTimeMillis();
+        long spanDays = Math.max(1, expensesPerUser / 6);
+        List<Long> latencies = new ArrayList<>(queries);
+        for (int q = 0; q < queries; q++) {
+            Date to = new Date(now - random.nextLong(spanDays) * DAY_MILLIS);
+            Date from = new Date(to.getTime() - 30 * DAY_MILLIS);
+            Bson filter = Filters.and(Filters.eq("userId", userId(random.nextInt(users))),
+                    Filters.gte("date", from), Filters.lte("date", to));
+
+            long begin = System.nanoTime();
+            collection.find(filter).sort(Sorts.ascending("date")).into(new ArrayList<>());
+            latencies.add(System.nanoTime() - begin);
+        }
+        Collections.sort(latencies);
+        return latencies;
+    }
+
+    private static void report(MongoDatabase database, String name, long insertMillis, List<Long> latencies) {
+        Document stats = database.getCollection(name)
+                .aggregate(List.of(new Document("$collStats", new Document("storageStats", new Document()))))
+                .first();
+        Document storage = stats != null ? stats.get("storageStats", Document.class) : new Document();
+        System.out.printf("%-12s insert %6d ms, storage %8.1f MB, indexes %7.1f MB, range p50 %6.2f ms, p95 %6.2f ms%n",
+                name, insertMillis, megabytes(storage.get("storageSize")), megabytes(storage.get("totalIndexSize")),
+                percentile(latencies, 0.50), percentile(latencies, 0.95));
+    }
+
+    private static String userId(int user) {
+        return String.format("%024x", user + 1);
+    }
+
+    private static double megabytes(Object bytes) {
+        return bytes instanceof Number number ? number.doubleValue() / (1024 * 1024) : 0;
+    }
+
+    private static double percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.size() - 1, Math.round(percentile * (sorted.size() - 1)));
+        return sorted.get(index) / 1e6;
+    }
+}
@@ -0,0 +1,84 @@
+package com.gabrielguo.personalfinance.categorization;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the CategoryMatcher class
+public class CategoryMatcherTest {
+
+    private final CategoryMatcher matcher = CategoryMatcher.compile(List.of(
+            new CategoryMatcher.Rule("uber", "Transport"),
+            new CategoryMatcher.Rule("Uber Eats", "Food"),
+            new CategoryMatcher.Rule("netflix", "Entertainment"),
+            new CategoryMatcher.Rule("amazon", "Shopping"),
+            new CategoryMatcher.Rule("amazon prime", "Subscriptions"),
+            new CategoryMatcher.Rule("shell", "Fuel"),
+            new CategoryMatcher.Rule("caf\u00e9", "Food"),
+            new CategoryMatcher.Rule("rent", "Housing"),
+            new CategoryMatcher.Rule("rent", "Ignored")));
+
+    @Test
+    public void testMatch_IgnoresCaseAndPunctuation() {
+        assertEquals("Entertainment", matcher.match("NETFLIX.COM 866-579-7172 CA"));
+        assertEquals("Food", matcher.match("UBER   *EATS PENDING"));
+        assertEquals("Food", matcher.match("Caf\u00c9 de Flore"));
+        assertEquals("Shopping", matcher.match("POS 4411 AMAZON MKTPL*2K1"));
+    }
+
+    @Test
+    public void testMatch_StartsAtWordStart() {
+        assertEquals("Shopping", matcher.match("AMAZONMKTPL*2K1"));
+        assertEquals("Fuel", matcher.match("SHELL OIL 5744"));
+        assertNull(matcher.match("SEASHELL GIFTS"));
+        assertNull(matcher.match("PARENTS"));
+    }
+
+    @Test
+    public void testMatch_LongestPatternThenFirstRuleWins() {
+        assertEquals("Subscriptions", matcher.match("Amazon Prime*MB3"));
+        assertEquals("Food", matcher.match("uber eats"));
+        assertEquals("Transport", matcher.match("uber trip to eats street"));
+        assertEquals("Housing", matcher.match("RENT JULY"));
+        // Both patterns are the same length, so the one listed first wins wherever it is in the text
+        assertEquals("Transport", matcher.match("RENT PAID VIA UBER"));
+    }
+
+    @Test
+    public void testMatch_NothingToMatch() {
+        assertNull(matcher.match(null));
+        assertNull(matcher.match(""));
+        assertNull(matcher.match("  --  "));
+        assertNull(matcher.match("Grocery store"));
+        assertNull(CategoryMatcher.compile(List.of()).match("uber"));
+    }
+
+    @Test
+    public void testCompile_RejectsEmptyPatternsAndCategories() {
+        assertThrows(IllegalArgumentException.class,
+                () -> CategoryMatcher.compile(List.of(new CategoryMatcher.Rule(" *- ", "Other"))));
+        assertThrows(IllegalArgumentException.class,
+                () -> CategoryMatcher.compile(List.of(new CategoryMatcher.Rule("uber", " "))));
+    }
+
+    @Test
+    public void testLoad(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("category-rules.csv");
+        Files.writeString(file, "pattern,category\n# Streaming\nnetflix, Entertainment\n\nspotify,Music, Podcasts\n");
+
+        CategoryMatcher loaded = CategoryMatcher.load(file);
+
+        assertEquals(2, loaded.size());
+        assertEquals("Entertainment", loaded.match("Netflix"));
+        assertEquals("Music, Podcasts", loaded.match("SPOTIFY P1A2B3"));
+
+        Files.writeString(file, "netflix\n");
+        assertThrows(IllegalArgumentException.class, () -> CategoryMatcher.load(file));
+    }
+}
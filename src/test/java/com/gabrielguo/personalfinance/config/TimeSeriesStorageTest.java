@@ -0,0 +1,148 @@
+package com.gabrielguo.personalfinance.config;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Tests for the TimeSeriesStorage class
+public class TimeSeriesStorageTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    // Batches of two, so moving three documents takes two batches
+    @InjectMocks
+    private TimeSeriesStorage timeSeriesStorage = new TimeSeriesStorage(true, Granularity.HOURS, true, 2);
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), anyString())).thenReturn(List.of());
+    }
+
+    @Test
+    public void testCollectionNames() {
+        TimeSeriesStorage disabled = new TimeSeriesStorage(false, Granularity.HOURS, true, 2);
+
+        assertEquals("expenses_ts", timeSeriesStorage.getExpenseCollection());
+        assertEquals("incomes_ts", timeSeriesStorage.getIncomeCollection());
+        assertEquals("expenses", disabled.getExpenseCollection());
+        assertEquals("incomes", disabled.getIncomeCollection());
+    }
+
+    @Test
+    public void testPrepareCollections_CreatesMissingCollections() {
+        when(mongoTemplate.collectionExists(anyString())).thenReturn(false);
+
+        timeSeriesStorage.prepareCollections();
+
+        verify(mongoTemplate).createCollection(eq("expenses_ts"), any(CollectionOptions.class));
+        verify(mongoTemplate).createCollection(eq("incomes_ts"), any(CollectionOptions.class));
+    }
+
+    @Test
+    public void testPrepareCollections_MovesDatedDocumentsInBatches() {
+        when(mongoTemplate.collectionExists(anyString())).thenReturn(false);
+        List<Document> first = List.of(new Document("_id", "e1"), new Document("_id", "e2"));
+        List<Document> second = List.of(new Document("_id", "e3"));
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("expenses")))
+                .thenReturn(first, second, List.of());
+
+        timeSeriesStorage.prepareCollections();
+
+        verify(mongoTemplate).insert(first, "expenses_ts");
+        verify(mongoTemplate).insert(second, "expenses_ts");
+        verify(mongoTemplate, times(2)).remove(any(Query.class), eq("expenses"));
+        // Cleared from the target first, so repeating an interrupted batch does not duplicate it
+        verify(mongoTemplate, times(2)).remove(any(Query.class), eq("expenses_ts"));
+        verify(mongoTemplate, never()).insert(anyList(), eq("incomes_ts"));
+    }
+
+    @Test
+    public void testPrepareCollections_LeavesUndatedDocuments() {
+        when(mongoTemplate.collectionExists(anyString())).thenReturn(false);
+
+        timeSeriesStorage.prepareCollections();
+
+        verify(mongoTemplate).find(argThat((Query query) -> {
+            Document filter = query.getQueryObject();
+            return filter.get("date", Document.class).getBoolean("$exists")
+                    && !filter.get("startDate", Document.class).getBoolean("$exists");
+        }), eq(Document.class), eq("expenses"));
+    }
+
+    @Test
+    public void testPrepareCollections_LeavesTheMoveToTheInstanceHoldingTheLock() {
+        when(mongoTemplate.collectionExists(anyString())).thenReturn(false);
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq("storage_locks")))
+                .thenThrow(new DuplicateKeyException("held by another instance"));
+
+        timeSeriesStorage.prepareCollections();
+
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Document.class), anyString());
+        verify(mongoTemplate, never()).insert(anyList(), anyString());
+    }
+
+    @Test
+    public void testPrepareCollections_StopsMovingWhenTheLockIsLost() {
+        when(mongoTemplate.collectionExists(anyString())).thenReturn(false);
+        List<Document> first = List.of(new Document("_id", "e1").append("userId", "user1"), new Document("_id", "e2").append("userId", "user1"));
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("expenses"))).thenReturn(first, List.of(new Document("_id", "e3")));
+        // Taken, renewed before the first batch, then gone before the second
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq("storage_locks")))
+                .thenReturn(null, null)
+                .thenThrow(new DuplicateKeyException("expired and taken over"));
+
+        timeSeriesStorage.prepareCollections();
+
+        verify(mongoTemplate).insert(first, "expenses_ts");
+        verify(mongoTemplate, times(1)).insert(anyList(), anyString());
+    }
+
+    @Test
+    public void testPrepareCollections_ToleratesACollectionCreatedConcurrently() {
+        when(mongoTemplate.collectionExists("expenses_ts")).thenReturn(false, true);
+        when(mongoTemplate.createCollection(eq("expenses_ts"), any(CollectionOptions.class)))
+                .thenThrow(new DataIntegrityViolationException("already exists"));
+
+        assertDoesNotThrow(() -> timeSeriesStorage.prepareCollections());
+    }
+
+    @Test
+    public void testUpdateAndDelete_IncludeTheMetaField() {
+        timeSeriesStorage.update("e1", "user1", new Update().set("amount", 10), Document.class);
+        timeSeriesStorage.delete("e1", "user1", Document.class);
+
+        verify(mongoTemplate).updateFirst(argThat((Query query) -> "user1".equals(query.getQueryObject().get("userId"))),
+                any(Update.class), eq(Document.class));
+        verify(mongoTemplate).remove(argThat((Query query) -> "user1".equals(query.getQueryObject().get("userId"))), eq(Document.class));
+    }
+
+    @Test
+    public void testPrepareCollections_DisabledDoesNothing() {
+        TimeSeriesStorage disabled = new TimeSeriesStorage(false, Granularity.HOURS, true, 2);
+
+        disabled.prepareCollections();
+
+        verifyNoInteractions(mongoTemplate);
+    }
+}
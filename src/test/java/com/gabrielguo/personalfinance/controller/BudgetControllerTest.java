@@ -15,6 +15,7 @@ import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -78,6 +79,23 @@ public class BudgetControllerTest {
 
     }
 
+    @Test
+    public void testGetActiveBudgets() throws Exception {
+        Date startDate = new SimpleDateFormat("yyyy-MM-dd").parse("2024-01-01");
+        Budget budget = new Budget("1", "user1", BigDecimal.valueOf(1000), "Monthly Rent", startDate, null);
+        Date asOf = new SimpleDateFormat("yyyy-MM-dd").parse("2024-03-15");
+
+        when(budgetService.getActiveBudgets("user1", asOf)).thenReturn(List.of(budget));
+
+        mockMvc.perform(get("/api/budgets/active")
+                        .param("userId", "user1")
+                        .param("date", "2024-03-15")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("1"))
+                .andExpect(jsonPath("$[0].description").value("Monthly Rent"));
+    }
+
     @Test
     public void testGetBudgetById() throws Exception {
         Date startDate = new SimpleDateFormat("yyyy-MM-dd").parse("2024-01-01");
@@ -1,6 +1,11 @@
 package com.gabrielguo.personalfinance.controller;
 
+import com.gabrielguo.personalfinance.exception.GlobalExceptionHandler;
+import com.gabrielguo.personalfinance.exception.TooManyRequestsException;
 import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.ExpenseSearchResult;
+import com.gabrielguo.personalfinance.ratelimit.RequestRateLimiter;
+import com.gabrielguo.personalfinance.service.ExpenseSearchService;
 import com.gabrielguo.personalfinance.service.ExpenseService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -20,6 +25,7 @@ import java.util.Date;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -34,6 +40,12 @@ public class ExpenseControllerTest {
     @Mock
     private ExpenseService expenseService;
 
+    @Mock
+    private ExpenseSearchService expenseSearchService;
+
+    @Mock
+    private RequestRateLimiter rateLimiter;
+
     // Mockito annotation to create an instance of ExpenseController and inject the mocks into it
     @InjectMocks
     private ExpenseController expenseController;
@@ -85,6 +97,48 @@ public class ExpenseControllerTest {
                 .andExpect(jsonPath("$.date").value(fixedDateTimestamp)); // Compare timestamps
     }
 
+    @Test
+    public void testImportExpenses() throws Exception {
+        // Create the expenses the import returns, the first categorized by the category rules
+        Expense netflix = new Expense("1", "user1", BigDecimal.valueOf(12), "Entertainment", null, "NETFLIX.COM", null, true);
+        Expense lunch = new Expense("2", "user1", BigDecimal.valueOf(20), "Food", null, "Lunch");
+
+        when(rateLimiter.costOfImport(2)).thenReturn(1.1);
+        // Mockito: Define behavior of the mock ExpenseService for the importExpenses method
+        when(expenseService.importExpenses(anyList(), anyString())).thenReturn(List.of(netflix, lunch));
+
+        // MockMvc: Post both expenses in one request and expect both back
+        mockMvc.perform(post("/api/expenses/import?userId=user1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"amount\":12,\"description\":\"NETFLIX.COM\"},{\"amount\":20,\"category\":\"Food\",\"description\":\"Lunch\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].category").value("Entertainment"))
+                .andExpect(jsonPath("$[0].autoCategorized").value(true))
+                .andExpect(jsonPath("$[1].autoCategorized").value(false));
+
+        // The import is charged for both rows
+        verify(rateLimiter).acquire("user1", 1.1);
+    }
+
+    @Test
+    public void testImportExpenses_RejectedWhenTheRowsExceedTheRateLimit() throws Exception {
+        when(rateLimiter.costOfImport(2)).thenReturn(1.1);
+        doThrow(new TooManyRequestsException("Rate limit exceeded for user with ID: user1", 3))
+                .when(rateLimiter).acquire("user1", 1.1);
+        MockMvc advisedMockMvc = MockMvcBuilders.standaloneSetup(expenseController)
+                .setControllerAdvice(new GlobalExceptionHandler()).build();
+
+        advisedMockMvc.perform(post("/api/expenses/import?userId=user1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"amount\":12,\"description\":\"NETFLIX.COM\"},{\"amount\":20,\"description\":\"Lunch\"}]"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"));
+
+        // Nothing is imported
+        verifyNoInteractions(expenseService);
+    }
+
     // Test method for retrieving all expenses
     @Test
     public void testGetAllExpenses() throws Exception {
@@ -190,4 +244,27 @@ public class ExpenseControllerTest {
                 .andExpect(jsonPath("$[1]").value("Transport"))
                 .andExpect(jsonPath("$[2]").value("Entertainment"));
     }
+
+    // Test method for searching expenses
+    @Test
+    public void testSearchExpenses() throws Exception {
+        Expense expense = new Expense("1", "user1", BigDecimal.valueOf(12), "Food", new Date(), "Coffee beans");
+        when(expenseSearchService.search("user1", "coff", 0, 20)).thenReturn(new ExpenseSearchResult("coff", 0, 20, 1, List.of(expense)));
+
+        mockMvc.perform(get("/api/expenses/search").param("userId", "user1").param("q", "coff"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalHits").value(1))
+                .andExpect(jsonPath("$.hits[0].description").value("Coffee beans"));
+    }
+
+    // Test method for suggesting search words
+    @Test
+    public void testSuggestWords() throws Exception {
+        when(expenseSearchService.suggest("user1", "co", 5)).thenReturn(List.of("coffee", "coop"));
+
+        mockMvc.perform(get("/api/expenses/suggest").param("userId", "user1").param("prefix", "co").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value("coffee"))
+                .andExpect(jsonPath("$[1]").value("coop"));
+    }
 }
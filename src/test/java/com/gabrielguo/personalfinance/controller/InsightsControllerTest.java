@@ -1,10 +1,17 @@
 package com.gabrielguo.personalfinance.controller;
 
+import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.ledger.LedgerProjection;
 import com.gabrielguo.personalfinance.model.Income;
+import com.gabrielguo.personalfinance.model.RecurringSeries;
 import com.gabrielguo.personalfinance.model.summary.*;
 import com.gabrielguo.personalfinance.model.trends.*;
 import com.gabrielguo.personalfinance.model.trends.CategorySpending;
+import com.gabrielguo.personalfinance.service.CashflowForecastService;
 import com.gabrielguo.personalfinance.service.InsightsService;
+import com.gabrielguo.personalfinance.service.LedgerService;
+import com.gabrielguo.personalfinance.service.RecurringSeriesService;
+import com.gabrielguo.personalfinance.service.SpendingAnomalyService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -27,6 +34,7 @@ import java.util.List;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -38,6 +46,18 @@ public class InsightsControllerTest {
     @Mock
     private InsightsService insightsService;
 
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private SpendingAnomalyService spendingAnomalyService;
+
+    @Mock
+    private CashflowForecastService cashflowForecastService;
+
+    @Mock
+    private RecurringSeriesService recurringSeriesService;
+
     @InjectMocks
     private InsightsController insightsController;
 
@@ -141,4 +161,85 @@ public class InsightsControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isNotEmpty());
     }
+
+    @Test
+    public void testGetBudgetUtilization() throws Exception {
+        BudgetUtilization utilization = new BudgetUtilization();
+        utilization.setId("budget1");
+        utilization.setUserId("user1");
+        utilization.setSpent(new BigDecimal("250"));
+        when(insightsService.getBudgetUtilization(anyString())).thenReturn(List.of(utilization));
+
+        mockMvc.perform(get("/api/insights/budget-utilization")
+                        .param("userId", "user1")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("budget1"))
+                .andExpect(jsonPath("$[0].spent").value(250));
+    }
+
+    @Test
+    public void testGetLedgerProjection() throws Exception {
+        LedgerProjection projection = new LedgerProjection("user1");
+        projection.setTotalExpenses(new BigDecimal("120.50"));
+        when(ledgerService.getProjectionAt(eq("user1"), any(Date.class))).thenReturn(projection);
+        when(ledgerService.getProjection("user1")).thenThrow(new ResourceNotFoundException("The ledger is not enabled"));
+
+        mockMvc.perform(get("/api/insights/ledger")
+                        .param("userId", "user1")
+                        .param("asOf", "2024-07-01T00:00:00.000Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalExpenses").value(120.50))
+                .andExpect(jsonPath("$.entities").doesNotExist());
+        verify(ledgerService).getProjectionAt("user1", Date.from(Instant.parse("2024-07-01T00:00:00Z")));
+
+        mockMvc.perform(get("/api/insights/ledger").param("userId", "user1"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testGetSpendingAnomalies() throws Exception {
+        SpendingAnomaly anomaly = new SpendingAnomaly("e1", "user1", "Groceries", null, new BigDecimal("250.00"),
+                new BigDecimal("50.00"), 4.5, new Date(), new Date());
+        when(spendingAnomalyService.getAnomalies("user1")).thenReturn(List.of(anomaly));
+
+        mockMvc.perform(get("/api/insights/spending-anomalies")
+                        .param("userId", "user1")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].expenseId").value("e1"))
+                .andExpect(jsonPath("$[0].expectedAmount").value(50.00));
+    }
+
+    @Test
+    public void testGetCashflowForecast() throws Exception {
+        CashflowForecast forecast = new CashflowForecast("user1", "2024-07", "USD", new BigDecimal("3000.00"),
+                new BigDecimal("2400.00"), new BigDecimal("600.00"));
+        when(cashflowForecastService.getForecast("user1")).thenReturn(List.of(forecast));
+
+        mockMvc.perform(get("/api/insights/cashflow-forecast").param("userId", "user1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].month").value("2024-07"))
+                .andExpect(jsonPath("$[0].net").value(600.00));
+
+        when(cashflowForecastService.getForecast("user2")).thenThrow(new ResourceNotFoundException("Cashflow forecasting is not enabled"));
+        mockMvc.perform(get("/api/insights/cashflow-forecast").param("userId", "user2"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testGetUpcomingBills() throws Exception {
+        RecurringSeries series = new RecurringSeries("s1", "user1", "netflix com", "NETFLIX.COM 8472", "Entertainment", null,
+                new BigDecimal("15.49"), RecurringSeries.Period.MONTHLY, 6, new Date(), new Date(), new Date(), true, new Date());
+        when(recurringSeriesService.getUpcoming("user1", 30)).thenReturn(List.of(series));
+        when(recurringSeriesService.getRecurringSeries("user1")).thenReturn(List.of(series));
+
+        mockMvc.perform(get("/api/insights/upcoming-bills").param("userId", "user1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].period").value("MONTHLY"))
+                .andExpect(jsonPath("$[0].amount").value(15.49));
+        mockMvc.perform(get("/api/insights/recurring").param("userId", "user1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].normalizedDescription").value("netflix com"));
+    }
 }
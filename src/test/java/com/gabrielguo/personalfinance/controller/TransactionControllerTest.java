@@ -1,6 +1,7 @@
 package com.gabrielguo.personalfinance.controller;
 
 import com.gabrielguo.personalfinance.model.Transaction;
+import com.gabrielguo.personalfinance.ratelimit.RequestRateLimiter;
 import com.gabrielguo.personalfinance.service.TransactionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,9 +14,12 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -27,6 +31,9 @@ public class TransactionControllerTest {
     @Mock
     private TransactionService transactionService;
 
+    @Mock
+    private RequestRateLimiter rateLimiter;
+
     @InjectMocks
     private TransactionController transactionController;
 
@@ -52,6 +59,25 @@ public class TransactionControllerTest {
                 .andExpect(jsonPath("$.description").value("Groceries"));
     }
 
+    @Test
+    public void testImportTransactions() throws Exception {
+        Transaction transaction = new Transaction("1", "user1", BigDecimal.valueOf(15), "UBER *TRIP", null, "Transport", true);
+
+        when(rateLimiter.costOfImport(1)).thenReturn(1.05);
+        when(transactionService.importTransactions(anyList(), eq("user1"))).thenReturn(List.of(transaction));
+
+        mockMvc.perform(post("/api/transactions/import?userId=user1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"amount\":15, \"description\":\"UBER *TRIP\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("1"))
+                .andExpect(jsonPath("$[0].category").value("Transport"))
+                .andExpect(jsonPath("$[0].autoCategorized").value(true));
+
+        // The import is charged for its single row
+        verify(rateLimiter).acquire("user1", 1.05);
+    }
+
     @Test
     public void testGetAllTransactions() throws Exception {
         Transaction transaction1 = new Transaction("1", "user1", BigDecimal.valueOf(200), "Groceries");
@@ -0,0 +1,70 @@
+package com.gabrielguo.personalfinance.forecast;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the HoltWinters class
+public class HoltWintersTest {
+
+    private static final double ALPHA = 0.3;
+    private static final double BETA = 0.1;
+    private static final double GAMMA = 0.2;
+
+    @Test
+    public void testForecast_IsZeroBeforeAnyObservation() {
+        assertEquals(0.0, new HoltWinters().forecast(1, 0));
+    }
+
+    @Test
+    public void testForecast_FlatSeries() {
+        HoltWinters model = new HoltWinters();
+        for (int month = 0; month < 24; month++) {
+            model.observe(100, month % 12, ALPHA, BETA, GAMMA);
+        }
+
+        assertEquals(24, model.getObservations());
+        assertEquals(100.0, model.forecast(1, 0), 1e-9);
+        assertEquals(100.0, model.forecast(12, 11), 1e-9);
+    }
+
+    @Test
+    public void testForecast_FollowsATrend() {
+        HoltWinters model = new HoltWinters();
+        for (int month = 0; month < 60; month++) {
+            model.observe(1000 + 10 * month, month % 12, ALPHA, BETA, GAMMA);
+        }
+
+        // The next months would be 1600, 1610, ...
+        assertEquals(1600.0, model.forecast(1, 0), 5.0);
+        assertEquals(1710.0, model.forecast(12, 11), 10.0);
+    }
+
+    @Test
+    public void testForecast_LearnsASeasonalSpike() {
+        HoltWinters model = new HoltWinters();
+        for (int month = 0; month < 72; month++) {
+            model.observe(month % 12 == 11 ? 500 : 100, month % 12, ALPHA, BETA, GAMMA);
+        }
+
+        double january = model.forecast(1, 0);
+        double december = model.forecast(12, 11);
+        assertEquals(100.0, january, 25.0);
+        assertTrue(december > january + 250, "December forecast " + december);
+    }
+
+    @Test
+    public void testCopy_IsIndependent() {
+        HoltWinters model = new HoltWinters();
+        model.observe(100, 0, ALPHA, BETA, GAMMA);
+        model.observe(200, 1, ALPHA, BETA, GAMMA);
+
+        HoltWinters copy = model.copy();
+        copy.observe(0, 2, ALPHA, BETA, GAMMA);
+
+        assertEquals(2, model.getObservations());
+        assertEquals(3, copy.getObservations());
+        assertEquals(0.0, model.getSeasonal()[2]);
+        assertNotEquals(model.getLevel(), copy.getLevel());
+    }
+}
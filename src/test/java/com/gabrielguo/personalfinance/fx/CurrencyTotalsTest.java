@@ -0,0 +1,71 @@
+package com.gabrielguo.personalfinance.fx;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the CurrencyTotals class
+public class CurrencyTotalsTest {
+
+    private final FxRateTable table = FxRateTable.of("USD", Map.of("EUR", new TreeMap<>(Map.of(
+            LocalDate.of(2024, 7, 1), new BigDecimal("1.10"),
+            LocalDate.of(2024, 8, 1), new BigDecimal("1.20")))));
+
+    @Test
+    public void testSameCurrencyNeedsNoRates() {
+        CurrencyTotals totals = new CurrencyTotals(FxRateTable.empty("USD"), "CHF", "CHF");
+
+        totals.add(null, new BigDecimal("10.50")).add("chf", date(2024, 7, 1), new BigDecimal("4.50")).add("CHF", null);
+
+        assertEquals(new BigDecimal("15.00"), totals.total());
+    }
+
+    @Test
+    public void testConvertsEachAmountAtTheRateOfItsDate() {
+        CurrencyTotals totals = new CurrencyTotals(table, "USD", "USD");
+
+        totals.add("EUR", date(2024, 7, 15), new BigDecimal("100"))
+                .add("EUR", date(2024, 7, 20), new BigDecimal("100"))
+                .add("EUR", date(2024, 8, 2), new BigDecimal("100"))
+                .add(null, new BigDecimal("5"));
+
+        // 200 at 1.10 and 100 at 1.20, plus 5 dollars
+        assertEquals(new BigDecimal("345.00"), totals.total());
+    }
+
+    @Test
+    public void testUnknownCurrencyIsLeftOut() {
+        CurrencyTotals totals = new CurrencyTotals(table, "USD", "USD");
+
+        // A zero amount needs no rate
+        totals.add("JPY", date(2024, 7, 1), BigDecimal.ZERO).add("USD", BigDecimal.TEN);
+        assertTrue(totals.isComplete());
+
+        totals.add("JPY", date(2024, 7, 1), BigDecimal.ONE).add("EUR", date(2024, 7, 1), BigDecimal.TEN);
+
+        assertEquals(new BigDecimal("21.00"), totals.total());
+        assertFalse(totals.isComplete());
+    }
+
+    @Test
+    public void testUnknownReportingCurrency() {
+        CurrencyTotals totals = new CurrencyTotals(table, "JPY", "USD");
+
+        totals.add("jpy", BigDecimal.ONE).add("EUR", date(2024, 7, 1), BigDecimal.TEN);
+
+        // Only amounts already in the reporting currency can be totalled
+        assertEquals(BigDecimal.ONE, totals.total());
+        assertFalse(totals.isComplete());
+    }
+
+    private static Date date(int year, int month, int day) {
+        return Date.from(LocalDate.of(year, month, day).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
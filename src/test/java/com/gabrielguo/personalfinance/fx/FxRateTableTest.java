@@ -0,0 +1,109 @@
+package com.gabrielguo.personalfinance.fx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the FxRateTable class
+public class FxRateTableTest {
+
+    private static final int JULY_1 = (int) LocalDate.of(2024, 7, 1).toEpochDay();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRateAt_LatestRateOnOrBeforeTheDay() {
+        FxRateTable table = FxRateTable.of("USD", Map.of("EUR", rates(
+                LocalDate.of(2024, 7, 1), "1.08",
+                LocalDate.of(2024, 7, 3), "1.10")));
+        int eur = table.indexOf("EUR");
+
+        assertEquals(108_000_000L, table.rateAt(eur, JULY_1));
+        assertEquals(108_000_000L, table.rateAt(eur, JULY_1 + 1));
+        assertEquals(110_000_000L, table.rateAt(eur, JULY_1 + 2));
+        assertEquals(110_000_000L, table.rateAt(eur, JULY_1 + 365));
+        // Days before the first rate use the first rate
+        assertEquals(108_000_000L, table.rateAt(eur, JULY_1 - 30));
+    }
+
+    @Test
+    public void testBaseCurrencyIsAlwaysKnown() {
+        FxRateTable table = FxRateTable.empty("usd");
+
+        assertEquals("USD", table.getBaseCurrency());
+        assertEquals(List.of("USD"), table.getCurrencies());
+        assertEquals(100_000_000L, table.rateAt(table.indexOf("USD"), JULY_1));
+        assertEquals(-1, table.indexOf("EUR"));
+    }
+
+    @Test
+    public void testConvert_CrossRate() {
+        FxRateTable table = FxRateTable.of("USD", Map.of(
+                "EUR", rates(LocalDate.of(2024, 7, 1), "1.10"),
+                "GBP", rates(LocalDate.of(2024, 7, 1), "1.32")));
+        int usd = table.indexOf("USD");
+        int eur = table.indexOf("eur");
+        int gbp = table.indexOf("GBP");
+
+        assertEquals(new BigDecimal("110.00"), table.convert(new BigDecimal("100"), eur, usd, JULY_1));
+        assertEquals(new BigDecimal("100.00"), table.convert(new BigDecimal("110"), usd, eur, JULY_1));
+        assertEquals(new BigDecimal("120.000"), table.convert(new BigDecimal("100.000"), gbp, eur, JULY_1));
+        BigDecimal amount = new BigDecimal("12.34");
+        assertSame(amount, table.convert(amount, eur, eur, JULY_1));
+    }
+
+    @Test
+    public void testOf_RejectsNonPositiveRates() {
+        assertThrows(IllegalArgumentException.class,
+                () -> FxRateTable.of("USD", Map.of("EUR", rates(LocalDate.of(2024, 7, 1), "0"))));
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        Files.writeString(directory.resolve("2024-07.csv"), """
+                date,currency,rate
+                # Dollars per unit
+                2024-07-01,EUR,1.08
+                2024-07-01,GBP,1.27
+
+                2024-07-02,EUR,1.09
+                """);
+        Files.writeString(directory.resolve("2024-08.csv"), "2024-07-02,eur,1.095\n");
+        Files.writeString(directory.resolve("notes.txt"), "ignored");
+
+        FxRateTable table = FxRateTable.load(directory, "USD");
+
+        assertEquals(List.of("EUR", "GBP", "USD"), table.getCurrencies());
+        assertEquals(4, table.size());
+        // The later file overrides the rate of the same day
+        assertEquals(109_500_000L, table.rateAt(table.indexOf("EUR"), JULY_1 + 1));
+    }
+
+    @Test
+    public void testLoad_ReportsTheInvalidLine() throws IOException {
+        Files.writeString(directory.resolve("rates.csv"), "2024-07-01,EUR,1.08\n2024-07-02,EUR\n");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> FxRateTable.load(directory, "USD"));
+        assertTrue(e.getMessage().contains("rates.csv:2"));
+    }
+
+    private static SortedMap<LocalDate, BigDecimal> rates(Object... datesAndRates) {
+        SortedMap<LocalDate, BigDecimal> rates = new TreeMap<>();
+        for (int i = 0; i < datesAndRates.length; i += 2) {
+            rates.put((LocalDate) datesAndRates[i], new BigDecimal((String) datesAndRates[i + 1]));
+        }
+        return rates;
+    }
+}
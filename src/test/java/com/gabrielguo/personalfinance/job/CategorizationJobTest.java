@@ -0,0 +1,52 @@
+package com.gabrielguo.personalfinance.job;
+
+import com.gabrielguo.personalfinance.service.CategorizationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// Tests for the CategorizationJob class
+public class CategorizationJobTest {
+
+    @Mock
+    private CategorizationService categorizationService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private CategorizationJob job(boolean enabled) {
+        CategorizationJob job = new CategorizationJob(enabled);
+        ReflectionTestUtils.setField(job, "categorizationService", categorizationService);
+        return job;
+    }
+
+    @Test
+    public void testRecategorize() throws IOException {
+        job(true).recategorize();
+
+        verify(categorizationService).recategorizeAll();
+    }
+
+    @Test
+    public void testRecategorize_Disabled() throws IOException {
+        job(false).recategorize();
+
+        verify(categorizationService, never()).recategorizeAll();
+    }
+
+    @Test
+    public void testRecategorize_InvalidRules() throws IOException {
+        when(categorizationService.recategorizeAll()).thenThrow(new IllegalArgumentException("Invalid rule"));
+
+        assertDoesNotThrow(() -> job(true).recategorize());
+    }
+}
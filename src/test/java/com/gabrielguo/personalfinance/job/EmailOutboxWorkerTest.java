@@ -0,0 +1,91 @@
+package com.gabrielguo.personalfinance.job;
+
+import com.gabrielguo.personalfinance.model.OutboxEmail;
+import com.gabrielguo.personalfinance.service.EmailOutboxService;
+import com.gabrielguo.personalfinance.service.EmailTransport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Tests for the EmailOutboxWorker class, using a local stand-in transport
+public class EmailOutboxWorkerTest {
+
+    @Mock
+    private EmailOutboxService emailOutboxService;
+
+    private EmailOutboxWorker emailOutboxWorker;
+
+    // Recipients the stand-in transport delivered to
+    private final List<String> delivered = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        emailOutboxWorker = new EmailOutboxWorker(10, 1000, 100);
+
+        EmailTransport standIn = (to, subject, bodyText) -> {
+            if (to.startsWith("bounce")) {
+                throw new IOException("mailbox unavailable");
+            }
+            delivered.add(to);
+        };
+        ReflectionTestUtils.setField(emailOutboxWorker, "emailOutboxService", emailOutboxService);
+        ReflectionTestUtils.setField(emailOutboxWorker, "emailTransport", standIn);
+        ReflectionTestUtils.setField(emailOutboxWorker, "emailDeliveryExecutor", (Executor) Runnable::run);
+    }
+
+    private OutboxEmail email(String id, String to) {
+        OutboxEmail email = new OutboxEmail(to, "Subject", "Body");
+        email.setId(id);
+        email.setStatus(OutboxEmail.Status.SENDING);
+        return email;
+    }
+
+    @Test
+    public void testDrain_DeliversClaimedBatch() {
+        OutboxEmail first = email("1", "a@example.com");
+        OutboxEmail second = email("2", "bounce@example.com");
+        when(emailOutboxService.claimNext(any(Date.class))).thenReturn(first, second, null);
+
+        emailOutboxWorker.drain();
+
+        assertEquals(List.of("a@example.com"), delivered);
+        verify(emailOutboxService).markSent(first);
+        verify(emailOutboxService).markFailed(eq(second), contains("mailbox unavailable"));
+        verify(emailOutboxService, never()).markSent(second);
+    }
+
+    @Test
+    public void testDrain_StopsAtBatchSize() {
+        when(emailOutboxService.claimNext(any(Date.class))).thenAnswer(invocation -> email("id", "a@example.com"));
+
+        emailOutboxWorker.drain();
+
+        verify(emailOutboxService, times(10)).claimNext(any(Date.class));
+        assertEquals(10, delivered.size());
+    }
+
+    @Test
+    public void testDrain_NothingDue() {
+        when(emailOutboxService.claimNext(any(Date.class))).thenReturn(null);
+
+        emailOutboxWorker.drain();
+
+        assertTrue(delivered.isEmpty());
+        verify(emailOutboxService, never()).markSent(any(OutboxEmail.class));
+    }
+}
@@ -0,0 +1,49 @@
+package com.gabrielguo.personalfinance.job;
+
+import com.gabrielguo.personalfinance.service.ExpenseArchiveService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+// Tests for the ExpenseArchiveJob class
+public class ExpenseArchiveJobTest {
+
+    @Mock
+    private ExpenseArchiveService expenseArchiveService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private ExpenseArchiveJob job(boolean enabled, int minAgeDays) {
+        ExpenseArchiveJob job = new ExpenseArchiveJob(enabled, minAgeDays);
+        ReflectionTestUtils.setField(job, "expenseArchiveService", expenseArchiveService);
+        return job;
+    }
+
+    @Test
+    public void testArchive_UsesMonthCutoff() {
+        job(true, 365).archive();
+
+        ArgumentCaptor<Date> cutoff = ArgumentCaptor.forClass(Date.class);
+        verify(expenseArchiveService).archiveOlderThan(cutoff.capture());
+        assertEquals(ExpenseArchiveService.cutoff(new Date(), 365), cutoff.getValue());
+    }
+
+    @Test
+    public void testArchive_Disabled() {
+        job(false, 365).archive();
+
+        verify(expenseArchiveService, never()).archiveOlderThan(any());
+    }
+}
@@ -0,0 +1,41 @@
+package com.gabrielguo.personalfinance.job;
+
+import com.gabrielguo.personalfinance.service.LedgerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.mockito.Mockito.*;
+
+// Tests for the LedgerSnapshotJob class
+public class LedgerSnapshotJobTest {
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @InjectMocks
+    private LedgerSnapshotJob ledgerSnapshotJob;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testSnapshot() {
+        when(ledgerService.isEnabled()).thenReturn(true);
+
+        ledgerSnapshotJob.snapshot();
+
+        verify(ledgerService).snapshotPending();
+    }
+
+    @Test
+    public void testSnapshot_Disabled() {
+        ledgerSnapshotJob.snapshot();
+
+        verify(ledgerService, never()).snapshotPending();
+    }
+}
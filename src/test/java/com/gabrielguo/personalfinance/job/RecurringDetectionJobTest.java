@@ -0,0 +1,45 @@
+package com.gabrielguo.personalfinance.job;
+
+import com.gabrielguo.personalfinance.service.RecurringSeriesService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+// Tests for the RecurringDetectionJob class
+public class RecurringDetectionJobTest {
+
+    @Mock
+    private RecurringSeriesService recurringSeriesService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private RecurringDetectionJob job(boolean enabled) {
+        RecurringDetectionJob job = new RecurringDetectionJob(enabled);
+        ReflectionTestUtils.setField(job, "recurringSeriesService", recurringSeriesService);
+        return job;
+    }
+
+    @Test
+    public void testDetect() {
+        job(true).detect();
+
+        verify(recurringSeriesService).detectAll(LocalDate.now());
+    }
+
+    @Test
+    public void testDetect_Disabled() {
+        job(false).detect();
+
+        verify(recurringSeriesService, never()).detectAll(any());
+    }
+}
@@ -0,0 +1,92 @@
+package com.gabrielguo.personalfinance.job;
+
+import com.gabrielguo.personalfinance.util.ReadRouting;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+// Tests for the ReplicationLagJob class
+public class ReplicationLagJobTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoDatabaseFactory mongoDatabaseFactory;
+
+    @Mock
+    private MongoDatabase adminDatabase;
+
+    @Spy
+    private ReadRouting readRouting = new ReadRouting(true, 90, 30);
+
+    @InjectMocks
+    private ReplicationLagJob replicationLagJob;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(mongoTemplate.getMongoDatabaseFactory()).thenReturn(mongoDatabaseFactory);
+        when(mongoDatabaseFactory.getMongoDatabase("admin")).thenReturn(adminDatabase);
+    }
+
+    @Test
+    public void testMeasure_LaggingSecondary() {
+        when(adminDatabase.runCommand(any(Document.class))).thenReturn(status(
+                member("PRIMARY", 100_000), member("SECONDARY", 95_000), member("SECONDARY", 40_000)));
+
+        replicationLagJob.measure();
+
+        assertEquals(60, readRouting.getReplicationLagSeconds());
+        assertTrue(readRouting.isLagging());
+    }
+
+    @Test
+    public void testMeasure_SingleMemberReplicaSet() {
+        when(adminDatabase.runCommand(any(Document.class))).thenReturn(status(member("PRIMARY", 100_000)));
+
+        replicationLagJob.measure();
+
+        assertEquals(0, readRouting.getReplicationLagSeconds());
+        assertFalse(readRouting.isLagging());
+    }
+
+    @Test
+    public void testMeasure_NotAReplicaSet() {
+        readRouting.setReplicationLagSeconds(60);
+        when(adminDatabase.runCommand(any(Document.class))).thenThrow(new IllegalStateException("not running with --replSet"));
+
+        replicationLagJob.measure();
+
+        assertEquals(ReadRouting.UNKNOWN_LAG, readRouting.getReplicationLagSeconds());
+        // Without a measurement, analytical reads stay on the primary
+        assertTrue(readRouting.isLagging());
+    }
+
+    @Test
+    public void testLagSeconds_NoPrimary() {
+        assertEquals(ReadRouting.UNKNOWN_LAG, ReplicationLagJob.lagSeconds(status(member("SECONDARY", 95_000))));
+    }
+
+    private static Document status(Document... members) {
+        return new Document("members", List.of(members));
+    }
+
+    private static Document member(String state, long optime) {
+        return new Document("stateStr", state).append("optimeDate", new Date(optime));
+    }
+}
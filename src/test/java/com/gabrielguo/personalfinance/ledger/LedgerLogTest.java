@@ -0,0 +1,152 @@
+package com.gabrielguo.personalfinance.ledger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the LedgerLog class
+public class LedgerLogTest {
+
+    @TempDir
+    private Path directory;
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> replay(LedgerLog log, long afterSequence) throws IOException {
+        List<String> records = new ArrayList<>();
+        log.replay(afterSequence, (sequence, payload) -> records.add(sequence + ":" + new String(payload, StandardCharsets.UTF_8)));
+        return records;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testAppendAndReplay() throws IOException {
+        try (LedgerLog log = new LedgerLog(directory, 1024, false)) {
+            assertEquals(1, log.append(bytes("a")));
+            assertEquals(2, log.append(bytes("b")));
+            assertEquals(3, log.append(bytes("c")));
+
+            assertEquals(List.of("1:a", "2:b", "3:c"), replay(log, 0));
+            assertEquals(List.of("3:c"), replay(log, 2));
+            assertTrue(replay(log, 3).isEmpty());
+        }
+    }
+
+    @Test
+    public void testReopen_ContinuesAfterTheLastRecord() throws IOException {
+        try (LedgerLog log = new LedgerLog(directory, 1024, true)) {
+            log.append(bytes("a"));
+            log.append(bytes("b"));
+        }
+        try (LedgerLog log = new LedgerLog(directory, 1024, false)) {
+            assertEquals(2, log.getLastSequence());
+            assertEquals(3, log.append(bytes("c")));
+            assertEquals(List.of("1:a", "2:b", "3:c"), replay(log, 0));
+        }
+    }
+
+    @Test
+    public void testFullSegments_RollOverAndAreSkipped() throws IOException {
+        // Each record takes 16 header bytes plus 10 payload bytes, so three fit in a segment
+        try (LedgerLog log = new LedgerLog(directory, 80, false)) {
+            for (int i = 0; i < 10; i++) {
+                log.append(bytes(String.format("record-%03d", i)));
+            }
+            assertEquals(4, segmentCount());
+            assertEquals(10, replay(log, 0).size());
+            assertEquals(List.of("9:record-008", "10:record-009"), replay(log, 8));
+        }
+        try (LedgerLog log = new LedgerLog(directory, 80, false)) {
+            assertEquals(10, log.getLastSequence());
+            assertEquals(10, replay(log, 0).size());
+        }
+    }
+
+    @Test
+    public void testAppendAll_WritesTheRecordsInOrderAcrossSegments() throws IOException {
+        // Three records fit in a segment, so the batch continues one segment and fills another
+        try (LedgerLog log = new LedgerLog(directory, 80, true)) {
+            log.append(bytes("record-000"));
+            List<byte[]> batch = new ArrayList<>();
+            for (int i = 1; i <= 4; i++) {
+                batch.add(bytes(String.format("record-%03d", i)));
+            }
+
+            assertEquals(5, log.appendAll(batch));
+            assertEquals(2, segmentCount());
+        }
+        try (LedgerLog log = new LedgerLog(directory, 80, false)) {
+            assertEquals(List.of("1:record-000", "2:record-001", "3:record-002", "4:record-003", "5:record-004"), replay(log, 0));
+        }
+    }
+
+    @Test
+    public void testReopen_IgnoresATornRecord() throws IOException {
+        Path segment;
+        try (LedgerLog log = new LedgerLog(directory, 1024, false)) {
+            log.append(bytes("a"));
+            log.append(bytes("b"));
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        // Corrupt the payload of the second record, as if the crash happened while it was written
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes("x")), 17 + 16);
+        }
+
+        try (LedgerLog log = new LedgerLog(directory, 1024, false)) {
+            assertEquals(1, log.getLastSequence());
+            assertEquals(2, log.append(bytes("c")));
+            assertEquals(List.of("1:a", "2:c"), replay(log, 0));
+        }
+    }
+
+    @Test
+    public void testCompact_DropsRecordsFromFullSegmentsOnly() throws IOException {
+        // Three records fit in a segment, so records 1 to 9 are in full segments and record 10 is in the active one
+        try (LedgerLog log = new LedgerLog(directory, 80, false)) {
+            for (int i = 0; i < 10; i++) {
+                log.append(bytes(String.format("record-%03d", i)));
+            }
+
+            assertEquals(4, log.compact((sequence, payload) -> sequence % 2 == 1));
+
+            assertEquals(List.of("1:record-000", "3:record-002", "5:record-004", "7:record-006", "9:record-008", "10:record-009"),
+                    replay(log, 0));
+            assertEquals(List.of("5:record-004", "7:record-006", "9:record-008", "10:record-009"), replay(log, 4));
+            assertEquals(0, log.compact((sequence, payload) -> sequence % 2 == 1));
+        }
+        try (LedgerLog log = new LedgerLog(directory, 80, false)) {
+            assertEquals(10, log.getLastSequence());
+            assertEquals(11, log.append(bytes("record-010")));
+            assertEquals(7, replay(log, 0).size());
+        }
+    }
+
+    @Test
+    public void testAppend_RejectsRecordsLargerThanASegment() throws IOException {
+        try (LedgerLog log = new LedgerLog(directory, 64, false)) {
+            assertThrows(IllegalArgumentException.class, () -> log.append(new byte[64]));
+        }
+    }
+}
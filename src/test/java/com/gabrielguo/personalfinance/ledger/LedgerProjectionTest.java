@@ -0,0 +1,98 @@
+package com.gabrielguo.personalfinance.ledger;
+
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.model.Budget;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.Income;
+import com.gabrielguo.personalfinance.model.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the LedgerProjection class
+public class LedgerProjectionTest {
+
+    private long sequence;
+
+    private static Date date(int year, int month, int day) {
+        return Date.from(LocalDate.of(year, month, day).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private void apply(LedgerProjection projection, LedgerEvent event) {
+        LedgerEntry entry = LedgerEntry.from(event, new Date());
+        entry.setSequence(++sequence);
+        projection.apply(entry);
+    }
+
+    @Test
+    public void testApply_UpdatesReplaceThePreviousState() {
+        LedgerProjection projection = new LedgerProjection("user1");
+        Expense lunch = new Expense("e1", "user1", new BigDecimal("12.00"), "Food", date(2024, 7, 3), "Lunch");
+        apply(projection, LedgerEvent.of(LedgerEvent.Action.CREATED, lunch));
+        apply(projection, LedgerEvent.of(LedgerEvent.Action.CREATED,
+                new Expense("e2", "user1", new BigDecimal("30.00"), "Travel", date(2024, 8, 1), "Train")));
+
+        // Moving the expense to another category and month
+        apply(projection, LedgerEvent.of(LedgerEvent.Action.UPDATED,
+                new Expense("e1", "user1", new BigDecimal("15.00"), "Travel", date(2024, 8, 2), "Taxi")));
+
+        assertEquals(new BigDecimal("45.00"), projection.getTotalExpenses());
+        assertEquals(Map.of("Travel", new BigDecimal("45.00")), projection.getExpensesByCategory());
+        assertEquals(Map.of("2024-08", new BigDecimal("45.00")), projection.getMonthlyExpenses());
+        assertEquals(3, projection.getSequence());
+    }
+
+    @Test
+    public void testApply_DeletesTakeBackTheContribution() {
+        LedgerProjection projection = new LedgerProjection("user1");
+        Income salary = new Income("i1", "user1", "Salary", new BigDecimal("2000"), date(2024, 7, 1));
+        apply(projection, LedgerEvent.of(LedgerEvent.Action.CREATED, salary));
+        apply(projection, LedgerEvent.of(LedgerEvent.Action.CREATED, new Transaction("t1", "user1", new BigDecimal("40"), "Gift")));
+        apply(projection, LedgerEvent.of(LedgerEvent.Action.CREATED,
+                new Budget("b1", "user1", new BigDecimal("500"), "July", date(2024, 7, 1), null)));
+
+        apply(projection, LedgerEvent.of(LedgerEvent.Action.DELETED, salary));
+
+        assertEquals(0, BigDecimal.ZERO.compareTo(projection.getTotalIncome()));
+        assertTrue(projection.getIncomeByType().isEmpty());
+        assertTrue(projection.getMonthlyIncome().isEmpty());
+        assertEquals(new BigDecimal("40"), projection.getTotalTransactions());
+        assertEquals(2, projection.getEntities().size());
+        assertEquals(0, BigDecimal.ZERO.compareTo(projection.toUserInsights().getBudgetBalance()));
+    }
+
+    @Test
+    public void testApply_AccountDeletionDiscardsEverything() {
+        LedgerProjection projection = new LedgerProjection("user1");
+        apply(projection, LedgerEvent.of(LedgerEvent.Action.CREATED,
+                new Expense("e1", "user1", new BigDecimal("12.00"), "Food", date(2024, 7, 3), "Lunch")));
+        apply(projection, LedgerEvent.of(LedgerEvent.Action.CREATED,
+                new Income("i1", "user1", "Salary", new BigDecimal("2000"), date(2024, 7, 1))));
+        LedgerEntry tombstone = LedgerEntry.accountDeleted("user1", new Date());
+        tombstone.setSequence(++sequence);
+
+        projection.apply(tombstone);
+
+        assertEquals(BigDecimal.ZERO, projection.getTotalExpenses());
+        assertEquals(BigDecimal.ZERO, projection.getTotalIncome());
+        assertTrue(projection.getMonthlyExpenses().isEmpty());
+        assertTrue(projection.getIncomeByType().isEmpty());
+        assertTrue(projection.getEntities().isEmpty());
+        assertEquals(sequence, projection.getSequence());
+    }
+
+    @Test
+    public void testApply_UncategorizedExpenses() {
+        LedgerProjection projection = new LedgerProjection("user1");
+        apply(projection, LedgerEvent.of(LedgerEvent.Action.CREATED, new Expense("e1", "user1", BigDecimal.TEN, null, null, null)));
+
+        assertEquals(Map.of(LedgerProjection.UNCATEGORIZED, BigDecimal.TEN), projection.getExpensesByCategory());
+        assertTrue(projection.getMonthlyExpenses().isEmpty());
+    }
+}
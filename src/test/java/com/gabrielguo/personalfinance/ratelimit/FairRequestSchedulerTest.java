@@ -0,0 +1,74 @@
+package com.gabrielguo.personalfinance.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FairRequestSchedulerTest {
+
+    @Test
+    public void testAcquireUpToLimit() throws InterruptedException {
+        FairRequestScheduler scheduler = new FairRequestScheduler(2, 50);
+
+        assertTrue(scheduler.acquire("user1"));
+        assertTrue(scheduler.acquire("user1"));
+        assertFalse(scheduler.acquire("user1"), "Third request should time out while both slots are taken");
+
+        scheduler.release();
+        assertTrue(scheduler.acquire("user2"));
+    }
+
+    @Test
+    public void testSlotsAreHandedOutRoundRobinAcrossUsers() throws Exception {
+        FairRequestScheduler scheduler = new FairRequestScheduler(1, 10_000);
+        List<String> grants = new CopyOnWriteArrayList<>();
+        assertTrue(scheduler.acquire("heavy"));
+
+        // The heavy user queues two requests before the light user queues one
+        Thread heavy1 = waitInQueue(scheduler, "heavy", "heavy-1", grants, 1);
+        Thread heavy2 = waitInQueue(scheduler, "heavy", "heavy-2", grants, 2);
+        Thread light = waitInQueue(scheduler, "light", "light-1", grants, 3);
+
+        for (int i = 1; i <= 3; i++) {
+            scheduler.release();
+            awaitGrants(grants, i);
+        }
+        heavy1.join();
+        heavy2.join();
+        light.join();
+
+        assertEquals(List.of("heavy-1", "light-1", "heavy-2"), grants);
+        assertEquals(0, scheduler.queuedRequests());
+    }
+
+    private Thread waitInQueue(FairRequestScheduler scheduler, String userId, String name,
+                               List<String> grants, int expectedQueued) throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            try {
+                if (scheduler.acquire(userId)) {
+                    grants.add(name);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.queuedRequests() < expectedQueued && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        return thread;
+    }
+
+    private void awaitGrants(List<String> grants, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (grants.size() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, grants.size());
+    }
+}
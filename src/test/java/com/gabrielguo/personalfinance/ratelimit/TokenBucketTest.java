@@ -0,0 +1,50 @@
+package com.gabrielguo.personalfinance.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testConsumeWithinCapacity() {
+        TokenBucket bucket = new TokenBucket(10, 1, 0);
+
+        assertEquals(0, bucket.tryConsume(4, 0));
+        assertEquals(0, bucket.tryConsume(6, 0));
+        assertTrue(bucket.tryConsume(1, 0) > 0, "Empty bucket should reject further requests");
+    }
+
+    @Test
+    public void testRetryAfterReflectsMissingTokens() {
+        TokenBucket bucket = new TokenBucket(10, 2, 0);
+        bucket.tryConsume(10, 0);
+
+        long wait = bucket.tryConsume(4, 0);
+
+        assertEquals(2 * SECOND, wait, "4 tokens at 2 tokens per second should take 2 seconds");
+        assertEquals(0, bucket.tryConsume(4, 2 * SECOND));
+    }
+
+    @Test
+    public void testRefillIsCappedAtCapacity() {
+        TokenBucket bucket = new TokenBucket(5, 1, 0);
+        bucket.tryConsume(5, 0);
+
+        assertTrue(bucket.isFull(60 * SECOND));
+        assertEquals(0, bucket.tryConsume(5, 60 * SECOND));
+        assertTrue(bucket.tryConsume(1, 60 * SECOND) > 0, "Idle time should not accumulate beyond capacity");
+    }
+
+    @Test
+    public void testCostAboveCapacityNeedsFullBucket() {
+        TokenBucket bucket = new TokenBucket(5, 1, 0);
+
+        assertEquals(0, bucket.tryConsume(100, 0));
+        assertEquals(5 * SECOND, bucket.tryConsume(100, 0));
+    }
+}
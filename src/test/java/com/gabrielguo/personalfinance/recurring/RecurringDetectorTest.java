@@ -0,0 +1,130 @@
+package com.gabrielguo.personalfinance.recurring;
+
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.RecurringSeries;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the RecurringDetector class
+public class RecurringDetectorTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 7, 1);
+
+    private final RecurringDetector detector = new RecurringDetector(0.1, 3, 0.75);
+
+    private static Date date(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static Expense expense(String description, String amount, LocalDate day) {
+        return new Expense(null, "user1", new BigDecimal(amount), "Bills", date(day), description);
+    }
+
+    @Test
+    public void testDetect_FindsAMonthlySubscriptionAmongOtherExpenses() {
+        List<Expense> expenses = new ArrayList<>();
+        for (int month = 1; month <= 6; month++) {
+            String amount = month == 4 ? "15.99" : "15.49";
+            expenses.add(expense("NETFLIX.COM " + (1000 + month), amount, LocalDate.of(2024, month, 15)));
+        }
+        // Groceries at irregular intervals
+        LocalDate day = LocalDate.of(2024, 1, 2);
+        for (int i = 0; i < 20; i++) {
+            day = day.plusDays(2 + (i * 5) % 9);
+            expenses.add(expense("Grocery store", "6" + (i % 3) + ".00", day));
+        }
+
+        List<RecurringSeries> detected = detector.detect("user1", expenses, TODAY);
+
+        assertEquals(1, detected.size());
+        RecurringSeries series = detected.get(0);
+        assertEquals("netflix com", series.getNormalizedDescription());
+        assertEquals("NETFLIX.COM 1006", series.getDescription());
+        assertEquals(RecurringSeries.Period.MONTHLY, series.getPeriod());
+        assertEquals(new BigDecimal("15.49"), series.getAmount());
+        assertEquals(6, series.getOccurrences());
+        assertEquals(date(LocalDate.of(2024, 1, 15)), series.getFirstDate());
+        assertEquals(date(LocalDate.of(2024, 7, 15)), series.getNextDate());
+        assertTrue(series.isActive());
+    }
+
+    @Test
+    public void testDetect_FitsWeeklySeriesDespiteAMissedWeek() {
+        List<Expense> expenses = new ArrayList<>();
+        for (int week : new int[]{0, 1, 2, 3, 5, 6, 7, 8}) {
+            expenses.add(expense("City Gym", "12.00", LocalDate.of(2024, 5, 3).plusWeeks(week)));
+        }
+
+        List<RecurringSeries> detected = detector.detect("user1", expenses, TODAY);
+
+        assertEquals(1, detected.size());
+        assertEquals(RecurringSeries.Period.WEEKLY, detected.get(0).getPeriod());
+        assertEquals(date(LocalDate.of(2024, 7, 5)), detected.get(0).getNextDate());
+    }
+
+    @Test
+    public void testDetect_SeparatesAmountBandsAndCurrencies() {
+        List<Expense> expenses = new ArrayList<>();
+        for (int month = 1; month <= 4; month++) {
+            expenses.add(expense("Spotify", "9.99", LocalDate.of(2024, month, 3)));
+            expenses.add(expense("Spotify", "16.99", LocalDate.of(2024, month, 20)));
+            Expense euros = expense("Spotify", "9.99", LocalDate.of(2024, month, 10));
+            euros.setCurrency("EUR");
+            expenses.add(euros);
+        }
+
+        List<RecurringSeries> detected = new ArrayList<>(detector.detect("user1", expenses, TODAY));
+        detected.sort(Comparator.comparing(RecurringSeries::getAmount).thenComparing(RecurringSeries::getFirstDate));
+
+        assertEquals(3, detected.size());
+        assertEquals(date(LocalDate.of(2024, 1, 3)), detected.get(0).getFirstDate());
+        assertEquals("EUR", detected.get(1).getCurrency());
+        assertEquals(new BigDecimal("16.99"), detected.get(2).getAmount());
+        assertEquals(3, detected.stream().map(RecurringSeries::getId).distinct().count());
+    }
+
+    @Test
+    public void testDetect_MarksEndedSeriesInactive() {
+        List<Expense> expenses = new ArrayList<>();
+        for (int month = 1; month <= 4; month++) {
+            expenses.add(expense("Magazine", "4.50", LocalDate.of(2023, month, 1)));
+        }
+
+        List<RecurringSeries> detected = detector.detect("user1", expenses, TODAY);
+
+        assertEquals(1, detected.size());
+        assertFalse(detected.get(0).isActive());
+    }
+
+    @Test
+    public void testDetect_IgnoresTooFewOrIrregularExpenses() {
+        List<Expense> expenses = new ArrayList<>(List.of(
+                expense("Plumber", "80.00", LocalDate.of(2024, 1, 10)),
+                expense("Plumber", "80.00", LocalDate.of(2024, 2, 10)),
+                expense("Taxi", "20.00", LocalDate.of(2024, 1, 1)),
+                expense("Taxi", "20.00", LocalDate.of(2024, 1, 4)),
+                expense("Taxi", "20.00", LocalDate.of(2024, 2, 20)),
+                expense("Taxi", "20.00", LocalDate.of(2024, 6, 2)),
+                new Expense(null, "user1", new BigDecimal("5.00"), "Bills", null, "Undated")));
+
+        assertTrue(detector.detect("user1", expenses, TODAY).isEmpty());
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals("netflix com", RecurringDetector.normalize("NETFLIX.COM 8472"));
+        assertEquals("amazon prime", RecurringDetector.normalize("  Amazon*Prime  INV-2024/07 "));
+        assertEquals("\u00e9lectricit\u00e9", RecurringDetector.normalize("\u00c9lectricit\u00e9 07/2024"));
+        assertEquals("", RecurringDetector.normalize("12345"));
+        assertEquals("", RecurringDetector.normalize(null));
+    }
+}
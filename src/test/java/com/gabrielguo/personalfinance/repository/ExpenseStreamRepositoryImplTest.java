@@ -0,0 +1,73 @@
+package com.gabrielguo.personalfinance.repository;
+
+import com.gabrielguo.personalfinance.model.Expense;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Tests for the ExpenseStreamRepositoryImpl class
+public class ExpenseStreamRepositoryImplTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private ExpenseStreamRepositoryImpl expenseStreamRepository = new ExpenseStreamRepositoryImpl(50);
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testStreamByUserId_UsesCursorBatchSize() {
+        Expense expense = new Expense("1", "user1", new BigDecimal("10"), "Food", new Date(), "Lunch");
+        when(mongoTemplate.stream(any(Query.class), eq(Expense.class))).thenReturn(Stream.of(expense));
+
+        List<Expense> expenses;
+        try (Stream<Expense> stream = expenseStreamRepository.streamByUserId("user1")) {
+            expenses = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(List.of(expense), expenses);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(Expense.class));
+        assertEquals("user1", query.getValue().getQueryObject().get("userId"));
+        assertEquals(50, query.getValue().getMeta().getCursorBatchSize());
+    }
+
+    @Test
+    public void testStreamByUserIdAndDateBetween_InclusiveAndSortedByDate() {
+        Date startDate = new Date(1_000L);
+        Date endDate = new Date(2_000L);
+        when(mongoTemplate.stream(any(Query.class), eq(Expense.class))).thenReturn(Stream.empty());
+
+        expenseStreamRepository.streamByUserIdAndDateBetween("user1", startDate, endDate).close();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(Expense.class));
+        Document date = (Document) query.getValue().getQueryObject().get("date");
+        assertEquals(startDate, date.get("$gte"));
+        assertEquals(endDate, date.get("$lte"));
+        assertEquals(1, query.getValue().getSortObject().get("date"));
+        assertEquals(50, query.getValue().getMeta().getCursorBatchSize());
+    }
+}
@@ -0,0 +1,58 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import com.gabrielguo.personalfinance.model.Budget;
+import com.gabrielguo.personalfinance.repository.BudgetRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the EmbeddedBudgetRepository class
+public class EmbeddedBudgetRepositoryTest {
+
+    private EmbeddedBudgetRepository budgetRepository;
+
+    @BeforeEach
+    public void setUp() {
+        budgetRepository = new EmbeddedBudgetRepository(EmbeddedDatabase.inMemory());
+        budgetRepository.save(new Budget("year", "user1", new BigDecimal("1200"), "Year", new Date(0), new Date(1000)));
+        budgetRepository.save(new Budget("spring", "user1", new BigDecimal("1500"), "Spring", new Date(100), new Date(400)));
+        budgetRepository.save(new Budget("late", "user1", new BigDecimal("9000"), "Late", new Date(600), new Date(900)));
+        budgetRepository.save(new Budget("other", "user2", new BigDecimal("5000"), "Other", new Date(0), new Date(1000)));
+    }
+
+    @Test
+    public void testFindBudgetsByUserId_SkipsUndatedDocuments() {
+        budgetRepository.save(new Budget("undated", "user1", new BigDecimal("20"), "Undated", null, null));
+
+        assertEquals(List.of("year", "spring", "late"), budgetRepository.findBudgetsByUserId("user1").stream().map(Budget::getId).toList());
+    }
+
+    @Test
+    public void testFindBudgetsByUserIdAndDateRange() {
+        List<Budget> budgets = budgetRepository.findBudgetsByUserIdAndDateRange("user1", new Date(200), new Date(300),
+                Sort.by(Sort.Direction.DESC, "amount"));
+
+        assertEquals(List.of("spring", "year"), budgets.stream().map(Budget::getId).toList());
+    }
+
+    @Test
+    public void testFindMostRecentBudget_EndsLast() {
+        assertEquals("year", budgetRepository.findMostRecentBudget("user1", new Date(200), new Date(300)).getId());
+        assertNull(budgetRepository.findMostRecentBudget("user1", new Date(200), new Date(2000)));
+    }
+
+    @Test
+    public void testSummarizeRange() {
+        BudgetRepository.RangeSummary summary = budgetRepository.summarizeRange("user1", new Date(100), new Date(400));
+
+        assertEquals("year", summary.getMostRecent().getId());
+        assertEquals(new BigDecimal("1500"), summary.getHighestAmount());
+        assertNull(budgetRepository.summarizeRange("user3", new Date(100), new Date(400)));
+    }
+}
@@ -0,0 +1,179 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the EmbeddedDatabase class
+public class EmbeddedDatabaseTest {
+
+    @TempDir
+    private Path directory;
+
+    private Path logFile() {
+        return directory.resolve("data").resolve("test.log");
+    }
+
+    @Test
+    public void testReopen_ReplaysTheLog() throws Exception {
+        try (EmbeddedDatabase database = new EmbeddedDatabase(logFile(), true)) {
+            EmbeddedExpenseRepository expenses = new EmbeddedExpenseRepository(database);
+            expenses.save(new Expense("1", "user1", new BigDecimal("12.50"), "Food", new Date(1000), "Lunch"));
+            expenses.save(new Expense("2", "user1", new BigDecimal("40.00"), "Travel", new Date(2000), "Train"));
+            expenses.save(new Expense("1", "user1", new BigDecimal("13.10"), "Food", new Date(1000), "Lunch"));
+            expenses.deleteById("2");
+        }
+
+        try (EmbeddedDatabase database = new EmbeddedDatabase(logFile(), true)) {
+            EmbeddedExpenseRepository expenses = new EmbeddedExpenseRepository(database);
+            List<Expense> restored = expenses.findByUserId("user1");
+            assertEquals(1, restored.size());
+            // The exact amount, scale included, survives the log
+            assertEquals(new BigDecimal("13.10"), restored.get(0).getAmount());
+            assertEquals(new Date(1000), restored.get(0).getDate());
+        }
+    }
+
+    @Test
+    public void testReopen_CompactsSupersededRecords() throws Exception {
+        try (EmbeddedDatabase database = new EmbeddedDatabase(logFile(), true)) {
+            EmbeddedExpenseRepository expenses = new EmbeddedExpenseRepository(database);
+            for (int i = 0; i < 5; i++) {
+                expenses.save(new Expense("1", "user1", BigDecimal.valueOf(i), "Food", new Date(1000), null));
+            }
+        }
+        assertEquals(5, Files.readAllLines(logFile()).size());
+
+        try (EmbeddedDatabase database = new EmbeddedDatabase(logFile(), true)) {
+            assertEquals(1, Files.readAllLines(logFile()).size());
+            assertEquals(BigDecimal.valueOf(4), new EmbeddedExpenseRepository(database).findById("1").orElseThrow().getAmount());
+        }
+        assertFalse(Files.exists(directory.resolve("data").resolve("test.log.compact")));
+    }
+
+    @Test
+    public void testDeleteUser_RemovesTheUsersDocumentsFromTheLog() throws Exception {
+        try (EmbeddedDatabase database = new EmbeddedDatabase(logFile(), true)) {
+            EmbeddedExpenseRepository expenses = new EmbeddedExpenseRepository(database);
+            EmbeddedUserRepository users = new EmbeddedUserRepository(database);
+            users.save(new User("user1", "a@example.com", "a", "hash"));
+            users.save(new User("user2", "b@example.com", "b", "hash"));
+            expenses.save(new Expense("1", "user1", new BigDecimal("12.50"), "Food", new Date(1000), "Lunch"));
+            expenses.save(new Expense("2", "user2", new BigDecimal("40.00"), "Travel", new Date(2000), "Train"));
+
+            Map<String, Long> deleted = database.deleteUser("user1");
+
+            assertEquals(1L, deleted.get("expenses"));
+            assertEquals(1L, deleted.get("users"));
+            assertFalse(users.existsById("user1"));
+            // Writes after the compaction go to the new log
+            expenses.save(new Expense("3", "user2", new BigDecimal("5.00"), "Food", new Date(3000), "Coffee"));
+        }
+
+        List<String> lines = Files.readAllLines(logFile());
+        assertEquals(3, lines.size());
+        assertTrue(lines.stream().noneMatch(line -> line.contains("user1")));
+        try (EmbeddedDatabase database = new EmbeddedDatabase(logFile(), true)) {
+            assertEquals(2, new EmbeddedExpenseRepository(database).findByUserId("user2").size());
+        }
+    }
+
+    @Test
+    public void testFailedWrite_LeavesTheStoreUnchanged() throws Exception {
+        EmbeddedDatabase database = new EmbeddedDatabase(logFile(), true);
+        EmbeddedExpenseRepository expenses = new EmbeddedExpenseRepository(database);
+        expenses.save(new Expense("1", "user1", new BigDecimal("12.50"), "Food", new Date(1000), "Lunch"));
+        database.close();
+
+        assertThrows(DataAccessResourceFailureException.class, () ->
+                expenses.save(new Expense("2", "user1", new BigDecimal("40.00"), "Travel", new Date(2000), "Train")));
+        assertFalse(expenses.existsById("2"));
+        assertEquals(1, expenses.findByUserId("user1").size());
+    }
+
+    @Test
+    public void testReopen_DropsATornLastRecord() throws Exception {
+        try (EmbeddedDatabase database = new EmbeddedDatabase(logFile(), true)) {
+            new EmbeddedUserRepository(database).save(new User("1", "a@example.com", "a", "hash"));
+        }
+        // A crash in the middle of the second write
+        Files.writeString(logFile(), "{\"store\":\"users\",\"op\":\"put\",\"id\":\"2\",\"doc\":{\"id\":",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (EmbeddedDatabase database = new EmbeddedDatabase(logFile(), true)) {
+            EmbeddedUserRepository users = new EmbeddedUserRepository(database);
+            assertEquals(1, users.count());
+            users.save(new User("3", "c@example.com", "c", "hash"));
+        }
+        try (EmbeddedDatabase database = new EmbeddedDatabase(logFile(), true)) {
+            assertEquals(2, new EmbeddedUserRepository(database).count());
+        }
+    }
+
+    @Test
+    public void testReopen_RejectsCorruptionBeforeTheEnd() throws Exception {
+        Files.createDirectories(logFile().getParent());
+        Files.writeString(logFile(), "not json\n{\"store\":\"users\",\"op\":\"clear\"}\n", StandardCharsets.UTF_8);
+
+        assertThrows(IllegalStateException.class, () -> new EmbeddedDatabase(logFile(), true));
+    }
+
+    @Test
+    public void testConcurrentWrites_ShareFsyncs() throws Exception {
+        int threads = 8;
+        int writesPerThread = 50;
+        try (EmbeddedDatabase database = new EmbeddedDatabase(logFile(), true)) {
+            EmbeddedExpenseRepository expenses = new EmbeddedExpenseRepository(database);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    String userId = "user" + t;
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < writesPerThread; i++) {
+                            expenses.save(new Expense(null, userId, BigDecimal.ONE, "Food", new Date(i), null));
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            assertEquals(threads * writesPerThread, expenses.count());
+            // Every write waited for its fsync, but never more fsyncs than writes
+            assertTrue(database.getForceCount() <= threads * writesPerThread);
+            assertTrue(database.getForceCount() > 0);
+        }
+        try (EmbeddedDatabase database = new EmbeddedDatabase(logFile(), true)) {
+            assertEquals(threads * writesPerThread, new EmbeddedExpenseRepository(database).count());
+        }
+    }
+
+    @Test
+    public void testCreateStore_RejectsTheSameNameTwice() {
+        EmbeddedDatabase database = EmbeddedDatabase.inMemory();
+        new EmbeddedExpenseRepository(database);
+
+        assertThrows(IllegalStateException.class, () -> new EmbeddedExpenseRepository(database));
+    }
+}
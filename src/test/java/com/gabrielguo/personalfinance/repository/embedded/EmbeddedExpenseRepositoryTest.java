@@ -0,0 +1,130 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import com.gabrielguo.personalfinance.model.Expense;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the EmbeddedExpenseRepository class
+public class EmbeddedExpenseRepositoryTest {
+
+    private EmbeddedExpenseRepository expenseRepository;
+
+    @BeforeEach
+    public void setUp() {
+        expenseRepository = new EmbeddedExpenseRepository(EmbeddedDatabase.inMemory());
+        expenseRepository.save(new Expense("1", "user1", new BigDecimal("10.25"), "Food", new Date(100), null));
+        expenseRepository.save(new Expense("2", "user1", new BigDecimal("4.75"), "Food", new Date(200), null));
+        expenseRepository.save(new Expense("3", "user1", new BigDecimal("30"), "Travel", new Date(300), null));
+        expenseRepository.save(new Expense("4", "user2", new BigDecimal("99"), "Rent", new Date(200), null));
+    }
+
+    @Test
+    public void testFindByUserIdAndDateBetween_IncludesBothEnds() {
+        List<Expense> expenses = expenseRepository.findByUserIdAndDateBetween("user1", new Date(100), new Date(200));
+
+        assertEquals(List.of("1", "2"), expenses.stream().map(Expense::getId).toList());
+    }
+
+    @Test
+    public void testAggregates() {
+        assertEquals(List.of("Food", "Travel"), expenseRepository.findDistinctCategoriesByUserId("user1"));
+        assertEquals(0, new BigDecimal("45.00").compareTo(new BigDecimal(expenseRepository.findTotalExpensesByUserId("user1").toString())));
+        assertEquals(0, BigDecimal.ZERO.compareTo(new BigDecimal(expenseRepository.findTotalExpensesByUserId("user3").toString())));
+
+        List<Map<String, Object>> perCategory = expenseRepository.findTotalExpensesPerCategory("user1");
+        assertEquals(2, perCategory.size());
+        assertEquals("Food", perCategory.get(0).get("category"));
+        assertEquals(new BigDecimal("15.00"), perCategory.get(0).get("totalAmount"));
+    }
+
+    @Test
+    public void testTotalsPerCurrency() {
+        expenseRepository.save(new Expense("5", "user1", new BigDecimal("20"), "Food", new Date(400), null, "EUR"));
+
+        List<Map<String, Object>> perCurrency = expenseRepository.findTotalExpensesPerCurrency("user1");
+        assertEquals(2, perCurrency.size());
+        assertNull(perCurrency.get(0).get("currency"));
+        assertEquals(new BigDecimal("45.00"), perCurrency.get(0).get("totalAmount"));
+        assertEquals("EUR", perCurrency.get(1).get("currency"));
+        assertEquals(new BigDecimal("20"), perCurrency.get(1).get("totalAmount"));
+
+        // Food in euros is kept apart from food in the default currency
+        List<Map<String, Object>> perCategory = expenseRepository.findTotalExpensesPerCategory("user1");
+        assertEquals(3, perCategory.size());
+        assertEquals("Food", perCategory.get(2).get("category"));
+        assertEquals("EUR", perCategory.get(2).get("currency"));
+    }
+
+    @Test
+    public void testFindAllByExample() {
+        Expense probe = new Expense();
+        probe.setUserId("user1");
+        probe.setCategory("Food");
+
+        List<Expense> expenses = expenseRepository.findAll(Example.of(probe), Sort.by(Sort.Direction.DESC, "date"));
+
+        assertEquals(List.of("2", "1"), expenses.stream().map(Expense::getId).toList());
+        assertEquals(2, expenseRepository.count(Example.of(probe)));
+        assertEquals(List.of("2"), expenseRepository.findAll(Example.of(probe), PageRequest.of(0, 1, Sort.by("amount")))
+                .map(Expense::getId).getContent());
+    }
+
+    @Test
+    public void testFindOneByExample() {
+        Expense probe = new Expense();
+        probe.setCategory("Rent");
+        assertEquals("4", expenseRepository.findOne(Example.of(probe)).orElseThrow().getId());
+
+        probe.setCategory("Food");
+        assertThrows(IncorrectResultSizeDataAccessException.class, () -> expenseRepository.findOne(Example.of(probe)));
+
+        probe.setCategory("Gifts");
+        assertTrue(expenseRepository.findOne(Example.of(probe)).isEmpty());
+        assertFalse(expenseRepository.exists(Example.of(probe)));
+    }
+
+    @Test
+    public void testFindByExample_WithMatcher() {
+        Expense probe = new Expense();
+        probe.setCategory("tr");
+        ExampleMatcher startingIgnoringCase = ExampleMatcher.matching()
+                .withStringMatcher(ExampleMatcher.StringMatcher.STARTING)
+                .withIgnoreCase();
+
+        List<Expense> expenses = expenseRepository.findAll(Example.of(probe, startingIgnoringCase));
+
+        assertEquals(List.of("3"), expenses.stream().map(Expense::getId).toList());
+
+        // Any of the set properties may match
+        probe.setCategory("Rent");
+        probe.setUserId("user3");
+        ExampleMatcher any = ExampleMatcher.matchingAny().withIgnorePaths("autoCategorized");
+        assertEquals(List.of("4"), expenseRepository.findAll(Example.of(probe, any)).stream().map(Expense::getId).toList());
+    }
+
+    @Test
+    public void testFindByExample_Fluent() {
+        Expense probe = new Expense();
+        probe.setUserId("user1");
+
+        List<String> ids = expenseRepository.findBy(Example.of(probe),
+                query -> query.sortBy(Sort.by(Sort.Direction.DESC, "amount")).stream().map(Expense::getId).toList());
+        Expense first = expenseRepository.findBy(Example.of(probe), query -> query.sortBy(Sort.by("date")).firstValue());
+
+        assertEquals(List.of("3", "1", "2"), ids);
+        assertEquals("1", first.getId());
+        assertEquals(3, expenseRepository.findBy(Example.of(probe), query -> query.count()));
+    }
+}
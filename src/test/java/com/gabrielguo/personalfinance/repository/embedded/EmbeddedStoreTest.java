@@ -0,0 +1,141 @@
+package com.gabrielguo.personalfinance.repository.embedded;
+
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the EmbeddedStore class
+public class EmbeddedStoreTest {
+
+    private EmbeddedDatabase database;
+    private EmbeddedStore<Expense> expenses;
+
+    @BeforeEach
+    public void setUp() {
+        database = EmbeddedDatabase.inMemory();
+        expenses = database.createStore("expenses", Expense.class, Expense::getId, Expense::setId, Expense::getUserId, Expense::getDate);
+    }
+
+    private static Expense expense(String id, String userId, long time) {
+        return new Expense(id, userId, BigDecimal.TEN, "Food", time < 0 ? null : new Date(time), null);
+    }
+
+    @Test
+    public void testFindByUser_OrdersByDateWithUndatedFirst() {
+        expenses.save(expense("c", "user1", 300));
+        expenses.save(expense("a", "user1", 100));
+        expenses.save(expense("u", "user1", -1));
+        expenses.save(expense("b", "user1", 100));
+        expenses.save(expense("x", "user2", 200));
+
+        assertEquals(List.of("u", "a", "b", "c"), expenses.findByUser("user1").stream().map(Expense::getId).toList());
+        assertTrue(expenses.findByUser("user3").isEmpty());
+    }
+
+    @Test
+    public void testFindByUserBetween_IsHalfOpen() {
+        expenses.save(expense("a", "user1", 100));
+        expenses.save(expense("b", "user1", 200));
+        expenses.save(expense("c", "user1", 300));
+        expenses.save(expense("u", "user1", -1));
+
+        assertEquals(List.of("a", "b"), expenses.findByUserBetween("user1", 100, 300).stream().map(Expense::getId).toList());
+        assertTrue(expenses.findByUserBetween("user1", 300, 100).isEmpty());
+    }
+
+    @Test
+    public void testSave_MovesADocumentWhoseDateOrOwnerChanges() {
+        expenses.save(expense("a", "user1", 100));
+        expenses.save(expense("a", "user2", 500));
+
+        assertTrue(expenses.findByUser("user1").isEmpty());
+        assertEquals(1, expenses.findByUserBetween("user2", 500, 501).size());
+        assertEquals(1, expenses.count());
+    }
+
+    @Test
+    public void testSave_GeneratesIds() {
+        Expense expense = expense(null, "user1", 100);
+
+        expenses.save(expense);
+
+        assertNotNull(expense.getId());
+        assertTrue(expenses.existsById(expense.getId()));
+    }
+
+    @Test
+    public void testReads_ReturnCopies() {
+        Expense expense = expense("a", "user1", 100);
+        expenses.save(expense);
+        expense.setAmount(BigDecimal.ONE);
+        expenses.findById("a").orElseThrow().setAmount(BigDecimal.ZERO);
+
+        assertEquals(BigDecimal.TEN, expenses.findById("a").orElseThrow().getAmount());
+    }
+
+    @Test
+    public void testInsert_RejectsExistingIdsWithoutStoringAnything() {
+        expenses.save(expense("a", "user1", 100));
+
+        assertThrows(DuplicateKeyException.class, () -> expenses.insert(List.of(expense("b", "user1", 200), expense("a", "user1", 300))));
+        assertFalse(expenses.existsById("b"));
+        assertEquals(100, expenses.findById("a").orElseThrow().getDate().getTime());
+    }
+
+    @Test
+    public void testUniqueIndex() {
+        EmbeddedStore<User> users = database.createStore("users", User.class, User::getId, User::setId, null, null)
+                .addIndex("email", User::getEmail, true);
+        users.save(new User("1", "a@example.com", "a", "hash"));
+
+        assertThrows(DuplicateKeyException.class, () -> users.save(new User("2", "a@example.com", "b", "hash")));
+        // Saving the same user again is not a conflict, and changing the email frees the old one
+        users.save(new User("1", "b@example.com", "a", "hash"));
+        users.save(new User("2", "a@example.com", "b", "hash"));
+
+        assertEquals("2", users.findFirstByIndex("email", "a@example.com").orElseThrow().getId());
+        assertEquals("1", users.findFirstByIndex("email", "b@example.com").orElseThrow().getId());
+    }
+
+    @Test
+    public void testSaveAll_RejectsAUniqueKeySharedWithinTheBatch() {
+        EmbeddedStore<User> users = database.createStore("users", User.class, User::getId, User::setId, null, null)
+                .addIndex("email", User::getEmail, true);
+
+        assertThrows(DuplicateKeyException.class, () -> users.saveAll(List.of(
+                new User("1", "a@example.com", "a", "hash"), new User("2", "a@example.com", "b", "hash"))));
+        assertEquals(0, users.count());
+    }
+
+    @Test
+    public void testDeleteByUser() {
+        expenses.save(expense("a", "user1", 100));
+        expenses.save(expense("b", "user1", -1));
+        expenses.save(expense("c", "user2", 100));
+
+        assertEquals(2, expenses.deleteByUser("user1"));
+
+        assertTrue(expenses.findByUser("user1").isEmpty());
+        assertFalse(expenses.existsById("a"));
+        assertEquals(1, expenses.count());
+        assertEquals(0, expenses.deleteByUser("user1"));
+    }
+
+    @Test
+    public void testDeleteAll() {
+        expenses.save(expense("a", "user1", 100));
+
+        expenses.deleteAll();
+
+        assertEquals(0, expenses.count());
+        assertTrue(expenses.findByUser("user1").isEmpty());
+    }
+}
@@ -0,0 +1,94 @@
+package com.gabrielguo.personalfinance.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the ExpenseIndex class
+public class ExpenseIndexTest {
+
+    private ExpenseIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new ExpenseIndex();
+        index.put("e1", "Coffee beans", "Groceries");
+        index.put("e2", "Coffee with Anna", "Food");
+        index.put("e3", "Train to Lyon", "Transport");
+        index.put("e4", "Coop supermarket", "Groceries");
+    }
+
+    @Test
+    public void testSearch_MatchesEveryWordNewestFirst() {
+        assertEquals(new ExpenseIndex.Hits(List.of("e2", "e1"), 2), index.search("coffee ", 0, 10));
+        assertEquals(new ExpenseIndex.Hits(List.of("e1"), 1), index.search("COFFEE groceries ", 0, 10));
+        assertEquals(new ExpenseIndex.Hits(List.of(), 0), index.search("coffee transport ", 0, 10));
+        assertEquals(new ExpenseIndex.Hits(List.of(), 0), index.search("tea ", 0, 10));
+    }
+
+    @Test
+    public void testSearch_MatchesTheLastWordAsAPrefix() {
+        assertEquals(new ExpenseIndex.Hits(List.of("e4", "e2", "e1"), 3), index.search("co", 0, 10));
+        assertEquals(new ExpenseIndex.Hits(List.of("e4", "e1"), 2), index.search("groceries co", 0, 10));
+        assertEquals(new ExpenseIndex.Hits(List.of(), 0), index.search("co ", 0, 10)); // A complete word
+    }
+
+    @Test
+    public void testSearch_Pages() {
+        assertEquals(new ExpenseIndex.Hits(List.of("e4", "e2"), 3), index.search("co", 0, 2));
+        assertEquals(new ExpenseIndex.Hits(List.of("e1"), 3), index.search("co", 2, 2));
+        assertEquals(new ExpenseIndex.Hits(List.of(), 3), index.search("co", 4, 2));
+        assertEquals(new ExpenseIndex.Hits(List.of(), 0), index.search(" ,. ", 0, 2));
+    }
+
+    @Test
+    public void testPutAndRemove_KeepTheIndexCurrent() {
+        index.put("e1", "Espresso machine", "Household");
+        index.remove("e3");
+        index.remove("missing");
+
+        assertEquals(new ExpenseIndex.Hits(List.of("e2"), 1), index.search("coffee", 0, 10));
+        assertEquals(new ExpenseIndex.Hits(List.of("e1"), 1), index.search("esp", 0, 10));
+        assertEquals(new ExpenseIndex.Hits(List.of(), 0), index.search("lyon", 0, 10));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void testRemove_CompactsRetiredDocuments() {
+        ExpenseIndex large = new ExpenseIndex();
+        for (int i = 0; i < 3000; i++) {
+            large.put("e" + i, i % 2 == 0 ? "Rent" : "Parking", "Housing");
+        }
+        for (int i = 0; i < 2000; i++) {
+            large.remove("e" + i);
+        }
+
+        assertEquals(1000, large.size());
+        ExpenseIndex.Hits rent = large.search("rent", 0, 3);
+        assertEquals(500, rent.totalHits());
+        assertEquals(List.of("e2998", "e2996", "e2994"), rent.expenseIds());
+        assertEquals(List.of("housing"), large.suggest("h", 5));
+        large.put("e5000", "Rent", "Housing");
+        assertEquals(List.of("e5000"), large.search("rent", 0, 1).expenseIds());
+    }
+
+    @Test
+    public void testSuggest_MostFrequentWordsFirst() {
+        assertEquals(List.of("coffee", "coop"), index.suggest("Co", 5));
+        assertEquals(List.of("coffee"), index.suggest("co", 1));
+        assertEquals(List.of("groceries"), index.suggest("gro", 5));
+        assertEquals(List.of(), index.suggest("x", 5));
+
+        index.remove("e4");
+        assertEquals(List.of("coffee"), index.suggest("co", 5));
+    }
+
+    @Test
+    public void testTokenize() {
+        assertEquals(List.of("netflix", "com", "8472"), ExpenseIndex.tokenize("NETFLIX.COM #8472"));
+        assertEquals(List.of(), ExpenseIndex.tokenize(null));
+    }
+}
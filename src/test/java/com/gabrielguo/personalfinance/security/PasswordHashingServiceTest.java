@@ -0,0 +1,78 @@
+package com.gabrielguo.personalfinance.security;
+
+import com.gabrielguo.personalfinance.exception.ServiceOverloadedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the PasswordHashingService class
+public class PasswordHashingServiceTest {
+
+    private PasswordHashingService passwordHashingService;
+
+    @AfterEach
+    public void tearDown() {
+        passwordHashingService.shutdown();
+    }
+
+    @Test
+    public void testEncodeAndMatches() {
+        passwordHashingService = new PasswordHashingService(2, 4, 250, 4, 4);
+
+        String hash = passwordHashingService.encode("secret");
+
+        // The hash is a regular BCrypt hash that any encoder can verify
+        assertTrue(new BCryptPasswordEncoder().matches("secret", hash));
+        assertTrue(passwordHashingService.matches("secret", hash));
+        assertFalse(passwordHashingService.matches("wrong", hash));
+    }
+
+    @Test
+    public void testCalibrate_StaysWithinBounds() {
+        // A generous target pushes the strength up to the maximum
+        passwordHashingService = new PasswordHashingService(1, 4, 60_000, 4, 6);
+        passwordHashingService.calibrate();
+        assertEquals(6, passwordHashingService.getStrength());
+        passwordHashingService.shutdown();
+
+        // A target below a single hash keeps the minimum
+        passwordHashingService = new PasswordHashingService(1, 4, 0, 5, 8);
+        passwordHashingService.calibrate();
+        assertEquals(5, passwordHashingService.getStrength());
+        assertTrue(passwordHashingService.encode("secret").startsWith("$2a$05$"));
+    }
+
+    @Test
+    public void testSubmit_RejectsWhenQueueIsFull() throws InterruptedException {
+        passwordHashingService = new PasswordHashingService(1, 1, 250, 4, 4);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Occupy the only worker, then the only queue slot
+        Thread busy = new Thread(() -> passwordHashingService.submit(() -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        }));
+        busy.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread queued = new Thread(() -> passwordHashingService.encode("queued"));
+        queued.start();
+        while (passwordHashingService.getQueuedTasks() == 0) {
+            Thread.onSpinWait();
+        }
+
+        ServiceOverloadedException thrown = assertThrows(ServiceOverloadedException.class, () ->
+                passwordHashingService.encode("rejected")
+        );
+        assertTrue(thrown.getRetryAfterSeconds() >= 1);
+
+        release.countDown();
+        busy.join();
+        queued.join();
+    }
+}
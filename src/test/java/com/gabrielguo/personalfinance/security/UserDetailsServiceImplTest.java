@@ -0,0 +1,102 @@
+package com.gabrielguo.personalfinance.security;
+
+import com.gabrielguo.personalfinance.model.User;
+import com.gabrielguo.personalfinance.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// Tests for the UserDetailsServiceImpl class
+public class UserDetailsServiceImplTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl(100, 300);
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testLoadUserByUsername_CachesLookup() {
+        User user = new User("1", "test@example.com", "testuser", "$2a$10$hash");
+        when(userRepository.findCredentialVersionByEmail("test@example.com")).thenReturn(Optional.of(user));
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+
+        UserDetails first = userDetailsService.loadUserByUsername("test@example.com");
+        UserDetails second = userDetailsService.loadUserByUsername("test@example.com");
+
+        assertEquals("test@example.com", first.getUsername());
+        assertEquals("$2a$10$hash", first.getPassword());
+        // Only the first call reaches the repository, but each call gets its own UserDetails
+        verify(userRepository, times(1)).findByEmail("test@example.com");
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void testLoadUserByUsername_ReloadsAfterEvict() {
+        User user = new User("1", "test@example.com", "testuser", "$2a$10$old");
+        when(userRepository.findCredentialVersionByEmail("test@example.com")).thenReturn(Optional.of(user));
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+        userDetailsService.loadUserByUsername("test@example.com");
+
+        user.setPassword("$2a$10$new");
+        userDetailsService.evict("test@example.com");
+
+        assertEquals("$2a$10$new", userDetailsService.loadUserByUsername("test@example.com").getPassword());
+        verify(userRepository, times(2)).findByEmail("test@example.com");
+    }
+
+    @Test
+    public void testLoadUserByUsername_ReloadsWhenTheCredentialVersionChanged() {
+        User cached = new User("1", "test@example.com", "testuser", "$2a$10$old");
+        when(userRepository.findCredentialVersionByEmail("test@example.com")).thenReturn(Optional.of(cached));
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(cached));
+        userDetailsService.loadUserByUsername("test@example.com");
+
+        // The password was reset on another instance, so nothing was evicted here
+        User reset = new User("1", "test@example.com", "testuser", "$2a$10$new");
+        reset.setCredentialVersion(1);
+        when(userRepository.findCredentialVersionByEmail("test@example.com")).thenReturn(Optional.of(reset));
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(reset));
+
+        assertEquals("$2a$10$new", userDetailsService.loadUserByUsername("test@example.com").getPassword());
+    }
+
+    @Test
+    public void testLoadUserByUsername_DoesNotCacheAStaleLoad() {
+        User current = new User("1", "test@example.com", "testuser", "$2a$10$new");
+        current.setCredentialVersion(1);
+        User stale = new User("1", "test@example.com", "testuser", "$2a$10$old");
+        when(userRepository.findCredentialVersionByEmail("test@example.com")).thenReturn(Optional.of(current));
+        // The document read lags behind the version read, as a load racing a password reset would
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(stale), Optional.of(current));
+
+        userDetailsService.loadUserByUsername("test@example.com");
+
+        assertEquals("$2a$10$new", userDetailsService.loadUserByUsername("test@example.com").getPassword());
+        verify(userRepository, times(2)).findByEmail("test@example.com");
+    }
+
+    @Test
+    public void testLoadUserByUsername_NotFound() {
+        when(userRepository.findCredentialVersionByEmail("missing@example.com")).thenReturn(Optional.empty());
+        when(userRepository.findByEmail("missing@example.com")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () ->
+                userDetailsService.loadUserByUsername("missing@example.com")
+        );
+    }
+}
@@ -0,0 +1,235 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.model.AccountDeletion;
+import com.gabrielguo.personalfinance.model.Budget;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.Transaction;
+import com.gabrielguo.personalfinance.model.User;
+import com.gabrielguo.personalfinance.repository.AccountDeletionRepository;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Tests for the AccountDeletionService class
+public class AccountDeletionServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private AccountDeletionRepository accountDeletionRepository;
+
+    @Mock
+    private UserSettingsService userSettingsService;
+
+    @Mock
+    private SpendingAnomalyService spendingAnomalyService;
+
+    @Mock
+    private CashflowForecastService cashflowForecastService;
+
+    @Mock
+    private ExpenseSearchService expenseSearchService;
+
+    @Mock
+    private BudgetService budgetService;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @InjectMocks
+    private AccountDeletionService accountDeletionService;
+
+    // Documents left in each collection for the user being deleted
+    private Map<String, Integer> remaining;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        // Run everything on the calling thread so the tests stay deterministic
+        ReflectionTestUtils.setField(accountDeletionService, "accountDeletionExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(accountDeletionService, "bulkDeleteExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(accountDeletionService, "batchSize", 2);
+
+        // The deletion is claimed by this instance, which keeps its lease
+        AccountDeletion claimed = new AccountDeletion("userId");
+        claimed.setLeaseHolder("lease");
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(AccountDeletion.class)))
+                .thenReturn(claimed);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(AccountDeletion.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        remaining = new HashMap<>();
+        // Expenses, budgets and transactions share a collection, like the real mappings
+        when(mongoTemplate.getCollectionName(any())).thenAnswer(invocation -> {
+            Class<?> documentClass = invocation.getArgument(0);
+            if (documentClass == Expense.class || documentClass == Budget.class || documentClass == Transaction.class) {
+                return "expenses";
+            }
+            return documentClass.getSimpleName();
+        });
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), anyString())).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            int available = remaining.getOrDefault((String) invocation.getArgument(2), 0);
+            List<Document> batch = new ArrayList<>();
+            for (int i = 0; i < Math.min(available, query.getLimit()); i++) {
+                batch.add(new Document("_id", "doc" + i));
+            }
+            return batch;
+        });
+        when(mongoTemplate.remove(any(Query.class), anyString())).thenAnswer(invocation -> {
+            String collectionName = invocation.getArgument(1);
+            int available = remaining.getOrDefault(collectionName, 0);
+            int deleted = Math.min(available, 2);
+            remaining.put(collectionName, available - deleted);
+            return DeleteResult.acknowledged(deleted);
+        });
+    }
+
+    @Test
+    public void testStartDeletion_DeletesEveryCollectionInBatches() {
+        remaining.put("expenses", 5);
+        remaining.put("Income", 1);
+
+        accountDeletionService.startDeletion("userId").join();
+
+        // The user document is removed as part of the cascade
+        verify(mongoTemplate).remove(any(Query.class), eq(User.class));
+        // 5 expenses in batches of 2 take three deletes, and the shared collection is only purged once
+        verify(mongoTemplate, times(3)).remove(any(Query.class), eq("expenses"));
+        verify(mongoTemplate, times(1)).remove(any(Query.class), eq("Income"));
+        assertEquals(0, remaining.get("expenses"));
+
+        // The deletion is claimed, progress is recorded after each batch, and the deletion ends completed
+        ArgumentCaptor<Update> claim = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), claim.capture(), any(FindAndModifyOptions.class), eq(AccountDeletion.class));
+        assertEquals(AccountDeletion.Status.IN_PROGRESS, claim.getValue().getUpdateObject().get("$set", Document.class).get("status"));
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, atLeastOnce()).updateFirst(any(Query.class), updates.capture(), eq(AccountDeletion.class));
+        List<Update> recorded = updates.getAllValues();
+        assertEquals(4, recorded.stream().filter(update -> update.getUpdateObject().containsKey("$inc")).count());
+        assertEquals(AccountDeletion.Status.COMPLETED,
+                recorded.get(recorded.size() - 1).getUpdateObject().get("$set", Document.class).get("status"));
+        verify(userSettingsService).evict("userId");
+        verify(spendingAnomalyService).forget("userId");
+        verify(cashflowForecastService).forget("userId");
+        verify(expenseSearchService).forget("userId");
+        verify(budgetService).forget("userId");
+        verify(ledgerService).forget("userId");
+    }
+
+    @Test
+    public void testStartDeletion_RecordsFailure() {
+        doThrow(new RuntimeException("connection lost"))
+                .when(mongoTemplate).find(any(Query.class), eq(Document.class), eq("expenses"));
+
+        accountDeletionService.startDeletion("userId").join();
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, atLeastOnce()).updateFirst(any(Query.class), updates.capture(), eq(AccountDeletion.class));
+        Document last = updates.getAllValues().get(updates.getAllValues().size() - 1).getUpdateObject().get("$set", Document.class);
+        assertEquals(AccountDeletion.Status.FAILED, last.get("status"));
+        assertEquals("connection lost", last.get("lastError"));
+    }
+
+    @Test
+    public void testStartDeletion_SkipsDeletionClaimedElsewhere() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(AccountDeletion.class)))
+                .thenReturn(null);
+        remaining.put("expenses", 1);
+
+        accountDeletionService.startDeletion("userId").join();
+
+        verify(mongoTemplate, never()).remove(any(Query.class), anyString());
+        assertEquals(1, remaining.get("expenses"));
+    }
+
+    @Test
+    public void testStartDeletion_StopsWhenTheLeaseIsLost() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(AccountDeletion.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        remaining.put("expenses", 5);
+
+        accountDeletionService.startDeletion("userId").join();
+
+        // The first batch is deleted, then the instance that took over finishes the deletion
+        verify(mongoTemplate, times(1)).remove(any(Query.class), eq("expenses"));
+        verify(userSettingsService, never()).evict("userId");
+    }
+
+    @Test
+    public void testResumeInterruptedDeletions_StopsWhenTheQueueIsFull() {
+        ReflectionTestUtils.setField(accountDeletionService, "accountDeletionExecutor", (Executor) command -> {
+            throw new TaskRejectedException("queue full");
+        });
+        when(accountDeletionRepository.findByStatusIn(any())).thenReturn(List.of(new AccountDeletion("userId"), new AccountDeletion("other")));
+
+        accountDeletionService.resumeInterruptedDeletions();
+
+        // Only the first deletion is claimed, and its lease is let lapse so a later pass claims it again
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(AccountDeletion.class));
+        ArgumentCaptor<Update> release = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), release.capture(), eq(AccountDeletion.class));
+        assertNotNull(release.getValue().getUpdateObject().get("$set", Document.class).get("leaseExpiresAt"));
+        assertTrue(accountDeletionService.startDeletion("userId").isCompletedExceptionally());
+    }
+
+    @Test
+    public void testResumeAbandonedDeletions_DoesNotRetryFailedDeletions() {
+        when(accountDeletionRepository.findByStatusIn(any())).thenReturn(List.of());
+
+        accountDeletionService.resumeAbandonedDeletions();
+
+        verify(accountDeletionRepository).findByStatusIn(
+                EnumSet.of(AccountDeletion.Status.PENDING, AccountDeletion.Status.IN_PROGRESS));
+    }
+
+    @Test
+    public void testResumeInterruptedDeletions() {
+        AccountDeletion interrupted = new AccountDeletion("userId");
+        interrupted.setStatus(AccountDeletion.Status.IN_PROGRESS);
+        when(accountDeletionRepository.findByStatusIn(any())).thenReturn(List.of(interrupted));
+        remaining.put("expenses", 1);
+
+        accountDeletionService.resumeInterruptedDeletions();
+
+        verify(mongoTemplate, times(1)).remove(any(Query.class), eq("expenses"));
+        assertEquals(0, remaining.get("expenses"));
+    }
+
+    @Test
+    public void testGetDeletionStatus_NotFound() {
+        when(accountDeletionRepository.findById("userId")).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () ->
+                accountDeletionService.getDeletionStatus("userId")
+        );
+    }
+}
@@ -1,6 +1,8 @@
 package com.gabrielguo.personalfinance.service;
 
+import com.gabrielguo.personalfinance.event.BudgetChangedEvent;
 import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.exception.UnsupportedCurrencyException;
 import com.gabrielguo.personalfinance.model.Budget;
 import com.gabrielguo.personalfinance.repository.BudgetRepository;
 import com.gabrielguo.personalfinance.repository.UserRepository;
@@ -9,6 +11,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
 import java.text.ParseException;
@@ -19,6 +22,7 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 public class BudgetServiceTest {
@@ -29,8 +33,14 @@ public class BudgetServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private FxRateService fxRateService;
+
     @InjectMocks
-    private BudgetService budgetService;
+    private BudgetService budgetService = new BudgetService(100, 600);
 
     @BeforeEach
     public void setUp() {
@@ -48,6 +58,19 @@ public class BudgetServiceTest {
         );
     }
 
+    @Test
+    public void testCreateBudget_UnsupportedCurrency() {
+        // Arrange
+        Budget budget = new Budget();
+        budget.setCurrency("XYZ");
+        when(userRepository.existsById("userId")).thenReturn(true);
+        doThrow(new UnsupportedCurrencyException("Unsupported currency: XYZ")).when(fxRateService).requireSupported("XYZ");
+
+        // Act & Assert
+        assertThrows(UnsupportedCurrencyException.class, () -> budgetService.createBudget(budget, "userId"));
+        verify(budgetRepository, never()).save(any(Budget.class));
+    }
+
     @Test
     public void testCreateBudget_Success() throws ParseException {
         // Arrange
@@ -63,6 +86,78 @@ public class BudgetServiceTest {
         // Assert
         assertEquals(budget, createdBudget);
         verify(budgetRepository).save(budget);
+        verify(eventPublisher).publishEvent(new BudgetChangedEvent("userId", "1"));
+    }
+
+    @Test
+    public void testGetActiveBudgets() throws ParseException {
+        // Arrange: a closed January budget and an open budget from mid January
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        Budget january = new Budget("1", "userId", BigDecimal.valueOf(500), "January", format.parse("2024-01-01"), format.parse("2024-01-31"));
+        Budget open = new Budget("2", "userId", BigDecimal.valueOf(300), "Open", format.parse("2024-01-15"), null);
+        when(budgetRepository.findBudgetsByUserId("userId")).thenReturn(Arrays.asList(january, open));
+
+        // Act & Assert
+        assertEquals(List.of(january), budgetService.getActiveBudgets("userId", format.parse("2024-01-10")));
+        assertEquals(List.of(january, open), budgetService.getActiveBudgets("userId", format.parse("2024-01-31")));
+        assertEquals(List.of(open), budgetService.getActiveBudgets("userId", format.parse("2024-06-01")));
+        assertTrue(budgetService.getActiveBudgets("userId", format.parse("2023-12-31")).isEmpty());
+
+        // The index is built once and reused, from the budgets alone rather than everything the user owns
+        verify(budgetRepository, times(1)).findBudgetsByUserId("userId");
+        verify(budgetRepository, never()).findByUserId("userId");
+    }
+
+    @Test
+    public void testGetActiveBudgets_RebuiltAfterChange() throws ParseException {
+        // Arrange
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        Budget budget = new Budget("1", "userId", BigDecimal.valueOf(500), "Monthly Budget", format.parse("2024-01-01"), null);
+        when(budgetRepository.findBudgetsByUserId("userId")).thenReturn(List.of(budget));
+        when(budgetRepository.findById("1")).thenReturn(Optional.of(budget));
+        budgetService.getActiveBudgets("userId", format.parse("2024-02-01"));
+
+        // Act: closing the budget drops the cached index
+        budgetService.deleteBudget("1", "userId");
+        budgetService.getActiveBudgets("userId", format.parse("2024-02-01"));
+
+        // Assert
+        verify(budgetRepository, times(2)).findBudgetsByUserId("userId");
+        verify(eventPublisher).publishEvent(new BudgetChangedEvent("userId", "1"));
+    }
+
+    @Test
+    public void testGetActiveBudgets_NotCachedWhenBudgetsChangeWhileLoading() throws ParseException {
+        // Arrange: a budget is closed while the index is being built from the budgets read before
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        Budget budget = new Budget("1", "userId", BigDecimal.valueOf(500), "Monthly Budget", format.parse("2024-01-01"), null);
+        when(budgetRepository.findBudgetsByUserId("userId")).thenAnswer(invocation -> {
+            budgetService.forget("userId");
+            return List.of(budget);
+        }).thenReturn(List.of());
+
+        // Act
+        assertEquals(List.of(budget), budgetService.getActiveBudgets("userId", format.parse("2024-02-01")));
+
+        // Assert: the stale index was not cached, so the next lookup reloads
+        assertTrue(budgetService.getActiveBudgets("userId", format.parse("2024-02-01")).isEmpty());
+        verify(budgetRepository, times(2)).findBudgetsByUserId("userId");
+    }
+
+    @Test
+    public void testGetActiveBudgets_RebuiltAfterForget() throws ParseException {
+        // Arrange
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        Budget budget = new Budget("1", "userId", BigDecimal.valueOf(500), "Monthly Budget", format.parse("2024-01-01"), null);
+        when(budgetRepository.findBudgetsByUserId("userId")).thenReturn(List.of(budget), List.of());
+        assertEquals(List.of(budget), budgetService.getActiveBudgets("userId", format.parse("2024-02-01")));
+
+        // Act: the user's budgets were deleted along with the account
+        budgetService.forget("userId");
+
+        // Assert
+        assertTrue(budgetService.getActiveBudgets("userId", format.parse("2024-02-01")).isEmpty());
+        verify(budgetRepository, times(2)).findBudgetsByUserId("userId");
     }
 
     @Test
@@ -0,0 +1,296 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.event.BudgetChangedEvent;
+import com.gabrielguo.personalfinance.event.ExpenseChangedEvent;
+import com.gabrielguo.personalfinance.model.Budget;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.summary.BudgetUtilization;
+import com.gabrielguo.personalfinance.repository.summary.BudgetUtilizationRepository;
+import com.gabrielguo.personalfinance.util.ReadRouting;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Tests for the BudgetUtilizationService class
+public class BudgetUtilizationServiceTest {
+
+    private static final String USER_ID = "user1";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BudgetUtilizationRepository budgetUtilizationRepository;
+
+    @Mock
+    private ExpenseArchiveService expenseArchiveService;
+
+    @Spy
+    private ReadRouting readRouting = new ReadRouting(true, 90, 30);
+
+    @InjectMocks
+    private BudgetUtilizationService budgetUtilizationService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testSweep_AttributesExpensesToOverlappingPeriods() {
+        List<Budget> budgets = List.of(
+                budget("january", "500", "2024-01-01", "2024-01-31"),
+                budget("quarter", "1000", "2024-01-15", "2024-03-31"),
+                budget("open", "300", "2024-03-01", null));
+        List<Expense> expenses = List.of(
+                // Out of order on purpose; the sweep sorts them itself
+                expense("200", "2024-02-10"),
+                expense("100", "2024-01-01"),
+                expense("400", "2024-01-31"),
+                expense("50", "2024-03-05"),
+                expense("25", "2023-12-31"));
+
+        Map<String, BudgetUtilization> result = byId(BudgetUtilizationService.sweep(USER_ID, budgets, expenses, new Date()));
+
+        // Both ends are inclusive: the expenses on Jan 1 and Jan 31 count towards January
+        assertUtilization(result.get("january"), "500", "0", "0", "within_budget");
+        assertUtilization(result.get("quarter"), "650", "350", "0", "within_budget");
+        assertUtilization(result.get("open"), "50", "250", "0", "within_budget");
+    }
+
+    @Test
+    public void testSweep_ReportsOverrun() {
+        List<Budget> budgets = List.of(budget("b1", "100", "2024-05-01", "2024-05-31"));
+        List<Expense> expenses = List.of(expense("80", "2024-05-02"), expense("70", "2024-05-20"));
+
+        BudgetUtilization utilization = BudgetUtilizationService.sweep(USER_ID, budgets, expenses, new Date()).get(0);
+
+        assertUtilization(utilization, "150", "0", "50", "over_budget");
+        assertEquals(USER_ID, utilization.getUserId());
+    }
+
+    @Test
+    public void testSweep_IgnoresIncompleteDocuments() {
+        Budget undated = new Budget("undated", USER_ID, new BigDecimal("100"), "no start", null, null);
+        Expense undatedExpense = new Expense("e", USER_ID, new BigDecimal("999"), "category", null, "no date");
+        List<Budget> budgets = List.of(undated, budget("b1", "100", "2024-05-01", "2024-05-31"));
+
+        List<BudgetUtilization> result = BudgetUtilizationService.sweep(USER_ID, budgets,
+                List.of(undatedExpense, expense("10", "2024-05-10")), new Date());
+
+        assertEquals(1, result.size());
+        assertUtilization(result.get(0), "10", "90", "0", "within_budget");
+    }
+
+    @Test
+    public void testSweep_MatchesBruteForce() {
+        Random random = new Random(42);
+        LocalDate base = LocalDate.of(2024, 1, 1);
+        List<Budget> budgets = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            LocalDate start = base.plusDays(random.nextInt(300));
+            LocalDate end = random.nextInt(5) == 0 ? null : start.plusDays(random.nextInt(90));
+            budgets.add(budget("b" + i, "1000", start.toString(), end == null ? null : end.toString()));
+        }
+        List<Expense> expenses = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            expenses.add(expense(String.valueOf(1 + random.nextInt(100)), base.plusDays(random.nextInt(400)).toString()));
+        }
+
+        Map<String, BudgetUtilization> result = byId(BudgetUtilizationService.sweep(USER_ID, budgets, expenses, new Date()));
+
+        for (Budget budget : budgets) {
+            BigDecimal expected = BigDecimal.ZERO;
+            for (Expense expense : expenses) {
+                boolean afterStart = !expense.getDate().before(budget.getStartDate());
+                boolean beforeEnd = budget.getEndDate() == null || !expense.getDate().after(budget.getEndDate());
+                if (afterStart && beforeEnd) {
+                    expected = expected.add(expense.getAmount());
+                }
+            }
+            assertEquals(0, expected.compareTo(result.get(budget.getId()).getSpent()), "Spent for " + budget.getId());
+        }
+    }
+
+    @Test
+    public void testGetUtilization_RebuildsWhenBudgetsAreMissing() {
+        when(mongoTemplate.count(any(Query.class), eq(Budget.class))).thenReturn(1L);
+        when(budgetUtilizationRepository.countByUserId(USER_ID)).thenReturn(0L);
+        when(mongoTemplate.find(any(Query.class), eq(Budget.class)))
+                .thenReturn(List.of(budget("b1", "100", "2024-05-01", "2024-05-31")));
+        when(mongoTemplate.find(any(Query.class), eq(Expense.class))).thenReturn(List.of(expense("30", "2024-05-10")));
+
+        budgetUtilizationService.getUtilization(USER_ID);
+
+        // Results of deleted budgets are removed, and the fresh ones replace the stored ones
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(removed.capture(), eq(BudgetUtilization.class));
+        assertEquals(List.of("b1"), removed.getValue().getQueryObject().get("_id", Document.class).get("$nin"));
+        assertUtilization(stored().get(0), "30", "70", "0", "within_budget");
+        verify(budgetUtilizationRepository).findByUserIdOrderByPeriodStartAsc(USER_ID);
+    }
+
+    @Test
+    public void testRebuild_ReadsFromThePrimaryUnderAnalyticalReads() {
+        when(mongoTemplate.find(any(Query.class), eq(Budget.class))).thenAnswer(invocation -> {
+            assertEquals(ReadRouting.Route.WRITE, readRouting.currentRoute());
+            return List.of(budget("b1", "100", "2024-05-01", "2024-05-31"));
+        });
+        when(mongoTemplate.find(any(Query.class), eq(Expense.class))).thenAnswer(invocation -> {
+            assertEquals(ReadRouting.Route.WRITE, readRouting.currentRoute());
+            return List.of(expense("30", "2024-05-10"));
+        });
+
+        readRouting.route(ReadRouting.Route.ANALYTICAL_READ, () -> budgetUtilizationService.rebuild(USER_ID));
+
+        verify(mongoTemplate).find(any(Query.class), eq(Expense.class));
+        assertEquals(ReadRouting.Route.CRITICAL_READ, readRouting.currentRoute());
+    }
+
+    @Test
+    public void testRebuild_IncludesArchivedExpenses() {
+        when(mongoTemplate.find(any(Query.class), eq(Budget.class)))
+                .thenReturn(List.of(budget("b1", "100", "2022-05-01", "2024-05-31")));
+        when(mongoTemplate.find(any(Query.class), eq(Expense.class))).thenReturn(List.of(expense("30", "2024-05-10")));
+        when(expenseArchiveService.findExpenses(USER_ID)).thenReturn(List.of(expense("50", "2022-06-10")));
+
+        List<BudgetUtilization> result = budgetUtilizationService.rebuild(USER_ID);
+
+        assertUtilization(result.get(0), "80", "20", "0", "within_budget");
+    }
+
+    @Test
+    public void testGetUtilization_ReadsStoredResults() {
+        when(mongoTemplate.count(any(Query.class), eq(Budget.class))).thenReturn(2L);
+        when(budgetUtilizationRepository.countByUserId(USER_ID)).thenReturn(2L);
+
+        budgetUtilizationService.getUtilization(USER_ID);
+
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Expense.class));
+        verify(mongoTemplate, never()).findAndReplace(any(Query.class), any(BudgetUtilization.class), any(FindAndReplaceOptions.class));
+        verify(budgetUtilizationRepository).findByUserIdOrderByPeriodStartAsc(USER_ID);
+    }
+
+    @Test
+    public void testOnExpenseChanged_RefreshesOnlyContainingPeriods() {
+        Date changed = date("2024-05-10");
+        when(mongoTemplate.find(any(Query.class), eq(Budget.class)))
+                .thenReturn(List.of(budget("b1", "100", "2024-05-01", "2024-05-31")));
+        when(mongoTemplate.find(any(Query.class), eq(Expense.class))).thenReturn(List.of(expense("45", "2024-05-10")));
+
+        budgetUtilizationService.onExpenseChanged(new ExpenseChangedEvent(USER_ID, List.of(changed)));
+
+        // Expenses are only read for the span of the affected budget
+        ArgumentCaptor<Query> expenseQuery = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(expenseQuery.capture(), eq(Expense.class));
+        Document dateRange = expenseQuery.getValue().getQueryObject().get("date", Document.class);
+        assertEquals(date("2024-05-01"), dateRange.get("$gte"));
+        assertEquals(date("2024-05-31"), dateRange.get("$lte"));
+
+        assertUtilization(stored().get(0), "45", "55", "0", "within_budget");
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(BudgetUtilization.class));
+    }
+
+    @Test
+    public void testOnExpenseChanged_OnlyReplacesOlderResults() {
+        when(mongoTemplate.find(any(Query.class), eq(Budget.class)))
+                .thenReturn(List.of(budget("b1", "100", "2024-05-01", "2024-05-31")));
+        when(mongoTemplate.find(any(Query.class), eq(Expense.class))).thenReturn(List.of(expense("45", "2024-05-10")));
+        // A refresh that read later has already stored its result
+        when(mongoTemplate.findAndReplace(any(Query.class), any(BudgetUtilization.class), any(FindAndReplaceOptions.class)))
+                .thenThrow(new DuplicateKeyException("b1"));
+
+        assertDoesNotThrow(() -> budgetUtilizationService.onExpenseChanged(new ExpenseChangedEvent(USER_ID, List.of(date("2024-05-10")))));
+
+        ArgumentCaptor<Query> replaced = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<BudgetUtilization> utilization = ArgumentCaptor.forClass(BudgetUtilization.class);
+        verify(mongoTemplate).findAndReplace(replaced.capture(), utilization.capture(), any(FindAndReplaceOptions.class));
+        assertEquals(utilization.getValue().getComputedAt(),
+                replaced.getValue().getQueryObject().get("computedAt", Document.class).get("$lte"));
+    }
+
+    @Test
+    public void testOnExpenseChanged_NoContainingPeriod() {
+        when(mongoTemplate.find(any(Query.class), eq(Budget.class))).thenReturn(List.of());
+
+        budgetUtilizationService.onExpenseChanged(new ExpenseChangedEvent(USER_ID, List.of(date("2020-01-01"))));
+
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Expense.class));
+        verify(mongoTemplate, never()).findAndReplace(any(Query.class), any(BudgetUtilization.class), any(FindAndReplaceOptions.class));
+    }
+
+    @Test
+    public void testOnBudgetChanged_RefreshesThatBudget() {
+        when(mongoTemplate.findById("b1", Budget.class)).thenReturn(budget("b1", "100", "2024-05-01", null));
+        when(mongoTemplate.find(any(Query.class), eq(Expense.class)))
+                .thenReturn(List.of(expense("60", "2024-05-10"), expense("60", "2024-06-10")));
+
+        budgetUtilizationService.onBudgetChanged(new BudgetChangedEvent(USER_ID, "b1"));
+
+        verify(expenseArchiveService).findExpensesBetween(USER_ID, date("2024-05-01"), null);
+        List<BudgetUtilization> saved = stored();
+        assertEquals(1, saved.size());
+        assertUtilization(saved.get(0), "120", "0", "20", "over_budget");
+    }
+
+    @Test
+    public void testOnBudgetChanged_FailureDoesNotPropagate() {
+        when(mongoTemplate.findById("b1", Budget.class)).thenThrow(new RuntimeException("connection lost"));
+
+        assertDoesNotThrow(() -> budgetUtilizationService.onBudgetChanged(new BudgetChangedEvent(USER_ID, "b1")));
+    }
+
+    private List<BudgetUtilization> stored() {
+        ArgumentCaptor<BudgetUtilization> stored = ArgumentCaptor.forClass(BudgetUtilization.class);
+        verify(mongoTemplate, atLeastOnce()).findAndReplace(any(Query.class), stored.capture(), any(FindAndReplaceOptions.class));
+        return stored.getAllValues();
+    }
+
+    private static Budget budget(String id, String amount, String start, String end) {
+        return new Budget(id, USER_ID, new BigDecimal(amount), id, date(start), end == null ? null : date(end));
+    }
+
+    private static Expense expense(String amount, String date) {
+        return new Expense(null, USER_ID, new BigDecimal(amount), "category", date(date), "description");
+    }
+
+    private static Date date(String isoDate) {
+        return Date.from(LocalDate.parse(isoDate).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static Map<String, BudgetUtilization> byId(List<BudgetUtilization> utilizations) {
+        return utilizations.stream().collect(Collectors.toMap(BudgetUtilization::getId, Function.identity()));
+    }
+
+    private static void assertUtilization(BudgetUtilization utilization, String spent, String remaining, String overrun, String status) {
+        assertEquals(0, new BigDecimal(spent).compareTo(utilization.getSpent()), "spent");
+        assertEquals(0, new BigDecimal(remaining).compareTo(utilization.getRemaining()), "remaining");
+        assertEquals(0, new BigDecimal(overrun).compareTo(utilization.getOverrun()), "overrun");
+        assertEquals(status, utilization.getStatus());
+    }
+}
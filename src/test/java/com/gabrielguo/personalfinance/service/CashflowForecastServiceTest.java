@@ -0,0 +1,229 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.event.LedgerBatchEvent;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.model.CashflowModel;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.Income;
+import com.gabrielguo.personalfinance.model.trends.CashflowForecast;
+import com.gabrielguo.personalfinance.repository.CashflowModelRepository;
+import com.gabrielguo.personalfinance.repository.ExpenseRepository;
+import com.gabrielguo.personalfinance.repository.IncomeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Tests for the CashflowForecastService class
+public class CashflowForecastServiceTest {
+
+    private static final YearMonth JULY = YearMonth.of(2024, 7);
+
+    @Mock
+    private CashflowModelRepository cashflowModelRepository;
+
+    @Mock
+    private ExpenseRepository expenseRepository;
+
+    @Mock
+    private IncomeRepository incomeRepository;
+
+    @Mock
+    private ExpenseArchiveService expenseArchiveService;
+
+    @Spy
+    private FxRateService fxRateService = new FxRateService("fx-rates", "USD", "USD");
+
+    @InjectMocks
+    private CashflowForecastService cashflowForecastService;
+
+    @BeforeEach
+    public void setUp() {
+        cashflowForecastService = new CashflowForecastService(true, 0.3, 0.1, 0.2, 12, 100, 300);
+        MockitoAnnotations.openMocks(this);
+        doReturn("USD").when(fxRateService).getReportingCurrency(anyString());
+        when(cashflowModelRepository.findById(anyString())).thenReturn(Optional.empty());
+    }
+
+    private static Date date(String date) {
+        return Date.from(LocalDate.parse(date).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static LedgerEvent expense(LedgerEvent.Action action, String id, String amount, String date) {
+        return LedgerEvent.of(action, new Expense(id, "user1", new BigDecimal(amount), "Food", date(date), null));
+    }
+
+    private static LedgerEvent income(LedgerEvent.Action action, String id, String amount, String date) {
+        return LedgerEvent.of(action, new Income(id, "user1", "Salary", new BigDecimal(amount), date(date)));
+    }
+
+    @Test
+    public void testGetForecast_BuildsTheModelFromHistoryOnce() {
+        List<Expense> expenses = new ArrayList<>();
+        List<Income> incomes = new ArrayList<>();
+        for (int month = 1; month <= 7; month++) {
+            String day = String.format("2024-%02d-15", month);
+            expenses.add(new Expense("e" + month, "user1", new BigDecimal("100.00"), "Food", date(day), null));
+            incomes.add(new Income("i" + month, "user1", "Salary", new BigDecimal("200.00"), date(day)));
+        }
+        when(expenseRepository.streamByUserId("user1")).thenReturn(expenses.stream());
+        when(incomeRepository.streamByUserIdAndDateBetween(eq("user1"), any(Date.class), any(Date.class))).thenReturn(incomes.stream());
+
+        List<CashflowForecast> forecast = cashflowForecastService.getForecast("user1", JULY);
+        cashflowForecastService.getForecast("user1", JULY);
+
+        assertEquals(12, forecast.size());
+        assertEquals("2024-07", forecast.get(0).getMonth());
+        assertEquals("2025-06", forecast.get(11).getMonth());
+        assertEquals(new BigDecimal("200.00"), forecast.get(0).getIncome());
+        assertEquals(new BigDecimal("100.00"), forecast.get(0).getExpenses());
+        assertEquals(new BigDecimal("100.00"), forecast.get(11).getNet());
+        assertEquals("USD", forecast.get(0).getCurrency());
+
+        verify(expenseRepository, times(1)).streamByUserId("user1");
+        ArgumentCaptor<CashflowModel> saved = ArgumentCaptor.forClass(CashflowModel.class);
+        verify(cashflowModelRepository, times(1)).save(saved.capture());
+        assertEquals(6, saved.getValue().getExpenses().getObservations()); // January to June
+        assertEquals(Map.of("e7", new BigDecimal("100.00")), saved.getValue().getOpenExpenses());
+    }
+
+    @Test
+    public void testApply_TracksTheOpenMonthAndObservesItOnceItEnds() {
+        cashflowForecastService.apply(expense(LedgerEvent.Action.CREATED, "e1", "100.00", "2024-07-10"), JULY);
+        cashflowForecastService.apply(expense(LedgerEvent.Action.UPDATED, "e1", "150.00", "2024-07-10"), JULY);
+        cashflowForecastService.apply(expense(LedgerEvent.Action.CREATED, "e2", "40.00", "2024-07-20"), JULY);
+        cashflowForecastService.apply(expense(LedgerEvent.Action.DELETED, "e2", "40.00", "2024-07-20"), JULY);
+        cashflowForecastService.apply(income(LedgerEvent.Action.CREATED, "i1", "1000.00", "2024-07-01"), JULY);
+
+        YearMonth august = JULY.plusMonths(1);
+        cashflowForecastService.apply(expense(LedgerEvent.Action.CREATED, "e3", "70.00", "2024-08-02"), august);
+        cashflowForecastService.apply(expense(LedgerEvent.Action.CREATED, "e4", "999.00", "2024-06-30"), august); // Too late for June
+
+        List<CashflowForecast> forecast = cashflowForecastService.getForecast("user1", august);
+        assertEquals("2024-08", forecast.get(0).getMonth());
+        assertEquals(new BigDecimal("1000.00"), forecast.get(0).getIncome());
+        assertEquals(new BigDecimal("150.00"), forecast.get(0).getExpenses());
+        assertEquals(new BigDecimal("850.00"), forecast.get(0).getNet());
+        verify(cashflowModelRepository, times(8)).save(any(CashflowModel.class)); // Built once, then every change
+    }
+
+    @Test
+    public void testApply_SavesABatchOnce() {
+        cashflowForecastService.apply("user1", List.of(
+                expense(LedgerEvent.Action.CREATED, "e1", "100.00", "2024-07-10"),
+                expense(LedgerEvent.Action.CREATED, "e2", "40.00", "2024-07-20"),
+                income(LedgerEvent.Action.CREATED, "i1", "1000.00", "2024-07-01")), JULY);
+
+        ArgumentCaptor<CashflowModel> saved = ArgumentCaptor.forClass(CashflowModel.class);
+        verify(cashflowModelRepository, times(2)).save(saved.capture()); // Built once, then the whole batch
+        assertEquals(Map.of("e1", new BigDecimal("100.00"), "e2", new BigDecimal("40.00")), saved.getValue().getOpenExpenses());
+        assertEquals(Map.of("i1", new BigDecimal("1000.00")), saved.getValue().getOpenIncome());
+    }
+
+    @Test
+    public void testApply_RetriesOnTheModelSavedByAnotherInstance() {
+        CashflowModel stale = new CashflowModel("user1", "2024-07");
+        stale.setVersion(1L);
+        CashflowModel current = new CashflowModel("user1", "2024-07");
+        current.setVersion(2L);
+        current.getOpenExpenses().put("e9", new BigDecimal("30.00"));
+        when(cashflowModelRepository.findById("user1")).thenReturn(Optional.of(stale), Optional.of(current));
+        when(cashflowModelRepository.save(stale)).thenThrow(new OptimisticLockingFailureException("Version 1 is outdated"));
+
+        cashflowForecastService.apply(expense(LedgerEvent.Action.CREATED, "e1", "100.00", "2024-07-10"), JULY);
+
+        // The change is applied to the newer model, keeping the other instance's update
+        verify(cashflowModelRepository).save(current);
+        assertEquals(Map.of("e9", new BigDecimal("30.00"), "e1", new BigDecimal("100.00")), current.getOpenExpenses());
+        verify(cashflowModelRepository, times(2)).findById("user1");
+    }
+
+    @Test
+    public void testApply_GivesUpAfterRepeatedConflicts() {
+        when(cashflowModelRepository.findById("user1")).thenAnswer(invocation -> Optional.of(new CashflowModel("user1", "2024-07")));
+        when(cashflowModelRepository.save(any(CashflowModel.class))).thenThrow(new OptimisticLockingFailureException("Outdated"));
+
+        assertThrows(OptimisticLockingFailureException.class, () ->
+                cashflowForecastService.apply(expense(LedgerEvent.Action.CREATED, "e1", "100.00", "2024-07-10"), JULY));
+        verify(cashflowModelRepository, times(3)).save(any(CashflowModel.class));
+    }
+
+    @Test
+    public void testGetForecast_ObservesEndedMonthsWithoutChangingTheModel() {
+        cashflowForecastService.apply(income(LedgerEvent.Action.CREATED, "i1", "1000.00", "2024-07-01"), JULY);
+        ArgumentCaptor<CashflowModel> saved = ArgumentCaptor.forClass(CashflowModel.class);
+        verify(cashflowModelRepository, times(2)).save(saved.capture());
+        CashflowModel model = saved.getValue();
+
+        // July brought 1000 and August nothing, so the level falls to 700 with a trend of -30
+        List<CashflowForecast> forecast = cashflowForecastService.getForecast("user1", YearMonth.of(2024, 9));
+
+        assertEquals("2024-09", forecast.get(0).getMonth());
+        assertEquals(new BigDecimal("670.00"), forecast.get(0).getIncome());
+        assertEquals("2024-07", model.getOpenMonth());
+        assertEquals(0, model.getIncome().getObservations());
+    }
+
+    @Test
+    public void testGetForecast_NeverForecastsNegativeAmounts() {
+        cashflowForecastService.apply(income(LedgerEvent.Action.CREATED, "i1", "1000.00", "2024-07-01"), JULY);
+
+        // Four months without income since then leave a steep downward trend
+        List<CashflowForecast> forecast = cashflowForecastService.getForecast("user1", YearMonth.of(2024, 12));
+
+        assertEquals(new BigDecimal("0.00"), forecast.get(11).getIncome());
+    }
+
+    @Test
+    public void testOnLedgerEvent_IgnoresTransactionsAndBudgets() {
+        cashflowForecastService.onLedgerEvent(new LedgerEvent(LedgerEvent.EntityType.TRANSACTION, LedgerEvent.Action.CREATED,
+                "user1", "t1", new BigDecimal("10.00"), "Coffee", null, null, null, null));
+
+        verifyNoInteractions(cashflowModelRepository);
+    }
+
+    @Test
+    public void testOnLedgerBatch_IgnoresBatchesWithoutIncomesOrExpenses() {
+        cashflowForecastService.onLedgerBatch(new LedgerBatchEvent("user1", List.of(
+                new LedgerEvent(LedgerEvent.EntityType.TRANSACTION, LedgerEvent.Action.CREATED,
+                        "user1", "t1", new BigDecimal("10.00"), "Coffee", null, null, null, null))));
+
+        verifyNoInteractions(cashflowModelRepository);
+    }
+
+    @Test
+    public void testGetForecast_ThrowsWhenDisabled() {
+        cashflowForecastService = new CashflowForecastService(false, 0.3, 0.1, 0.2, 12, 100, 300);
+
+        assertThrows(ResourceNotFoundException.class, () -> cashflowForecastService.getForecast("user1"));
+    }
+
+    @Test
+    public void testForget() {
+        cashflowForecastService.forget("user1");
+
+        verify(cashflowModelRepository).deleteById("user1");
+    }
+}
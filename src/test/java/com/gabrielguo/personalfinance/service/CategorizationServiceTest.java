@@ -0,0 +1,192 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.event.LedgerBatchEvent;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.Transaction;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Tests for the CategorizationService class
+public class CategorizationServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @InjectMocks
+    private CategorizationService categorizationService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Path rules = directory.resolve("category-rules.csv");
+        Files.writeString(rules, "pattern,category\nnetflix,Entertainment\nuber,Transport\nuber eats,Food\n");
+        categorizationService = new CategorizationService(rules.toString(), 2);
+        MockitoAnnotations.openMocks(this);
+        categorizationService.load();
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), any(Class.class))).thenReturn(bulkOperations);
+    }
+
+    private static BulkWriteResult matched(int count) {
+        BulkWriteResult result = mock(BulkWriteResult.class);
+        when(result.getMatchedCount()).thenReturn(count);
+        return result;
+    }
+
+    private static Expense expense(String id, String category, String description, boolean autoCategorized) {
+        return new Expense(id, "user1", BigDecimal.TEN, category, new Date(), description, null, autoCategorized);
+    }
+
+    @Test
+    public void testCategorizeExpense_FillsMissingCategory() {
+        Expense expense = expense("e1", null, "NETFLIX.COM 866-579", false);
+
+        assertTrue(categorizationService.categorize(expense));
+        assertEquals("Entertainment", expense.getCategory());
+        assertTrue(expense.isAutoCategorized());
+        assertFalse(categorizationService.categorize(expense)); // Already assigned
+    }
+
+    @Test
+    public void testCategorizeExpense_KeepsChosenCategory() {
+        Expense expense = expense("e1", "Gifts", "NETFLIX.COM gift card", false);
+
+        assertFalse(categorizationService.categorize(expense));
+        assertEquals("Gifts", expense.getCategory());
+        assertFalse(expense.isAutoCategorized());
+
+        Expense unmatched = expense("e2", null, "Corner shop", false);
+        assertFalse(categorizationService.categorize(unmatched));
+        assertNull(unmatched.getCategory());
+    }
+
+    @Test
+    public void testCategorizeExpense_ReassignsOrClearsAssignedCategory() {
+        Expense renamed = expense("e1", "Transport", "UBER EATS 8844", true);
+        Expense unmatched = expense("e2", "Transport", "Corner shop", true);
+
+        assertTrue(categorizationService.categorize(renamed));
+        assertEquals("Food", renamed.getCategory());
+        assertTrue(categorizationService.categorize(unmatched));
+        assertNull(unmatched.getCategory());
+        assertFalse(unmatched.isAutoCategorized());
+    }
+
+    @Test
+    public void testCategorizeTransaction() {
+        Transaction transaction = new Transaction("t1", "user1", BigDecimal.TEN, "UBER *TRIP HELP.UBER.COM");
+
+        assertTrue(categorizationService.categorize(transaction));
+        assertEquals("Transport", transaction.getCategory());
+        assertTrue(transaction.isAutoCategorized());
+    }
+
+    @Test
+    public void testLoad_WithoutRulesFile() throws IOException {
+        CategorizationService withoutRules = new CategorizationService(directory.resolve("missing.csv").toString(), 2);
+        withoutRules.load();
+
+        assertNull(withoutRules.categorize("NETFLIX.COM"));
+    }
+
+    @Test
+    public void testRecategorizeUser_WritesChangedCategoriesInBatches() {
+        Expense first = expense("e1", null, "Netflix", false);
+        Expense chosen = expense("e2", "Gifts", "Netflix gift card", false);
+        Expense second = expense("e3", "Transport", "Uber Eats", true);
+        Expense third = expense("e4", null, "Uber", false);
+        Transaction transaction = new Transaction("t1", "user1", BigDecimal.TEN, "Uber trip");
+        when(mongoTemplate.stream(any(Query.class), eq(Expense.class))).thenReturn(Stream.of(first, chosen, second, third));
+        when(mongoTemplate.stream(any(Query.class), eq(Transaction.class))).thenReturn(Stream.of(transaction));
+        // Results are built first, since stubbing them inside another stubbing would leave it unfinished
+        BulkWriteResult two = matched(2);
+        BulkWriteResult one = matched(1);
+        when(bulkOperations.execute()).thenReturn(two, one, one);
+
+        int changed = categorizationService.recategorizeUser("user1");
+
+        assertEquals(4, changed);
+        // Two full batches of expenses, then one of transactions
+        verify(bulkOperations, times(4)).updateOne(any(Query.class), any(Update.class));
+        verify(bulkOperations, times(3)).execute();
+        // One event per batch
+        verify(eventPublisher).publishEvent(new LedgerBatchEvent("user1", List.of(
+                LedgerEvent.of(LedgerEvent.Action.UPDATED, first), LedgerEvent.of(LedgerEvent.Action.UPDATED, second))));
+        verify(eventPublisher).publishEvent(new LedgerBatchEvent("user1", List.of(LedgerEvent.of(LedgerEvent.Action.UPDATED, third))));
+        verify(eventPublisher).publishEvent(new LedgerBatchEvent("user1", List.of(LedgerEvent.of(LedgerEvent.Action.UPDATED, transaction))));
+        verify(eventPublisher, times(3)).publishEvent(any(Object.class));
+        assertEquals("Food", second.getCategory());
+    }
+
+    @Test
+    public void testRecategorizeUser_KeepsCategoriesChangedSinceTheyWereRead() {
+        Expense reassigned = expense("e1", "Transport", "Uber Eats", true);
+        Expense edited = expense("e2", null, "Netflix", false);
+        when(mongoTemplate.stream(any(Query.class), eq(Expense.class))).thenReturn(Stream.of(reassigned, edited));
+        when(mongoTemplate.stream(any(Query.class), eq(Transaction.class))).thenReturn(Stream.empty());
+        // The user chose a category for e2 between the read and the update, so its update matched nothing
+        BulkWriteResult one = matched(1);
+        when(bulkOperations.execute()).thenReturn(one);
+        when(mongoTemplate.getCollectionName(Expense.class)).thenReturn("expenses");
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("expenses"))).thenReturn(List.of(
+                new Document("_id", "e1").append("category", "Food").append("autoCategorized", true),
+                new Document("_id", "e2").append("category", "Gifts").append("autoCategorized", false)));
+
+        int changed = categorizationService.recategorizeUser("user1");
+
+        assertEquals(1, changed);
+        ArgumentCaptor<Query> filters = ArgumentCaptor.forClass(Query.class);
+        verify(bulkOperations, times(2)).updateOne(filters.capture(), any(Update.class));
+        // Each update matches the category it was read with
+        assertEquals("Transport", filters.getAllValues().get(0).getQueryObject().get("category"));
+        assertEquals(true, filters.getAllValues().get(0).getQueryObject().get("autoCategorized"));
+        assertNull(filters.getAllValues().get(1).getQueryObject().get("category"));
+        verify(eventPublisher).publishEvent(new LedgerBatchEvent("user1", List.of(LedgerEvent.of(LedgerEvent.Action.UPDATED, reassigned))));
+    }
+
+    @Test
+    public void testRecategorizeAll_VisitsEveryUser() throws IOException {
+        when(mongoTemplate.findDistinct(any(Query.class), eq("userId"), eq(Expense.class), eq(String.class))).thenReturn(List.of("user1"));
+        when(mongoTemplate.findDistinct(any(Query.class), eq("userId"), eq(Transaction.class), eq(String.class))).thenReturn(List.of("user1", "user2"));
+        when(mongoTemplate.stream(any(Query.class), eq(Expense.class))).thenAnswer(invocation -> Stream.of(expense("e1", null, "Netflix", false)));
+        when(mongoTemplate.stream(any(Query.class), eq(Transaction.class))).thenAnswer(invocation -> Stream.empty());
+        BulkWriteResult one = matched(1);
+        when(bulkOperations.execute()).thenReturn(one);
+
+        assertEquals(2, categorizationService.recategorizeAll());
+        verify(mongoTemplate, times(2)).stream(any(Query.class), eq(Expense.class));
+    }
+}
@@ -0,0 +1,165 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.model.OutboxEmail;
+import com.gabrielguo.personalfinance.repository.OutboxEmailRepository;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// Tests for the EmailOutboxService class
+public class EmailOutboxServiceTest {
+
+    @Mock
+    private OutboxEmailRepository outboxEmailRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private EmailOutboxService emailOutboxService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(OutboxEmail.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    @Test
+    public void testEnqueue() {
+        when(outboxEmailRepository.insert(any(OutboxEmail.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        OutboxEmail email = emailOutboxService.enqueue("test@example.com", "Subject", "Body");
+
+        assertEquals(OutboxEmail.Status.PENDING, email.getStatus());
+        assertEquals(0, email.getAttempts());
+        assertNotNull(email.getNextAttemptAt());
+        verify(outboxEmailRepository, times(1)).insert(any(OutboxEmail.class));
+    }
+
+    @Test
+    public void testMarkFailed_RetriesWithBackoff() {
+        OutboxEmail email = new OutboxEmail("test@example.com", "Subject", "Body");
+        email.setId("emailId");
+        // Claimed for its third attempt
+        email.setAttempts(3);
+
+        emailOutboxService.markFailed(email, "IOException: timeout");
+
+        Document set = capturedSet();
+        assertEquals(OutboxEmail.Status.PENDING, set.get("status"));
+        assertNull(set.get("attempts")); // Counted by the claim
+        assertNotNull(set.get("nextAttemptAt"));
+    }
+
+    @Test
+    public void testMarkFailed_GivesUpAfterMaxAttempts() {
+        OutboxEmail email = new OutboxEmail("test@example.com", "Subject", "Body");
+        email.setId("emailId");
+        email.setAttempts(8);
+
+        emailOutboxService.markFailed(email, "IOException: timeout");
+
+        Document set = capturedSet();
+        assertEquals(OutboxEmail.Status.FAILED, set.get("status"));
+        assertEquals("IOException: timeout", set.get("lastError"));
+    }
+
+    @Test
+    public void testClaimNext_SetsLeaseHolder() {
+        emailOutboxService.claimNext(new Date());
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), update.capture(), any(FindAndModifyOptions.class), eq(OutboxEmail.class));
+        Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+        assertEquals(OutboxEmail.Status.SENDING, set.get("status"));
+        assertNotNull(set.get("leaseHolder"));
+    }
+
+    @Test
+    public void testClaimNext_CountsTheAttempt() {
+        emailOutboxService.claimNext(new Date());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), any(FindAndModifyOptions.class), eq(OutboxEmail.class));
+        assertEquals(1, update.getValue().getUpdateObject().get("$inc", Document.class).get("attempts"));
+        // An expired lease is only claimed again while attempts remain
+        Document expiredLease = query.getValue().getQueryObject().getList("$or", Document.class).get(1);
+        assertEquals(8, expiredLease.get("attempts", Document.class).get("$lt"));
+    }
+
+    @Test
+    public void testFailAbandoned_FailsExpiredLeasesWithoutAttemptsLeft() {
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(OutboxEmail.class)))
+                .thenReturn(UpdateResult.acknowledged(2, 2L, null));
+
+        assertEquals(2, emailOutboxService.failAbandoned(new Date()));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(query.capture(), update.capture(), eq(OutboxEmail.class));
+        Document criteria = query.getValue().getQueryObject();
+        assertEquals(OutboxEmail.Status.SENDING, criteria.get("status"));
+        assertEquals(8, criteria.get("attempts", Document.class).get("$gte"));
+        assertEquals(OutboxEmail.Status.FAILED, update.getValue().getUpdateObject().get("$set", Document.class).get("status"));
+    }
+
+    @Test
+    public void testMarkSent_MatchesLeaseHolder() {
+        OutboxEmail email = new OutboxEmail("test@example.com", "Subject", "Body");
+        email.setId("emailId");
+        email.setLeaseHolder("claim-1");
+
+        assertTrue(emailOutboxService.markSent(email));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateFirst(query.capture(), any(Update.class), eq(OutboxEmail.class));
+        Document criteria = query.getValue().getQueryObject();
+        assertEquals("emailId", criteria.get("_id"));
+        assertEquals(OutboxEmail.Status.SENDING, criteria.get("status"));
+        assertEquals("claim-1", criteria.get("leaseHolder"));
+    }
+
+    @Test
+    public void testMarkSent_LeaseLostToAnotherClaim() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(OutboxEmail.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        OutboxEmail email = new OutboxEmail("test@example.com", "Subject", "Body");
+        email.setId("emailId");
+        email.setLeaseHolder("expired-claim");
+
+        assertFalse(emailOutboxService.markSent(email));
+    }
+
+    @Test
+    public void testRetryDelay_GrowsExponentiallyUpToMaximum() {
+        // Defaults: 30 s base, one hour maximum, jitter between half and all of the delay
+        for (int attempts = 1; attempts <= 20; attempts++) {
+            long full = Math.min(3_600_000L, 30_000L << Math.min(attempts - 1, 20));
+            long delay = emailOutboxService.retryDelayMillis(attempts);
+            assertTrue(delay >= full / 2 && delay <= full, "Delay " + delay + " out of range for attempt " + attempts);
+        }
+    }
+
+    private Document capturedSet() {
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(OutboxEmail.class));
+        return update.getValue().getUpdateObject().get("$set", Document.class);
+    }
+}
@@ -0,0 +1,106 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.model.AccountDeletion;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.UserSettings;
+import com.gabrielguo.personalfinance.repository.AccountDeletionRepository;
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedDatabase;
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedExpenseRepository;
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedUserSettingsRepository;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Tests for the EmbeddedAccountDeletionService class
+public class EmbeddedAccountDeletionServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private AccountDeletionRepository accountDeletionRepository;
+
+    @Mock
+    private UserSettingsService userSettingsService;
+
+    @Mock
+    private SpendingAnomalyService spendingAnomalyService;
+
+    @Mock
+    private CashflowForecastService cashflowForecastService;
+
+    @Mock
+    private ExpenseSearchService expenseSearchService;
+
+    @Mock
+    private BudgetService budgetService;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    private final EmbeddedDatabase database = EmbeddedDatabase.inMemory();
+    private final EmbeddedExpenseRepository expenses = new EmbeddedExpenseRepository(database);
+    private final EmbeddedUserSettingsRepository settings = new EmbeddedUserSettingsRepository(database);
+
+    @InjectMocks
+    private EmbeddedAccountDeletionService accountDeletionService = new EmbeddedAccountDeletionService(database);
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(accountDeletionService, "accountDeletionExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(accountDeletionService, "bulkDeleteExecutor", (Executor) Runnable::run);
+        when(mongoTemplate.getCollectionName(any())).thenAnswer(invocation -> ((Class<?>) invocation.getArgument(0)).getSimpleName());
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), anyString())).thenReturn(List.of());
+        // The deletion is claimed by this instance, which keeps its lease
+        AccountDeletion claimed = new AccountDeletion("user1");
+        claimed.setLeaseHolder("lease");
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(AccountDeletion.class)))
+                .thenReturn(claimed);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(AccountDeletion.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    @Test
+    public void testStartDeletion_DeletesTheUsersEmbeddedDocuments() {
+        expenses.save(new Expense("1", "user1", BigDecimal.TEN, "Food", new Date(1000), "Lunch"));
+        expenses.save(new Expense("2", "user1", BigDecimal.ONE, "Food", new Date(2000), "Coffee"));
+        expenses.save(new Expense("3", "user2", BigDecimal.ONE, "Food", new Date(2000), "Coffee"));
+        UserSettings userSettings = new UserSettings();
+        userSettings.setUserId("user1");
+        settings.save(userSettings);
+
+        accountDeletionService.startDeletion("user1").join();
+
+        assertTrue(expenses.findByUserId("user1").isEmpty());
+        assertEquals(1, expenses.findByUserId("user2").size());
+        assertTrue(settings.findByUserId("user1").isEmpty());
+        verify(mongoTemplate).updateFirst(any(Query.class), argThat(update -> counts(update, "expenses", 2L)), eq(AccountDeletion.class));
+        verify(mongoTemplate).updateFirst(any(Query.class), argThat(update -> counts(update, "usersettings", 1L)), eq(AccountDeletion.class));
+    }
+
+    private static boolean counts(Update update, String collectionName, long deleted) {
+        Document inc = update.getUpdateObject().get("$inc", Document.class);
+        return inc != null && Long.valueOf(deleted).equals(inc.get("deletedCounts." + collectionName));
+    }
+}
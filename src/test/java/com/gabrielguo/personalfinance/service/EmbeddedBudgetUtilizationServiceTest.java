@@ -0,0 +1,60 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.event.ExpenseChangedEvent;
+import com.gabrielguo.personalfinance.model.Budget;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.summary.BudgetUtilization;
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedBudgetRepository;
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedDatabase;
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedExpenseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the EmbeddedBudgetUtilizationService class
+public class EmbeddedBudgetUtilizationServiceTest {
+
+    private EmbeddedExpenseRepository expenseRepository;
+    private EmbeddedBudgetUtilizationService budgetUtilizationService;
+
+    @BeforeEach
+    public void setUp() {
+        EmbeddedDatabase database = EmbeddedDatabase.inMemory();
+        EmbeddedBudgetRepository budgetRepository = new EmbeddedBudgetRepository(database);
+        expenseRepository = new EmbeddedExpenseRepository(database);
+        budgetUtilizationService = new EmbeddedBudgetUtilizationService(budgetRepository, expenseRepository);
+
+        budgetRepository.save(new Budget("january", "user1", new BigDecimal("100"), "January", new Date(0), new Date(1000)));
+        budgetRepository.save(new Budget("open", "user1", new BigDecimal("50"), "Open", new Date(500), null));
+        expenseRepository.save(new Expense("1", "user1", new BigDecimal("40"), "Food", new Date(200), null));
+        expenseRepository.save(new Expense("2", "user1", new BigDecimal("30"), "Food", new Date(800), null));
+        expenseRepository.save(new Expense("3", "user2", new BigDecimal("500"), "Rent", new Date(800), null));
+    }
+
+    @Test
+    public void testGetUtilization_ComputedFromRepositories() {
+        List<BudgetUtilization> utilizations = budgetUtilizationService.getUtilization("user1");
+
+        assertEquals(List.of("january", "open"), utilizations.stream().map(BudgetUtilization::getId).toList());
+        assertEquals(new BigDecimal("70"), utilizations.get(0).getSpent());
+        assertEquals(new BigDecimal("30"), utilizations.get(0).getRemaining());
+        assertEquals(new BigDecimal("30"), utilizations.get(1).getSpent());
+    }
+
+    @Test
+    public void testGetUtilization_ReflectsChangesWithoutRefresh() {
+        budgetUtilizationService.getUtilization("user1");
+        expenseRepository.save(new Expense("4", "user1", new BigDecimal("45"), "Food", new Date(900), null));
+        budgetUtilizationService.onExpenseChanged(new ExpenseChangedEvent("user1", List.of(new Date(900))));
+
+        List<BudgetUtilization> utilizations = budgetUtilizationService.getUtilization("user1");
+
+        assertEquals(new BigDecimal("115"), utilizations.get(0).getSpent());
+        assertEquals("over_budget", utilizations.get(0).getStatus());
+    }
+}
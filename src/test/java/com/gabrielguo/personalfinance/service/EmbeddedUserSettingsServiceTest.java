@@ -0,0 +1,61 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.model.UserSettings;
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedDatabase;
+import com.gabrielguo.personalfinance.repository.embedded.EmbeddedUserSettingsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+// Tests for the EmbeddedUserSettingsService class
+public class EmbeddedUserSettingsServiceTest {
+
+    private EmbeddedUserSettingsRepository userSettingsRepository;
+    private EmbeddedUserSettingsService userSettingsService;
+
+    @BeforeEach
+    public void setUp() {
+        userSettingsRepository = new EmbeddedUserSettingsRepository(EmbeddedDatabase.inMemory());
+        userSettingsService = new EmbeddedUserSettingsService(100, 600, userSettingsRepository);
+        ReflectionTestUtils.setField(userSettingsService, "fxRateService", mock(FxRateService.class));
+    }
+
+    @Test
+    public void testGetUserSettings_CreatesDefaultsOnce() {
+        UserSettings created = userSettingsService.getUserSettings("user1");
+        userSettingsService.evict("user1");
+        UserSettings read = userSettingsService.getUserSettings("user1");
+
+        assertEquals("user1", created.getUserId());
+        assertFalse(created.isEmailNotifications());
+        assertEquals("light", created.getTheme());
+        assertEquals(created.getId(), read.getId());
+        assertEquals(1, userSettingsRepository.count());
+    }
+
+    @Test
+    public void testUpdateUserSettings_KeepsDocumentAndIgnoresClientId() {
+        UserSettings existing = userSettingsService.getUserSettings("user1");
+
+        UserSettings updated = userSettingsService.updateUserSettings("user1", new UserSettings("other", "user2", true, "dark", "EUR"));
+
+        assertEquals(existing.getId(), updated.getId());
+        assertEquals("user1", updated.getUserId());
+        assertTrue(updated.isEmailNotifications());
+        assertEquals("dark", updated.getTheme());
+        assertEquals("EUR", userSettingsRepository.findByUserId("user1").orElseThrow().getReportingCurrency());
+        assertEquals(1, userSettingsRepository.count());
+    }
+
+    @Test
+    public void testResetUserSettings_CreatesMissingDocument() {
+        UserSettings reset = userSettingsService.resetUserSettings("user2");
+
+        assertEquals("user2", reset.getUserId());
+        assertEquals("light", reset.getTheme());
+        assertTrue(userSettingsRepository.findByUserId("user2").isPresent());
+    }
+}
@@ -0,0 +1,308 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.fx.CurrencyTotals;
+import com.gabrielguo.personalfinance.fx.FxRateTable;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.ExpenseArchive;
+import com.gabrielguo.personalfinance.repository.ExpenseArchiveRepository;
+import com.mongodb.client.result.DeleteResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Tests for the ExpenseArchiveService class
+public class ExpenseArchiveServiceTest {
+
+    private static final String USER_ID = "user1";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ExpenseArchiveRepository expenseArchiveRepository;
+
+    // At most three expenses per bucket
+    @InjectMocks
+    private ExpenseArchiveService expenseArchiveService = new ExpenseArchiveService(3);
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(mongoTemplate.save(any(ExpenseArchive.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mongoTemplate.remove(any(Query.class), eq(Expense.class))).thenReturn(DeleteResult.acknowledged(1));
+    }
+
+    @Test
+    public void testArchiveUser_OneBucketPerMonth() {
+        when(mongoTemplate.stream(any(Query.class), eq(Expense.class))).thenReturn(Stream.of(
+                expense("a", "10", "Food", "2022-01-05"),
+                expense("b", "15", "Rent", "2022-01-20"),
+                expense("c", "7", "Food", "2022-02-03")));
+
+        int archived = expenseArchiveService.archiveUser(USER_ID, date("2023-01-01"));
+
+        assertEquals(3, archived);
+        ArgumentCaptor<ExpenseArchive> saved = ArgumentCaptor.forClass(ExpenseArchive.class);
+        verify(mongoTemplate, times(2)).save(saved.capture());
+        ExpenseArchive january = saved.getAllValues().get(0);
+        assertEquals(USER_ID + ":2022-01", january.getId());
+        assertEquals(date("2022-01-01"), january.getMonth());
+        assertEquals(date("2022-02-01"), january.getNextMonth());
+        assertEquals(2, january.getCount());
+        assertEquals(1, january.getCurrencyTotals().size());
+        assertEquals(0, new BigDecimal("25").compareTo(january.getCurrencyTotals().get(0).getTotal()));
+        assertEquals(2, january.getCategoryTotals().size());
+        assertEquals(USER_ID + ":2022-02", saved.getAllValues().get(1).getId());
+
+        // Removed from the expenses collection one by one, once their bucket is saved
+        verify(mongoTemplate, times(3)).remove(any(Query.class), eq(Expense.class));
+    }
+
+    @Test
+    public void testArchiveUser_LeavesExpensesChangedWhileArchiving() {
+        Expense kept = expense("a", "10", "Food", "2022-01-05");
+        Expense edited = expense("b", "15", "Rent", "2022-01-20");
+        when(mongoTemplate.stream(any(Query.class), eq(Expense.class))).thenReturn(Stream.of(kept, edited));
+        // "b" no longer matches what was read when it is removed
+        when(mongoTemplate.remove(argThat(query -> query != null && "b".equals(query.getQueryObject().get("_id"))), eq(Expense.class)))
+                .thenReturn(DeleteResult.acknowledged(0));
+        ExpenseArchive saved = bucket("2022-01", new ArrayList<>(List.of(kept, edited)));
+        when(mongoTemplate.findById(USER_ID + ":2022-01", ExpenseArchive.class)).thenReturn(null, saved);
+
+        int archived = expenseArchiveService.archiveUser(USER_ID, date("2023-01-01"));
+
+        assertEquals(1, archived);
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).remove(removed.capture(), eq(Expense.class));
+        assertEquals(new BigDecimal("10"), removed.getAllValues().get(0).getQueryObject().get("amount"));
+        assertEquals("Food", removed.getAllValues().get(0).getQueryObject().get("category"));
+        // The edited expense is taken back out of the bucket, whose totals are recomputed
+        ArgumentCaptor<ExpenseArchive> buckets = ArgumentCaptor.forClass(ExpenseArchive.class);
+        verify(mongoTemplate, times(2)).save(buckets.capture());
+        ExpenseArchive rewritten = buckets.getAllValues().get(1);
+        assertEquals(List.of(kept), rewritten.getItems());
+        assertEquals(1, rewritten.getCount());
+        assertEquals(0, new BigDecimal("10").compareTo(rewritten.getCurrencyTotals().get(0).getTotal()));
+    }
+
+    @Test
+    public void testArchiveUser_MergesIntoExistingBucket() {
+        ExpenseArchive existing = bucket("2022-01", new ArrayList<>(List.of(expense("a", "10", "Food", "2022-01-05"))));
+        when(mongoTemplate.findById(USER_ID + ":2022-01", ExpenseArchive.class)).thenReturn(existing);
+        // "a" is still in the expenses collection after an interrupted run
+        when(mongoTemplate.stream(any(Query.class), eq(Expense.class))).thenReturn(Stream.of(
+                expense("a", "10", "Food", "2022-01-05"),
+                expense("b", "5", "Food", "2022-01-06")));
+
+        expenseArchiveService.archiveUser(USER_ID, date("2023-01-01"));
+
+        ArgumentCaptor<ExpenseArchive> saved = ArgumentCaptor.forClass(ExpenseArchive.class);
+        verify(mongoTemplate).save(saved.capture());
+        assertEquals(2, saved.getValue().getCount());
+        assertEquals(0, new BigDecimal("15").compareTo(saved.getValue().getCurrencyTotals().get(0).getTotal()));
+        ExpenseArchive.CategoryTotal food = saved.getValue().getCategoryTotals().get(0);
+        assertEquals("Food", food.getCategory());
+        assertEquals(2, food.getCount());
+    }
+
+    @Test
+    public void testArchiveUser_LeavesOversizedMonth() {
+        when(mongoTemplate.stream(any(Query.class), eq(Expense.class))).thenReturn(Stream.of(
+                expense("a", "1", "Food", "2022-01-01"),
+                expense("b", "1", "Food", "2022-01-02"),
+                expense("c", "1", "Food", "2022-01-03"),
+                expense("d", "1", "Food", "2022-01-04")));
+
+        int archived = expenseArchiveService.archiveUser(USER_ID, date("2023-01-01"));
+
+        assertEquals(0, archived);
+        verify(mongoTemplate, never()).save(any(ExpenseArchive.class));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(Expense.class));
+    }
+
+    @Test
+    public void testArchiveUser_RetriesConcurrentChange() {
+        when(mongoTemplate.stream(any(Query.class), eq(Expense.class))).thenReturn(Stream.of(expense("a", "10", "Food", "2022-01-05")));
+        when(mongoTemplate.save(any(ExpenseArchive.class)))
+                .thenThrow(new OptimisticLockingFailureException("changed"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        int archived = expenseArchiveService.archiveUser(USER_ID, date("2023-01-01"));
+
+        assertEquals(1, archived);
+        // The bucket is read again before the second attempt
+        verify(mongoTemplate, times(2)).findById(USER_ID + ":2022-01", ExpenseArchive.class);
+    }
+
+    @Test
+    public void testArchiveOlderThan_ContinuesAfterFailure() {
+        when(mongoTemplate.findDistinct(any(Query.class), eq("userId"), eq(Expense.class), eq(String.class)))
+                .thenReturn(List.of("broken", USER_ID));
+        when(mongoTemplate.stream(any(Query.class), eq(Expense.class)))
+                .thenThrow(new RuntimeException("cursor killed"))
+                .thenReturn(Stream.of(expense("a", "10", "Food", "2022-01-05")));
+
+        assertEquals(1, expenseArchiveService.archiveOlderThan(date("2023-01-01")));
+    }
+
+    @Test
+    public void testRemoveExpense_UpdatesTotals() {
+        ExpenseArchive existing = bucket("2022-01", new ArrayList<>(List.of(
+                expense("a", "10", "Food", "2022-01-05"), expense("b", "5", "Rent", "2022-01-06"))));
+        when(expenseArchiveRepository.findFirstByItemsId("a")).thenReturn(Optional.of(existing));
+
+        assertTrue(expenseArchiveService.removeExpense("a"));
+
+        ArgumentCaptor<ExpenseArchive> saved = ArgumentCaptor.forClass(ExpenseArchive.class);
+        verify(mongoTemplate).save(saved.capture());
+        assertEquals(1, saved.getValue().getCount());
+        assertEquals(0, new BigDecimal("5").compareTo(saved.getValue().getCurrencyTotals().get(0).getTotal()));
+        assertEquals("Rent", saved.getValue().getCategoryTotals().get(0).getCategory());
+    }
+
+    @Test
+    public void testRemoveExpense_DeletesEmptyBucket() {
+        ExpenseArchive existing = bucket("2022-01", new ArrayList<>(List.of(expense("a", "10", "Food", "2022-01-05"))));
+        existing.setVersion(4L);
+        when(expenseArchiveRepository.findFirstByItemsId("a")).thenReturn(Optional.of(existing));
+        when(mongoTemplate.remove(any(Query.class), eq(ExpenseArchive.class))).thenReturn(DeleteResult.acknowledged(1));
+
+        assertTrue(expenseArchiveService.removeExpense("a"));
+
+        // Only deleted if nobody changed the bucket since it was read
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(query.capture(), eq(ExpenseArchive.class));
+        assertEquals(4L, query.getValue().getQueryObject().get("version"));
+        verify(mongoTemplate, never()).save(any(ExpenseArchive.class));
+    }
+
+    @Test
+    public void testRemoveExpense_NotArchived() {
+        assertFalse(expenseArchiveService.removeExpense("missing"));
+        verify(mongoTemplate, never()).save(any());
+    }
+
+    @Test
+    public void testFindExpensesBetween_FiltersItems() {
+        when(expenseArchiveRepository.findOverlapping(eq(USER_ID), any(Date.class), any(Date.class))).thenReturn(List.of(
+                bucket("2022-01", List.of(expense("a", "10", "Food", "2022-01-05"), expense("b", "5", "Food", "2022-01-25")))));
+
+        List<Expense> result = expenseArchiveService.findExpensesBetween(USER_ID, date("2022-01-10"), null);
+
+        assertEquals(1, result.size());
+        assertEquals("b", result.get(0).getId());
+    }
+
+    @Test
+    public void testAddMonthlyTotals_UsesBucketTotalsForWholeMonths() {
+        ExpenseArchive january = bucket("2022-01", List.of(expense("a", "10", "Food", "2022-01-05")));
+        // Differs from the items, to show the stored total is used
+        january.getCurrencyTotals().get(0).setTotal(new BigDecimal("999"));
+        ExpenseArchive february = bucket("2022-02", List.of(
+                expense("b", "20", "Food", "2022-02-03"), expense("c", "30", "Food", "2022-02-20")));
+        when(expenseArchiveRepository.findOverlapping(USER_ID, date("2022-01-01"), date("2022-02-10")))
+                .thenReturn(List.of(january, february));
+
+        Map<YearMonth, CurrencyTotals> totals = new TreeMap<>();
+        expenseArchiveService.addMonthlyTotals(USER_ID, date("2022-01-01"), date("2022-02-10"),
+                month -> totals.computeIfAbsent(month, key -> dollarTotals()));
+
+        assertEquals(0, new BigDecimal("999").compareTo(totals.get(YearMonth.of(2022, 1)).total()));
+        // February is cut by the end of the range, so only its first expense counts
+        assertEquals(0, new BigDecimal("20").compareTo(totals.get(YearMonth.of(2022, 2)).total()));
+    }
+
+    @Test
+    public void testAddTotal_ConvertsEachCurrencyAtTheRateOfItsMonth() {
+        ExpenseArchive january = bucket("2022-01", List.of(
+                expense("a", "10", "Food", "2022-01-05"),
+                new Expense("b", USER_ID, new BigDecimal("20"), "Food", date("2022-01-06"), "description", "EUR")));
+        when(expenseArchiveRepository.findSummariesByUserId(USER_ID)).thenReturn(List.of(january));
+        // One euro is worth 1.10 dollars in January 2022 and 1.50 dollars later on
+        SortedMap<LocalDate, BigDecimal> euroRates = new TreeMap<>(Map.of(
+                LocalDate.of(2022, 1, 1), new BigDecimal("1.10"), LocalDate.of(2023, 1, 1), new BigDecimal("1.50")));
+        CurrencyTotals totals = new CurrencyTotals(FxRateTable.of("USD", Map.of("EUR", euroRates)), "USD", "USD");
+
+        expenseArchiveService.addTotal(USER_ID, totals);
+
+        assertEquals(2, january.getCurrencyTotals().size());
+        assertEquals(0, new BigDecimal("32").compareTo(totals.total()));
+        assertTrue(totals.isComplete());
+    }
+
+    @Test
+    public void testAddCategoryTotals_SummarizesLegacyBuckets() {
+        ExpenseArchive legacy = bucket("2022-01", List.of(expense("a", "10", "Food", "2022-01-05")));
+        ExpenseArchive summary = bucket("2022-01", null);
+        summary.setCurrencyTotals(null);
+        summary.setCategoryTotals(List.of(new ExpenseArchive.CategoryTotal("Food", null, new BigDecimal("999"), 1)));
+        when(expenseArchiveRepository.findSummariesByUserId(USER_ID)).thenReturn(new ArrayList<>(List.of(summary)));
+        when(expenseArchiveRepository.findById(summary.getId())).thenReturn(Optional.of(legacy));
+
+        Map<String, CurrencyTotals> totals = new TreeMap<>();
+        expenseArchiveService.addCategoryTotals(USER_ID, category -> totals.computeIfAbsent(category, key -> dollarTotals()));
+
+        // The totals of a bucket written before they were kept per currency are recomputed from its items
+        assertEquals(0, new BigDecimal("10").compareTo(totals.get("Food").total()));
+    }
+
+    @Test
+    public void testAddTotal_NoBuckets() {
+        when(expenseArchiveRepository.findSummariesByUserId(anyString())).thenReturn(new ArrayList<>());
+
+        assertEquals(BigDecimal.ZERO, expenseArchiveService.addTotal(USER_ID, dollarTotals()).total());
+    }
+
+    @Test
+    public void testCutoff_StartOfMonth() {
+        assertEquals(date("2024-02-01"), ExpenseArchiveService.cutoff(date("2024-03-15"), 30));
+        assertEquals(date("2023-03-01"), ExpenseArchiveService.cutoff(date("2024-03-15"), 365));
+    }
+
+    private static ExpenseArchive bucket(String month, List<Expense> items) {
+        YearMonth yearMonth = YearMonth.parse(month);
+        ExpenseArchive bucket = new ExpenseArchive(USER_ID + ":" + month, USER_ID, date(yearMonth.atDay(1).toString()),
+                date(yearMonth.plusMonths(1).atDay(1).toString()), 0, new ArrayList<>(), new ArrayList<>(), items, 1L);
+        if (items != null) {
+            ExpenseArchiveService.summarize(bucket);
+        }
+        return bucket;
+    }
+
+    private static CurrencyTotals dollarTotals() {
+        return new CurrencyTotals(FxRateTable.empty("USD"), "USD", "USD");
+    }
+
+    private static Expense expense(String id, String amount, String category, String date) {
+        return new Expense(id, USER_ID, new BigDecimal(amount), category, date(date), "description");
+    }
+
+    private static Date date(String isoDate) {
+        return Date.from(LocalDate.parse(isoDate).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
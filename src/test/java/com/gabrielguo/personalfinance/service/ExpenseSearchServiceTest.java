@@ -0,0 +1,161 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.event.LedgerBatchEvent;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.ExpenseSearchResult;
+import com.gabrielguo.personalfinance.model.Income;
+import com.gabrielguo.personalfinance.repository.ExpenseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Tests for the ExpenseSearchService class
+public class ExpenseSearchServiceTest {
+
+    @Mock
+    private ExpenseRepository expenseRepository;
+
+    @Mock
+    private ExpenseArchiveService expenseArchiveService;
+
+    @InjectMocks
+    private ExpenseSearchService expenseSearchService;
+
+    private final Expense coffee = expense("e1", "Coffee beans", "Groceries", 1000L);
+    private final Expense train = expense("e2", "Train to Lyon", "Transport", 2000L);
+    private final Expense archived = expense("e0", "Coffee grinder", "Household", 0L);
+
+    // The expenses collection, as seen by every instance
+    private final List<Expense> stored = new ArrayList<>(List.of(coffee, train));
+
+    @BeforeEach
+    public void setUp() {
+        expenseSearchService = new ExpenseSearchService(2, 10, 50);
+        MockitoAnnotations.openMocks(this);
+        when(expenseArchiveService.findExpenses("user1")).thenReturn(List.of(archived));
+        when(expenseRepository.streamByUserId("user1")).thenAnswer(invocation -> new ArrayList<>(stored).stream());
+        when(expenseRepository.streamByUserId("user2")).thenAnswer(invocation -> Stream.empty());
+        when(expenseRepository.streamByUserId("user3")).thenAnswer(invocation -> Stream.empty());
+        when(expenseRepository.findByUserIdAndIdIn(eq("user1"), anyCollection())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(1);
+            return stored.stream().filter(expense -> ids.contains(expense.getId())).toList();
+        });
+        when(expenseArchiveService.findExpense("e0")).thenReturn(Optional.of(archived));
+    }
+
+    private static Expense expense(String id, String description, String category, long time) {
+        return new Expense(id, "user1", BigDecimal.TEN, category, new Date(time), description, null);
+    }
+
+    @Test
+    public void testSearch_BuildsTheIndexOnceFromStoredAndArchivedExpenses() {
+        ExpenseSearchResult result = expenseSearchService.search("user1", "coffee", 0, 20);
+
+        assertEquals("coffee", result.getQuery());
+        assertEquals(2, result.getTotalHits());
+        assertEquals(List.of(coffee, archived), result.getHits()); // Newest first, the archived one found in the archive
+
+        expenseSearchService.search("user1", "train", 0, 20);
+        verify(expenseRepository, times(1)).streamByUserId("user1");
+        verify(expenseArchiveService, times(1)).findExpenses("user1");
+    }
+
+    @Test
+    public void testSearch_ClampsThePage() {
+        ExpenseSearchResult result = expenseSearchService.search("user1", "co", -1, 500);
+
+        assertEquals(0, result.getPage());
+        assertEquals(50, result.getSize());
+    }
+
+    @Test
+    public void testOnLedgerEvent_UpdatesLoadedIndexesOnly() {
+        Expense taxi = new Expense("e3", "user2", BigDecimal.TEN, "Transport", new Date(), "Taxi", null);
+        expenseSearchService.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, taxi));
+        verifyNoInteractions(expenseRepository, expenseArchiveService);
+
+        expenseSearchService.search("user1", "coffee", 0, 20);
+        Expense lyon = expense("e3", "Lyon hotel", "Travel", 3000L);
+        stored.add(lyon);
+        expenseSearchService.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, lyon));
+        stored.remove(train);
+        expenseSearchService.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.DELETED, train));
+        expenseSearchService.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED,
+                new Income("i1", "user1", "Lyon", BigDecimal.TEN, new Date())));
+
+        assertEquals(1, expenseSearchService.search("user1", "lyon", 0, 20).getTotalHits());
+        assertEquals(List.of("hotel", "household"), expenseSearchService.suggest("user1", "h", 10));
+        assertEquals(List.of("lyon"), expenseSearchService.suggest("user1", "ly", 10));
+    }
+
+    @Test
+    public void testOnLedgerBatch_AppliesEveryExpense() {
+        expenseSearchService.search("user1", "coffee", 0, 20);
+        Expense lyon = expense("e3", "Lyon hotel", "Travel", 3000L);
+        Expense paris = expense("e4", "Paris hotel", "Travel", 4000L);
+        stored.addAll(List.of(lyon, paris));
+
+        expenseSearchService.onLedgerBatch(new LedgerBatchEvent("user1", List.of(
+                LedgerEvent.of(LedgerEvent.Action.CREATED, lyon),
+                LedgerEvent.of(LedgerEvent.Action.CREATED, paris),
+                LedgerEvent.of(LedgerEvent.Action.CREATED, new Income("i1", "user1", "Hotel refund", BigDecimal.TEN, new Date())))));
+
+        assertEquals(2, expenseSearchService.search("user1", "hotel", 0, 20).getTotalHits());
+        verify(expenseRepository, times(1)).streamByUserId("user1");
+    }
+
+    @Test
+    public void testForget_AndEviction_RebuildTheIndex() {
+        expenseSearchService.search("user1", "coffee", 0, 20);
+        expenseSearchService.forget("user1");
+        expenseSearchService.search("user1", "coffee", 0, 20);
+        verify(expenseRepository, times(2)).streamByUserId("user1");
+
+        // Two indexes are kept, so the third user pushes out the least recently used
+        expenseSearchService.suggest("user2", "a", 10);
+        expenseSearchService.suggest("user3", "a", 10);
+        expenseSearchService.search("user1", "coffee", 0, 20);
+        verify(expenseRepository, times(3)).streamByUserId("user1");
+    }
+
+    @Test
+    public void testSearch_RebuildsTheIndexWhenAHitNoLongerExists() {
+        expenseSearchService.search("user1", "coffee", 0, 20);
+        // Deleted through another instance, so this instance's index still holds it
+        stored.remove(coffee);
+
+        ExpenseSearchResult result = expenseSearchService.search("user1", "coffee", 0, 20);
+
+        assertEquals(1, result.getTotalHits());
+        assertEquals(List.of(archived), result.getHits());
+        verify(expenseRepository, times(2)).streamByUserId("user1");
+    }
+
+    @Test
+    public void testSearch_LoadsOnlyTheUsersExpenses() {
+        Expense foreign = new Expense("e9", "user2", BigDecimal.TEN, "Groceries", new Date(500L), "Coffee beans", null);
+        when(expenseArchiveService.findExpense("e0")).thenReturn(Optional.of(foreign));
+
+        ExpenseSearchResult result = expenseSearchService.search("user1", "coffee", 0, 20);
+
+        assertEquals(List.of(coffee), result.getHits());
+        assertEquals(1, result.getTotalHits());
+        verify(expenseRepository, atLeastOnce()).findByUserIdAndIdIn(eq("user1"), anyCollection());
+    }
+}
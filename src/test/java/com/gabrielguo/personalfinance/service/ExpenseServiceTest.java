@@ -1,25 +1,38 @@
 package com.gabrielguo.personalfinance.service;
 
+import com.gabrielguo.personalfinance.config.TimeSeriesStorage;
+import com.gabrielguo.personalfinance.event.ExpenseChangedEvent;
+import com.gabrielguo.personalfinance.event.LedgerBatchEvent;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.exception.ImportTooLargeException;
 import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.exception.UnsupportedCurrencyException;
 import com.gabrielguo.personalfinance.model.Expense;
 import com.gabrielguo.personalfinance.repository.ExpenseRepository;
 import com.gabrielguo.personalfinance.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.query.Update;
 
 import java.math.BigDecimal;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 
@@ -32,8 +45,23 @@ public class ExpenseServiceTest {
     @Mock
     private UserRepository userRepository;  // Mocking the repository for users
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;  // Mocking the publisher of expense changes
+
+    @Mock
+    private TimeSeriesStorage timeSeriesStorage;  // Mocking the storage mode, regular collections unless stubbed
+
+    @Mock
+    private ExpenseArchiveService expenseArchiveService;  // Mocking the archive of old expenses, empty unless stubbed
+
+    @Mock
+    private CategorizationService categorizationService;  // Mocking the category rules, which assign nothing unless stubbed
+
+    @Mock
+    private FxRateService fxRateService;  // Mocking the exchange rates, which accept every currency unless stubbed
+
     @InjectMocks
-    private ExpenseService expenseService;  // Injecting mocks into the service under test
+    private ExpenseService expenseService = new ExpenseService(1000);  // Injecting mocks into the service under test
 
     @BeforeEach
     public void setUp() {
@@ -57,6 +85,19 @@ public class ExpenseServiceTest {
         );
     }
 
+    @Test
+    public void testCreateExpense_UnsupportedCurrency() {
+        // Arrange: Set up an expense in a currency without exchange rates
+        Expense expense = new Expense();
+        expense.setCurrency("XYZ");
+        when(userRepository.existsById("userId")).thenReturn(true);
+        doThrow(new UnsupportedCurrencyException("Unsupported currency: XYZ")).when(fxRateService).requireSupported("XYZ");
+
+        // Act & Assert: Verify that the expense is rejected and not saved
+        assertThrows(UnsupportedCurrencyException.class, () -> expenseService.createExpense(expense, "userId"));
+        verify(expenseRepository, never()).save(any(Expense.class));
+    }
+
     @Test
     public void testCreateExpense_Success() throws ParseException {
         // Arrange: Set up valid expense data and mock repository responses
@@ -71,6 +112,7 @@ public class ExpenseServiceTest {
         // Assert: Verify that the expense was created successfully
         assertEquals(expense, createdExpense);
         verify(expenseRepository).save(expense);  // Ensure save was called
+        verify(eventPublisher).publishEvent(new ExpenseChangedEvent("userId", List.of(expenseDate)));  // Ensure the change was announced
     }
 
     @Test
@@ -105,6 +147,32 @@ public class ExpenseServiceTest {
         assertEquals(expense, foundExpense);
     }
 
+    @Test
+    public void testGetAllExpenses_IncludesArchivedExpenses() throws ParseException {
+        // Arrange: Set up one regular and one archived expense
+        Expense recent = new Expense("1", "userId", BigDecimal.valueOf(100.0), "Food", parseDate("2024-08-01"), "Lunch");
+        Expense archived = new Expense("2", "userId", BigDecimal.valueOf(50.0), "Transport", parseDate("2022-03-02"), "Bus");
+        when(expenseRepository.findByUserId("userId")).thenReturn(List.of(recent));
+        when(expenseArchiveService.findExpenses("userId")).thenReturn(List.of(archived));
+
+        // Act: Call the service method to get all expenses
+        List<Expense> expenses = expenseService.getAllExpenses("userId");
+
+        // Assert: Verify that both are returned, archived ones first
+        assertEquals(List.of(archived, recent), expenses);
+    }
+
+    @Test
+    public void testGetExpenseById_Archived() throws ParseException {
+        // Arrange: Set up an expense that is only found in the archive
+        Expense archived = new Expense("1", "userId", BigDecimal.valueOf(50.0), "Transport", parseDate("2022-03-02"), "Bus");
+        when(expenseRepository.findById("1")).thenReturn(Optional.empty());
+        when(expenseArchiveService.findExpense("1")).thenReturn(Optional.of(archived));
+
+        // Act & Assert: Verify that the archived expense is returned
+        assertEquals(archived, expenseService.getExpenseById("1", "userId"));
+    }
+
     @Test
     public void testGetExpenseById_ExpenseNotFound() {
         // Arrange: Mock the scenario where the expense does not exist
@@ -132,6 +200,72 @@ public class ExpenseServiceTest {
         // Assert: Verify that the expense was updated successfully
         assertEquals(updatedExpense, result);
         verify(expenseRepository).save(updatedExpense);  // Ensure save was called
+        verify(eventPublisher).publishEvent(new ExpenseChangedEvent("userId", List.of(existingDate)));  // Same date, announced once
+    }
+
+    @Test
+    public void testUpdateExpense_MovedDatePublishesBothDates() throws ParseException {
+        // Arrange: Set up an expense whose date is changed by the update
+        Date existingDate = parseDate("2024-08-01");
+        Date updatedDate = parseDate("2024-09-15");
+        Expense existingExpense = new Expense("1", "userId", BigDecimal.valueOf(100.0), "Food", existingDate, "Lunch");
+        Expense updatedExpense = new Expense("1", "userId", BigDecimal.valueOf(100.0), "Food", updatedDate, "Lunch");
+        when(expenseRepository.findById("1")).thenReturn(Optional.of(existingExpense));
+        when(expenseRepository.save(updatedExpense)).thenReturn(updatedExpense);
+
+        // Act: Call the service method to move the expense
+        expenseService.updateExpense("1", updatedExpense, "userId");
+
+        // Assert: Verify that spending changed on both the old and the new date
+        verify(eventPublisher).publishEvent(new ExpenseChangedEvent("userId", List.of(existingDate, updatedDate)));
+    }
+
+    @Test
+    public void testUpdateExpense_TimeSeriesUpdatesInPlace() throws ParseException {
+        // Arrange: Enable time-series storage and leave the date out of the update
+        Date existingDate = parseDate("2024-08-01");
+        Expense existingExpense = new Expense("1", "userId", BigDecimal.valueOf(100.0), "Food", existingDate, "Lunch");
+        Expense updatedExpense = new Expense("1", "userId", BigDecimal.valueOf(120.0), "Food", null, "Dinner");
+        when(timeSeriesStorage.isEnabled()).thenReturn(true);
+        when(expenseRepository.findByIdAndUserId("1", "userId")).thenReturn(Optional.of(existingExpense));
+
+        // Act: Call the service method to update the expense
+        Expense result = expenseService.updateExpense("1", updatedExpense, "userId");
+
+        // Assert: Verify that the fields were set in place and the date was kept, since a save would upsert;
+        // the lookup and the update both name the owner, the metaField of the time-series collection
+        verify(timeSeriesStorage).update(eq("1"), eq("userId"), any(Update.class), eq(Expense.class));
+        verify(expenseRepository, never()).findById(anyString());
+        verify(expenseRepository, never()).save(any(Expense.class));
+        assertEquals(existingDate, result.getDate());
+        assertEquals(BigDecimal.valueOf(120.0), result.getAmount());
+    }
+
+    @Test
+    public void testDeleteExpense_TimeSeriesDeletesByIdAndOwner() {
+        Expense existingExpense = new Expense("1", "userId", BigDecimal.valueOf(100.0), "Food", new Date(), "Lunch");
+        when(timeSeriesStorage.isEnabled()).thenReturn(true);
+        when(expenseRepository.findByIdAndUserId("1", "userId")).thenReturn(Optional.of(existingExpense));
+
+        expenseService.deleteExpense("1", "userId");
+
+        verify(timeSeriesStorage).delete("1", "userId", Expense.class);
+        verify(expenseRepository, never()).deleteById(anyString());
+    }
+
+    @Test
+    public void testCreateExpense_TimeSeriesDefaultsDate() {
+        // Arrange: Enable time-series storage and create an expense without a date
+        Expense expense = new Expense(null, null, BigDecimal.valueOf(10.0), "Food", null, "Snack");
+        when(timeSeriesStorage.isEnabled()).thenReturn(true);
+        when(userRepository.existsById("userId")).thenReturn(true);
+        when(expenseRepository.save(expense)).thenReturn(expense);
+
+        // Act: Call the service method to create the expense
+        Expense result = expenseService.createExpense(expense, "userId");
+
+        // Assert: Verify that the expense was given a date, which the time-series collection requires
+        assertNotNull(result.getDate());
     }
 
     @Test
@@ -160,6 +294,45 @@ public class ExpenseServiceTest {
 
         // Assert: Verify that the delete operation was performed
         verify(expenseRepository).deleteById("1");  // Ensure deleteById was called
+        verify(eventPublisher).publishEvent(new ExpenseChangedEvent("userId", List.of(expenseDate)));  // Ensure the change was announced
+    }
+
+    @Test
+    public void testDeleteExpense_Archived() throws ParseException {
+        // Arrange: Set up an archived expense
+        Date expenseDate = parseDate("2022-03-02");
+        Expense archived = new Expense("1", "userId", BigDecimal.valueOf(50.0), "Transport", expenseDate, "Bus");
+        when(expenseRepository.findById("1")).thenReturn(Optional.empty());
+        when(expenseArchiveService.findExpense("1")).thenReturn(Optional.of(archived));
+
+        // Act: Call the service method to delete the expense
+        expenseService.deleteExpense("1", "userId");
+
+        // Assert: Verify that it was removed from its bucket
+        verify(expenseArchiveService).removeExpense("1");
+        verify(expenseRepository, never()).deleteById(any());
+        verify(eventPublisher).publishEvent(new ExpenseChangedEvent("userId", List.of(expenseDate)));
+    }
+
+    @Test
+    public void testUpdateExpense_ArchivedBecomesRegular() throws ParseException {
+        // Arrange: Set up an archived expense and an update to it
+        Date expenseDate = parseDate("2022-03-02");
+        Expense archived = new Expense("1", "userId", BigDecimal.valueOf(50.0), "Transport", expenseDate, "Bus");
+        Expense updatedExpense = new Expense("1", "userId", BigDecimal.valueOf(55.0), "Transport", expenseDate, "Train");
+        when(expenseRepository.findById("1")).thenReturn(Optional.empty());
+        when(expenseArchiveService.findExpense("1")).thenReturn(Optional.of(archived));
+        when(expenseRepository.insert(any(Expense.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act: Call the service method to update the expense
+        Expense result = expenseService.updateExpense("1", updatedExpense, "userId");
+
+        // Assert: Verify that the expense was inserted as a regular expense before leaving the archive
+        InOrder inOrder = inOrder(expenseRepository, expenseArchiveService);
+        inOrder.verify(expenseRepository).insert(archived);
+        inOrder.verify(expenseArchiveService).removeExpense("1");
+        assertEquals("Train", result.getDescription());
+        verify(expenseRepository, never()).save(any(Expense.class));
     }
 
     @Test
@@ -185,4 +358,121 @@ public class ExpenseServiceTest {
         // Assert: Verify that the correct categories were returned
         assertEquals(categories, result);
     }
+
+    @Test
+    public void testGetAllCategories_IncludesArchivedCategories() {
+        // Arrange: Set up categories that overlap between regular and archived expenses
+        when(expenseRepository.findDistinctCategoriesByUserId("userId")).thenReturn(Arrays.asList("Food", "Transport"));
+        when(expenseArchiveService.getCategories("userId")).thenReturn(Arrays.asList("Transport", "Rent"));
+
+        // Act: Call the service method to get all categories
+        List<String> result = expenseService.getAllCategories("userId");
+
+        // Assert: Verify that each category is listed once
+        assertEquals(Arrays.asList("Food", "Transport", "Rent"), result);
+    }
+
+    @Test
+    public void testCreateExpense_CategorizesBeforeSaving() throws ParseException {
+        // Arrange: Create an expense without a category
+        Expense expense = new Expense(null, null, BigDecimal.valueOf(12.0), null, parseDate("2024-08-01"), "NETFLIX.COM");
+        when(userRepository.existsById("userId")).thenReturn(true);
+        when(expenseRepository.save(expense)).thenReturn(expense);
+
+        // Act: Call the service method to create the expense
+        expenseService.createExpense(expense, "userId");
+
+        // Assert: Verify that the category rules saw the expense before it was stored
+        InOrder inOrder = inOrder(categorizationService, expenseRepository);
+        inOrder.verify(categorizationService).categorize(expense);
+        inOrder.verify(expenseRepository).save(expense);
+    }
+
+    @Test
+    public void testImportExpenses_InsertsCategorizedExpensesInOneBatch() throws ParseException {
+        // Arrange: Set up two imported expenses on different days
+        Date firstDate = parseDate("2024-08-01");
+        Date secondDate = parseDate("2024-08-02");
+        Expense first = new Expense(null, null, BigDecimal.valueOf(12.0), null, firstDate, "NETFLIX.COM");
+        Expense second = new Expense(null, null, BigDecimal.valueOf(30.0), "Food", secondDate, "Market");
+        List<Expense> expenses = List.of(first, second);
+        when(userRepository.existsById("userId")).thenReturn(true);
+        when(expenseRepository.insert(expenses)).thenReturn(expenses);
+
+        // Act: Call the service method to import the expenses
+        List<Expense> result = expenseService.importExpenses(expenses, "userId");
+
+        // Assert: Verify that each expense was categorized and that all were inserted and announced together
+        assertEquals(expenses, result);
+        assertEquals("userId", second.getUserId());
+        verify(categorizationService).categorize(first);
+        verify(categorizationService).categorize(second);
+        verify(expenseRepository).insert(expenses);
+        verify(expenseRepository, never()).save(any(Expense.class));
+        verify(eventPublisher).publishEvent(new ExpenseChangedEvent("userId", List.of(firstDate, secondDate)));
+        verify(eventPublisher).publishEvent(new LedgerBatchEvent("userId", List.of(
+                LedgerEvent.of(LedgerEvent.Action.CREATED, first), LedgerEvent.of(LedgerEvent.Action.CREATED, second))));
+        verify(eventPublisher, never()).publishEvent(any(LedgerEvent.class));
+    }
+
+    @Test
+    public void testImportExpenses_TooManyRows() {
+        // Arrange: Set up an import one expense over the limit
+        List<Expense> expenses = Collections.nCopies(1001, new Expense());
+
+        // Act & Assert: Verify that the import is rejected before anything is inserted
+        assertThrows(ImportTooLargeException.class, () -> expenseService.importExpenses(expenses, "userId"));
+        verify(expenseRepository, never()).insert(anyList());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    public void testImportExpenses_UserNotFound() {
+        // Arrange: Set up the scenario where the user does not exist
+        when(userRepository.existsById("userId")).thenReturn(false);
+
+        // Act & Assert: Verify that nothing is inserted
+        assertThrows(ResourceNotFoundException.class, () ->
+                expenseService.importExpenses(List.of(new Expense()), "userId"));
+        verify(expenseRepository, never()).insert(anyList());
+    }
+
+    @Test
+    public void testImportExpenses_UnsupportedCurrency() {
+        // Arrange: Set up an import whose second expense is in a currency without exchange rates
+        Expense first = new Expense();
+        Expense second = new Expense();
+        second.setCurrency("XYZ");
+        when(userRepository.existsById("userId")).thenReturn(true);
+        doThrow(new UnsupportedCurrencyException("Unsupported currency: XYZ")).when(fxRateService).requireSupported("XYZ");
+
+        // Act & Assert: Verify that the whole import is rejected before anything is inserted
+        assertThrows(UnsupportedCurrencyException.class, () ->
+                expenseService.importExpenses(List.of(first, second), "userId"));
+        verify(expenseRepository, never()).insert(anyList());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    public void testUpdateExpense_ChosenCategoryReplacesTheAssignedOne() throws ParseException {
+        // Arrange: Set up an expense whose category came from the rules, and one whose category is left as it was
+        Date date = parseDate("2024-08-01");
+        Expense recategorized = new Expense("1", "userId", BigDecimal.valueOf(12.0), "Entertainment", date, "NETFLIX.COM", null, true);
+        Expense kept = new Expense("2", "userId", BigDecimal.valueOf(12.0), "Entertainment", date, "NETFLIX.COM", null, true);
+        when(expenseRepository.findById("1")).thenReturn(Optional.of(recategorized));
+        when(expenseRepository.findById("2")).thenReturn(Optional.of(kept));
+        when(expenseRepository.save(any(Expense.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act: Change the category of the first, and only the amount of the second
+        Expense first = expenseService.updateExpense("1", new Expense(null, null, BigDecimal.valueOf(12.0), "Subscriptions", date, "NETFLIX.COM"), "userId");
+        Expense second = expenseService.updateExpense("2", new Expense(null, null, BigDecimal.valueOf(15.0), "Entertainment", date, "NETFLIX.COM"), "userId");
+
+        // Assert: Verify that the chosen category is no longer the rules' to change, while the unchanged one still is
+        assertEquals("Subscriptions", first.getCategory());
+        assertFalse(first.isAutoCategorized());
+        assertEquals("Entertainment", second.getCategory());
+        assertTrue(second.isAutoCategorized());
+        verify(categorizationService).categorize(first);
+        verify(categorizationService).categorize(second);
+    }
 }
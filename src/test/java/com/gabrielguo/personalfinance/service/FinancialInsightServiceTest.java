@@ -0,0 +1,134 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.model.InsightType;
+import com.gabrielguo.personalfinance.model.summary.ExpenseSummary;
+import com.gabrielguo.personalfinance.model.trends.IncomeTrend;
+import com.gabrielguo.personalfinance.repository.summary.ExpenseSummaryRepository;
+import com.gabrielguo.personalfinance.repository.trendsrepo.IncomeTrendRepository;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Tests for the FinancialInsightService class
+public class FinancialInsightServiceTest {
+
+    @Mock
+    private IncomeTrendRepository incomeTrendRepository;
+
+    @Mock
+    private ExpenseSummaryRepository expenseSummaryRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BudgetService budgetService;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @InjectMocks
+    private FinancialInsightService financialInsightService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        // Run the per-collection deletes on the calling thread so the test stays deterministic
+        ReflectionTestUtils.setField(financialInsightService, "bulkDeleteExecutor", (Executor) Runnable::run);
+    }
+
+    private Date parseDate(String dateStr) throws ParseException {
+        return new SimpleDateFormat("yyyy-MM-dd").parse(dateStr);
+    }
+
+    @Test
+    public void testDeleteIncomeTrend_Success() {
+        when(incomeTrendRepository.deleteByIdAndUserId("trendId", "userId")).thenReturn(1L);
+
+        financialInsightService.deleteIncomeTrend("trendId", "userId");
+
+        // The ownership check and the delete happen in the same call, without a prior lookup
+        verify(incomeTrendRepository).deleteByIdAndUserId("trendId", "userId");
+        verify(incomeTrendRepository, never()).findById(any());
+    }
+
+    @Test
+    public void testDeleteIncomeTrend_NotOwned() {
+        when(incomeTrendRepository.deleteByIdAndUserId("trendId", "otherUser")).thenReturn(0L);
+
+        assertThrows(ResourceNotFoundException.class, () ->
+                financialInsightService.deleteIncomeTrend("trendId", "otherUser")
+        );
+    }
+
+    @Test
+    public void testDeleteExpenseSummary_NotFound() {
+        when(expenseSummaryRepository.deleteByIdAndUserId("missingId", "userId")).thenReturn(0L);
+
+        assertThrows(ResourceNotFoundException.class, () ->
+                financialInsightService.deleteExpenseSummary("missingId", "userId")
+        );
+    }
+
+    @Test
+    public void testPurgeInsights_AllTypes() {
+        when(mongoTemplate.remove(any(Query.class), any(Class.class))).thenReturn(DeleteResult.acknowledged(2));
+
+        Map<InsightType, Long> deleted = financialInsightService.purgeInsights("userId", null, null, null);
+
+        // Every insight type is purged with one deleteMany
+        assertEquals(InsightType.values().length, deleted.size());
+        deleted.values().forEach(count -> assertEquals(2L, count));
+        verify(mongoTemplate, times(InsightType.values().length)).remove(any(Query.class), any(Class.class));
+        verify(budgetService).forget("userId");
+        verify(ledgerService).dropSnapshot("userId");
+    }
+
+    @Test
+    public void testPurgeInsights_FilteredByTypeAndDate() throws ParseException {
+        when(mongoTemplate.remove(any(Query.class), any(Class.class))).thenReturn(DeleteResult.acknowledged(3));
+        Date start = parseDate("2024-01-01");
+        Date end = parseDate("2024-03-31");
+
+        Map<InsightType, Long> deleted = financialInsightService.purgeInsights(
+                "userId", EnumSet.of(InsightType.INCOME_TREND, InsightType.EXPENSE_SUMMARY), start, end);
+
+        assertEquals(Map.of(InsightType.INCOME_TREND, 3L, InsightType.EXPENSE_SUMMARY, 3L), deleted);
+        verify(budgetService, never()).forget(anyString());
+
+        // Trends are filtered on their month
+        ArgumentCaptor<Query> trendQuery = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(trendQuery.capture(), eq(IncomeTrend.class));
+        String trendFilter = trendQuery.getValue().getQueryObject().toJson();
+        assertTrue(trendFilter.contains("\"userId\": \"userId\""));
+        assertTrue(trendFilter.contains("\"month\""));
+
+        // Summaries are filtered on the creation time embedded in their id
+        ArgumentCaptor<Query> summaryQuery = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(summaryQuery.capture(), eq(ExpenseSummary.class));
+        Document summaryFilter = summaryQuery.getValue().getQueryObject();
+        assertTrue(summaryFilter.toJson().contains("\"_id\""));
+        assertFalse(summaryFilter.toJson().contains("\"month\""));
+    }
+}
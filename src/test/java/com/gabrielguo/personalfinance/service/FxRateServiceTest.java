@@ -0,0 +1,88 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.exception.UnsupportedCurrencyException;
+import com.gabrielguo.personalfinance.model.UserSettings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+// Tests for the FxRateService class
+public class FxRateServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private UserSettingsService userSettingsService;
+
+    @InjectMocks
+    private FxRateService fxRateService;
+
+    @BeforeEach
+    public void setUp() {
+        // Euros are the default currency here
+        fxRateService = new FxRateService(directory.resolve("rates").toString(), "USD", "EUR");
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        Files.createDirectories(directory.resolve("rates"));
+        Files.writeString(directory.resolve("rates/rates.csv"), "2024-07-01,EUR,1.10\n");
+
+        fxRateService.load();
+
+        assertEquals(List.of("EUR", "USD"), fxRateService.getTable().getCurrencies());
+        // Amounts without a currency are in the default currency
+        assertEquals(new BigDecimal("110.00"), fxRateService.newTotals("USD").add(null, new BigDecimal("100")).total());
+    }
+
+    @Test
+    public void testLoad_NoRateDirectory() throws IOException {
+        FxRateService service = new FxRateService(directory.resolve("missing").toString(), "USD", "USD");
+
+        service.load();
+
+        assertEquals(List.of("USD"), service.getTable().getCurrencies());
+    }
+
+    @Test
+    public void testGetReportingCurrency() {
+        UserSettings settings = new UserSettings();
+        when(userSettingsService.getUserSettings("user1")).thenReturn(settings);
+
+        assertEquals("EUR", fxRateService.getReportingCurrency("user1"));
+
+        settings.setReportingCurrency("USD");
+        assertEquals("USD", fxRateService.getReportingCurrency("user1"));
+
+        // A currency whose rates are not loaded falls back to the default currency
+        settings.setReportingCurrency("GBP");
+        assertEquals("EUR", fxRateService.getReportingCurrency("user1"));
+    }
+
+    @Test
+    public void testRequireSupported() throws IOException {
+        Files.createDirectories(directory.resolve("rates"));
+        Files.writeString(directory.resolve("rates/rates.csv"), "2024-07-01,EUR,1.10\n");
+        fxRateService.load();
+
+        fxRateService.requireSupported(null);
+        fxRateService.requireSupported("eur");
+        fxRateService.requireSupported("USD");
+        assertThrows(UnsupportedCurrencyException.class, () -> fxRateService.requireSupported("GBP"));
+        assertThrows(UnsupportedCurrencyException.class, () -> fxRateService.requireSupported(""));
+    }
+}
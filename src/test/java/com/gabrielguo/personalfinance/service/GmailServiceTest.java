@@ -128,4 +128,38 @@ public class GmailServiceTest {
         // Act & Assert: Verify that the init() method completes without throwing exceptions
         assertDoesNotThrow(() -> gmailService.init());
     }
+
+    /**
+     * Test case for the lazily initialized client.
+     * Verifies that init() keeps an existing client and reports it as ready.
+     */
+    @Test
+    public void testInit_KeepsExistingClient() throws Exception {
+        // Act: Initialize a service whose client is already built
+        gmailService.init();
+
+        // Assert: The existing client is kept and reported as ready
+        assertEquals(GmailService.Status.READY, gmailService.getStatus());
+        assertNull(gmailService.getInitFailure());
+        gmailService.sendEmail("test@example.com", "Test Subject", "Test Body");
+        verify(messages).send(eq("me"), any(Message.class));
+    }
+
+    /**
+     * Test case for the outbox transport.
+     * Verifies that send() propagates a 403 instead of swallowing it, so the outbox can retry.
+     */
+    @Test
+    public void testSend_PropagatesForbidden() throws IOException {
+        // Arrange: Create a mock GoogleJsonResponseException with a 403 error code
+        GoogleJsonResponseException exception = mock(GoogleJsonResponseException.class);
+        GoogleJsonError details = new GoogleJsonError();
+        details.setCode(403);
+        when(exception.getDetails()).thenReturn(details);
+        when(send.execute()).thenThrow(exception);
+
+        // Act & Assert: Verify that the exception reaches the caller
+        assertThrows(GoogleJsonResponseException.class, () ->
+                gmailService.send("test@example.com", "Test Subject", "Test Body"));
+    }
 }
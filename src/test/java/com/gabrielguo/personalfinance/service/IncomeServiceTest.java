@@ -1,6 +1,9 @@
 package com.gabrielguo.personalfinance.service;
 
+import com.gabrielguo.personalfinance.config.TimeSeriesStorage;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
 import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.exception.UnsupportedCurrencyException;
 import com.gabrielguo.personalfinance.model.Income;
 import com.gabrielguo.personalfinance.repository.IncomeRepository;
 import com.gabrielguo.personalfinance.repository.UserRepository;
@@ -9,6 +12,8 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.query.Update;
 
 import java.math.BigDecimal;
 import java.text.ParseException;
@@ -19,6 +24,8 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 public class IncomeServiceTest {
@@ -29,6 +36,15 @@ public class IncomeServiceTest {
     @Mock
     private UserRepository userRepository;  // Mocking the repository for users
 
+    @Mock
+    private TimeSeriesStorage timeSeriesStorage;  // Mocking the storage mode, regular collections unless stubbed
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;  // Mocking the publisher of ledger events
+
+    @Mock
+    private FxRateService fxRateService;  // Mocking the exchange rates, which accept every currency unless stubbed
+
     @InjectMocks
     private IncomeService incomeService;  // Injecting mocks into the service under test
 
@@ -54,6 +70,19 @@ public class IncomeServiceTest {
         );
     }
 
+    @Test
+    public void testCreateIncome_UnsupportedCurrency() {
+        // Arrange: Set up an income in a currency without exchange rates
+        Income income = new Income();
+        income.setCurrency("XYZ");
+        when(userRepository.existsById("userId")).thenReturn(true);
+        doThrow(new UnsupportedCurrencyException("Unsupported currency: XYZ")).when(fxRateService).requireSupported("XYZ");
+
+        // Act & Assert: Verify that the income is rejected and not saved
+        assertThrows(UnsupportedCurrencyException.class, () -> incomeService.createIncome(income, "userId"));
+        verify(incomeRepository, never()).save(any(Income.class));
+    }
+
     @Test
     public void testCreateIncome_Success() throws ParseException {
         // Arrange: Set up valid income data and mock repository responses
@@ -131,6 +160,24 @@ public class IncomeServiceTest {
         verify(incomeRepository).save(updatedIncome);  // Ensure save was called
     }
 
+    @Test
+    public void testUpdateIncome_TimeSeriesUpdatesInPlace() throws ParseException {
+        // Arrange: Enable time-series storage, where a save of an existing income is not supported
+        Date existingDate = parseDate("2024-08-01");
+        Income existingIncome = new Income("1", "userId", "Salary", BigDecimal.valueOf(1000.0), existingDate);
+        Income updatedIncome = new Income("1", "userId", "Bonus", BigDecimal.valueOf(1200.0), existingDate);
+        when(timeSeriesStorage.isEnabled()).thenReturn(true);
+        when(incomeRepository.findByIdAndUserId("1", "userId")).thenReturn(Optional.of(existingIncome));
+
+        // Act: Call the service method to update the income
+        Income result = incomeService.updateIncome("1", updatedIncome, "userId");
+
+        // Assert: Verify that the fields were set in place instead of saving the document
+        verify(timeSeriesStorage).update(eq("1"), eq("userId"), any(Update.class), eq(Income.class));
+        verify(incomeRepository, never()).save(any(Income.class));
+        assertEquals("Bonus", result.getIncomeType());
+    }
+
     @Test
     public void testUpdateIncome_UserNotAuthorized() throws ParseException {
         // Arrange: Set up existing income belonging to another user and an update attempt from a different user
@@ -157,6 +204,7 @@ public class IncomeServiceTest {
 
         // Assert: Verify that the delete operation was performed
         verify(incomeRepository).deleteById("1");  // Ensure deleteById was called
+        verify(eventPublisher).publishEvent(LedgerEvent.of(LedgerEvent.Action.DELETED, existingIncome));  // Ensure the ledger records it
     }
 
     @Test
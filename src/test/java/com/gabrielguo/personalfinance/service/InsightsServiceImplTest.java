@@ -1,5 +1,7 @@
 package com.gabrielguo.personalfinance.service;
 
+import com.gabrielguo.personalfinance.fx.CurrencyTotals;
+import com.gabrielguo.personalfinance.fx.FxRateTable;
 import com.gabrielguo.personalfinance.model.*;
 import com.gabrielguo.personalfinance.model.summary.*;
 import com.gabrielguo.personalfinance.model.trends.*;
@@ -8,17 +10,23 @@ import com.gabrielguo.personalfinance.repository.*;
 import com.gabrielguo.personalfinance.repository.summary.CategorySpendingRepository;
 import com.gabrielguo.personalfinance.repository.summary.*;
 import com.gabrielguo.personalfinance.repository.trendsrepo.*;
+import com.gabrielguo.personalfinance.util.ReadRouting;
+import com.gabrielguo.personalfinance.util.SingleFlight;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -51,6 +59,16 @@ public class InsightsServiceImplTest {
     private CategorySpendingRepository categorySpendingRepository;
     @Mock
     private FinancialHealthRepository financialHealthRepository;
+    @Mock
+    private BudgetUtilizationService budgetUtilizationService;
+    @Mock
+    private ExpenseArchiveService expenseArchiveService;
+    @Spy
+    private SingleFlight singleFlight = new SingleFlight();
+    @Spy
+    private ReadRouting readRouting = new ReadRouting(true, 90, 30);
+    @Spy
+    private FxRateService fxRateService = new FxRateService("fx-rates", "USD", "USD");
 
     @InjectMocks
     private InsightsServiceImpl insightsService;
@@ -61,6 +79,16 @@ public class InsightsServiceImplTest {
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(expenseArchiveService.addTotal(anyString(), any(CurrencyTotals.class))).thenAnswer(invocation -> invocation.getArgument(1));
+        doReturn("USD").when(fxRateService).getReportingCurrency(anyString());
+    }
+
+    // A row of the per-currency aggregations; a null currency is the default currency
+    private static Map<String, Object> currencyTotal(String currency, BigDecimal totalAmount) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("currency", currency);
+        row.put("totalAmount", totalAmount);
+        return row;
     }
 
     @Test
@@ -68,8 +96,8 @@ public class InsightsServiceImplTest {
         BigDecimal totalExpenseAmount = new BigDecimal("3000");
         BigDecimal totalTransactionAmount = new BigDecimal("1000");
 
-        when(expenseRepository.findTotalExpensesByUserId(USER_ID)).thenReturn(totalExpenseAmount);
-        when(transactionRepository.findTotalExpensesByUserId(USER_ID)).thenReturn(totalTransactionAmount);
+        when(expenseRepository.findTotalExpensesPerCurrency(USER_ID)).thenReturn(List.of(currencyTotal(null, totalExpenseAmount)));
+        when(transactionRepository.findTotalTransactionsPerCurrency(USER_ID)).thenReturn(List.of(currencyTotal(null, totalTransactionAmount)));
 
         ExpenseSummary result = insightsService.getExpenseSummary(USER_ID);
 
@@ -81,11 +109,38 @@ public class InsightsServiceImplTest {
         verify(expenseSummaryRepository).save(any(ExpenseSummary.class));
     }
 
+    @Test
+    public void testInsightsReadAsAnalyticalReads() {
+        when(expenseRepository.findTotalExpensesPerCurrency(USER_ID)).thenAnswer(invocation -> {
+            assertEquals(ReadRouting.Route.ANALYTICAL_READ, readRouting.currentRoute());
+            return List.of(currencyTotal(null, new BigDecimal("3000")));
+        });
+
+        insightsService.getExpenseSummary(USER_ID);
+
+        verify(expenseRepository).findTotalExpensesPerCurrency(USER_ID);
+        // The route only applies while the insight is computed
+        assertEquals(ReadRouting.Route.CRITICAL_READ, readRouting.currentRoute());
+    }
+
+    @Test
+    public void testGetExpenseSummary_IncludesArchivedExpenses() {
+        when(expenseRepository.findTotalExpensesPerCurrency(USER_ID)).thenReturn(List.of(currencyTotal(null, new BigDecimal("3000"))));
+        when(transactionRepository.findTotalTransactionsPerCurrency(USER_ID)).thenReturn(List.of(currencyTotal(null, new BigDecimal("1000"))));
+        when(expenseArchiveService.addTotal(eq(USER_ID), any(CurrencyTotals.class)))
+                .thenAnswer(invocation -> invocation.<CurrencyTotals>getArgument(1).add(null, new BigDecimal("2500")));
+
+        ExpenseSummary result = insightsService.getExpenseSummary(USER_ID);
+
+        assertEquals(new BigDecimal("6500"), result.getTotalExpenses());
+        assertEquals("bad", result.getStatus());
+    }
+
     @Test
     public void testGetIncomeSummary() {
         BigDecimal totalIncome = new BigDecimal("12000");
 
-        when(incomeRepository.findTotalIncomeByUserId(USER_ID)).thenReturn(totalIncome);
+        when(incomeRepository.findTotalIncomePerCurrency(USER_ID)).thenReturn(List.of(currencyTotal(null, totalIncome)));
 
         IncomeSummary result = insightsService.getIncomeSummary(USER_ID);
 
@@ -104,8 +159,8 @@ public class InsightsServiceImplTest {
         List<Transaction> transactions = Collections.singletonList(new Transaction("1", USER_ID, new BigDecimal("500"), "description"));
 
         when(budgetRepository.findByUserId(USER_ID)).thenReturn(budgets);
-        when(expenseRepository.findByUserId(USER_ID)).thenReturn(expenses);
-        when(transactionRepository.findByUserId(USER_ID)).thenReturn(transactions);
+        when(expenseRepository.streamByUserId(USER_ID)).thenReturn(expenses.stream());
+        when(transactionRepository.streamByUserId(USER_ID)).thenReturn(transactions.stream());
 
         BudgetAnalysis result = insightsService.getBudgetAnalysis(USER_ID);
 
@@ -118,13 +173,33 @@ public class InsightsServiceImplTest {
         verify(budgetAnalysisRepository).save(any(BudgetAnalysis.class));
     }
 
+    @Test
+    public void testGetBudgetAnalysis_ConvertsToReportingCurrency() {
+        // One euro is worth 1.10 dollars throughout 2023
+        Map<String, SortedMap<LocalDate, BigDecimal>> rates = Map.of("EUR", new TreeMap<>(Map.of(LocalDate.of(2023, 1, 1), new BigDecimal("1.10"))));
+        doReturn(FxRateTable.of("USD", rates)).when(fxRateService).getTable();
+        doReturn("EUR").when(fxRateService).getReportingCurrency(USER_ID);
+        Date date = Date.from(TEST_DATE.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Expense inDollars = new Expense("1", USER_ID, new BigDecimal("110"), "category", date, "description", "USD");
+        Expense inEuros = new Expense("2", USER_ID, new BigDecimal("50"), "category", date, "description", "EUR");
+
+        when(budgetRepository.findByUserId(USER_ID)).thenReturn(List.of(new Budget("1", USER_ID, new BigDecimal("200"), "description", date, date, "EUR")));
+        when(expenseRepository.streamByUserId(USER_ID)).thenReturn(Stream.of(inDollars, inEuros));
+
+        BudgetAnalysis result = insightsService.getBudgetAnalysis(USER_ID);
+
+        assertEquals(new BigDecimal("200"), result.getTotalBudgeted());
+        assertEquals(new BigDecimal("150.00"), result.getTotalSpent());
+        assertEquals(new BigDecimal("50.00"), result.getBudgetVariance());
+    }
+
     @Test
     public void testGetSavingsGoals() {
         BigDecimal totalIncome = new BigDecimal("10000");
         List<Transaction> transactions = Collections.singletonList(new Transaction("1", USER_ID, new BigDecimal("2000"), "description"));
 
-        when(incomeRepository.findTotalIncomeByUserId(USER_ID)).thenReturn(totalIncome);
-        when(transactionRepository.findByUserId(USER_ID)).thenReturn(transactions);
+        when(incomeRepository.findTotalIncomePerCurrency(USER_ID)).thenReturn(List.of(currencyTotal(null, totalIncome)));
+        when(transactionRepository.streamByUserId(USER_ID)).thenReturn(transactions.stream());
 
         SavingsGoals result = insightsService.getSavingsGoals(USER_ID);
 
@@ -145,7 +220,7 @@ public class InsightsServiceImplTest {
                 new Expense("1", USER_ID, new BigDecimal("100"), "Category", startDate, "Description")
         );
 
-        when(expenseRepository.findByUserIdAndDateBetween(USER_ID, startDate, endDate)).thenReturn(expenses);
+        when(expenseRepository.streamByUserIdAndDateBetween(USER_ID, startDate, endDate)).thenReturn(expenses.stream());
 
         List<ExpenseTrend> result = insightsService.getExpenseTrends(USER_ID, startDate, endDate);
 
@@ -157,13 +232,43 @@ public class InsightsServiceImplTest {
 
         verify(expenseTrendRepository).saveAll(anyList());
     }
+    @Test
+    public void testGetExpenseTrends_IncludesArchivedMonths() {
+        Date startDate = Date.from(TEST_DATE.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Date endDate = Date.from(TEST_DATE.plusMonths(3).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        List<Expense> expenses = Collections.singletonList(
+                new Expense("1", USER_ID, new BigDecimal("100"), "Category", startDate, "Description")
+        );
+
+        when(expenseRepository.streamByUserIdAndDateBetween(USER_ID, startDate, endDate)).thenReturn(expenses.stream());
+        doAnswer(invocation -> {
+            Function<YearMonth, CurrencyTotals> totalsOf = invocation.getArgument(3);
+            totalsOf.apply(YearMonth.of(2023, 1)).add(null, startDate, new BigDecimal("40"));
+            totalsOf.apply(YearMonth.of(2023, 2)).add(null, startDate, new BigDecimal("250"));
+            return null;
+        }).when(expenseArchiveService).addMonthlyTotals(eq(USER_ID), eq(startDate), eq(endDate), any());
+
+        List<ExpenseTrend> result = insightsService.getExpenseTrends(USER_ID, startDate, endDate);
+
+        // January combines regular and archived spending; February is archived only
+        assertEquals(2, result.size());
+        Map<Integer, BigDecimal> byMonth = new HashMap<>();
+        Calendar calendar = Calendar.getInstance();
+        for (ExpenseTrend trend : result) {
+            calendar.setTime(trend.getMonth());
+            byMonth.put(calendar.get(Calendar.MONTH), trend.getAmount());
+        }
+        assertEquals(new BigDecimal("140"), byMonth.get(Calendar.JANUARY));
+        assertEquals(new BigDecimal("250"), byMonth.get(Calendar.FEBRUARY));
+    }
+
     @Test
     public void testGetIncomeTrends() {
         Date startDate = Date.from(TEST_DATE.atStartOfDay(ZoneId.systemDefault()).toInstant());
         Date endDate = Date.from(TEST_DATE.plusMonths(3).atStartOfDay(ZoneId.systemDefault()).toInstant());
         List<Income> incomes = Collections.singletonList(new Income("1", USER_ID, "salary", new BigDecimal("1500"), startDate));
 
-        when(incomeRepository.findByUserIdAndDateBetween(USER_ID, startDate, endDate)).thenReturn(incomes);
+        when(incomeRepository.streamByUserIdAndDateBetween(USER_ID, startDate, endDate)).thenReturn(incomes.stream());
 
         List<IncomeTrend> result = insightsService.getIncomeTrends(USER_ID, startDate, endDate);
 
@@ -183,9 +288,8 @@ public class InsightsServiceImplTest {
         Date endDate = Date.from(TEST_DATE.plusMonths(3).atStartOfDay(ZoneId.systemDefault()).toInstant());
         Budget budget = new Budget("1", USER_ID, new BigDecimal("5000"), "description", startDate, endDate);
 
-        when(budgetRepository.findMostRecentBudget(USER_ID, startDate, endDate)).thenReturn(budget);
-        when(budgetRepository.findBudgetsByUserIdAndDateRange(eq(USER_ID), eq(startDate), eq(endDate), any(Sort.class)))
-                .thenReturn(Collections.singletonList(budget));
+        when(budgetRepository.summarizeRange(USER_ID, startDate, endDate))
+                .thenReturn(new BudgetRepository.RangeSummary(budget, new BigDecimal("5000")));
 
         List<BudgetTrend> result = insightsService.getBudgetTrends(USER_ID, startDate, endDate);
 
@@ -197,6 +301,48 @@ public class InsightsServiceImplTest {
         assertEquals("good", result.get(0).getStatus());
 
         verify(budgetTrendRepository).saveAll(anyList());
+        // A single bounded query replaces the separate most-recent and full-list queries
+        verify(budgetRepository, never()).findBudgetsByUserIdAndDateRange(any(), any(), any(), any(Sort.class));
+    }
+
+    @Test
+    public void testGetBudgetTrends_LowerThanHighest() {
+        Date startDate = Date.from(TEST_DATE.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Date endDate = Date.from(TEST_DATE.plusMonths(3).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Budget budget = new Budget("1", USER_ID, new BigDecimal("3000"), "description", startDate, endDate);
+
+        when(budgetRepository.summarizeRange(USER_ID, startDate, endDate))
+                .thenReturn(new BudgetRepository.RangeSummary(budget, new BigDecimal("5000")));
+
+        List<BudgetTrend> result = insightsService.getBudgetTrends(USER_ID, startDate, endDate);
+
+        assertEquals("bad", result.get(0).getStatus());
+    }
+
+    @Test
+    public void testGetBudgetTrends_BudgetWithoutAmount() {
+        Date startDate = Date.from(TEST_DATE.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Date endDate = Date.from(TEST_DATE.plusMonths(3).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Budget budget = new Budget("1", USER_ID, null, "description", startDate, endDate);
+
+        when(budgetRepository.summarizeRange(USER_ID, startDate, endDate))
+                .thenReturn(new BudgetRepository.RangeSummary(budget, null));
+
+        List<BudgetTrend> result = insightsService.getBudgetTrends(USER_ID, startDate, endDate);
+
+        assertTrue(result.isEmpty());
+        verify(budgetTrendRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    public void testGetBudgetTrends_NoBudgets() {
+        Date startDate = Date.from(TEST_DATE.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Date endDate = Date.from(TEST_DATE.plusMonths(3).atStartOfDay(ZoneId.systemDefault()).toInstant());
+
+        List<BudgetTrend> result = insightsService.getBudgetTrends(USER_ID, startDate, endDate);
+
+        assertTrue(result.isEmpty());
+        verify(budgetTrendRepository, never()).saveAll(anyList());
     }
     @Test
     public void testGetCategorySpending() {
@@ -208,7 +354,7 @@ public class InsightsServiceImplTest {
         );
         List<Map<String, Object>> transactionCategoryTotals = Collections.singletonList(
                 new HashMap<String, Object>() {{
-                    put("description", "groceries");
+                    put("category", "groceries");
                     put("totalAmount", new BigDecimal("50.00"));
                 }}
         );
@@ -227,11 +373,39 @@ public class InsightsServiceImplTest {
 
         verify(categorySpendingRepository).saveAll(anyList());
     }
+
+    @Test
+    public void testGetCategorySpending_IncludesArchivedExpenses() {
+        List<Map<String, Object>> expenseCategoryTotals = Collections.singletonList(
+                new HashMap<String, Object>() {{
+                    put("category", "food");
+                    put("totalAmount", new BigDecimal("100.00"));
+                }}
+        );
+
+        when(expenseRepository.findTotalExpensesPerCategory(USER_ID)).thenReturn(expenseCategoryTotals);
+        when(transactionRepository.findTotalTransactionsPerCategory(USER_ID)).thenReturn(Collections.emptyList());
+        doAnswer(invocation -> {
+            Function<String, CurrencyTotals> totalsOf = invocation.getArgument(1);
+            totalsOf.apply("food").add(null, new BigDecimal("20.00"));
+            totalsOf.apply("rent").add(null, new BigDecimal("900.00"));
+            return null;
+        }).when(expenseArchiveService).addCategoryTotals(eq(USER_ID), any());
+
+        List<CategorySpending> result = insightsService.getCategorySpending(USER_ID);
+
+        assertEquals(2, result.size());
+        assertTrue(result.stream().anyMatch(cs -> cs.getCategory().equals("food") && cs.getTotalSpending().equals(new BigDecimal("120.00"))));
+        assertTrue(result.stream().anyMatch(cs -> cs.getCategory().equals("rent") && cs.getTotalSpending().equals(new BigDecimal("900.00"))));
+    }
+
     @Test
     public void testGetIncomeSources() {
-        List<String> incomeTypes = Arrays.asList("salary", "freelance");
-        when(incomeRepository.findDistinctIncomeTypesByUserId(USER_ID)).thenReturn(incomeTypes);
-        when(incomeRepository.findTotalIncomeByTypeAndUserId(eq(USER_ID), anyString())).thenReturn(new BigDecimal("5000"));
+        Map<String, Object> salary = currencyTotal(null, new BigDecimal("5000"));
+        salary.put("incomeType", "salary");
+        Map<String, Object> freelance = currencyTotal(null, new BigDecimal("5000"));
+        freelance.put("incomeType", "freelance");
+        when(incomeRepository.findTotalIncomePerType(USER_ID)).thenReturn(List.of(salary, freelance));
 
         List<Income> result = insightsService.getIncomeSources(USER_ID);
 
@@ -243,4 +417,30 @@ public class InsightsServiceImplTest {
         assertEquals(new BigDecimal("5000"), result.get(1).getAmount());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testGetBudgetUtilization() {
+        BudgetUtilization utilization = new BudgetUtilization();
+        utilization.setId("1");
+        utilization.setUserId(USER_ID);
+        when(budgetUtilizationService.getUtilization(USER_ID)).thenReturn(List.of(utilization));
+
+        List<BudgetUtilization> result = insightsService.getBudgetUtilization(USER_ID);
+
+        assertEquals(1, result.size());
+        assertEquals("1", result.get(0).getId());
+        verify(budgetUtilizationService).getUtilization(USER_ID);
+    }
+
+    @Test
+    public void testGetBudgetUtilization_IsACriticalRead() {
+        // Missing results are rebuilt and stored, so they must not be computed from a secondary
+        when(budgetUtilizationService.getUtilization(USER_ID)).thenAnswer(invocation -> {
+            assertEquals(ReadRouting.Route.CRITICAL_READ, readRouting.currentRoute());
+            return List.of();
+        });
+
+        insightsService.getBudgetUtilization(USER_ID);
+
+        verify(budgetUtilizationService).getUtilization(USER_ID);
+    }
+}
@@ -0,0 +1,206 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.event.LedgerBatchEvent;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.ledger.LedgerProjection;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.Income;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the LedgerService class
+public class LedgerServiceTest {
+
+    @TempDir
+    private Path directory;
+
+    private LedgerService ledgerService;
+
+    private LedgerService open(boolean enabled, int snapshotEvery) throws IOException {
+        ledgerService = new LedgerService(enabled, directory.toString(), 4096, false, snapshotEvery);
+        ledgerService.open();
+        return ledgerService;
+    }
+
+    private long segmentBytes() throws IOException {
+        long bytes = 0;
+        try (Stream<Path> segments = Files.list(directory.resolve("segments"))) {
+            for (Path segment : segments.toList()) {
+                bytes += Files.size(segment);
+            }
+        }
+        return bytes;
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (ledgerService != null) {
+            ledgerService.close();
+        }
+    }
+
+    private static Expense expense(String id, String userId, String amount, String category) {
+        return new Expense(id, userId, new BigDecimal(amount), category, new Date(), null);
+    }
+
+    @Test
+    public void testGetProjection_ReplaysOnlyTheUsersEntries() throws IOException {
+        LedgerService service = open(true, 1000);
+        service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, expense("e1", "user1", "10.50", "Food")));
+        service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, expense("e2", "user2", "99.00", "Rent")));
+        service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED,
+                new Income("i1", "user1", "Salary", new BigDecimal("2000.00"), new Date())));
+        service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.UPDATED, expense("e1", "user1", "11.25", "Food")));
+
+        LedgerProjection projection = service.getProjection("user1");
+
+        assertEquals(new BigDecimal("11.25"), projection.getTotalExpenses());
+        assertEquals(new BigDecimal("2000.00"), projection.getTotalIncome());
+        assertEquals(Map.of("Food", new BigDecimal("11.25")), projection.getExpensesByCategory());
+        assertEquals(4, projection.getSequence());
+    }
+
+    @Test
+    public void testOnLedgerBatch_RecordsEveryEntry() throws IOException {
+        LedgerService service = open(true, 1000);
+        List<LedgerEvent> events = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            events.add(LedgerEvent.of(LedgerEvent.Action.CREATED, expense("e" + i, "user1", "2.00", "Food")));
+        }
+
+        service.onLedgerBatch(new LedgerBatchEvent("user1", events));
+
+        LedgerProjection projection = service.getProjection("user1");
+        assertEquals(new BigDecimal("100.00"), projection.getTotalExpenses());
+        assertEquals(50, projection.getSequence());
+        // Snapshotted by the first projection, which had to replay the ledger from the start
+        assertTrue(Files.exists(directory.resolve("snapshots").resolve("user1.json")));
+        assertEquals(0, service.snapshotPending());
+    }
+
+    @Test
+    public void testSnapshots_AreUsedAfterRestart() throws IOException {
+        LedgerService service = open(true, 1000);
+        service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, expense("e1", "user1", "10", "Food")));
+        assertEquals(1, service.snapshotPending());
+        assertEquals(0, service.snapshotPending()); // Nothing recorded since
+        service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, expense("e2", "user1", "5", "Food")));
+        service.close();
+
+        assertTrue(Files.exists(directory.resolve("snapshots").resolve("user1.json")));
+        LedgerProjection projection = open(true, 1000).getProjection("user1");
+
+        assertEquals(new BigDecimal("15"), projection.getTotalExpenses());
+        assertEquals(2, projection.getEntities().size());
+        assertEquals(2, projection.getSequence());
+    }
+
+    @Test
+    public void testGetProjection_SnapshotsAfterManyEntries() throws IOException {
+        LedgerService service = open(true, 2);
+        service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, expense("e1", "user1", "10", "Food")));
+        service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.DELETED, expense("e1", "user1", "10", "Food")));
+
+        service.getProjection("user1");
+
+        assertTrue(Files.exists(directory.resolve("snapshots").resolve("user1.json")));
+        assertEquals(0, service.snapshotPending());
+    }
+
+    @Test
+    public void testGetProjectionAt_IgnoresLaterEntries() throws Exception {
+        LedgerService service = open(true, 1000);
+        service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, expense("e1", "user1", "10", "Food")));
+        Thread.sleep(5);
+        Date between = new Date();
+        Thread.sleep(5);
+        service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, expense("e2", "user1", "20", "Food")));
+        service.snapshotPending(); // A snapshot newer than the moment cannot be the starting point
+
+        assertEquals(new BigDecimal("10"), service.getProjectionAt("user1", between).getTotalExpenses());
+        assertEquals(new BigDecimal("30"), service.getProjectionAt("user1", new Date()).getTotalExpenses());
+    }
+
+    @Test
+    public void testForget_DiscardsTheDeletedAccount() throws Exception {
+        LedgerService service = open(true, 1000);
+        service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, expense("e1", "user1", "10", "Food")));
+        service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, expense("e2", "user2", "20", "Rent")));
+        Thread.sleep(5);
+        Date beforeDeletion = new Date();
+        Thread.sleep(5);
+        assertEquals(2, service.snapshotPending());
+
+        service.forget("user1");
+
+        assertFalse(Files.exists(directory.resolve("snapshots").resolve("user1.json")));
+        LedgerProjection projection = service.getProjection("user1");
+        assertEquals(BigDecimal.ZERO, projection.getTotalExpenses());
+        assertTrue(projection.getExpensesByCategory().isEmpty());
+        assertTrue(projection.getEntities().isEmpty());
+        // Past totals are gone as well, while other users keep theirs
+        assertEquals(BigDecimal.ZERO, service.getProjectionAt("user1", beforeDeletion).getTotalExpenses());
+        assertEquals(new BigDecimal("20"), service.getProjection("user2").getTotalExpenses());
+    }
+
+    @Test
+    public void testCompact_RemovesTheEntriesOfDeletedAccounts() throws IOException {
+        LedgerService service = open(true, 1000);
+        for (int i = 0; i < 20; i++) {
+            service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, expense("a" + i, "user1", "1", "Food")));
+            service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, expense("b" + i, "user2", "2", "Rent")));
+        }
+        service.forget("user1");
+        // Enough entries to fill the segment holding the tombstone, which is only compacted once it is full
+        for (int i = 20; i < 50; i++) {
+            service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, expense("b" + i, "user2", "2", "Rent")));
+        }
+        long before = segmentBytes();
+
+        assertEquals(21, service.compact()); // 20 entries and the tombstone
+
+        assertTrue(segmentBytes() < before);
+        List<String> users = new ArrayList<>();
+        service.replay("user1", 0, entry -> users.add(entry.getUserId()));
+        assertTrue(users.isEmpty());
+        assertTrue(service.getProjection("user1").getEntities().isEmpty());
+        assertEquals(new BigDecimal("100"), service.getProjection("user2").getTotalExpenses());
+        assertEquals(0, service.compact());
+    }
+
+    @Test
+    public void testDropSnapshot_RebuildsFromTheLedger() throws IOException {
+        LedgerService service = open(true, 1000);
+        service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, expense("e1", "user1", "10", "Food")));
+        service.snapshotPending();
+
+        service.dropSnapshot("user1");
+
+        assertFalse(Files.exists(directory.resolve("snapshots").resolve("user1.json")));
+        assertEquals(new BigDecimal("10"), service.getProjection("user1").getTotalExpenses());
+    }
+
+    @Test
+    public void testDisabled() throws IOException {
+        LedgerService service = open(false, 1000);
+        service.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, expense("e1", "user1", "10", "Food")));
+
+        assertThrows(ResourceNotFoundException.class, () -> service.getProjection("user1"));
+        assertEquals(0, service.snapshotPending());
+        assertFalse(Files.exists(directory.resolve("segments")));
+    }
+}
@@ -0,0 +1,170 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.RecurringSeries;
+import com.gabrielguo.personalfinance.repository.ExpenseRepository;
+import com.gabrielguo.personalfinance.repository.RecurringSeriesRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Tests for the RecurringSeriesService class
+public class RecurringSeriesServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 7, 1);
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ExpenseRepository expenseRepository;
+
+    @Mock
+    private RecurringSeriesRepository recurringSeriesRepository;
+
+    @Mock
+    private ExpenseArchiveService expenseArchiveService;
+
+    @InjectMocks
+    private RecurringSeriesService recurringSeriesService;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        recurringSeriesService = new RecurringSeriesService(0.1, 3, 0.75, 13, 4);
+        MockitoAnnotations.openMocks(this);
+        executor = Executors.newFixedThreadPool(2);
+        ReflectionTestUtils.setField(recurringSeriesService, "recurringDetectionExecutor", executor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    private static Date date(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static List<Expense> subscription(String userId) {
+        List<Expense> expenses = new ArrayList<>();
+        for (int month = 1; month <= 6; month++) {
+            expenses.add(new Expense("e" + month, userId, new BigDecimal("15.49"), "Entertainment",
+                    date(LocalDate.of(2024, month, 15)), "Netflix"));
+        }
+        return expenses;
+    }
+
+    @Test
+    public void testDetectUser_StoresTheSeriesAndRemovesTheOnesNoLongerFound() {
+        when(expenseRepository.streamByUserIdAndDateBetween(eq("user1"), any(Date.class), any(Date.class)))
+                .thenReturn(subscription("user1").stream());
+
+        List<RecurringSeries> detected = recurringSeriesService.detectUser("user1", TODAY);
+
+        assertEquals(1, detected.size());
+        assertNotNull(detected.get(0).getDetectedAt());
+        // Three yearly expenses span up to two years of 375 days, longer than the 13 months configured
+        verify(expenseRepository).streamByUserIdAndDateBetween("user1", date(TODAY.minusDays(750)), date(LocalDate.of(2024, 7, 2)));
+        verify(recurringSeriesRepository).saveAll(detected);
+        verify(recurringSeriesRepository).deleteByUserIdAndDetectedAtBefore("user1", detected.get(0).getDetectedAt());
+    }
+
+    @Test
+    public void testDetectUser_FindsYearlySeries() {
+        List<Expense> renewals = new ArrayList<>();
+        for (int year = 2022; year <= 2024; year++) {
+            renewals.add(new Expense("e" + year, "user1", new BigDecimal("99.00"), "Software", date(LocalDate.of(year, 6, 20)), "Domain renewal"));
+        }
+        when(expenseRepository.streamByUserIdAndDateBetween(eq("user1"), any(Date.class), any(Date.class))).thenAnswer(invocation -> {
+            Date since = invocation.getArgument(1);
+            return renewals.stream().filter(expense -> !expense.getDate().before(since));
+        });
+
+        List<RecurringSeries> detected = recurringSeriesService.detectUser("user1", TODAY);
+
+        assertEquals(1, detected.size());
+        assertEquals(RecurringSeries.Period.YEARLY, detected.get(0).getPeriod());
+        assertEquals(3, detected.get(0).getOccurrences());
+    }
+
+    @Test
+    public void testDetectUser_FindsYearlySeriesInArchivedExpenses() {
+        Expense first = new Expense("e2022", "user1", new BigDecimal("99.00"), "Software", date(LocalDate.of(2022, 6, 20)), "Domain renewal");
+        Expense second = new Expense("e2023", "user1", new BigDecimal("99.00"), "Software", date(LocalDate.of(2023, 6, 20)), "Domain renewal");
+        Expense third = new Expense("e2024", "user1", new BigDecimal("99.00"), "Software", date(LocalDate.of(2024, 6, 20)), "Domain renewal");
+        when(expenseArchiveService.findExpensesBetween("user1", date(TODAY.minusDays(750)), date(LocalDate.of(2024, 7, 2))))
+                .thenReturn(List.of(first, second));
+        // The second one is still being archived, so it is in both its bucket and the expenses
+        when(expenseRepository.streamByUserIdAndDateBetween(eq("user1"), any(Date.class), any(Date.class)))
+                .thenReturn(List.of(second, third).stream());
+
+        List<RecurringSeries> detected = recurringSeriesService.detectUser("user1", TODAY);
+
+        assertEquals(1, detected.size());
+        assertEquals(RecurringSeries.Period.YEARLY, detected.get(0).getPeriod());
+        assertEquals(3, detected.get(0).getOccurrences());
+    }
+
+    @Test
+    public void testDetectAll_RunsEveryUserAndSurvivesFailures() {
+        when(mongoTemplate.findDistinct(any(Query.class), eq("userId"), eq(Expense.class), eq(String.class)))
+                .thenReturn(List.of("user1", "user2", "user3"));
+        when(expenseRepository.streamByUserIdAndDateBetween(anyString(), any(Date.class), any(Date.class)))
+                .thenAnswer(invocation -> {
+                    String userId = invocation.getArgument(0);
+                    if (userId.equals("user2")) {
+                        throw new IllegalStateException("Cursor killed");
+                    }
+                    return subscription(userId).stream();
+                });
+
+        int stored = recurringSeriesService.detectAll(TODAY);
+
+        assertEquals(2, stored);
+        verify(recurringSeriesRepository).deleteByUserIdAndDetectedAtBefore(eq("user1"), any(Date.class));
+        verify(recurringSeriesRepository).deleteByUserIdAndDetectedAtBefore(eq("user3"), any(Date.class));
+        verify(recurringSeriesRepository, never()).deleteByUserIdAndDetectedAtBefore(eq("user2"), any(Date.class));
+    }
+
+    @Test
+    public void testGetUpcoming_KeepsActiveSeriesDueWithinTheWindow() {
+        LocalDate today = LocalDate.now();
+        RecurringSeries soon = series("s1", date(today.plusDays(3)), true);
+        RecurringSeries overdue = series("s2", date(today.minusDays(1)), true);
+        RecurringSeries later = series("s3", date(today.plusDays(45)), true);
+        RecurringSeries ended = series("s4", date(today.plusDays(2)), false);
+        when(recurringSeriesRepository.findByUserIdOrderByNextDateAsc("user1")).thenReturn(List.of(overdue, ended, soon, later));
+
+        List<RecurringSeries> upcoming = recurringSeriesService.getUpcoming("user1", 30);
+
+        assertEquals(List.of(overdue, soon), upcoming);
+    }
+
+    private static RecurringSeries series(String id, Date nextDate, boolean active) {
+        return new RecurringSeries(id, "user1", "netflix", "Netflix", "Entertainment", null, new BigDecimal("15.49"),
+                RecurringSeries.Period.MONTHLY, 6, nextDate, nextDate, nextDate, active, new Date());
+    }
+}
@@ -0,0 +1,168 @@
+package com.gabrielguo.personalfinance.service;
+
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.model.Expense;
+import com.gabrielguo.personalfinance.model.Income;
+import com.gabrielguo.personalfinance.model.summary.SpendingAnomaly;
+import com.gabrielguo.personalfinance.repository.ExpenseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Tests for the SpendingAnomalyService class
+public class SpendingAnomalyServiceTest {
+
+    @Mock
+    private ExpenseRepository expenseRepository;
+
+    @Mock
+    private ExpenseArchiveService expenseArchiveService;
+
+    @InjectMocks
+    private SpendingAnomalyService spendingAnomalyService = new SpendingAnomalyService(true, 0.1, 5, 3.0, 0.1, 2, 100, 60, 12);
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private static Expense expense(String id, String userId, String amount, String category, String currency) {
+        return new Expense(id, userId, new BigDecimal(amount), category, new Date(), null, currency);
+    }
+
+    private static LedgerEvent created(String id, String userId, String amount, String category, String currency) {
+        return LedgerEvent.of(LedgerEvent.Action.CREATED, expense(id, userId, amount, category, currency));
+    }
+
+    private static List<Expense> usualGroceryExpenses(String userId) {
+        List<Expense> expenses = new ArrayList<>();
+        for (String amount : new String[]{"48.00", "52.00", "50.00", "47.50", "52.50"}) {
+            expenses.add(expense("g" + amount, userId, amount, "Groceries", null));
+        }
+        return expenses;
+    }
+
+    private void usualGroceries(String userId) {
+        for (String amount : new String[]{"48.00", "52.00", "50.00", "47.50", "52.50"}) {
+            spendingAnomalyService.onLedgerEvent(created("g" + amount, userId, amount, "Groceries", null));
+        }
+    }
+
+    @Test
+    public void testOnLedgerEvent_FlagsAnUnusuallyLargeExpense() {
+        usualGroceries("user1");
+
+        spendingAnomalyService.onLedgerEvent(created("e1", "user1", "250.00", "Groceries", null));
+
+        List<SpendingAnomaly> anomalies = spendingAnomalyService.getAnomalies("user1");
+        assertEquals(1, anomalies.size());
+        SpendingAnomaly anomaly = anomalies.get(0);
+        assertEquals("e1", anomaly.getExpenseId());
+        assertEquals("Groceries", anomaly.getCategory());
+        assertEquals(new BigDecimal("250.00"), anomaly.getAmount());
+        assertEquals(new BigDecimal("50.00"), anomaly.getExpectedAmount());
+        assertTrue(anomaly.getScore() >= 3.0);
+    }
+
+    @Test
+    public void testOnLedgerEvent_IgnoresUsualExpensesAndOtherCategories() {
+        usualGroceries("user1");
+
+        spendingAnomalyService.onLedgerEvent(created("e1", "user1", "55.00", "Groceries", null));
+        spendingAnomalyService.onLedgerEvent(created("e2", "user1", "900.00", "Rent", null)); // First rent seen
+        spendingAnomalyService.onLedgerEvent(created("e3", "user1", "250.00", "Groceries", "EUR")); // First in euros
+        spendingAnomalyService.onLedgerEvent(created("e4", "user2", "250.00", "Groceries", null));
+
+        assertTrue(spendingAnomalyService.getAnomalies("user1").isEmpty());
+        assertTrue(spendingAnomalyService.getAnomalies("user2").isEmpty());
+    }
+
+    @Test
+    public void testOnLedgerEvent_OnlyCountsCreatedExpenses() {
+        for (int i = 0; i < 5; i++) {
+            spendingAnomalyService.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.UPDATED,
+                    new Expense("u" + i, "user1", new BigDecimal("50.00"), "Groceries", new Date(), null)));
+            spendingAnomalyService.onLedgerEvent(LedgerEvent.of(LedgerEvent.Action.CREATED,
+                    new Income("i" + i, "user1", "Groceries", new BigDecimal("50.00"), new Date())));
+        }
+
+        spendingAnomalyService.onLedgerEvent(created("e1", "user1", "250.00", "Groceries", null));
+
+        assertTrue(spendingAnomalyService.getAnomalies("user1").isEmpty()); // Still warming up
+    }
+
+    @Test
+    public void testGetAnomalies_KeepsTheLatestNewestFirst() {
+        usualGroceries("user1");
+
+        spendingAnomalyService.onLedgerEvent(created("e1", "user1", "1000.00", "Groceries", null));
+        spendingAnomalyService.onLedgerEvent(created("e2", "user1", "5000.00", "Groceries", null));
+        spendingAnomalyService.onLedgerEvent(created("e3", "user1", "50000.00", "Groceries", null));
+
+        List<SpendingAnomaly> anomalies = spendingAnomalyService.getAnomalies("user1");
+        assertEquals(List.of("e3", "e2"), anomalies.stream().map(SpendingAnomaly::getExpenseId).toList());
+    }
+
+    @Test
+    public void testForget() {
+        usualGroceries("user1");
+        spendingAnomalyService.onLedgerEvent(created("e1", "user1", "250.00", "Groceries", null));
+
+        spendingAnomalyService.forget("user1");
+
+        assertTrue(spendingAnomalyService.getAnomalies("user1").isEmpty());
+        spendingAnomalyService.onLedgerEvent(created("e2", "user1", "250.00", "Groceries", null));
+        assertTrue(spendingAnomalyService.getAnomalies("user1").isEmpty());
+    }
+
+    @Test
+    public void testGetAnomalies_RebuildsFromHistoryWhenMissing() {
+        // A restarted instance, or one that has not seen the user yet
+        List<Expense> history = new ArrayList<>(usualGroceryExpenses("user1"));
+        history.add(expense("e1", "user1", "250.00", "Groceries", null));
+        when(expenseRepository.streamByUserIdAndDateBetween(eq("user1"), any(Date.class), any(Date.class))).thenReturn(history.stream());
+
+        List<SpendingAnomaly> anomalies = spendingAnomalyService.getAnomalies("user1");
+
+        assertEquals(List.of("e1"), anomalies.stream().map(SpendingAnomaly::getExpenseId).toList());
+        spendingAnomalyService.getAnomalies("user1");
+        verify(expenseRepository, times(1)).streamByUserIdAndDateBetween(eq("user1"), any(Date.class), any(Date.class));
+    }
+
+    @Test
+    public void testOnLedgerEvent_RebuildsWithoutTheNewExpense() {
+        // The new expense is already stored when its event arrives
+        List<Expense> history = new ArrayList<>(usualGroceryExpenses("user1"));
+        history.add(expense("e1", "user1", "250.00", "Groceries", null));
+        when(expenseRepository.streamByUserIdAndDateBetween(eq("user1"), any(Date.class), any(Date.class))).thenReturn(history.stream());
+
+        spendingAnomalyService.onLedgerEvent(created("e1", "user1", "250.00", "Groceries", null));
+
+        // Flagged once, and judged against the usual groceries only
+        List<SpendingAnomaly> anomalies = spendingAnomalyService.getAnomalies("user1");
+        assertEquals(1, anomalies.size());
+        assertEquals(new BigDecimal("50.00"), anomalies.get(0).getExpectedAmount());
+    }
+
+    @Test
+    public void testOnLedgerEvent_DoesNothingWhenDisabled() {
+        spendingAnomalyService = new SpendingAnomalyService(false, 0.1, 5, 3.0, 0.1, 50, 100, 60, 12);
+        usualGroceries("user1");
+
+        spendingAnomalyService.onLedgerEvent(created("e1", "user1", "250.00", "Groceries", null));
+
+        assertTrue(spendingAnomalyService.getAnomalies("user1").isEmpty());
+    }
+}
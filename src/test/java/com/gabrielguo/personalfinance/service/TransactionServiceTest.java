@@ -1,6 +1,10 @@
 package com.gabrielguo.personalfinance.service;
 
+import com.gabrielguo.personalfinance.event.LedgerBatchEvent;
+import com.gabrielguo.personalfinance.event.LedgerEvent;
+import com.gabrielguo.personalfinance.exception.ImportTooLargeException;
 import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
+import com.gabrielguo.personalfinance.exception.UnsupportedCurrencyException;
 import com.gabrielguo.personalfinance.model.Transaction;
 import com.gabrielguo.personalfinance.repository.TransactionRepository;
 import com.gabrielguo.personalfinance.repository.UserRepository;
@@ -9,13 +13,17 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 public class TransactionServiceTest {
@@ -26,8 +34,17 @@ public class TransactionServiceTest {
     @Mock
     private UserRepository userRepository; // Mocking the repository for users
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher; // Mocking the publisher of ledger events
+
+    @Mock
+    private CategorizationService categorizationService; // Mocking the category rules, which assign nothing unless stubbed
+
+    @Mock
+    private FxRateService fxRateService; // Mocking the exchange rates, which accept every currency unless stubbed
+
     @InjectMocks
-    private TransactionService transactionService; // Injecting mocks into the service under test
+    private TransactionService transactionService = new TransactionService(1000); // Injecting mocks into the service under test
 
     @BeforeEach
     public void setUp() {
@@ -45,6 +62,19 @@ public class TransactionServiceTest {
         );
     }
 
+    @Test
+    public void testCreateTransaction_UnsupportedCurrency() {
+        // Arrange: Set up a transaction in a currency without exchange rates
+        Transaction transaction = new Transaction();
+        transaction.setCurrency("XYZ");
+        when(userRepository.existsById("userId")).thenReturn(true);
+        doThrow(new UnsupportedCurrencyException("Unsupported currency: XYZ")).when(fxRateService).requireSupported("XYZ");
+
+        // Act & Assert: Verify that the transaction is rejected and not saved
+        assertThrows(UnsupportedCurrencyException.class, () -> transactionService.createTransaction(transaction, "userId"));
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+
     @Test
     public void testCreateTransaction_Success() {
         // Arrange: Set up valid transaction data and mock repository responses
@@ -58,6 +88,7 @@ public class TransactionServiceTest {
         // Assert: Verify that the transaction was created successfully
         assertEquals(transaction, createdTransaction);
         verify(transactionRepository).save(transaction); // Ensure save was called
+        verify(eventPublisher).publishEvent(LedgerEvent.of(LedgerEvent.Action.CREATED, transaction)); // Ensure the ledger records it
     }
 
     @Test
@@ -140,6 +171,7 @@ public class TransactionServiceTest {
 
         // Assert: Verify that the delete operation was performed
         verify(transactionRepository).deleteById("1"); // Ensure deleteById was called
+        verify(eventPublisher).publishEvent(LedgerEvent.of(LedgerEvent.Action.DELETED, existingTransaction)); // Ensure the ledger records it
     }
 
     @Test
@@ -152,4 +184,78 @@ public class TransactionServiceTest {
                 transactionService.deleteTransaction("1", "userId")
         );
     }
+
+    @Test
+    public void testCreateTransaction_AssignsCategory() {
+        // Arrange: Set up rules that recognise the merchant
+        Transaction transaction = new Transaction(null, null, BigDecimal.valueOf(15.0), "UBER *TRIP");
+        when(userRepository.existsById("userId")).thenReturn(true);
+        when(categorizationService.categorize(transaction)).thenAnswer(invocation -> {
+            transaction.setCategory("Transport");
+            transaction.setAutoCategorized(true);
+            return true;
+        });
+        when(transactionRepository.save(transaction)).thenReturn(transaction);
+
+        // Act: Call the service method to create the transaction
+        transactionService.createTransaction(transaction, "userId");
+
+        // Assert: Verify that the ledger records the assigned category along with the description
+        LedgerEvent event = LedgerEvent.of(LedgerEvent.Action.CREATED, transaction);
+        assertEquals("Transport", event.category());
+        assertEquals("UBER *TRIP", event.description());
+        verify(eventPublisher).publishEvent(event);
+    }
+
+    @Test
+    public void testImportTransactions_InsertsCategorizedTransactionsInOneBatch() {
+        // Arrange: Set up two imported transactions
+        Transaction first = new Transaction(null, null, BigDecimal.valueOf(15.0), "UBER *TRIP");
+        Transaction second = new Transaction(null, null, BigDecimal.valueOf(40.0), "Refund");
+        List<Transaction> transactions = List.of(first, second);
+        when(userRepository.existsById("userId")).thenReturn(true);
+        when(transactionRepository.insert(transactions)).thenReturn(transactions);
+
+        // Act: Call the service method to import the transactions
+        List<Transaction> result = transactionService.importTransactions(transactions, "userId");
+
+        // Assert: Verify that each transaction was categorized, and that all were inserted at once
+        assertEquals(transactions, result);
+        assertEquals("userId", first.getUserId());
+        verify(categorizationService).categorize(first);
+        verify(categorizationService).categorize(second);
+        verify(transactionRepository).insert(transactions);
+        verify(transactionRepository, never()).save(any(Transaction.class));
+        verify(eventPublisher).publishEvent(new LedgerBatchEvent("userId", List.of(
+                LedgerEvent.of(LedgerEvent.Action.CREATED, first), LedgerEvent.of(LedgerEvent.Action.CREATED, second))));
+        verify(eventPublisher, never()).publishEvent(any(LedgerEvent.class));
+    }
+
+    @Test
+    public void testImportTransactions_TooManyRows() {
+        // Arrange: Set up an import one transaction over the limit
+        List<Transaction> transactions = Collections.nCopies(1001, new Transaction());
+
+        // Act & Assert: Verify that the import is rejected before anything is inserted
+        assertThrows(ImportTooLargeException.class, () -> transactionService.importTransactions(transactions, "userId"));
+        verify(transactionRepository, never()).insert(anyList());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    public void testUpdateTransaction_ChosenCategoryIsNoLongerAssigned() {
+        // Arrange: Set up a transaction whose category came from the rules
+        Transaction existingTransaction = new Transaction("1", "userId", BigDecimal.valueOf(15.0), "UBER *TRIP", null, "Transport", true);
+        Transaction updatedTransaction = new Transaction("1", "userId", BigDecimal.valueOf(15.0), "UBER *TRIP", null, "Business travel", false);
+        when(transactionRepository.findById("1")).thenReturn(Optional.of(existingTransaction));
+        when(transactionRepository.save(existingTransaction)).thenReturn(existingTransaction);
+
+        // Act: Call the service method to change the category
+        Transaction result = transactionService.updateTransaction("1", updatedTransaction, "userId");
+
+        // Assert: Verify that the user's category is kept as chosen
+        assertEquals("Business travel", result.getCategory());
+        assertFalse(result.isAutoCategorized());
+        verify(categorizationService).categorize(existingTransaction);
+    }
 }
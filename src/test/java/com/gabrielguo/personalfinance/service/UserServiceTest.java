@@ -3,6 +3,8 @@ package com.gabrielguo.personalfinance.service;
 import com.gabrielguo.personalfinance.exception.ResourceNotFoundException;
 import com.gabrielguo.personalfinance.model.User;
 import com.gabrielguo.personalfinance.repository.UserRepository;
+import com.gabrielguo.personalfinance.security.PasswordHashingService;
+import com.gabrielguo.personalfinance.security.UserDetailsServiceImpl;
 import jakarta.mail.MessagingException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -28,9 +30,21 @@ public class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
-    // Mocked Gmail service to simulate email sending
+    // Mocked email outbox to simulate email sending
     @Mock
-    private GmailService gmailService;
+    private EmailOutboxService emailOutboxService;
+
+    // Mocked account deletion service to simulate the cascading deletion of user data
+    @Mock
+    private AccountDeletionService accountDeletionService;
+
+    // Mocked password hashing service, answering with real BCrypt hashes
+    @Mock
+    private PasswordHashingService passwordHashingService;
+
+    // Mocked user details service whose cached principals are evicted on changes
+    @Mock
+    private UserDetailsServiceImpl userDetailsService;
 
     // Service class under test
     @InjectMocks
@@ -48,8 +62,10 @@ public class UserServiceTest {
         MockitoAnnotations.openMocks(this);
         // Initialize the password encoder
         passwordEncoder = new BCryptPasswordEncoder();
+        when(passwordHashingService.encode(anyString()))
+                .thenAnswer(invocation -> passwordEncoder.encode(invocation.<CharSequence>getArgument(0)));
         // Reinitialize userService with mocked dependencies
-        userService = new UserServiceImpl(userRepository, gmailService);
+        userService = new UserServiceImpl(userRepository, emailOutboxService, accountDeletionService, passwordHashingService, userDetailsService);
     }
 
     /**
@@ -149,6 +165,9 @@ public class UserServiceTest {
         assertNotNull(result, "Updated user should not be null");
         assertEquals("new@example.com", result.getEmail(), "Email should be updated");
         assertTrue(passwordEncoder.matches("newpassword", result.getPassword()), "Password should be correctly encoded");
+        // Verify that cached principals for both the old and the new email are evicted
+        verify(userDetailsService).evict("old@example.com");
+        verify(userDetailsService).evict("new@example.com");
     }
 
     /**
@@ -167,6 +186,11 @@ public class UserServiceTest {
 
         // Verify that the repository delete method was called exactly once
         verify(userRepository, times(1)).delete(user);
+        // Verify that the deletion of the user's data was recorded and started
+        verify(accountDeletionService, times(1)).requestDeletion("1");
+        verify(accountDeletionService, times(1)).startDeletion("1");
+        // Verify that the cached principal is evicted
+        verify(userDetailsService, times(1)).evict("test@example.com");
     }
 
     /**
@@ -185,8 +209,8 @@ public class UserServiceTest {
         // Call the service method to send the password reset email
         userService.sendPasswordResetEmail("test@example.com");
 
-        // Verify that the Gmail service sendEmail method was called exactly once
-        verify(gmailService, times(1)).sendEmail(anyString(), anyString(), anyString());
+        // Verify that the email was queued in the outbox exactly once
+        verify(emailOutboxService, times(1)).enqueue(eq("test@example.com"), anyString(), contains(user.getResetToken()));
         // Assert that the user's reset token is set
         assertNotNull(user.getResetToken(), "Reset token should be set");
     }
@@ -229,6 +253,7 @@ public class UserServiceTest {
         // Assert that the new password is correctly encoded and reset token is cleared
         assertTrue(passwordEncoder.matches("newpassword", user.getPassword()), "Password should be correctly encoded");
         assertNull(user.getResetToken(), "Reset token should be cleared");
+        assertEquals(1, user.getCredentialVersion(), "Principals cached on every instance should be invalidated");
     }
 
     /**
@@ -1,16 +1,24 @@
 package com.gabrielguo.personalfinance.service;
 
+import com.gabrielguo.personalfinance.exception.UnsupportedCurrencyException;
 import com.gabrielguo.personalfinance.model.UserSettings;
-import com.gabrielguo.personalfinance.repository.UserSettingsRepository;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
-import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -19,13 +27,17 @@ import static org.mockito.Mockito.*;
  */
 public class UserSettingsServiceTest {
 
-    // Mocked repository to simulate interactions with the database
+    // Mocked template to simulate the upserts against the database
     @Mock
-    private UserSettingsRepository userSettingsRepository;
+    private MongoTemplate mongoTemplate;
+
+    // Mocked exchange rates, which accept every currency unless stubbed
+    @Mock
+    private FxRateService fxRateService;
 
     // Service class under test
     @InjectMocks
-    private UserSettingsService userSettingsService;
+    private UserSettingsService userSettingsService = new UserSettingsService(100, 600);
 
     /**
      * Initialize mocks before each test method.
@@ -37,15 +49,13 @@ public class UserSettingsServiceTest {
     }
 
     /**
-     * Test case for retrieving user settings when they are found in the repository.
+     * Test case for retrieving user settings when they already exist.
      */
     @Test
     public void testGetUserSettings_Found() {
         // Prepare test data: existing user settings
         UserSettings existingSettings = new UserSettings("1", "user1", true, "dark");
-
-        // Mock the repository to return the existing settings when queried by userId
-        when(userSettingsRepository.findByUserId("user1")).thenReturn(Optional.of(existingSettings));
+        mockUpsertReturning(existingSettings);
 
         // Call the service method
         UserSettings settings = userSettingsService.getUserSettings("user1");
@@ -58,25 +68,48 @@ public class UserSettingsServiceTest {
     }
 
     /**
-     * Test case for retrieving user settings when they are not found in the repository.
-     * This should result in new default settings being created and saved.
+     * Test case for retrieving user settings when none exist yet.
+     * The defaults must only be written on insert, in the same upsert that reads the settings.
      */
     @Test
     public void testGetUserSettings_NotFound() {
-        // Mock the repository to return an empty result when queried by userId
-        when(userSettingsRepository.findByUserId("user1")).thenReturn(Optional.empty());
+        mockUpsertReturning(new UserSettings("1", "user1", false, "light"));
 
         // Call the service method
         UserSettings settings = userSettingsService.getUserSettings("user1");
 
-        // Assert that new default settings are created
+        // Assert that default settings are returned
         assertNotNull(settings, "UserSettings should not be null");
         assertEquals("user1", settings.getUserId(), "UserId should match");
         assertFalse(settings.isEmailNotifications(), "Email notifications should be disabled by default");
         assertEquals("light", settings.getTheme(), "Theme should be light by default");
 
-        // Verify that save() was called exactly once to persist the new settings
-        verify(userSettingsRepository, times(1)).save(settings);
+        // Verify that one atomic upsert was issued, with the defaults under $setOnInsert
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), update.capture(), options.capture(), eq(UserSettings.class));
+        Document setOnInsert = update.getValue().getUpdateObject().get("$setOnInsert", Document.class);
+        assertEquals(false, setOnInsert.get("emailNotifications"));
+        assertEquals("light", setOnInsert.get("theme"));
+        assertNull(update.getValue().getUpdateObject().get("$set"), "Existing settings must not be overwritten");
+        assertTrue(options.getValue().isUpsert());
+        assertTrue(options.getValue().isReturnNew());
+    }
+
+    /**
+     * Test case for repeated reads being served from the cache.
+     */
+    @Test
+    public void testGetUserSettings_CachesSettings() {
+        mockUpsertReturning(new UserSettings("1", "user1", true, "dark"));
+
+        UserSettings first = userSettingsService.getUserSettings("user1");
+        // Changing the returned object must not change what later callers see
+        first.setTheme("light");
+        UserSettings second = userSettingsService.getUserSettings("user1");
+
+        assertEquals("dark", second.getTheme(), "Cached settings should be unaffected by callers");
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserSettings.class));
     }
 
     /**
@@ -84,11 +117,9 @@ public class UserSettingsServiceTest {
      */
     @Test
     public void testUpdateUserSettings() {
-        // Prepare test data: existing and updated user settings
+        // Prepare test data: updated user settings
         UserSettings updatedSettings = new UserSettings("1", "user1", true, "dark");
-
-        // Mock the repository to return the updated settings when saved
-        when(userSettingsRepository.save(any(UserSettings.class))).thenReturn(updatedSettings);
+        mockUpsertReturning(updatedSettings);
 
         // Call the service method to update settings
         UserSettings result = userSettingsService.updateUserSettings("user1", updatedSettings);
@@ -98,6 +129,22 @@ public class UserSettingsServiceTest {
         assertEquals("user1", result.getUserId(), "UserId should match");
         assertTrue(result.isEmailNotifications(), "Email notifications should be enabled");
         assertEquals("dark", result.getTheme(), "Theme should be dark");
+
+        // The update is written through, so the next read does not go to the database
+        assertEquals("dark", userSettingsService.getUserSettings("user1").getTheme());
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserSettings.class));
+    }
+
+    /**
+     * Test case for updating the reporting currency to one without exchange rates.
+     */
+    @Test
+    public void testUpdateUserSettings_UnsupportedCurrency() {
+        UserSettings updatedSettings = new UserSettings("1", "user1", true, "dark", "XYZ");
+        doThrow(new UnsupportedCurrencyException("Unsupported currency: XYZ")).when(fxRateService).requireSupported("XYZ");
+
+        assertThrows(UnsupportedCurrencyException.class, () -> userSettingsService.updateUserSettings("user1", updatedSettings));
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserSettings.class));
     }
 
     /**
@@ -106,10 +153,7 @@ public class UserSettingsServiceTest {
     @Test
     public void testResetUserSettings() {
         // Prepare test data: reset user settings with default values
-        UserSettings resetSettings = new UserSettings("1", "user1", false, "light");
-
-        // Mock the repository to return the reset settings when saved
-        when(userSettingsRepository.save(any(UserSettings.class))).thenReturn(resetSettings);
+        mockUpsertReturning(new UserSettings("1", "user1", false, "light"));
 
         // Call the service method to reset settings
         UserSettings result = userSettingsService.resetUserSettings("user1");
@@ -119,5 +163,56 @@ public class UserSettingsServiceTest {
         assertEquals("user1", result.getUserId(), "UserId should match");
         assertFalse(result.isEmailNotifications(), "Email notifications should be disabled by default");
         assertEquals("light", result.getTheme(), "Theme should be light");
+
+        // The defaults overwrite whatever was stored before
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), update.capture(), any(FindAndModifyOptions.class), eq(UserSettings.class));
+        Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+        assertEquals(false, set.get("emailNotifications"));
+        assertEquals("light", set.get("theme"));
+    }
+
+    /**
+     * Test case for evicting cached settings.
+     */
+    @Test
+    public void testEvict_ReloadsSettings() {
+        mockUpsertReturning(new UserSettings("1", "user1", true, "dark"));
+        userSettingsService.getUserSettings("user1");
+
+        userSettingsService.evict("user1");
+        userSettingsService.getUserSettings("user1");
+
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserSettings.class));
+    }
+
+    /**
+     * Test case for a read that loaded the settings before a concurrent write cached newer ones.
+     */
+    @Test
+    public void testGetUserSettings_StaleLoadDoesNotOverwriteWrite() {
+        UserSettings written = new UserSettings("1", "user1", true, "dark", "EUR", 2);
+        UserSettings stale = new UserSettings("1", "user1", false, "light", null, 1);
+        AtomicInteger upserts = new AtomicInteger();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserSettings.class)))
+                .thenAnswer(invocation -> {
+                    if (upserts.incrementAndGet() == 1) {
+                        // The write lands while the read's upsert is in flight, and the read returns afterwards
+                        userSettingsService.updateUserSettings("user1", written);
+                        return stale;
+                    }
+                    return written;
+                });
+
+        assertEquals("light", userSettingsService.getUserSettings("user1").getTheme());
+
+        // The written settings stay cached
+        assertEquals("dark", userSettingsService.getUserSettings("user1").getTheme());
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserSettings.class));
+    }
+
+    private void mockUpsertReturning(UserSettings settings) {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserSettings.class)))
+                .thenReturn(settings);
     }
 }
@@ -0,0 +1,78 @@
+package com.gabrielguo.personalfinance.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the IntervalIndex class
+public class IntervalIndexTest {
+
+    private record Interval(String name, long start, long end) {
+    }
+
+    private static IntervalIndex<Interval> index(List<Interval> intervals) {
+        return new IntervalIndex<>(intervals, Interval::start, Interval::end);
+    }
+
+    @Test
+    public void testStab_EndsAreInclusive() {
+        Interval january = new Interval("january", 1, 31);
+        Interval february = new Interval("february", 32, 59);
+        IntervalIndex<Interval> index = index(List.of(february, january));
+
+        assertEquals(List.of(january), index.stab(1));
+        assertEquals(List.of(january), index.stab(31));
+        assertEquals(List.of(february), index.stab(32));
+        assertTrue(index.stab(0).isEmpty());
+        assertTrue(index.stab(60).isEmpty());
+    }
+
+    @Test
+    public void testStab_OpenIntervalsAndOverlaps() {
+        Interval open = new Interval("open", 10, Long.MAX_VALUE);
+        Interval inner = new Interval("inner", 20, 30);
+        Interval early = new Interval("early", 0, 15);
+        IntervalIndex<Interval> index = index(List.of(open, inner, early));
+
+        // Ordered by start
+        assertEquals(List.of(early, open), index.stab(12));
+        assertEquals(List.of(open, inner), index.stab(25));
+        assertEquals(List.of(open), index.stab(1_000_000));
+    }
+
+    @Test
+    public void testStab_Empty() {
+        IntervalIndex<Interval> index = index(List.of());
+
+        assertEquals(0, index.size());
+        assertTrue(index.stab(5).isEmpty());
+    }
+
+    @Test
+    public void testStab_MatchesLinearScan() {
+        Random random = new Random(7);
+        List<Interval> intervals = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            long start = random.nextInt(1000);
+            long end = random.nextInt(10) == 0 ? Long.MAX_VALUE : start + random.nextInt(100);
+            intervals.add(new Interval("i" + i, start, end));
+        }
+        IntervalIndex<Interval> index = index(intervals);
+
+        for (long point = -5; point < 1200; point += 3) {
+            List<Interval> expected = new ArrayList<>();
+            for (Interval interval : intervals) {
+                if (interval.start() <= point && point <= interval.end()) {
+                    expected.add(interval);
+                }
+            }
+            List<Interval> actual = index.stab(point);
+            assertEquals(expected.size(), actual.size(), "Matches at " + point);
+            assertTrue(actual.containsAll(expected), "Matches at " + point);
+        }
+    }
+}
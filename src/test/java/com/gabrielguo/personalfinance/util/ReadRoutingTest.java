@@ -0,0 +1,88 @@
+package com.gabrielguo.personalfinance.util;
+
+import com.mongodb.ReadPreference;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the ReadRouting class
+public class ReadRoutingTest {
+
+    @Test
+    public void testUntaggedCallsUseThePrimary() {
+        ReadRouting readRouting = new ReadRouting(true, 90, 30);
+
+        assertEquals(ReadRouting.Route.CRITICAL_READ, readRouting.currentRoute());
+        assertNull(readRouting.readPreference());
+    }
+
+    @Test
+    public void testAnalyticalReadsPreferSecondaries() {
+        ReadRouting readRouting = new ReadRouting(true, 120, 30);
+        readRouting.setReplicationLagSeconds(0);
+
+        ReadPreference readPreference = readRouting.route(ReadRouting.Route.ANALYTICAL_READ, readRouting::readPreference);
+
+        assertEquals(ReadPreference.secondaryPreferred(120, TimeUnit.SECONDS), readPreference);
+        assertEquals(1, readRouting.getAnalyticalToSecondary());
+    }
+
+    @Test
+    public void testCriticalReadsAndWritesUseThePrimary() {
+        ReadRouting readRouting = new ReadRouting(true, 90, 30);
+
+        assertNull(readRouting.route(ReadRouting.Route.CRITICAL_READ, readRouting::readPreference));
+        assertNull(readRouting.route(ReadRouting.Route.WRITE, readRouting::readPreference));
+    }
+
+    @Test
+    public void testAnalyticalReadsFallBackToThePrimaryWhileLagging() {
+        ReadRouting readRouting = new ReadRouting(true, 90, 30);
+
+        readRouting.setReplicationLagSeconds(45);
+        assertTrue(readRouting.isLagging());
+        assertEquals(ReadPreference.primary(), readRouting.route(ReadRouting.Route.ANALYTICAL_READ, readRouting::readPreference));
+        assertEquals(1, readRouting.getAnalyticalToPrimary());
+
+        readRouting.setReplicationLagSeconds(30);
+        assertFalse(readRouting.isLagging());
+        assertEquals(ReadPreference.secondaryPreferred(90, TimeUnit.SECONDS),
+                readRouting.route(ReadRouting.Route.ANALYTICAL_READ, readRouting::readPreference));
+    }
+
+    @Test
+    public void testAnalyticalReadsUseThePrimaryWhileTheLagIsUnknown() {
+        ReadRouting readRouting = new ReadRouting(true, 90, 30);
+
+        // Nothing has been measured yet
+        assertTrue(readRouting.isLagging());
+        assertEquals(ReadPreference.primary(), readRouting.route(ReadRouting.Route.ANALYTICAL_READ, readRouting::readPreference));
+
+        readRouting.setReplicationLagSeconds(0);
+        readRouting.setReplicationLagSeconds(ReadRouting.UNKNOWN_LAG);
+        assertEquals(ReadPreference.primary(), readRouting.route(ReadRouting.Route.ANALYTICAL_READ, readRouting::readPreference));
+        assertEquals(2, readRouting.getAnalyticalToPrimary());
+    }
+
+    @Test
+    public void testNestedRoutesRestoreThePreviousRoute() {
+        ReadRouting readRouting = new ReadRouting(true, 90, 30);
+
+        readRouting.route(ReadRouting.Route.ANALYTICAL_READ, () -> {
+            assertEquals(ReadRouting.Route.WRITE, readRouting.route(ReadRouting.Route.WRITE, readRouting::currentRoute));
+            assertEquals(ReadRouting.Route.ANALYTICAL_READ, readRouting.currentRoute());
+            return null;
+        });
+
+        assertEquals(ReadRouting.Route.CRITICAL_READ, readRouting.currentRoute());
+    }
+
+    @Test
+    public void testDisabled() {
+        ReadRouting readRouting = new ReadRouting(false, 90, 30);
+
+        assertNull(readRouting.route(ReadRouting.Route.ANALYTICAL_READ, readRouting::readPreference));
+    }
+}
@@ -0,0 +1,91 @@
+package com.gabrielguo.personalfinance.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testKeyEquality() {
+        Date start = new Date(0);
+        assertEquals(SingleFlight.key("user1", "getExpenseTrends", start, null),
+                SingleFlight.key("user1", "getExpenseTrends", new Date(0), null));
+        assertNotEquals(SingleFlight.key("user1", "getExpenseTrends"), SingleFlight.key("user2", "getExpenseTrends"));
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneComputation() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> singleFlight.execute(SingleFlight.key("user1", "getCategorySpending"), () -> {
+                    computations.incrementAndGet();
+                    awaitQuietly(release);
+                    return "result";
+                })));
+            }
+            // Wait until every caller other than the leader has joined the in-flight computation
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (singleFlight.getCoalesced() < callers - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("result", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, computations.get());
+            assertEquals(1, singleFlight.getExecutions());
+            assertEquals(callers - 1, singleFlight.getCoalesced());
+            assertEquals(0, singleFlight.getInFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSequentialCallsRecompute() {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger computations = new AtomicInteger();
+
+        singleFlight.execute("key", computations::incrementAndGet);
+        singleFlight.execute("key", computations::incrementAndGet);
+
+        assertEquals(2, computations.get(), "Results must not be cached once the computation finishes");
+        assertEquals(0, singleFlight.getCoalesced());
+    }
+
+    @Test
+    public void testExceptionIsPropagatedAndKeyReleased() {
+        SingleFlight singleFlight = new SingleFlight();
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("key", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals("ok", singleFlight.execute("key", () -> "ok"));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.gabrielguo.personalfinance.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests for the TtlCache class
+public class TtlCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void testGet_ExpiresAfterTtl() {
+        TtlCache<String, String> cache = new TtlCache<>(10, 5, TimeUnit.SECONDS, now::get);
+        cache.put("key", "value");
+
+        now.set(TimeUnit.SECONDS.toNanos(4));
+        assertEquals("value", cache.get("key"));
+
+        now.set(TimeUnit.SECONDS.toNanos(5));
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPut_EvictsLeastRecentlyUsed() {
+        TtlCache<String, String> cache = new TtlCache<>(2, 5, TimeUnit.SECONDS, now::get);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        // Reading "a" makes "b" the least recently used entry
+        cache.get("a");
+        cache.put("c", "3");
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        TtlCache<String, String> cache = new TtlCache<>(10, 5, TimeUnit.SECONDS, now::get);
+        cache.put("key", "value");
+
+        cache.invalidate("key");
+
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void testPutIfAbsent_KeepsUnexpiredValue() {
+        TtlCache<String, String> cache = new TtlCache<>(10, 5, TimeUnit.SECONDS, now::get);
+
+        assertNull(cache.putIfAbsent("key", "first"));
+        assertEquals("first", cache.putIfAbsent("key", "second"));
+
+        now.set(TimeUnit.SECONDS.toNanos(5));
+        assertNull(cache.putIfAbsent("key", "third"));
+        assertEquals("third", cache.get("key"));
+    }
+
+    @Test
+    public void testPutIfNewer_KeepsHigherVersion() {
+        TtlCache<String, Long> cache = new TtlCache<>(10, 5, TimeUnit.SECONDS, now::get);
+
+        assertTrue(cache.putIfNewer("key", 2L, Long::longValue));
+        assertFalse(cache.putIfNewer("key", 1L, Long::longValue));
+        assertEquals(2L, cache.get("key"));
+
+        // An expired value no longer counts
+        now.set(TimeUnit.SECONDS.toNanos(5));
+        assertTrue(cache.putIfNewer("key", 1L, Long::longValue));
+        assertEquals(1L, cache.get("key"));
+    }
+
+    @Test
+    public void testInvalidate_OnlyTheGivenValue() {
+        TtlCache<String, String> cache = new TtlCache<>(10, 5, TimeUnit.SECONDS, now::get);
+        cache.put("key", "newer");
+
+        cache.invalidate("key", "older");
+        assertEquals("newer", cache.get("key"));
+
+        cache.invalidate("key", "newer");
+        assertNull(cache.get("key"));
+    }
+}